@@ -0,0 +1,124 @@
+/*
+	CaseGenerationBenchmark.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures generating the cases of an experiment, for sweeps of different
+ * shapes with the same number of cases: a single list of values
+ * ({@code wide}), four nested range sweeps ({@code deep}), and two lists
+ * combined in parallel ({@code parallel}).
+ * @author Ed Baskerville
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CaseGenerationBenchmark
+{
+	@Param({"wide", "deep", "parallel"})
+	public String shape;
+	
+	@Param({"10000"})
+	public int caseCount;
+	
+	private Experiment experiment;
+	
+	@Setup
+	public void setUp()
+	{
+		experiment = new Experiment();
+		experiment.setName("benchmark");
+		experiment.setNumRuns(4);
+		experiment.setFirstSeedRow(0);
+		experiment.setSeedCol(0);
+		
+		MultiplicativeCombinationSweep rootSweep = experiment.getRootSweep();
+		if(shape.equals("wide"))
+		{
+			rootSweep.add(createListSweep("alpha", caseCount));
+		}
+		else if(shape.equals("deep"))
+		{
+			int valueCount = (int)Math.round(Math.pow(caseCount, 0.25));
+			for(String name : new String[] {"alpha", "beta", "gamma", "delta"})
+			{
+				rootSweep.add(new RangeListSweep(name, BigDecimal.ZERO,
+					new BigDecimal(valueCount - 1), BigDecimal.ONE));
+			}
+		}
+		else if(shape.equals("parallel"))
+		{
+			List<Sweep> children = new ArrayList<Sweep>();
+			children.add(createListSweep("alpha", caseCount));
+			children.add(createListSweep("beta", caseCount));
+			rootSweep.add(new ParallelCombinationSweep(children));
+		}
+		else throw new IllegalArgumentException("Unknown sweep shape: " + shape);
+	}
+	
+	private static ListSweep createListSweep(String name, int valueCount)
+	{
+		StringList values = new StringList(valueCount);
+		for(int i = 0; i < valueCount; i++)
+		{
+			values.add("" + (i * 0.001));
+		}
+		return new ListSweep(name, values);
+	}
+	
+	@Benchmark
+	public List<ExperimentCase> generateCases() throws GridSweeperException
+	{
+		return experiment.generateCases();
+	}
+	
+	@Benchmark
+	public void iterateCases(Blackhole blackhole) throws GridSweeperException
+	{
+		Iterator<ExperimentCase> iter = experiment.caseIterator();
+		while(iter.hasNext())
+		{
+			blackhole.consume(iter.next());
+		}
+	}
+	
+	@Benchmark
+	public void iterateCasesInParallel(Blackhole blackhole) throws GridSweeperException
+	{
+		Iterator<ExperimentCase> iter = experiment.caseIterator(
+			Runtime.getRuntime().availableProcessors());
+		while(iter.hasNext())
+		{
+			blackhole.consume(iter.next());
+		}
+	}
+}
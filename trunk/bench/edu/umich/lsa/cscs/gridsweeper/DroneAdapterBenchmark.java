@@ -0,0 +1,91 @@
+/*
+	DroneAdapterBenchmark.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures running a model with {@link DroneAdapter} and capturing its
+ * output, either in memory or streamed to a file, for different amounts of
+ * output. The model is a shell script that writes the requested number of
+ * bytes to standard output, so the time includes starting the process.
+ * @author Ed Baskerville
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DroneAdapterBenchmark
+{
+	@Param({"1024", "1048576", "16777216"})
+	public int outputSize;
+	
+	@Param({"false", "true"})
+	public boolean streamOutput;
+	
+	private DroneAdapter adapter;
+	private File scriptFile;
+	private File directory;
+	
+	@Setup
+	public void setUp() throws AdapterException, IOException
+	{
+		scriptFile = File.createTempFile("DroneAdapterBenchmark", ".sh");
+		FileWriter writer = new FileWriter(scriptFile);
+		writer.write("head -c " + outputSize + " /dev/zero\n");
+		writer.close();
+		
+		directory = File.createTempFile("DroneAdapterBenchmark", "");
+		directory.delete();
+		directory.mkdir();
+		
+		Settings settings = new Settings();
+		settings.setProperty("model", "/bin/sh");
+		settings.setProperty("miscOptions", scriptFile.getPath());
+		settings.setProperty("streamOutput", "" + streamOutput);
+		adapter = new DroneAdapter(settings);
+	}
+	
+	@TearDown
+	public void tearDown()
+	{
+		scriptFile.delete();
+		File[] files = directory.listFiles();
+		if(files != null) for(File file : files)
+		{
+			file.delete();
+		}
+		directory.delete();
+	}
+	
+	@Benchmark
+	public RunResults run() throws AdapterException
+	{
+		return adapter.run(new ParameterMap(), 0, 1, 100, directory);
+	}
+}
@@ -0,0 +1,112 @@
+/*
+	ExperimentXMLBenchmark.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures reading an experiment file with {@link ExperimentXMLHandler},
+ * and writing experiment and case files with {@link ExperimentXMLWriter}
+ * and {@link ExperimentCaseXMLWriter}, for experiments with different
+ * numbers of parameters. Each parameter is swept over 16 values in parallel.
+ * @author Ed Baskerville
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ExperimentXMLBenchmark
+{
+	private static final int VALUE_COUNT = 16;
+	
+	@Param({"4", "64"})
+	public int parameterCount;
+	
+	private Experiment experiment;
+	private ExperimentCase expCase;
+	
+	private File experimentFile;
+	private URL experimentURL;
+	private File outputFile;
+	
+	@Setup
+	public void setUp() throws GridSweeperException, IOException
+	{
+		experiment = new Experiment();
+		experiment.setName("benchmark");
+		experiment.setNumRuns(100);
+		experiment.setFirstSeedRow(0);
+		experiment.setSeedCol(0);
+		experiment.getSettings().setProperty("Model", "/path/to/model");
+		
+		List<Sweep> children = new ArrayList<Sweep>(parameterCount);
+		for(int i = 0; i < parameterCount; i++)
+		{
+			StringList values = new StringList(VALUE_COUNT);
+			for(int j = 0; j < VALUE_COUNT; j++)
+			{
+				values.add("" + (j * 0.01));
+			}
+			children.add(new ListSweep("param" + i, values));
+		}
+		experiment.getRootSweep().add(new ParallelCombinationSweep(children));
+		expCase = experiment.getCase(0);
+		
+		experimentFile = File.createTempFile("ExperimentXMLBenchmark", ".gsexp");
+		experiment.writeToFile(experimentFile.getPath(), true);
+		experimentURL = new URL("file", "", experimentFile.getPath());
+		outputFile = File.createTempFile("ExperimentXMLBenchmark", ".xml");
+	}
+	
+	@TearDown
+	public void tearDown()
+	{
+		experimentFile.delete();
+		outputFile.delete();
+	}
+	
+	@Benchmark
+	public Experiment parseExperiment() throws GridSweeperException
+	{
+		return new Experiment(experimentURL);
+	}
+	
+	@Benchmark
+	public void writeExperiment() throws FileNotFoundException
+	{
+		experiment.writeToFile(outputFile.getPath(), true);
+	}
+	
+	@Benchmark
+	public void writeCase() throws FileNotFoundException
+	{
+		new ExperimentCaseXMLWriter(outputFile.getPath(), expCase, "benchmark").writeXML();
+	}
+}
@@ -0,0 +1,133 @@
+/*
+	RunCodecBenchmark.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures writing and reading the setups passed to the runner and the
+ * results it passes back, in the format described in {@link RunCodec},
+ * for a single run and for a batch of runs, with and without
+ * standard output in the results.
+ * @author Ed Baskerville
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RunCodecBenchmark
+{
+	@Param({"1", "100"})
+	public int runCount;
+	
+	@Param({"0", "65536"})
+	public int outputSize;
+	
+	private Object setupObj;
+	private byte[] setupData;
+	
+	private List<RunResults> resultsList;
+	private byte[] resultsData;
+	
+	@Setup
+	public void setUp() throws IOException
+	{
+		// Runs in a batch share their settings and parameters, as when submitted
+		Settings settings = new Settings();
+		settings.setProperty("Adapter", "edu.umich.lsa.cscs.gridsweeper.DroneAdapter");
+		settings.setProperty("Model", "/path/to/model");
+		settings.setProperty("RunsPerJob", "" + runCount);
+		ParameterMap parameters = new ParameterMap();
+		for(int i = 0; i < 8; i++)
+		{
+			parameters.put("param" + i, "" + (i * 0.125));
+		}
+		StringMap inputFiles = new StringMap();
+		StringList outputFiles = new StringList();
+		
+		List<RunSetup> setups = new ArrayList<RunSetup>(runCount);
+		for(int i = 0; i < runCount; i++)
+		{
+			setups.add(new RunSetup(settings, inputFiles, "param0=0.0", parameters,
+				runCount, i, 1000 + i, outputFiles));
+		}
+		setupObj = (runCount == 1) ? setups.get(0) : setups;
+		setupData = writeSetups();
+		
+		byte[] stdoutData = new byte[outputSize];
+		Arrays.fill(stdoutData, (byte)'x');
+		resultsList = new ArrayList<RunResults>(runCount);
+		for(int i = 0; i < runCount; i++)
+		{
+			RunResults results = new RunResults(0, "/path/to/model -N" + i, stdoutData, null);
+			results.setRunNumber(i);
+			resultsList.add(results);
+		}
+		resultsData = writeResults();
+	}
+	
+	@Benchmark
+	public byte[] writeSetups() throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RunCodec.writeSetups(out, setupObj);
+		return out.toByteArray();
+	}
+	
+	@Benchmark
+	public Object readSetups() throws IOException, ClassNotFoundException
+	{
+		return RunCodec.readSetups(new ByteArrayInputStream(setupData));
+	}
+	
+	@Benchmark
+	public byte[] writeResults() throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RunResultsWriter writer = new RunResultsWriter(out);
+		for(RunResults results : resultsList)
+		{
+			writer.writeResults(results);
+		}
+		writer.close();
+		return out.toByteArray();
+	}
+	
+	@Benchmark
+	public void readResults(Blackhole blackhole) throws IOException, ClassNotFoundException
+	{
+		RunResultsReader reader = new RunResultsReader(new ByteArrayInputStream(resultsData));
+		for(int i = 0; i < runCount; i++)
+		{
+			blackhole.consume(reader.readResults());
+		}
+		reader.close();
+	}
+}
@@ -28,6 +28,9 @@ package edu.umich.lsa.cscs.gridsweeper;
  * Java interfaces cannot specify constructors, but <code>Adapter</code>
  * objects are assumed to support a single-argument constructor with signature
  * {@code Adapter(java.util.Properties properties)}.
+ * By default, a new adapter is created for every run; see
+ * {@link ReusableAdapter} and {@link LifecycleAdapter} for adapters
+ * that are expensive to set up.
  * @author Ed Baskerville
  *
  */
@@ -0,0 +1,148 @@
+/*
+	AdapterPool.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.util.*;
+
+/**
+ * Creates adapters for the runner and manages their lifecycle. Adapters are
+ * initialized when created if they implement {@link LifecycleAdapter}.
+ * {@link ReusableAdapter} instances are kept, one for each distinct set of
+ * settings, and closed when the pool is closed or when they are the least
+ * recently used of more than the pool's capacity; other adapters are used for
+ * a single run and closed when released.
+ * @author Ed Baskerville
+ *
+ */
+class AdapterPool
+{
+	private ClassLoader classLoader;
+	private Map<Settings, Adapter> adapters;
+	
+	/**
+	 * Constructor.
+	 * @param classLoader The class loader used to load adapter classes.
+	 * @param capacity The maximum number of reusable adapters to keep.
+	 */
+	public AdapterPool(ClassLoader classLoader, final int capacity)
+	{
+		this.classLoader = classLoader;
+		adapters = new LinkedHashMap<Settings, Adapter>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Settings, Adapter> eldest)
+			{
+				if(size() > capacity)
+				{
+					closeAdapter(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * Gets an adapter for a run, reusing one if possible.
+	 * Every adapter obtained must be passed to {@link #release} after the run.
+	 * @param settings The settings for the run, which name the adapter class
+	 * and are passed to its constructor.
+	 * @return The adapter, initialized.
+	 * @throws Exception If the adapter cannot be created or initialized.
+	 */
+	public Adapter get(Settings settings) throws Exception
+	{
+		synchronized(adapters)
+		{
+			Adapter adapter = adapters.get(settings);
+			if(adapter != null) return adapter;
+		}
+		
+		String adapterClassName = settings.getProperty("Adapter", "edu.umich.lsa.cscs.gridsweeper.DroneAdapter");
+		Adapter adapter = AdapterFactory.createAdapter(adapterClassName, classLoader, settings);
+		if(!(adapter instanceof ReusableAdapter))
+		{
+			initAdapter(adapter);
+			return adapter;
+		}
+		
+		// Create and initialize reusable adapters with the lock held, so that
+		// concurrent runs with the same settings share a single instance
+		synchronized(adapters)
+		{
+			Adapter existing = adapters.get(settings);
+			if(existing != null) return existing;
+			
+			initAdapter(adapter);
+			adapters.put(settings, adapter);
+			return adapter;
+		}
+	}
+	
+	/**
+	 * Releases an adapter after a run, closing it unless it is reusable.
+	 * @param adapter The adapter.
+	 */
+	public void release(Adapter adapter)
+	{
+		if(!(adapter instanceof ReusableAdapter))
+			closeAdapter(adapter);
+	}
+	
+	/**
+	 * Closes all the reusable adapters kept by the pool.
+	 */
+	public void close()
+	{
+		synchronized(adapters)
+		{
+			for(Adapter adapter : adapters.values())
+			{
+				closeAdapter(adapter);
+			}
+			adapters.clear();
+		}
+	}
+	
+	private static void initAdapter(Adapter adapter) throws AdapterException
+	{
+		if(adapter instanceof LifecycleAdapter)
+			((LifecycleAdapter)adapter).init();
+	}
+	
+	private static void closeAdapter(Adapter adapter)
+	{
+		if(adapter instanceof LifecycleAdapter)
+		{
+			try
+			{
+				((LifecycleAdapter)adapter).close();
+			}
+			catch(AdapterException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+}
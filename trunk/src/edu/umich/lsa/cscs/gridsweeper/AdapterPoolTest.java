@@ -0,0 +1,119 @@
+/*
+	AdapterPoolTest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.util.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class AdapterPoolTest
+{
+	static List<String> events = new ArrayList<String>();
+	
+	public static class CountingAdapter implements LifecycleAdapter
+	{
+		private String name;
+		
+		public CountingAdapter(Settings settings)
+		{
+			name = settings.getProperty("name");
+		}
+		
+		public void init()
+		{
+			events.add("init " + name);
+		}
+		
+		public RunResults run(ParameterMap parameterMap, int runNumber, int numRuns, int rngSeed)
+		{
+			return new RunResults(0, name, null, null);
+		}
+		
+		public void close()
+		{
+			events.add("close " + name);
+		}
+	}
+	
+	public static class ReusableCountingAdapter extends CountingAdapter implements ReusableAdapter
+	{
+		public ReusableCountingAdapter(Settings settings)
+		{
+			super(settings);
+		}
+	}
+	
+	private Settings createSettings(Class<?> adapterClass, String name)
+	{
+		Settings settings = new Settings();
+		settings.setProperty("Adapter", adapterClass.getName());
+		settings.setProperty("name", name);
+		return settings;
+	}
+	
+	@Before
+	public void setUp()
+	{
+		events.clear();
+	}
+	
+	@Test
+	public void singleUse() throws Exception
+	{
+		AdapterPool pool = new AdapterPool(getClass().getClassLoader(), 2);
+		Settings settings = createSettings(CountingAdapter.class, "a");
+		
+		Adapter adapter0 = pool.get(settings);
+		pool.release(adapter0);
+		Adapter adapter1 = pool.get(settings);
+		pool.release(adapter1);
+		pool.close();
+		
+		assertNotSame(adapter0, adapter1);
+		assertEquals(Arrays.asList("init a", "close a", "init a", "close a"), events);
+	}
+	
+	@Test
+	public void reusable() throws Exception
+	{
+		AdapterPool pool = new AdapterPool(getClass().getClassLoader(), 2);
+		Settings settingsA = createSettings(ReusableCountingAdapter.class, "a");
+		Settings settingsB = createSettings(ReusableCountingAdapter.class, "b");
+		Settings settingsC = createSettings(ReusableCountingAdapter.class, "c");
+		
+		Adapter adapter = pool.get(settingsA);
+		pool.release(adapter);
+		assertSame(adapter, pool.get(settingsA));
+		pool.release(adapter);
+		assertEquals(Arrays.asList("init a"), events);
+		
+		// Using c after b evicts a, the least recently used
+		pool.release(pool.get(settingsB));
+		pool.release(pool.get(settingsC));
+		assertEquals(Arrays.asList("init a", "init b", "init c", "close a"), events);
+		
+		pool.close();
+		assertEquals(6, events.size());
+		assertTrue(events.containsAll(Arrays.asList("close b", "close c")));
+	}
+}
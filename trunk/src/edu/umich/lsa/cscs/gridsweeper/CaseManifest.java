@@ -0,0 +1,262 @@
+/*
+	CaseManifest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+
+import static edu.umich.lsa.cscs.gridsweeper.StringUtils.*;
+
+/**
+ * <p>A single file listing the cases of an experiment, written instead of a
+ * directory and {@code case.gscase} file for each case when the
+ * {@code CaseLayout} setting is {@code manifest}. Case directories are then
+ * created by the runner on the execution host, only when a run needs them.
+ * Each line describes a case, as tab-separated, URL-encoded fields:</p>
+ * 
+ * <p><em>caseIndex</em> <em>caseId</em> <em>rngSeeds</em>
+ * [<em>parameter</em> <em>value</em> ...]</p>
+ * 
+ * <p>where <em>caseIndex</em> is the position of the case in the experiment,
+ * <em>caseId</em> is its directory name, and <em>rngSeeds</em> is a
+ * comma-separated list of its random seeds. An index file alongside the
+ * manifest holds the byte offset of each line as an 8-byte integer, so that
+ * a case can be found without reading the whole manifest. Both files are only
+ * ever appended to.</p>
+ * @author Ed Baskerville
+ *
+ */
+class CaseManifest
+{
+	static final String FILENAME = "cases.gsmanifest";
+	static final String INDEX_FILENAME = "cases.gsmanifest.idx";
+	
+	/**
+	 * The directory, relative to the experiment directory, that holds the
+	 * setup, results and error files of jobs when using a manifest.
+	 */
+	static final String JOBS_DIRNAME = ".gsweep_jobs";
+	
+	private OutputStream out;
+	private DataOutputStream indexOut;
+	private long offset;
+	
+	/**
+	 * Describes a case read back from a manifest.
+	 */
+	static class Entry
+	{
+		long caseIndex;
+		String caseId;
+		List<Integer> rngSeeds = new ArrayList<Integer>();
+		StringMap parameters = new StringMap();
+	}
+	
+	/**
+	 * Determines whether an experiment uses a case manifest, from its
+	 * {@code CaseLayout} setting: {@code directories}, the default, or
+	 * {@code manifest}.
+	 * @param settings The experiment settings.
+	 * @return Whether a manifest is used.
+	 * @throws GridSweeperException If the setting is invalid.
+	 */
+	static boolean isUsed(Settings settings) throws GridSweeperException
+	{
+		String layout = settings.getProperty("CaseLayout", "directories");
+		if(layout.equalsIgnoreCase("manifest")) return true;
+		if(layout.equalsIgnoreCase("directories")) return false;
+		throw new GridSweeperException("Invalid CaseLayout setting: " + layout);
+	}
+	
+	/**
+	 * Opens the manifest in an experiment directory for appending, creating
+	 * it if necessary, along with the directory for job files.
+	 * @param expDir The experiment directory.
+	 * @throws IOException If the manifest cannot be opened.
+	 */
+	public CaseManifest(String expDir) throws IOException
+	{
+		File manifestFile = new File(expDir, FILENAME);
+		offset = manifestFile.length();
+		out = new BufferedOutputStream(new FileOutputStream(manifestFile, true));
+		indexOut = new DataOutputStream(new BufferedOutputStream(
+			new FileOutputStream(new File(expDir, INDEX_FILENAME), true)));
+		
+		File jobsDir = new File(expDir, JOBS_DIRNAME);
+		jobsDir.mkdir();
+		if(!jobsDir.isDirectory())
+			throw new IOException("Could not create " + jobsDir);
+	}
+	
+	/**
+	 * Adds a case to the manifest.
+	 * @param caseIndex The position of the case in the experiment.
+	 * @param caseId The case directory, relative to the experiment directory.
+	 * @param expCase The case.
+	 * @throws IOException If writing fails.
+	 */
+	public void append(long caseIndex, String caseId, ExperimentCase expCase) throws IOException
+	{
+		StringBuffer line = new StringBuffer();
+		line.append(caseIndex);
+		line.append('\t');
+		line.append(escape(caseId));
+		line.append('\t');
+		List<Integer> rngSeeds = expCase.getRngSeeds();
+		for(int i = 0; i < rngSeeds.size(); i++)
+		{
+			if(i > 0) line.append(',');
+			line.append(rngSeeds.get(i));
+		}
+		
+		// Sort parameters so that every line lists them in the same order
+		ParameterMap parameterMap = expCase.getParameterMap();
+		for(String name : new TreeSet<String>(parameterMap.keySet()))
+		{
+			line.append('\t');
+			line.append(escape(name));
+			line.append('\t');
+			line.append(escape("" + parameterMap.get(name)));
+		}
+		line.append('\n');
+		
+		byte[] bytes = line.toString().getBytes("UTF-8");
+		out.write(bytes);
+		indexOut.writeLong(offset);
+		offset += bytes.length;
+	}
+	
+	/**
+	 * Writes out any buffered entries and closes the manifest.
+	 * @throws IOException If writing fails.
+	 */
+	public void close() throws IOException
+	{
+		out.close();
+		indexOut.close();
+	}
+	
+	/**
+	 * Reads a single case from the manifest in an experiment directory,
+	 * using the index to find it.
+	 * @param expDir The experiment directory.
+	 * @param position The position of the case in the manifest, which is
+	 * its case index if all cases were submitted.
+	 * @return The case, or {@code null} if the manifest has no such case.
+	 * @throws IOException If the manifest cannot be read.
+	 */
+	public static Entry read(String expDir, long position) throws IOException
+	{
+		RandomAccessFile index = new RandomAccessFile(new File(expDir, INDEX_FILENAME), "r");
+		long lineOffset;
+		try
+		{
+			if(position < 0 || (position + 1) * 8 > index.length()) return null;
+			index.seek(position * 8);
+			lineOffset = index.readLong();
+		}
+		finally
+		{
+			index.close();
+		}
+		
+		InputStream in = new FileInputStream(new File(expDir, FILENAME));
+		try
+		{
+			long skipped = 0;
+			while(skipped < lineOffset)
+			{
+				long count = in.skip(lineOffset - skipped);
+				if(count <= 0) return null;
+				skipped += count;
+			}
+			String line = new BufferedReader(new InputStreamReader(in, "UTF-8")).readLine();
+			if(line == null) return null;
+			return parseEntry(line);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+	/**
+	 * Reads the cases in a manifest one after another, from start to finish.
+	 */
+	static class Reader
+	{
+		private BufferedReader reader;
+		
+		/**
+		 * Opens the manifest in an experiment directory.
+		 * @param expDir The experiment directory.
+		 * @throws IOException If the manifest cannot be opened.
+		 */
+		public Reader(String expDir) throws IOException
+		{
+			reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(new File(expDir, FILENAME)), "UTF-8"));
+		}
+		
+		/**
+		 * Reads the next case.
+		 * @return The case, or {@code null} at the end of the manifest.
+		 * @throws IOException If the manifest cannot be read.
+		 */
+		public Entry next() throws IOException
+		{
+			String line = reader.readLine();
+			if(line == null) return null;
+			return parseEntry(line);
+		}
+		
+		public void close() throws IOException
+		{
+			reader.close();
+		}
+	}
+	
+	private static Entry parseEntry(String line) throws IOException
+	{
+		try
+		{
+			// Keep trailing empty fields, such as an empty parameter value
+			String[] fields = line.split("\t", -1);
+			Entry entry = new Entry();
+			entry.caseIndex = Long.parseLong(fields[0]);
+			entry.caseId = unescape(fields[1]);
+			for(String seed : fields[2].split(","))
+			{
+				entry.rngSeeds.add(Integer.parseInt(seed));
+			}
+			for(int i = 3; i + 1 < fields.length; i += 2)
+			{
+				entry.parameters.put(unescape(fields[i]), unescape(fields[i + 1]));
+			}
+			return entry;
+		}
+		catch(RuntimeException e)
+		{
+			throw new IOException("Malformed case manifest entry: " + line);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+	CaseManifestTest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class CaseManifestTest
+{
+	File dir;
+	
+	@Before
+	public void setUp() throws IOException
+	{
+		dir = TestFiles.createTempDir("CaseManifestTest");
+	}
+	
+	@After
+	public void tearDown()
+	{
+		TestFiles.delete(dir);
+	}
+	
+	private ExperimentCase createCase(int i)
+	{
+		ParameterMap parameters = new ParameterMap("alpha", "" + i);
+		parameters.put("beta gamma", "a\tb");
+		return new ExperimentCase(parameters, Arrays.asList(100 + i, 200 + i));
+	}
+	
+	@Test
+	public void appendAndRead() throws IOException
+	{
+		CaseManifest manifest = new CaseManifest(dir.getPath());
+		for(int i = 0; i < 3; i++)
+		{
+			manifest.append(i, "a=" + i, createCase(i));
+		}
+		manifest.close();
+		assertTrue(new File(dir, CaseManifest.JOBS_DIRNAME).isDirectory());
+		
+		// Reopening appends
+		manifest = new CaseManifest(dir.getPath());
+		manifest.append(3, "a=3", createCase(3));
+		manifest.close();
+		
+		for(int i = 0; i < 4; i++)
+		{
+			CaseManifest.Entry entry = CaseManifest.read(dir.getPath(), i);
+			assertEquals(i, entry.caseIndex);
+			assertEquals("a=" + i, entry.caseId);
+			assertEquals(Arrays.asList(100 + i, 200 + i), entry.rngSeeds);
+			assertEquals("" + i, entry.parameters.get("alpha"));
+			assertEquals("a\tb", entry.parameters.get("beta gamma"));
+		}
+		assertNull(CaseManifest.read(dir.getPath(), 4));
+		
+		CaseManifest.Reader reader = new CaseManifest.Reader(dir.getPath());
+		for(int i = 0; i < 4; i++)
+		{
+			assertEquals("a=" + i, reader.next().caseId);
+		}
+		assertNull(reader.next());
+		reader.close();
+	}
+	
+	@Test
+	public void emptyValue() throws IOException
+	{
+		// The empty value is the last field of the line
+		CaseManifest manifest = new CaseManifest(dir.getPath());
+		manifest.append(0, "", new ExperimentCase(new ParameterMap("alpha", ""),
+			Arrays.asList(100)));
+		manifest.close();
+		
+		CaseManifest.Entry entry = CaseManifest.read(dir.getPath(), 0);
+		assertEquals("", entry.caseId);
+		assertEquals("", entry.parameters.get("alpha"));
+	}
+	
+	@Test
+	public void layoutSetting() throws GridSweeperException
+	{
+		Settings settings = new Settings();
+		assertFalse(CaseManifest.isUsed(settings));
+		settings.setProperty("CaseLayout", "Manifest");
+		assertTrue(CaseManifest.isUsed(settings));
+		
+		settings.setProperty("CaseLayout", "flat");
+		try
+		{
+			CaseManifest.isUsed(settings);
+			fail();
+		}
+		catch(GridSweeperException e) {}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+	CaseRun.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.util.*;
+
+/**
+ * A single submitted run of an experiment case, as tracked while
+ * waiting for it to complete. Only this object, and not the case itself,
+ * is kept around for monitoring.
+ * @author Ed Baskerville
+ *
+ */
+class CaseRun
+{
+	String caseId;
+	int runNum;
+	int rngSeed;
+	
+	// The DRMAA job performing the run, once submitted
+	String jobId = null;
+	
+	// The case directory, where the run's output files end up
+	String caseDir = null;
+	
+	// The directory the job runs in, which the names of its
+	// output files are given relative to
+	String jobDir = null;
+	
+	// Where the runner's RunResults output ends up
+	String resultsPath = null;
+	
+	// The job's other files, removed once its results are in a result store;
+	// shared by all runs in the job
+	String[] jobFiles = null;
+	
+	// Identifies the run in the result cache, if one is in use
+	String cacheKey = null;
+	
+	// The case's parameters as recorded in the runtime history, if one is
+	// in use; shared by all runs of the case
+	String historyFields = null;
+	
+	// How to submit the job again: its name, its setup file, and the task
+	// it was in that file if it was part of a bulk job (0 otherwise)
+	String jobName = null;
+	String setupPath = null;
+	int taskNum = 0;
+	
+	// Descriptions of earlier attempts at the run that failed and were
+	// retried, oldest first; null if there were none
+	List<String> failedAttempts = null;
+	
+	JobOutcome jobOutcome = null;
+	RunResults runResults = null;
+	
+	// Why runResults could not be loaded, if it couldn't
+	Exception resultsException = null;
+	
+	public CaseRun(String caseId, int runNum, int rngSeed)
+	{
+		this.caseId = caseId;
+		this.runNum = runNum;
+		this.rngSeed = rngSeed;
+	}
+	
+	/**
+	 * Returns the number of the current attempt at the run.
+	 * @return The attempt number, starting at 1.
+	 */
+	public int getAttempt()
+	{
+		return failedAttempts == null ? 1 : failedAttempts.size() + 1;
+	}
+	
+	public String getRunString()
+	{
+		String runStr;
+		if(caseId.equals("")) runStr = "run " + runNum;
+		else runStr = caseId + ", run " + runNum;
+		
+		return runStr;
+	}
+}
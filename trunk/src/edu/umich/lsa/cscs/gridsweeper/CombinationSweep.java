@@ -55,6 +55,43 @@ abstract class CombinationSweep implements Sweep
 	
 	public abstract List<ParameterMap> generateMaps() throws SweepLengthException, DuplicateParameterException;
 	
+	public abstract Iterator<ParameterMap> mapIterator() throws SweepLengthException, DuplicateParameterException;
+	
+	public abstract long getMapCount() throws SweepLengthException;
+	
+	public abstract ParameterMap getMap(long index) throws SweepLengthException, DuplicateParameterException;
+	
+	/**
+	 * Merges the maps generated by several children into a single map.
+	 * @param childMaps One map from each child.
+	 * @return The merged map.
+	 * @throws DuplicateParameterException If a parameter appears in more
+	 * than one of the maps.
+	 */
+	static ParameterMap mergeMaps(ParameterMap[] childMaps) throws DuplicateParameterException
+	{
+		int size = 0;
+		for(ParameterMap childMap : childMaps)
+		{
+			size += childMap.size();
+		}
+		
+		ParameterMap map = new ParameterMap(size * 4 / 3 + 1);
+		for(ParameterMap childMap : childMaps)
+		{
+			for(String name : childMap.keySet())
+			{
+				if(map.containsKey(name))
+				{
+					throw new DuplicateParameterException(name);
+				}
+				map.put(name, childMap.get(name));
+			}
+		}
+		
+		return map;
+	}
+	
 	/**
 	 * Generates the standard order in which parameters should be presented to the user
 	 * in sweep enumerations, for example to name output directories. The order is
@@ -0,0 +1,52 @@
+/*
+	DirectoryAdapter.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.File;
+
+/**
+ * An adapter that can run a model in a given directory rather than
+ * the current one. A persistent worker (see {@link GridSweeperRunner#runWorker})
+ * performs runs for many cases without changing its working directory,
+ * so adapters that write files should implement this interface;
+ * others are run in the worker's own working directory.
+ * @author Ed Baskerville
+ *
+ */
+public interface DirectoryAdapter extends Adapter
+{
+	/**
+	 * Executes a model in a given directory and returns results.
+	 * Any files the model or adapter writes, including the standard output
+	 * and error files when streaming output, belong in {@code directory}.
+	 * @param parameterMap The parameter assignments for this run.
+	 * @param runNumber A number that identifies the run among multiple
+	 * runs with the same parameter settings.
+	 * @param rngSeed The seed for the model's random number generator.
+	 * @param directory The directory to run in, or {@code null} for the
+	 * current directory.
+	 * @return A {@link RunResults} object, as for {@link Adapter#run}.
+	 * @throws AdapterException For any reason defined by the implementing class.
+	 */
+	public RunResults run(ParameterMap parameterMap, int runNumber, int numRuns, int rngSeed,
+		File directory) throws AdapterException;
+}
@@ -0,0 +1,284 @@
+/*
+	DrmaaBackend.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.util.*;
+
+import org.ggf.drmaa.*;
+
+import static edu.umich.lsa.cscs.gridsweeper.StringUtils.*;
+import static edu.umich.lsa.cscs.gridsweeper.DLogger.*;
+
+/**
+ * Runs jobs on a grid through a DRMAA session.
+ * @author Ed Baskerville
+ *
+ */
+class DrmaaBackend implements ExecutionBackend
+{
+	private Session session;
+	private String root;
+	private String nativeSpec;
+	
+	/**
+	 * Constructor. Establishes a DRMAA session.
+	 * @param root The GridSweeper root directory, as set in the
+	 * {@code GRIDSWEEPER_ROOT} environment variable.
+	 * @param nativeSpec The native specification to pass with each job,
+	 * or {@code null} for none.
+	 * @param contact The contact string of a session to re-attach to,
+	 * or {@code null} for a new session. If re-attaching fails, a new session
+	 * is established instead.
+	 * @throws GridSweeperException If no session can be established.
+	 */
+	public DrmaaBackend(String root, String nativeSpec, String contact) throws GridSweeperException
+	{
+		this.root = root;
+		this.nativeSpec = nativeSpec;
+		
+		try
+		{
+			session = SessionFactory.getFactory().getSession();
+			try
+			{
+				session.init(contact);
+			}
+			catch(DrmaaException e)
+			{
+				if(contact == null) throw e;
+				
+				fine("could not re-attach to session " + contact);
+				session.init(null);
+			}
+		}
+		catch(DrmaaException e)
+		{
+			throw new GridSweeperException("Could not establish DRMAA session.", e);
+		}
+	}
+	
+	public String getName()
+	{
+		return "DRMAA";
+	}
+	
+	public String getContact()
+	{
+		return session.getContact();
+	}
+	
+	public String submitJob(String jobName, String caseDir, String stdinPath,
+		String stdoutName, String stderrName) throws GridSweeperException
+	{
+		try
+		{
+			JobTemplate jt = createJobTemplate(jobName, caseDir, stdinPath,
+				stdoutName, stderrName);
+			String jobId = session.runJob(jt);
+			session.deleteJobTemplate(jt);
+			return jobId;
+		}
+		catch(DrmaaException e)
+		{
+			throw new GridSweeperException("Could not submit job " + jobName, e);
+		}
+	}
+	
+	public List<String> submitBulkJob(String jobName, String caseDir, String stdinPath,
+		String stdoutPrefix, String stderrPrefix, int taskCount) throws GridSweeperException
+	{
+		try
+		{
+			// Output files are tagged by task index
+			JobTemplate jt = createJobTemplate(jobName, caseDir, stdinPath,
+				stdoutPrefix + "." + JobTemplate.PARAMETRIC_INDEX,
+				stderrPrefix + "." + JobTemplate.PARAMETRIC_INDEX);
+			List<?> jobIds = session.runBulkJobs(jt, 1, taskCount, 1);
+			session.deleteJobTemplate(jt);
+			
+			List<String> jobIdStrs = new ArrayList<String>(jobIds.size());
+			for(Object jobId : jobIds)
+			{
+				jobIdStrs.add(jobId.toString());
+			}
+			return jobIdStrs;
+		}
+		catch(DrmaaException e)
+		{
+			throw new GridSweeperException("Could not submit bulk job " + jobName, e);
+		}
+	}
+	
+	/**
+	 * Creates a DRMAA job template that runs {@code gsrunner} in a case directory.
+	 * @param jobName The job name.
+	 * @param caseDir The full path to the case directory.
+	 * @param stdinPath The full path to the setup file.
+	 * @param stdoutName The name of the results file in the case directory.
+	 * @param stderrName The name of the error output file in the case directory.
+	 * @return The job template, which should be deleted after submission.
+	 * @throws DrmaaException If the template cannot be created.
+	 */
+	private JobTemplate createJobTemplate(String jobName, String caseDir,
+		String stdinPath, String stdoutName, String stderrName) throws DrmaaException
+	{
+		JobTemplate jt = session.createJobTemplate();
+		jt.setJobName(jobName);
+		jt.setRemoteCommand(appendPathComponent(root, "bin/gsrunner"));
+		/*if(!useFileTransfer)*/ jt.setWorkingDirectory(caseDir);
+		jt.setInputPath(":" + stdinPath);
+		jt.setOutputPath(":" + appendPathComponent(caseDir, stdoutName));
+		jt.setErrorPath(":" + appendPathComponent(caseDir, stderrName));
+		jt.setBlockEmail(true);
+		
+		// Resource requests, such as the number of slots for multithreaded
+		// runners, can only be made in the resource manager's own terms
+		if(nativeSpec != null) jt.setNativeSpecification(nativeSpec);
+		
+		try
+		{
+			jt.setTransferFiles(new FileTransferMode(true, true, true));
+		}
+		catch(DrmaaException e)
+		{
+			// If setTransferFiles isn't supported, we'll hope that the system defaults to
+			// transfering them. This works for SGE.
+		}
+		
+		Properties environment = new Properties();
+		environment.setProperty("GRIDSWEEPER_ROOT", root);
+		
+		String classpath = System.getProperty("java.class.path");
+		if(classpath != null) environment.setProperty("CLASSPATH", classpath);
+		jt.setJobEnvironment(environment);
+		
+		return jt;
+	}
+	
+	public JobOutcome waitForJob() throws GridSweeperException
+	{
+		try
+		{
+			JobInfo info = session.wait(Session.JOB_IDS_SESSION_ANY, Session.TIMEOUT_WAIT_FOREVER);
+			return createOutcome(info);
+		}
+		catch(DrmaaException e)
+		{
+			throw new GridSweeperException("Waiting for job completion failed.", e);
+		}
+	}
+	
+	/**
+	 * Checks whether a job has ended. A job that DRMAA no longer knows about
+	 * has already been reaped, and is taken to have ended normally, so that
+	 * its results file decides how it went. Details are only available
+	 * for jobs that have not been reaped.
+	 */
+	public JobOutcome getJobOutcome(String jobId) throws GridSweeperException
+	{
+		int status;
+		try
+		{
+			try
+			{
+				status = session.getJobProgramStatus(jobId);
+			}
+			catch(InvalidJobException e)
+			{
+				status = Session.DONE;
+			}
+		}
+		catch(DrmaaException e)
+		{
+			throw new GridSweeperException("Could not get status of job " + jobId, e);
+		}
+		if(status != Session.DONE && status != Session.FAILED)
+			return null;
+		
+		try
+		{
+			JobInfo info = session.wait(jobId, Session.TIMEOUT_NO_WAIT);
+			if(info != null) return createOutcome(info);
+		}
+		catch(DrmaaException e) {}
+		
+		return new JobOutcome(jobId, status == Session.DONE);
+	}
+	
+	/**
+	 * Checks whether a job is waiting to start. Held jobs count as waiting;
+	 * a job that DRMAA no longer knows about has ended.
+	 */
+	public boolean isJobPending(String jobId) throws GridSweeperException
+	{
+		int status;
+		try
+		{
+			status = session.getJobProgramStatus(jobId);
+		}
+		catch(InvalidJobException e)
+		{
+			return false;
+		}
+		catch(DrmaaException e)
+		{
+			throw new GridSweeperException("Could not get status of job " + jobId, e);
+		}
+		return status == Session.QUEUED_ACTIVE
+			|| status == Session.SYSTEM_ON_HOLD
+			|| status == Session.USER_ON_HOLD
+			|| status == Session.USER_SYSTEM_ON_HOLD;
+	}
+	
+	private static JobOutcome createOutcome(JobInfo info)
+	{
+		boolean exited = info.hasExited();
+		boolean signaled = info.hasSignaled();
+		JobOutcome outcome = new JobOutcome(info.getJobId(),
+			exited, exited ? info.getExitStatus() : 0,
+			signaled, signaled ? info.getTerminatingSignal() : null,
+			info.hasCoreDump(), info.wasAborted());
+		
+		Map<?, ?> usage = info.getResourceUsage();
+		if(usage != null)
+		{
+			outcome.resourceUsage = new TreeMap<String, String>();
+			for(Map.Entry<?, ?> entry : usage.entrySet())
+			{
+				outcome.resourceUsage.put("" + entry.getKey(), "" + entry.getValue());
+			}
+		}
+		return outcome;
+	}
+	
+	public void close() throws GridSweeperException
+	{
+		try
+		{
+			session.exit();
+		}
+		catch(DrmaaException e)
+		{
+			throw new GridSweeperException("Received exception ending DRMAA session", e);
+		}
+	}
+}
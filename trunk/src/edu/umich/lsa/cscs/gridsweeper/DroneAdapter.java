@@ -24,6 +24,8 @@ package edu.umich.lsa.cscs.gridsweeper;
 import static edu.umich.lsa.cscs.gridsweeper.StringUtils.formatPaddedInt;
 
 import java.io.*;
+import java.lang.reflect.Field;
+import java.util.zip.CRC32;
 
 
 /**
@@ -86,15 +88,57 @@ import java.io.*;
  * <td>(none)</td>
  * </tr>
  * 
+ * <tr>
+ * <td>{@code streamOutput}</td>    <td>Whether to write standard output and error
+ *                                  directly to the files {@code stdout.}<em>NN</em> and
+ *                                  {@code stderr.}<em>NN</em> as the model runs, rather than
+ *                                  returning them in memory. The results then describe
+ *                                  the files' sizes and checksums.</td>
+ * <td>{@code false}</td>
+ * </tr>
+ * 
+ * <tr>
+ * <td>{@code maxOutputSize}</td>   <td>The maximum number of bytes of standard output,
+ *                                  and of standard error, to keep from each run. Any further
+ *                                  output is read and discarded. 0 means no limit.</td>
+ * <td>{@code 67108864} (64 MB), or 0 if {@code streamOutput} is on</td>
+ * </tr>
+ * 
+ * <tr>
+ * <td>{@code timeout}</td>         <td>The maximum wall-clock time, in seconds, a run may take.
+ *                                  A run that takes longer is sent {@code SIGTERM}, and then
+ *                                  {@code SIGKILL} if it has not exited after
+ *                                  {@code killGracePeriod}. 0 means no limit.</td>
+ * <td>0</td>
+ * </tr>
+ * 
+ * <tr>
+ * <td>{@code cpuTimeLimit}</td>    <td>The maximum CPU time, in seconds, a run may use, set
+ *                                  with {@code ulimit -t} in {@code /bin/sh} before starting
+ *                                  the model. 0 means no limit.</td>
+ * <td>0</td>
+ * </tr>
+ * 
+ * <tr>
+ * <td>{@code killGracePeriod}</td> <td>The number of seconds to wait for a run to exit
+ *                                  after {@code SIGTERM} before sending {@code SIGKILL}.</td>
+ * <td>10</td>
+ * </tr>
+ * 
  * </table>
  * 
+ * <p>The model's exit status is returned in the results; a model killed by
+ * a signal has the status 128 plus the signal number, as in the shell.
+ * The wall-clock time the model ran for is also recorded, and on Linux,
+ * its CPU time and peak memory use, sampled from {@code /proc} as it runs.</p>
+ * 
  * <p>For more information, see the
  * <a target="_top" href="http://www.cscs.umich.edu/Software/Drone/">Drone website</a>.</p>
  * 
  * @author Ed Baskerville
  *
  */
-class DroneAdapter implements Adapter
+class DroneAdapter implements DirectoryAdapter, ReusableAdapter
 {
 	private String model;
 	
@@ -111,6 +155,17 @@ class DroneAdapter implements Adapter
 	
 	private String miscOptions;
 	
+	private boolean streamOutput;
+	private long maxOutputSize;
+	
+	private long timeout;
+	private long cpuTimeLimit;
+	private long killGracePeriod;
+	
+	private static final long SAMPLE_INTERVAL = 100;
+	private static final int SIGKILL = 9;
+	private static final int SIGXCPU = 24;
+	
 	/**
 	 * Standard {@link Adapter} constructor for {@code DroneAdapter}. Assigns properties
 	 * to fields.
@@ -138,14 +193,68 @@ class DroneAdapter implements Adapter
 		inputFilePath = settings.getProperty("inputFilePath");
 		
 		miscOptions = settings.getProperty("miscOptions");
+		
+		streamOutput = Boolean.parseBoolean(settings.getProperty("streamOutput", "false"));
+		
+		String maxOutputSizeStr = settings.getProperty("maxOutputSize",
+			streamOutput ? "0" : "67108864");
+		try
+		{
+			maxOutputSize = Long.parseLong(maxOutputSizeStr);
+		}
+		catch(NumberFormatException e)
+		{
+			maxOutputSize = -1;
+		}
+		if(maxOutputSize < 0)
+		{
+			throw new AdapterException("Invalid \"maxOutputSize\" property: " + maxOutputSizeStr);
+		}
+		
+		timeout = getSecondsProperty(settings, "timeout", 0);
+		cpuTimeLimit = getSecondsProperty(settings, "cpuTimeLimit", 0);
+		killGracePeriod = getSecondsProperty(settings, "killGracePeriod", 10);
 	}
-
+	
 	/**
-	 * Runs the Drone model as specified by the properties and the arguments to this method.  
+	 * Reads a non-negative number of seconds from the settings.
+	 * @param settings The adapter settings.
+	 * @param name The property name.
+	 * @param defaultValue The value to use if the property is not set.
+	 * @return The number of seconds.
+	 * @throws AdapterException If the value is not a non-negative integer.
+	 */
+	private static long getSecondsProperty(Settings settings, String name, int defaultValue)
+		throws AdapterException
+	{
+		try
+		{
+			return settings.getIntProperty(name, defaultValue, 0);
+		}
+		catch(GridSweeperException e)
+		{
+			throw new AdapterException("Invalid \"" + name + "\" property: "
+				+ settings.getProperty(name));
+		}
+	}
+	
+	/**
+	 * Runs the Drone model in the current directory.
 	 * 
 	 * @throws AdapterException If an I/O error occurs. 
 	 */
 	public RunResults run(ParameterMap parameterMap, int runNumber, int numRuns, int rngSeed) throws AdapterException
+	{
+		return run(parameterMap, runNumber, numRuns, rngSeed, null);
+	}
+	
+	/**
+	 * Runs the Drone model as specified by the properties and the arguments to this method.  
+	 * 
+	 * @throws AdapterException If an I/O error occurs. 
+	 */
+	public RunResults run(ParameterMap parameterMap, int runNumber, int numRuns, int rngSeed,
+		File directory) throws AdapterException
 	{
 		StringList arguments = new StringList();
 		
@@ -173,19 +282,21 @@ class DroneAdapter implements Adapter
 			messageBuilder.append(" " + StringUtils.escape(arg, " "));
 		}
 		
-		int status = 0;
+		int status;
 		String message = messageBuilder.toString();
 		
-		byte[] stdoutData = null;
-		byte[] stderrData = null;
-		
-		// Create command array
-		String[] cmdArray = new String[arguments.size() + 1];
-		cmdArray[0] = model;
-		for(int i = 0; i < arguments.size(); i++)
+		// Create command array; a CPU time limit is set by a shell that
+		// then replaces itself with the model, so the process is the same
+		StringList cmdList = new StringList();
+		if(cpuTimeLimit > 0)
 		{
-			cmdArray[i+1] = arguments.get(i);
+			cmdList.add("/bin/sh");
+			cmdList.add("-c");
+			cmdList.add("ulimit -t " + cpuTimeLimit + " && exec \"$0\" \"$@\"");
 		}
+		cmdList.add(model);
+		cmdList.addAll(arguments);
+		String[] cmdArray = cmdList.toArray(new String[cmdList.size()]);
 		
 		try
 		{
@@ -193,28 +304,462 @@ class DroneAdapter implements Adapter
 			System.err.println(new StringList(cmdArray).toString());
 			
 			// Actually run the damn thing, getting a process object with which to interact with it
-			Process process = Runtime.getRuntime().exec(cmdArray);
+			long startTime = System.nanoTime();
+			Process process = Runtime.getRuntime().exec(cmdArray, null, directory);
+			
+			// The model gets no input
+			process.getOutputStream().close();
+			
+			// Read to end of stdout and stderr streams at the same time, so that
+			// the model never blocks writing to a full pipe
+			String rnStr = formatPaddedInt(runNumber, numRuns - 1);
+			StreamDrainer stdoutDrainer = createDrainer(process.getInputStream(), directory, "stdout." + rnStr);
+			StreamDrainer stderrDrainer = createDrainer(process.getErrorStream(), directory, "stderr." + rnStr);
+			stdoutDrainer.start();
+			stderrDrainer.start();
+			
+			// Wait for the model to exit, measuring what it uses and killing it
+			// if it runs too long
+			String pid = getPid(process);
+			UsageSampler sampler = UsageSampler.create(pid);
+			ProcessWaiter waiter = new ProcessWaiter(process);
+			waiter.start();
 			
-			// Read to end of stdout and stderr streams
-			int b;
+			boolean timedOut = false;
+			if(!waiter.waitFor(timeout > 0 ? timeout * 1000 : Long.MAX_VALUE, sampler))
+			{
+				timedOut = true;
+				kill(process, waiter, pid);
+			}
+			status = process.waitFor();
+			long wallTime = (System.nanoTime() - startTime) / 1000000;
 			
-			InputStream stdoutStream = process.getInputStream();
-			ByteArrayOutputStream stdoutByteStream = new ByteArrayOutputStream();
-			while((b = stdoutStream.read()) != -1)
-				stdoutByteStream.write(b);
-			stdoutData = stdoutByteStream.toByteArray();
+			if(timedOut)
+			{
+				message += " (killed after exceeding the time limit of " + timeout + " seconds)";
+				
+				// Processes the model started may still hold its output open
+				long drainMillis = Math.max(1, killGracePeriod * 1000);
+				boolean stdoutEnded = stdoutDrainer.waitFor(drainMillis);
+				boolean stderrEnded = stderrDrainer.waitFor(drainMillis);
+				if(!stdoutEnded || !stderrEnded)
+				{
+					message += " (output incomplete; still held open by another process)";
+				}
+			}
+			else
+			{
+				stdoutDrainer.waitFor();
+				stderrDrainer.waitFor();
+				
+				if(cpuTimeLimit > 0 && (status == 128 + SIGKILL || status == 128 + SIGXCPU))
+				{
+					message += " (killed, probably for exceeding the CPU time limit of "
+						+ cpuTimeLimit + " seconds)";
+				}
+			}
 			
-			InputStream stderrStream = process.getErrorStream();
-			ByteArrayOutputStream stderrByteStream = new ByteArrayOutputStream();
-			while((b = stderrStream.read()) != -1)
-				stderrByteStream.write(b);
-			stderrData = stderrByteStream.toByteArray();
+			if(stdoutDrainer.getDiscardedCount() > 0)
+			{
+				message += " (standard output truncated; "
+					+ stdoutDrainer.getDiscardedCount() + " bytes discarded)";
+			}
+			if(stderrDrainer.getDiscardedCount() > 0)
+			{
+				message += " (standard error truncated; "
+					+ stderrDrainer.getDiscardedCount() + " bytes discarded)";
+			}
+			
+			RunResults results;
+			if(streamOutput)
+			{
+				results = new RunResults(status, message, null, null);
+				results.setOutputFiles(stdoutDrainer.getOutputFile(), stderrDrainer.getOutputFile());
+			}
+			else
+			{
+				results = new RunResults(status, message,
+					stdoutDrainer.getData(), stderrDrainer.getData());
+			}
+			if(sampler != null)
+			{
+				results.setResourceUsage(wallTime, sampler.userTime, sampler.systemTime,
+					sampler.peakResidentSize);
+			}
+			else
+			{
+				results.setResourceUsage(wallTime, -1, -1, -1);
+			}
+			return results;
+		}
+		catch(InterruptedException e)
+		{
+			throw new AdapterException("Interrupted while running model \"" + model + "\".", e);
 		}
 		catch (IOException e)
 		{
 			throw new AdapterException("Could not run model \"" + model + "\".", e);
 		}
+	}
+	
+	/**
+	 * Asks a process to exit with {@code SIGTERM}, and sends {@code SIGKILL}
+	 * if it has not exited after {@code killGracePeriod}.
+	 * @param process The process.
+	 * @param waiter The thread waiting for the process.
+	 * @param pid The process ID, or {@code null} if unknown, in which case
+	 * {@code SIGKILL} cannot be sent.
+	 * @throws IOException If {@code kill} cannot be run.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	private void kill(Process process, ProcessWaiter waiter, String pid)
+		throws IOException, InterruptedException
+	{
+		process.destroy();
+		if(waiter.waitFor(killGracePeriod * 1000, null)) return;
+		
+		if(pid == null) return;
+		Process killProcess = Runtime.getRuntime().exec(new String[] {"kill", "-KILL", pid});
+		killProcess.getOutputStream().close();
+		killProcess.getInputStream().close();
+		killProcess.getErrorStream().close();
+		killProcess.waitFor();
+	}
+	
+	/**
+	 * Finds the process ID of a process, using {@code Process.pid()} from Java 9,
+	 * or the field the Unix implementation keeps it in before that.
+	 * @param process The process.
+	 * @return The process ID, or {@code null} if it cannot be found.
+	 */
+	private static String getPid(Process process)
+	{
+		try
+		{
+			return "" + Process.class.getMethod("pid").invoke(process);
+		}
+		catch(Exception e) {}
+		
+		try
+		{
+			Field field = process.getClass().getDeclaredField("pid");
+			field.setAccessible(true);
+			return "" + field.getInt(process);
+		}
+		catch(Exception e)
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * Creates a thread to read one of the model's output streams, either
+	 * into memory or, if {@code streamOutput} is on, directly into a file.
+	 * @param stream The stream to read.
+	 * @param directory The directory to write the file in, or {@code null}
+	 * for the current directory.
+	 * @param filename The name of the file to write, if streaming.
+	 * @return The thread, not yet started.
+	 * @throws IOException If the file cannot be created.
+	 */
+	private StreamDrainer createDrainer(InputStream stream, File directory, String filename) throws IOException
+	{
+		if(streamOutput)
+		{
+			File file = new File(directory, filename);
+			return new StreamDrainer(stream, new FileOutputStream(file), file, maxOutputSize);
+		}
+		else
+			return new StreamDrainer(stream, new ByteArrayOutputStream(), null, maxOutputSize);
+	}
+	
+	/**
+	 * A thread that reads a stream to the end in large blocks, copying
+	 * at most a fixed number of bytes to a sink and discarding the rest.
+	 * The size and CRC-32 checksum of the data copied are recorded along the way.
+	 */
+	private static class StreamDrainer extends Thread
+	{
+		private static final int BUFFER_SIZE = 8192;
+		
+		private InputStream stream;
+		private OutputStream sink;
+		private File file;
+		private long maxSize;
+		
+		private CRC32 checksum = new CRC32();
+		private long keptCount = 0;
+		private long discardedCount = 0;
+		private IOException exception = null;
+		
+		/**
+		 * Constructor.
+		 * @param stream The stream to read.
+		 * @param sink The stream to copy data to. It is closed at the end.
+		 * @param file The file {@code sink} writes to, or
+		 * {@code null} if it is a {@code ByteArrayOutputStream}.
+		 * @param maxSize The maximum number of bytes to keep, or 0 for no limit.
+		 */
+		public StreamDrainer(InputStream stream, OutputStream sink, File file, long maxSize)
+		{
+			this.stream = stream;
+			this.sink = sink;
+			this.file = file;
+			this.maxSize = maxSize;
+			setDaemon(true);
+		}
+		
+		@Override
+		public void run()
+		{
+			byte[] buffer = new byte[BUFFER_SIZE];
+			try
+			{
+				int count;
+				while((count = stream.read(buffer)) != -1)
+				{
+					int keepCount = count;
+					if(maxSize > 0)
+						keepCount = (int)Math.max(0, Math.min(count, maxSize - keptCount));
+					
+					if(keepCount > 0)
+					{
+						sink.write(buffer, 0, keepCount);
+						checksum.update(buffer, 0, keepCount);
+						keptCount += keepCount;
+					}
+					discardedCount += count - keepCount;
+				}
+			}
+			catch(IOException e)
+			{
+				exception = e;
+			}
+			finally
+			{
+				try
+				{
+					stream.close();
+				}
+				catch(IOException e) {}
+				try
+				{
+					sink.close();
+				}
+				catch(IOException e)
+				{
+					if(exception == null) exception = e;
+				}
+			}
+		}
+		
+		/**
+		 * Waits for the end of the stream.
+		 * @throws IOException If reading the stream or writing the sink failed.
+		 * @throws InterruptedException If interrupted while waiting.
+		 */
+		public void waitFor() throws IOException, InterruptedException
+		{
+			join();
+			if(exception != null) throw exception;
+		}
+		
+		/**
+		 * Waits a limited time for the end of the stream.
+		 * @param millis The maximum time to wait, in milliseconds.
+		 * @return {@code true} if the stream ended, {@code false} if
+		 * it is still being read.
+		 * @throws IOException If reading the stream or writing the sink failed.
+		 * @throws InterruptedException If interrupted while waiting.
+		 */
+		public boolean waitFor(long millis) throws IOException, InterruptedException
+		{
+			join(millis);
+			if(exception != null) throw exception;
+			return !isAlive();
+		}
+		
+		/**
+		 * Returns the data kept in memory. Only valid after {@link #waitFor}
+		 * has returned, when not writing to a file.
+		 * @return The data.
+		 */
+		public byte[] getData()
+		{
+			return ((ByteArrayOutputStream)sink).toByteArray();
+		}
+		
+		/**
+		 * Describes the file written. Only valid after {@link #waitFor}
+		 * has returned, when writing to a file. As when output is returned in
+		 * memory, empty output leaves no file behind.
+		 * @return The file description, or {@code null} if there was no output.
+		 */
+		public OutputFile getOutputFile()
+		{
+			if(keptCount == 0)
+			{
+				file.delete();
+				return null;
+			}
+			return new OutputFile(file.getName(), keptCount, checksum.getValue());
+		}
+		
+		/**
+		 * Returns the number of bytes read beyond the limit. Only valid after
+		 * {@link #waitFor} has returned.
+		 * @return The number of bytes discarded.
+		 */
+		public long getDiscardedCount()
+		{
+			return discardedCount;
+		}
+	}
+	
+	/**
+	 * A thread that waits for a process to exit, so that the process can be
+	 * waited for with a timeout, which Java 5 cannot do directly.
+	 */
+	private static class ProcessWaiter extends Thread
+	{
+		private Process process;
+		
+		public ProcessWaiter(Process process)
+		{
+			this.process = process;
+			setDaemon(true);
+		}
+		
+		@Override
+		public void run()
+		{
+			try
+			{
+				process.waitFor();
+			}
+			catch(InterruptedException e) {}
+		}
+		
+		/**
+		 * Waits a limited time for the process to exit, sampling its resource
+		 * usage along the way. Samples are taken often at first, so that
+		 * short runs are measured too, and then every {@code SAMPLE_INTERVAL}.
+		 * @param millis The maximum time to wait, in milliseconds,
+		 * or {@code Long.MAX_VALUE} for no limit.
+		 * @param sampler The resource usage sampler, or {@code null} if none.
+		 * @return {@code true} if the process exited, {@code false} if it is still running.
+		 * @throws InterruptedException If interrupted while waiting.
+		 */
+		public boolean waitFor(long millis, UsageSampler sampler) throws InterruptedException
+		{
+			long deadline = (millis == Long.MAX_VALUE) ? Long.MAX_VALUE
+				: System.currentTimeMillis() + millis;
+			long interval = 1;
+			while(isAlive())
+			{
+				long remaining = deadline - System.currentTimeMillis();
+				if(remaining <= 0) return false;
+				if(sampler != null)
+				{
+					sampler.sample();
+					remaining = Math.min(remaining, interval);
+					interval = Math.min(interval * 2, SAMPLE_INTERVAL);
+				}
+				join(remaining);
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * Reads the resources used so far by a process from {@code /proc}, on Linux.
+	 * The kernel forgets them once the process has exited and been waited for,
+	 * so they are sampled while it runs, and the last sample is kept.
+	 */
+	private static class UsageSampler
+	{
+		// Linux always reports CPU times to programs in hundredths of a second
+		private static final long MILLIS_PER_TICK = 10;
+		
+		private File statFile;
+		private File statusFile;
+		
+		long userTime = -1;
+		long systemTime = -1;
+		long peakResidentSize = -1;
+		
+		/**
+		 * Creates a sampler for a process.
+		 * @param pid The process ID, or {@code null} if unknown.
+		 * @return The sampler, or {@code null} if the process ID is unknown
+		 * or there is no {@code /proc} entry for it.
+		 */
+		static UsageSampler create(String pid)
+		{
+			if(pid == null) return null;
+			File procDir = new File("/proc", pid);
+			if(!procDir.isDirectory()) return null;
+			return new UsageSampler(procDir);
+		}
 		
-		return new RunResults(status, message, stdoutData, stderrData);
+		private UsageSampler(File procDir)
+		{
+			statFile = new File(procDir, "stat");
+			statusFile = new File(procDir, "status");
+		}
+		
+		/**
+		 * Takes a sample, keeping the previous one if the process has exited.
+		 */
+		void sample()
+		{
+			try
+			{
+				// Fields after the command name, which may contain spaces, start
+				// at field 3; utime, stime, cutime and cstime are fields 14 to 17
+				String stat = readFile(statFile);
+				String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+				long user = Long.parseLong(fields[11]) + Long.parseLong(fields[13]);
+				long system = Long.parseLong(fields[12]) + Long.parseLong(fields[14]);
+				
+				// The peak resident set size, as "VmHWM:    1234 kB"
+				long peak = -1;
+				for(String line : readFile(statusFile).split("\n"))
+				{
+					if(line.startsWith("VmHWM:"))
+					{
+						peak = Long.parseLong(line.substring(6).trim().split(" ")[0]) * 1024;
+					}
+				}
+				
+				userTime = user * MILLIS_PER_TICK;
+				systemTime = system * MILLIS_PER_TICK;
+				peakResidentSize = peak;
+			}
+			catch(IOException e) {}
+			catch(NumberFormatException e) {}
+			catch(IndexOutOfBoundsException e) {}
+		}
+		
+		private static String readFile(File file) throws IOException
+		{
+			// Files in /proc have no length, so read to the end
+			InputStream in = new FileInputStream(file);
+			try
+			{
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				int count;
+				while((count = in.read(buffer)) != -1)
+				{
+					out.write(buffer, 0, count);
+				}
+				return out.toString("UTF-8");
+			}
+			finally
+			{
+				in.close();
+			}
+		}
 	}
 }
@@ -24,7 +24,8 @@ package edu.umich.lsa.cscs.gridsweeper;
 import org.junit.*;
 import static org.junit.Assert.*;
 
-import java.io.UnsupportedEncodingException;
+import java.io.*;
+import java.util.zip.CRC32;
 
 public class DroneAdapterTest
 {
@@ -45,4 +46,177 @@ public class DroneAdapterTest
 		
 		assertEquals("-N5 -S100 -Dbeta=0.1", stdoutString);
 	}
+	
+	/**
+	 * Writes a shell script for use as a model, since options
+	 * cannot contain spaces.
+	 */
+	private String createScript(String script) throws IOException
+	{
+		File file = File.createTempFile("DroneAdapterTest", ".sh");
+		file.deleteOnExit();
+		FileWriter writer = new FileWriter(file);
+		writer.write(script);
+		writer.close();
+		return file.getPath();
+	}
+	
+	@Test
+	public void testLargeOutputOnBothStreams() throws AdapterException, IOException
+	{
+		// Fills the stderr pipe before writing anything to stdout
+		Settings settings = new Settings();
+		settings.setProperty("model", "/bin/sh");
+		settings.setProperty("miscOptions", createScript(
+			"head -c 300000 /dev/zero 1>&2\nhead -c 200000 /dev/zero\n"));
+		DroneAdapter adapter = new DroneAdapter(settings);
+		
+		RunResults results = adapter.run(new ParameterMap(), 0, 1, 100);
+		
+		assertEquals(200000, results.getStdoutData().length);
+		assertEquals(300000, results.getStderrData().length);
+	}
+	
+	@Test
+	public void testMaxOutputSize() throws AdapterException, IOException
+	{
+		Settings settings = new Settings();
+		settings.setProperty("model", "/bin/sh");
+		settings.setProperty("miscOptions", createScript("head -c 200000 /dev/zero\n"));
+		settings.setProperty("maxOutputSize", "1000");
+		DroneAdapter adapter = new DroneAdapter(settings);
+		
+		RunResults results = adapter.run(new ParameterMap(), 0, 1, 100);
+		
+		assertEquals(1000, results.getStdoutData().length);
+		assertTrue(results.getMessage().indexOf("199000 bytes discarded") != -1);
+	}
+	
+	@Test
+	public void testStreamOutput() throws AdapterException, IOException
+	{
+		Settings settings = new Settings();
+		settings.setProperty("model", "/bin/echo");
+		settings.setProperty("miscOptions", "-n");
+		settings.setProperty("streamOutput", "true");
+		DroneAdapter adapter = new DroneAdapter(settings);
+		
+		RunResults results = adapter.run(new ParameterMap(), 5, 10, 100);
+		File stdoutFile = new File("stdout.5");
+		try
+		{
+			assertNull(results.getStdoutData());
+			assertNull(results.getStderrFile());
+			
+			OutputFile outputFile = results.getStdoutFile();
+			assertEquals("stdout.5", outputFile.getPath());
+			assertEquals(9, outputFile.getSize());
+			assertEquals(9, stdoutFile.length());
+			
+			CRC32 crc = new CRC32();
+			crc.update("-N5 -S100".getBytes("UTF-8"));
+			assertEquals(crc.getValue(), outputFile.getChecksum());
+		}
+		finally
+		{
+			stdoutFile.delete();
+		}
+	}
+	
+	@Test
+	public void testExitStatus() throws AdapterException, IOException
+	{
+		Settings settings = new Settings();
+		settings.setProperty("model", "/bin/sh");
+		settings.setProperty("miscOptions", createScript("exit 3\n"));
+		DroneAdapter adapter = new DroneAdapter(settings);
+		
+		RunResults results = adapter.run(new ParameterMap(), 0, 1, 100);
+		
+		assertEquals(3, results.getStatus());
+	}
+	
+	@Test
+	public void testTimeout() throws AdapterException, IOException
+	{
+		Settings settings = new Settings();
+		settings.setProperty("model", "/bin/sh");
+		settings.setProperty("miscOptions", createScript("echo started\nexec sleep 30\n"));
+		settings.setProperty("timeout", "1");
+		DroneAdapter adapter = new DroneAdapter(settings);
+		
+		long startTime = System.currentTimeMillis();
+		RunResults results = adapter.run(new ParameterMap(), 0, 1, 100);
+		long elapsed = System.currentTimeMillis() - startTime;
+		
+		assertEquals(128 + 15, results.getStatus());
+		assertTrue(results.getMessage().indexOf("time limit of 1 seconds") != -1);
+		assertEquals("started\n", new String(results.getStdoutData(), "UTF-8"));
+		assertTrue(elapsed < 10000);
+	}
+	
+	@Test
+	public void testKillAfterGracePeriod() throws AdapterException, IOException
+	{
+		Settings settings = new Settings();
+		settings.setProperty("model", "/bin/sh");
+		settings.setProperty("miscOptions", createScript(
+			"trap '' TERM\nwhile true; do sleep 1; done\n"));
+		settings.setProperty("timeout", "1");
+		settings.setProperty("killGracePeriod", "1");
+		DroneAdapter adapter = new DroneAdapter(settings);
+		
+		RunResults results = adapter.run(new ParameterMap(), 0, 1, 100);
+		
+		assertEquals(128 + 9, results.getStatus());
+	}
+	
+	@Test
+	public void testCPUTimeLimit() throws AdapterException, IOException
+	{
+		Settings settings = new Settings();
+		settings.setProperty("model", "/bin/sh");
+		settings.setProperty("miscOptions", createScript("while true; do :; done\n"));
+		settings.setProperty("cpuTimeLimit", "1");
+		settings.setProperty("timeout", "30");
+		DroneAdapter adapter = new DroneAdapter(settings);
+		
+		RunResults results = adapter.run(new ParameterMap(), 0, 1, 100);
+		
+		assertTrue(results.getStatus() > 128);
+		assertTrue(results.getMessage().indexOf("CPU time limit of 1 seconds") != -1);
+	}
+	
+	@Test
+	public void testInvalidTimeout()
+	{
+		Settings settings = new Settings();
+		settings.setProperty("model", "/bin/sh");
+		settings.setProperty("timeout", "-5");
+		try
+		{
+			new DroneAdapter(settings);
+			fail();
+		}
+		catch(AdapterException e) {}
+	}
+	
+	@Test
+	public void testResourceUsage() throws AdapterException, IOException
+	{
+		Settings settings = new Settings();
+		settings.setProperty("model", "/bin/sh");
+		settings.setProperty("miscOptions", createScript(
+			"i=0\nwhile [ $i -lt 100000 ]; do i=$((i+1)); done\n"));
+		DroneAdapter adapter = new DroneAdapter(settings);
+		
+		RunResults results = adapter.run(new ParameterMap(), 0, 1, 100);
+		
+		assertTrue(results.getWallTime() > 0);
+		if(new File("/proc/self/stat").exists())
+		{
+			assertTrue(results.getUserTime() + results.getSystemTime() > 0);
+			assertTrue(results.getPeakResidentSize() > 0);
+		}
+	}
 }
@@ -0,0 +1,116 @@
+/*
+	ExecutionBackend.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.util.List;
+
+/**
+ * A system that runs GridSweeper jobs. A job runs {@code gsrunner} in a case
+ * directory, with standard input read from a setup file and standard output
+ * and standard error written to files in the case directory. 
+ * {@link DrmaaBackend} submits jobs to a grid; {@link LocalBackend} runs them
+ * on the local machine.
+ * @author Ed Baskerville
+ *
+ */
+interface ExecutionBackend
+{
+	/**
+	 * Returns a name for the backend, used in status messages,
+	 * e.g., "DRMAA job ID 1234".
+	 * @return The name.
+	 */
+	public String getName();
+	
+	/**
+	 * Returns a string identifying this backend's session, so that another
+	 * process can monitor the jobs submitted in it.
+	 * @return The contact string, or {@code null} if jobs cannot be
+	 * monitored from another process.
+	 */
+	public String getContact();
+	
+	/**
+	 * Submits a job.
+	 * @param jobName The job name.
+	 * @param caseDir The full path to the case directory.
+	 * @param stdinPath The full path to the setup file.
+	 * @param stdoutName The name of the results file in the case directory.
+	 * @param stderrName The name of the error output file in the case directory.
+	 * @return The job ID.
+	 * @throws GridSweeperException If the job could not be submitted.
+	 */
+	public String submitJob(String jobName, String caseDir, String stdinPath,
+		String stdoutName, String stderrName) throws GridSweeperException;
+	
+	/**
+	 * Submits a bulk job of tasks numbered 1 through {@code taskCount},
+	 * each of which receives its task number in one of the environment
+	 * variables checked by {@link GridSweeperRunner#getTaskId}.
+	 * @param jobName The job name.
+	 * @param caseDir The full path to the case directory.
+	 * @param stdinPath The full path to the setup file shared by all tasks.
+	 * @param stdoutPrefix The name of each task's results file in the case
+	 * directory, to which a dot and the task number are appended.
+	 * @param stderrPrefix The name of each task's error output file,
+	 * to which a dot and the task number are appended.
+	 * @param taskCount The number of tasks.
+	 * @return The job IDs of the tasks, in order.
+	 * @throws GridSweeperException If the job could not be submitted.
+	 */
+	public List<String> submitBulkJob(String jobName, String caseDir, String stdinPath,
+		String stdoutPrefix, String stderrPrefix, int taskCount) throws GridSweeperException;
+	
+	/**
+	 * Waits for any job submitted through this backend to end. Each job
+	 * is reported exactly once.
+	 * @return How the job ended.
+	 * @throws GridSweeperException If waiting fails.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public JobOutcome waitForJob() throws GridSweeperException, InterruptedException;
+	
+	/**
+	 * Checks, without waiting, whether a job has ended. The job need not have
+	 * been submitted through this backend object, so this can be used to
+	 * monitor jobs submitted by another process.
+	 * @param jobId The job ID.
+	 * @return How the job ended, or {@code null} if it has not ended yet.
+	 * @throws GridSweeperException If the job status cannot be determined.
+	 */
+	public JobOutcome getJobOutcome(String jobId) throws GridSweeperException;
+	
+	/**
+	 * Checks whether a submitted job is still waiting to start.
+	 * @param jobId The job ID.
+	 * @return {@code true} if the job has not started, {@code false} if it
+	 * is running or has ended.
+	 * @throws GridSweeperException If the job status cannot be determined.
+	 */
+	public boolean isJobPending(String jobId) throws GridSweeperException;
+	
+	/**
+	 * Releases the backend's resources. No jobs may be submitted afterward.
+	 * @throws GridSweeperException If an error occurs.
+	 */
+	public void close() throws GridSweeperException;
+}
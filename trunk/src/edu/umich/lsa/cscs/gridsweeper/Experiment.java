@@ -23,6 +23,7 @@ package edu.umich.lsa.cscs.gridsweeper;
 
 import java.io.FileNotFoundException;
 import java.util.*;
+import java.util.concurrent.*;
 import static edu.umich.lsa.cscs.gridsweeper.StringUtils.*;
 
 import javax.xml.parsers.*;
@@ -44,6 +45,11 @@ import cern.jet.random.engine.*;
  */
 class Experiment
 {
+	/**
+	 * The number of cases generated by each task in parallel case generation.
+	 */
+	private static final int CASE_CHUNK_SIZE = 4096;
+	
 	private String name;
 	
 	private Settings settings;
@@ -52,6 +58,7 @@ class Experiment
 	private StringList outputFiles;
 	
 	private MultiplicativeCombinationSweep rootSweep;
+	private ParameterSchema parameterSchema = null;
 	private StringList parameterOrder;
 	
 	private int numRuns;
@@ -116,32 +123,90 @@ class Experiment
 	/**
 	 * Generates experiment cases (parameter assignments and random seeds) from
 	 * the experiment specification.
-	 * @param rng The random number generator to use.
 	 * @return A list of experiment cases
-	 * @throws ExperimentException
+	 * @throws GridSweeperException
 	 */
 	public List<ExperimentCase> generateCases() throws GridSweeperException
 	{
 		List<ExperimentCase> cases = new ArrayList<ExperimentCase>();
 		
-		RandomSeedGenerator seedGen = new RandomSeedGenerator(firstSeedRow, seedCol);
+		Iterator<ExperimentCase> iterator = caseIterator();
+		while(iterator.hasNext())
+		{
+			cases.add(iterator.next());
+		}
 		
-		// Generate the list of parameter values
-		try
+		return cases;
+	}
+	
+	/**
+	 * Returns an iterator that generates the same experiment cases, in the same
+	 * order and with the same random seeds, as {@link #generateCases()}.
+	 * Cases are generated as they are requested, so submission can begin
+	 * before the whole sweep has been enumerated.
+	 * @return An iterator over experiment cases.
+	 * @throws GridSweeperException If the sweep is invalid.
+	 */
+	public Iterator<ExperimentCase> caseIterator() throws GridSweeperException
+	{
+		final ParameterSchema schema = getParameterSchema();
+		
+		return new Iterator<ExperimentCase>()
 		{
-			List<ParameterMap> parameterMaps = rootSweep.generateMaps(true);
+			private long index = 0;
 			
-			// Generate the experiment cases
-			for(ParameterMap parameterMap : parameterMaps)
+			public boolean hasNext()
 			{
-				List<Integer> rngSeeds = new ArrayList<Integer>(numRuns);
-				for(int i = 0; i < numRuns; i++)
-				{
-					rngSeeds.add(seedGen.nextSeed());
-				}
-				
-				cases.add(new ExperimentCase(parameterMap, rngSeeds));
+				return index < schema.getCaseCount();
 			}
+			
+			public ExperimentCase next()
+			{
+				if(!hasNext()) throw new NoSuchElementException();
+				return createCase(schema, index++);
+			}
+			
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	/**
+	 * Returns an iterator that generates the same experiment cases, in the same
+	 * order and with the same random seeds, as {@link #generateCases()}, using
+	 * several threads. The sweep is divided into consecutive chunks of cases,
+	 * which, since the outermost sweep dimension varies slowest, are slices
+	 * of that dimension; each chunk is generated by a task on a thread pool,
+	 * creating each case from its position as {@link #getCase} does, and chunks are
+	 * returned in order. Only a few chunks are generated ahead of the one being
+	 * returned, so memory use stays bounded however large the sweep is.
+	 * @param threads The number of threads to use. With a single thread,
+	 * this is the same as {@link #caseIterator()}.
+	 * @return An iterator over experiment cases.
+	 * @throws GridSweeperException If the sweep is invalid.
+	 */
+	public Iterator<ExperimentCase> caseIterator(int threads) throws GridSweeperException
+	{
+		if(threads <= 1) return caseIterator();
+		return new ParallelCaseIterator(threads, getParameterSchema());
+	}
+	
+	/**
+	 * Returns the schema shared by the experiment's cases, building it from
+	 * the root sweep the first time cases are generated. The sweep should
+	 * not be changed after that.
+	 * @return The schema.
+	 * @throws GridSweeperException If the sweep is invalid.
+	 */
+	private ParameterSchema getParameterSchema() throws GridSweeperException
+	{
+		if(parameterSchema != null) return parameterSchema;
+		try
+		{
+			parameterSchema = new ParameterSchema(rootSweep);
+			return parameterSchema;
 		}
 		catch(DuplicateParameterException e)
 		{
@@ -153,8 +218,166 @@ class Experiment
 			throw new GridSweeperException("Could not generate experiment cases: " + 
 					"mismatched child sweep lengths in a parallel combination sweep.");
 		}
+	}
+	
+	/**
+	 * Creates a case in compact form. The random seeds are taken from
+	 * consecutive rows of the seed table, {@code numRuns} rows per case, and
+	 * rows wrap around exactly as they do when incremented one at a time.
+	 * @param schema The experiment's parameter schema.
+	 * @param index The position of the case.
+	 * @return The case.
+	 * @throws IndexOutOfBoundsException If there is no case at that position.
+	 */
+	private ExperimentCase createCase(ParameterSchema schema, long index)
+	{
+		int seedRow = (int)(firstSeedRow + index * numRuns);
+		return new ExperimentCase(schema, schema.getValueIndexes(index),
+			seedRow, seedCol, numRuns);
+	}
+	
+	/**
+	 * Generates cases in chunks on a pool of threads, for
+	 * {@link Experiment#caseIterator(int)}.
+	 */
+	private class ParallelCaseIterator implements Iterator<ExperimentCase>
+	{
+		private ExecutorService executor;
+		private int maxPendingChunks;
+		private ParameterSchema schema;
+		private long caseCount;
+		private long nextChunkStart = 0;
+		private LinkedList<Future<List<ExperimentCase>>> pendingChunks =
+			new LinkedList<Future<List<ExperimentCase>>>();
+		private Iterator<ExperimentCase> chunkIterator =
+			Collections.<ExperimentCase>emptyList().iterator();
+		
+		public ParallelCaseIterator(int threads, ParameterSchema schema)
+		{
+			this.schema = schema;
+			this.caseCount = schema.getCaseCount();
+			maxPendingChunks = threads * 2;
+			
+			// Daemon threads, so that abandoning the iterator cannot
+			// keep the program from exiting
+			executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "case generator");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			submitChunks();
+		}
 		
-		return cases;
+		private void submitChunks()
+		{
+			while(pendingChunks.size() < maxPendingChunks && nextChunkStart < caseCount)
+			{
+				final long start = nextChunkStart;
+				final long end = Math.min(caseCount, start + CASE_CHUNK_SIZE);
+				pendingChunks.add(executor.submit(new Callable<List<ExperimentCase>>()
+				{
+					public List<ExperimentCase> call()
+					{
+						return generateChunk(start, end);
+					}
+				}));
+				nextChunkStart = end;
+			}
+			
+			if(pendingChunks.isEmpty()) executor.shutdown();
+		}
+		
+		private List<ExperimentCase> generateChunk(long start, long end)
+		{
+			List<ExperimentCase> cases = new ArrayList<ExperimentCase>((int)(end - start));
+			for(long index = start; index < end; index++)
+			{
+				cases.add(createCase(schema, index));
+			}
+			return cases;
+		}
+		
+		public boolean hasNext()
+		{
+			while(!chunkIterator.hasNext())
+			{
+				if(pendingChunks.isEmpty()) return false;
+				
+				try
+				{
+					chunkIterator = pendingChunks.removeFirst().get().iterator();
+				}
+				catch(InterruptedException e)
+				{
+					executor.shutdownNow();
+					throw new IllegalStateException("Interrupted while generating cases.", e);
+				}
+				catch(ExecutionException e)
+				{
+					executor.shutdownNow();
+					throw new IllegalStateException("Could not generate cases.", e.getCause());
+				}
+				submitChunks();
+			}
+			return true;
+		}
+		
+		public ExperimentCase next()
+		{
+			if(!hasNext()) throw new NoSuchElementException();
+			return chunkIterator.next();
+		}
+		
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	/**
+	 * Returns the number of cases in the experiment, without generating them.
+	 * @return The number of cases.
+	 * @throws GridSweeperException If the sweep is invalid.
+	 */
+	public long getCaseCount() throws GridSweeperException
+	{
+		try
+		{
+			return rootSweep.getMapCount(true);
+		}
+		catch(SweepLengthException e)
+		{
+			throw new GridSweeperException("Could not count experiment cases: " + 
+					"mismatched child sweep lengths in a parallel combination sweep.");
+		}
+	}
+	
+	/**
+	 * Generates a single experiment case by its position in the sequence
+	 * generated by {@link #generateCases()}, without generating the cases
+	 * before it. The random seeds are the same ones that case would receive
+	 * from {@code generateCases()}: seeds are taken from consecutive rows of
+	 * the seed table, {@code numRuns} rows per case.
+	 * @param index The position of the case, starting at zero.
+	 * @return The experiment case.
+	 * @throws GridSweeperException If the sweep is invalid or the index is out of range.
+	 */
+	public ExperimentCase getCase(long index) throws GridSweeperException
+	{
+		ParameterSchema schema = getParameterSchema();
+		try
+		{
+			return createCase(schema, index);
+		}
+		catch(IndexOutOfBoundsException e)
+		{
+			throw new GridSweeperException("Case " + index + " does not exist; "
+					+ "the experiment has " + schema.getCaseCount() + " cases.");
+		}
 	}
 
 	/** 
@@ -341,6 +564,7 @@ class Experiment
 	public String getDirectoryNameForCase(ExperimentCase expCase)
 	{
 		StringList parameterOrder = getParameterOrderUsed();
+		ParameterMap parameterMap = expCase.getParameterMap();
 		StringBuffer dirName = new StringBuffer();
 		
 		boolean first = true;
@@ -357,7 +581,7 @@ class Experiment
 				dirName.append(param);
 			}
 			
-			Object value = expCase.getParameterMap().get(param);
+			Object value = parameterMap.get(param);
 			String valueStr;
 			if(value instanceof Double)
 			{
@@ -23,16 +23,30 @@ package edu.umich.lsa.cscs.gridsweeper;
 
 import java.util.*;
 
+import cern.jet.random.engine.RandomSeedGenerator;
+
 /**
  * Represents a single case of an experiment, including parameter settings
  * and a list of random seeds, one for each run of the case.
+ * 
+ * <p>Cases generated from an experiment are stored compactly, since very
+ * large sweeps may hold many of them at once: the parameter settings as
+ * value indexes into the experiment's {@link ParameterSchema}, and the
+ * random seeds as their position in the seed table. Both are expanded on
+ * request, so a case's size depends only on the number of parameters.</p>
  * @author Ed Baskerville
  *
  */
 class ExperimentCase
 {
-	ParameterMap parameterMap;
-	List<Integer> rngSeeds;
+	private ParameterMap parameterMap;
+	private List<Integer> rngSeeds;
+	
+	private ParameterSchema schema;
+	private int[] valueIndexes;
+	private int seedRow;
+	private int seedCol;
+	private int numRuns;
 	
 	/**
 	 * Initializes the experiment case with the parameter settings and random seeds.
@@ -46,20 +60,75 @@ class ExperimentCase
 	}
 
 	/**
-	 * Getter for the parameter assignments for this case.
+	 * Initializes the experiment case with the parameter settings and the
+	 * position of its random seeds in the seed table.
+	 * @param parameterMap The parameter assignments.
+	 * @param seedRow The row of the seed table holding the first run's seed.
+	 * @param seedCol The column of the seed table to take seeds from.
+	 * @param numRuns The number of runs, each taking the seed in the next row.
+	 */
+	public ExperimentCase(ParameterMap parameterMap,
+		int seedRow, int seedCol, int numRuns)
+	{
+		this.parameterMap = parameterMap;
+		this.seedRow = seedRow;
+		this.seedCol = seedCol;
+		this.numRuns = numRuns;
+	}
+	
+	/**
+	 * Initializes the experiment case in compact form.
+	 * @param schema The schema the parameter assignments are encoded with.
+	 * @param valueIndexes The encoded parameter assignments.
+	 * @param seedRow The row of the seed table holding the first run's seed.
+	 * @param seedCol The column of the seed table to take seeds from.
+	 * @param numRuns The number of runs, each taking the seed in the next row.
+	 */
+	public ExperimentCase(ParameterSchema schema, int[] valueIndexes,
+		int seedRow, int seedCol, int numRuns)
+	{
+		this(null, seedRow, seedCol, numRuns);
+		this.schema = schema;
+		this.valueIndexes = valueIndexes;
+	}
+	
+	/**
+	 * Returns this case with its parameter map and seeds expanded, for
+	 * repeated use.
+	 * @return This case if it is not compact, or an expanded copy.
+	 */
+	public ExperimentCase expand()
+	{
+		if(parameterMap != null && rngSeeds != null) return this;
+		return new ExperimentCase(getParameterMap(), getRngSeeds());
+	}
+	
+	/**
+	 * Getter for the parameter assignments for this case. For a compact case,
+	 * a new map is created on each call.
 	 * @return The parameter assignments for this case.
 	 */
 	public ParameterMap getParameterMap()
 	{
-		return parameterMap;
+		if(parameterMap != null) return parameterMap;
+		return schema.getParameterMap(valueIndexes);
 	}
 
 	/**
-	 * Getter for the list of random seeds.
+	 * Getter for the list of random seeds. For a case created from its
+	 * position in the seed table, the seeds are looked up on each call.
 	 * @return The list of random seeds.
 	 */
 	public List<Integer> getRngSeeds()
 	{
-		return rngSeeds;
+		if(rngSeeds != null) return rngSeeds;
+		
+		RandomSeedGenerator seedGen = new RandomSeedGenerator(seedRow, seedCol);
+		List<Integer> seeds = new ArrayList<Integer>(numRuns);
+		for(int i = 0; i < numRuns; i++)
+		{
+			seeds.add(seedGen.nextSeed());
+		}
+		return seeds;
 	}
 }
@@ -55,4 +55,74 @@ public class ExperimentTest
 		
 		assertEquals(10, expCase.getRngSeeds().size());
 	}
+	
+	@Test
+	public void caseIteratorMatchesList() throws GridSweeperException
+	{
+		ListSweep listSweep = new ListSweep("other");
+		listSweep.add("a");
+		listSweep.add("b");
+		listSweep.add("c");
+		experiment.getRootSweep().add(listSweep);
+		
+		List<ExperimentCase> cases = experiment.generateCases();
+		assertEquals(3, cases.size());
+		
+		Iterator<ExperimentCase> iterator = experiment.caseIterator();
+		for(ExperimentCase expCase : cases)
+		{
+			ExperimentCase iteratedCase = iterator.next();
+			assertEquals(expCase.getParameterMap(), iteratedCase.getParameterMap());
+			assertEquals(expCase.getRngSeeds(), iteratedCase.getRngSeeds());
+		}
+		assertTrue(!iterator.hasNext());
+	}
+	
+	@Test
+	public void getCaseMatchesList() throws GridSweeperException
+	{
+		ListSweep listSweep = new ListSweep("other");
+		listSweep.add("a");
+		listSweep.add("b");
+		listSweep.add("c");
+		experiment.getRootSweep().add(listSweep);
+		
+		List<ExperimentCase> cases = experiment.generateCases();
+		assertEquals(3, experiment.getCaseCount());
+		
+		for(int i = 0; i < cases.size(); i++)
+		{
+			ExperimentCase expCase = experiment.getCase(i);
+			assertEquals(cases.get(i).getParameterMap(), expCase.getParameterMap());
+			assertEquals(cases.get(i).getRngSeeds(), expCase.getRngSeeds());
+		}
+	}
+	
+	@Test
+	public void parallelCaseIteratorMatchesList() throws GridSweeperException
+	{
+		// Enough cases for several chunks, with a partial chunk at the end
+		for(int i = 0; i < 3; i++)
+		{
+			ListSweep listSweep = new ListSweep("param" + i);
+			for(int j = 0; j < 23; j++)
+			{
+				listSweep.add("" + j);
+			}
+			experiment.getRootSweep().add(listSweep);
+		}
+		experiment.setNumRuns(2);
+		
+		List<ExperimentCase> cases = experiment.generateCases();
+		assertEquals(23 * 23 * 23, cases.size());
+		
+		Iterator<ExperimentCase> iterator = experiment.caseIterator(3);
+		for(ExperimentCase expCase : cases)
+		{
+			ExperimentCase iteratedCase = iterator.next();
+			assertEquals(expCase.getParameterMap(), iteratedCase.getParameterMap());
+			assertEquals(expCase.getRngSeeds(), iteratedCase.getRngSeeds());
+		}
+		assertTrue(!iterator.hasNext());
+	}
 }
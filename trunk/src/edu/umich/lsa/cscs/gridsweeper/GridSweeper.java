@@ -21,12 +21,12 @@
 
 package edu.umich.lsa.cscs.gridsweeper;
 
-import org.ggf.drmaa.*;
 
 
 import java.io.*;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static edu.umich.lsa.cscs.gridsweeper.StringUtils.*;
 import static edu.umich.lsa.cscs.gridsweeper.DateUtils.*;
@@ -35,7 +35,7 @@ import static edu.umich.lsa.cscs.gridsweeper.DLogger.*;
 /**
  * The GridSweeper command-line tool for job submission. Takes a .gsexp
  * XML experiment file and/or a bunch of command line options and submits
- * the resulting experiment to the grid via DRMAA.
+ * the resulting experiment to the grid via DRMAA, or runs it on the local machine.
  * Warning: begun on a houseboat in Paris. May still contain strange French bugs.
  * 
  * @author Ed Baskerville
@@ -50,33 +50,11 @@ class GridSweeper
 		NORUN
 	}
 	
-	class CaseRun
-	{
-		ExperimentCase expCase;
-		String caseId;
-		int runNum;
-		int rngSeed;
-		
-		JobInfo jobInfo = null;
-		RunResults runResults = null;
-		
-		public CaseRun(ExperimentCase expCase, String caseId, int runNum, int rngSeed)
-		{
-			this.expCase = expCase;
-			this.caseId = caseId;
-			this.runNum = runNum;
-			this.rngSeed = rngSeed;
-		}
-		
-		public String getRunString()
-		{
-			String runStr;
-			if(caseId.equals("")) runStr = "run " + runNum;
-			else runStr = caseId + ", run " + runNum;
-			
-			return runStr;
-		}
-	}
+	/**
+	 * The number of cases above which ordering them longest first takes
+	 * enough memory to warn about: eight bytes per case.
+	 */
+	static final long LONGEST_FIRST_WARNING_CASES = 10000000;
 	
 	static String className;
 	
@@ -90,7 +68,11 @@ class GridSweeper
 	
 	Experiment experiment;
 	RunType runType = RunType.RUN;
-	List<ExperimentCase> cases = null;
+	Iterator<ExperimentCase> caseIterator = null;
+	
+	// Range of case indexes to submit (inclusive); all cases if firstCase < 0
+	long firstCase = -1;
+	long lastCase = -1;
 	
 	// boolean useFileTransfer = false;
 	
@@ -104,9 +86,51 @@ class GridSweeper
 	
 	// String fileTransferSubpath;
 	
-	Session drmaaSession;
+	ExecutionBackend backend;
+	
+	// Number of jobs to run at a time on the local machine; 0 to use the grid
+	int localParallelism = 0;
+	
 	StringMap caseIdToJobIdMap;
-	Map<String, CaseRun> jobIdToRunMap;
+	Map<String, List<CaseRun>> jobIdToRunsMap;
+	
+	int runsPerJob = 1;
+	
+	List<RunListener> runListeners = new ArrayList<RunListener>();
+	
+	Journal journal = null;
+	ResourceSummary resourceSummary = null;
+	
+	ResultCache resultCache = null;
+	RuntimeHistory runtimeHistory = null;
+	int cachedRunCount = 0;
+	
+	// Written instead of a directory and XML file per case, if used
+	CaseManifest caseManifest = null;
+	
+	// Holds run results instead of files in each case directory, if used
+	ResultStore resultStore = null;
+	
+	// When resuming, the jobs that had already been handled
+	Map<String, Boolean> resumedDoneJobs = null;
+	
+	// Limits the jobs in the execution system at once, if used; the remaining
+	// jobs are then submitted alongside monitoring, as earlier jobs end
+	SubmissionWindow submissionWindow = null;
+	
+	// Decides which failed jobs to submit again, if any
+	RetryPolicy retryPolicy = null;
+	
+	JobMonitor monitor = null;
+	StatusReporter reporter = null;
+	
+	// How far submission has got: the case order, if not sweep order,
+	// the next case index or position in the order, and whether all
+	// cases have been submitted
+	long[] caseOrder = null;
+	long nextCase = 0;
+	boolean multipleCases = false;
+	boolean submittedAll = false;
 	
 	PrintStream msgOut;
 	
@@ -149,7 +173,8 @@ class GridSweeper
 	 * and date/time ({@code <name>/YYYY-MM-DD/hh-mm-ss}). If a shared filesystem is not
 	 * available, files are first staged to the experiment results directory on the
 	 * file transfer system.
-	 * Finally, a DRMAA session is established, and each case is submitted.
+	 * Finally, an execution backend (a DRMAA session, or the local machine)
+	 * is set up, and each case is submitted.
 	 * @throws GridSweeperException
 	 */
 	public void submitExperiment() throws GridSweeperException
@@ -178,8 +203,22 @@ class GridSweeper
 		
 		Settings settings = experiment.getSettings();
 
-		// Assemble cases
-		cases = experiment.generateCases();
+		// Set up case generation; cases are generated as they are submitted
+		if(firstCase < 0)
+		{
+			int threads = settings.getIntProperty("CaseThreads", 1, 1);
+			caseIterator = experiment.caseIterator(threads);
+		}
+		else
+		{
+			long caseCount = experiment.getCaseCount();
+			if(lastCase < 0) lastCase = caseCount - 1;
+			if(firstCase > lastCase || lastCase >= caseCount)
+			{
+				throw new GridSweeperException("Invalid case range " + firstCase
+					+ ":" + lastCase + "; the experiment has " + caseCount + " cases.");
+			}
+		}
 		
 		// Set up main experiment directory
 		setUpExperimentDirectory(settings);
@@ -216,7 +255,112 @@ class GridSweeper
 				msgOut.println("Experiment submitted.");
 				break;
 		}
+	
+	}
+	
+	/**
+	 * Resumes monitoring of an experiment whose monitoring process died,
+	 * using the journal in its experiment directory. The experiment is
+	 * reloaded from the directory, and the submitted jobs and their runs are
+	 * rebuilt from the journal. The original DRMAA session is re-attached to
+	 * if possible; otherwise a new session is used to poll job status. Jobs
+	 * are not resubmitted.
+	 * @param resumeDir The experiment directory.
+	 * @throws GridSweeperException If the experiment or journal cannot
+	 * be read, or a DRMAA session cannot be established.
+	 */
+	public void resumeExperiment(String resumeDir) throws GridSweeperException
+	{
+		runType = RunType.RUN;
+		expDir = resumeDir;
+		
+		setUpRoot();
+		
+		String xmlPath = appendPathComponent(expDir, "experiment.gsexp");
+		try
+		{
+			experiment = new Experiment(new java.net.URL("file", "", xmlPath));
+		}
+		catch(Exception e)
+		{
+			throw new GridSweeperException("Could not load experiment XML from "
+				+ xmlPath, e);
+		}
 		
+		Journal.Contents contents;
+		try
+		{
+			contents = Journal.read(expDir);
+		}
+		catch(IOException e)
+		{
+			throw new GridSweeperException("Could not read journal in " + expDir, e);
+		}
+		if(contents.jobIdToRunsMap.isEmpty())
+			throw new GridSweeperException("No submitted jobs recorded in " + expDir);
+		
+		msgOut.println("Resuming monitoring of experiment \""
+			+ experiment.getName() + "\"...");
+		if(!contents.submittedAll)
+		{
+			msgOut.println("Warning: submission did not complete; "
+				+ "only jobs that were submitted will be monitored.");
+		}
+		
+		email = contents.email;
+		if(email == null)
+			email = System.getProperty("user.name");
+		if(contents.submittedTime >= 0)
+			cal.setTimeInMillis(contents.submittedTime);
+		dateStr = getDateString(cal);
+		timeStr = getTimeString(cal);
+		
+		caseIdToJobIdMap = new StringMap();
+		jobIdToRunsMap = contents.jobIdToRunsMap;
+		for(Map.Entry<String, List<CaseRun>> entry : jobIdToRunsMap.entrySet())
+		{
+			for(CaseRun run : entry.getValue())
+			{
+				run.caseDir = getCaseDirectory(run.caseId);
+				caseIdToJobIdMap.put(run.caseId + "." + run.runNum, entry.getKey());
+			}
+		}
+		resumedDoneJobs = contents.doneJobs;
+		msgOut.println("" + resumedDoneJobs.size() + " of " + jobIdToRunsMap.size()
+			+ " jobs were already complete.");
+		
+		backend = new DrmaaBackend(root,
+			experiment.getSettings().getProperty("NativeSpecification"), contents.contact);
+		
+		try
+		{
+			journal = new Journal(expDir);
+		}
+		catch(IOException e)
+		{
+			throw new GridSweeperException("Could not open journal in " + expDir, e);
+		}
+		
+		openResultStore();
+	}
+	
+	/**
+	 * Opens the result store in the experiment directory, if the
+	 * {@code ResultStore} setting is on.
+	 * @throws GridSweeperException If the store cannot be opened.
+	 */
+	private void openResultStore() throws GridSweeperException
+	{
+		if(!ResultStore.isUsed(experiment.getSettings())) return;
+		
+		try
+		{
+			resultStore = new ResultStore(expDir, true);
+		}
+		catch(IOException e)
+		{
+			throw new GridSweeperException("Could not open result store in " + expDir, e);
+		}
 	}
 	
 	private void setUpExperimentDirectory(Settings settings)
@@ -307,7 +451,7 @@ class GridSweeper
 		}
 	}*/
 	
-	public void submitCases() throws GridSweeperException
+	private void setUpRoot() throws GridSweeperException
 	{
 		root = System.getenv("GRIDSWEEPER_ROOT");
 		if(root == null)
@@ -318,55 +462,285 @@ class GridSweeper
 			throw new GridSweeperException("GRIDSWEEPER_ROOT environment variableinvalid.");
 		
 		pid = getPid();
+	}
 	
+	public void submitCases() throws GridSweeperException
+	{
+		setUpRoot();
+		
 		if(runType == RunType.NORUN) return;
 		
+		runsPerJob = experiment.getSettings().getIntProperty("RunsPerJob", 1, 1);
+		
+		String cacheDir = experiment.getSettings().getProperty("ResultCache");
+		if(cacheDir != null && runType == RunType.RUN)
+		{
+			// Cached runs are restored as files in case directories
+			if(ResultStore.isUsed(experiment.getSettings()))
+				throw new GridSweeperException("The ResultCache and ResultStore settings cannot be used together.");
+			
+			resultCache = new ResultCache(expandTildeInPath(cacheDir), experiment);
+			runListeners.add(resultCache);
+		}
+		if(runType == RunType.RUN) openResultStore();
+		
+		int[] jobLimits = SubmissionWindow.getLimits(experiment.getSettings());
+		retryPolicy = RetryPolicy.fromSettings(experiment.getSettings());
+		
+		String historyDir = experiment.getSettings().getProperty("RuntimeHistory");
+		boolean longestFirst = RuntimeHistory.isLongestFirst(experiment.getSettings());
+		if(historyDir != null)
+		{
+			runtimeHistory = new RuntimeHistory(expandTildeInPath(historyDir),
+				experiment.getSettings());
+			if(runType == RunType.RUN) runListeners.add(runtimeHistory);
+		}
+		else if(longestFirst)
+		{
+			throw new GridSweeperException("SubmitOrder longest-first requires the RuntimeHistory setting.");
+		}
+		
 		try
 		{
-			// Establish DRMAA session, unless this is a dry run
+			// Set up the execution backend, unless this is a dry run
 			if(runType == RunType.RUN)
 			{
-				msgOut.println("Establishing grid session");
-				drmaaSession = SessionFactory.getFactory().getSession();
-				drmaaSession.init(null);
+				if(localParallelism > 0)
+				{
+					msgOut.println("Running jobs locally, " + localParallelism + " at a time");
+					backend = new LocalBackend(appendPathComponent(root, "bin/gsrunner"),
+						localParallelism,
+						experiment.getSettings().getBooleanProperty("PersistentWorkers", false));
+				}
+				else
+				{
+					msgOut.println("Establishing grid session");
+					backend = new DrmaaBackend(root,
+						experiment.getSettings().getProperty("NativeSpecification"), null);
+				}
+				
+				// Record submissions so monitoring can be resumed
+				String contact = backend.getContact();
+				if(contact != null)
+				{
+					journal = new Journal(expDir);
+					journal.recordSession(contact, email, cal.getTimeInMillis());
+				}
 			}
 			
-			// Set up and run each case
+			// Set up and run each case. Jobs may end, and be handled by
+			// the monitor's threads, while others are still being submitted.
 			caseIdToJobIdMap = new StringMap();
-			jobIdToRunMap = new HashMap<String, CaseRun>();
+			jobIdToRunsMap = new ConcurrentHashMap<String, List<CaseRun>>();
+			if(CaseManifest.isUsed(experiment.getSettings()))
+				caseManifest = new CaseManifest(expDir);
 			
-			if(cases.size() > 1)
-				msgOut.println("Submitting cases:");
-			for(ExperimentCase expCase : cases)
+			// With a submission window, monitoring starts right away, and
+			// submission stops here once the window fills, continuing in finish()
+			if(jobLimits != null && runType == RunType.RUN)
 			{
-				runCase(expCase);
+				submissionWindow = new SubmissionWindow(backend, jobLimits[0], jobLimits[1]);
+				String limitsStr = "";
+				if(jobLimits[0] > 0)
+					limitsStr += ", at most " + jobLimits[0] + " submitted";
+				if(jobLimits[1] > 0)
+					limitsStr += ", at most " + jobLimits[1] + " waiting to start";
+				msgOut.println("Limiting jobs in the queue" + limitsStr);
+				startMonitor();
 			}
-			if(cases.size() > 1)
-				msgOut.println("All cases submitted.");
+			
+			caseOrder = longestFirst ? getLongestFirstOrder() : null;
+			if(caseOrder != null)
+			{
+				multipleCases = (caseOrder.length > 1);
+				if(multipleCases)
+					msgOut.println("Submitting cases, longest first:");
+			}
+			else if(caseIterator == null)
+			{
+				nextCase = firstCase;
+				multipleCases = (lastCase > firstCase);
+				if(multipleCases)
+					msgOut.println("Submitting cases " + firstCase + " through " + lastCase + ":");
+			}
+			submitNextCases(false);
 		}
 		catch(Exception e)
 		{
+			// Jobs already submitted are still monitored
+			if(monitor != null) monitor.submissionComplete();
 			throw new GridSweeperException("Could not run experiment", e);	
 		}
 	}
 	
+	/**
+	 * Submits cases, picking up where submission left off, until all cases
+	 * have been submitted or, if not waiting, the submission window is full.
+	 * Cases are generated one at a time, so only the case being submitted
+	 * is held in memory.
+	 * @param wait Whether to wait for room in the submission window, rather
+	 * than stopping at the first case for which there is no room.
+	 * @throws GridSweeperException If a job cannot be submitted.
+	 * @throws IOException If a case cannot be written out.
+	 */
+	private void submitNextCases(boolean wait) throws GridSweeperException, IOException
+	{
+		while(true)
+		{
+			if(!wait && submissionWindow != null && !submissionWindow.hasRoom())
+				return;
+			
+			long caseIndex;
+			ExperimentCase expCase;
+			if(caseOrder != null)
+			{
+				if(nextCase == caseOrder.length) break;
+				caseIndex = caseOrder[(int)nextCase++];
+				expCase = experiment.getCase(caseIndex);
+			}
+			else if(caseIterator == null)
+			{
+				if(nextCase > lastCase) break;
+				caseIndex = nextCase++;
+				expCase = experiment.getCase(caseIndex);
+			}
+			else
+			{
+				if(!caseIterator.hasNext()) break;
+				caseIndex = nextCase++;
+				expCase = caseIterator.next();
+				if(!multipleCases && caseIterator.hasNext())
+				{
+					multipleCases = true;
+					msgOut.println("Submitting cases:");
+				}
+			}
+			runCase(caseIndex, expCase);
+		}
+		
+		if(multipleCases)
+			msgOut.println("All cases submitted.");
+		if(caseManifest != null)
+			caseManifest.close();
+		if(journal != null)
+			journal.recordSubmittedAll();
+		submittedAll = true;
+	}
+	
+	/**
+	 * Waits for room in the submission window, if there is one.
+	 * @param jobCount The number of jobs about to be submitted.
+	 * @throws GridSweeperException If monitoring has stopped, or if interrupted.
+	 */
+	private void waitForRoom(int jobCount) throws GridSweeperException
+	{
+		if(submissionWindow == null) return;
+		try
+		{
+			submissionWindow.waitForRoom(jobCount);
+		}
+		catch(InterruptedException e)
+		{
+			throw new GridSweeperException("Interrupted while waiting to submit jobs.", e);
+		}
+	}
+	
+	/**
+	 * Registers a submitted job's runs for monitoring. Called while holding
+	 * the lock on {@code jobIdToRunsMap}, from before the job was submitted
+	 * (see {@link JobMonitor#setOpen}).
+	 * @param jobId The job ID.
+	 * @param runs The runs performed by the job.
+	 */
+	private void registerJob(String jobId, List<CaseRun> runs)
+	{
+		jobIdToRunsMap.put(jobId, runs);
+		if(journal != null) journal.recordJob(jobId, runs);
+		if(submissionWindow != null)
+		{
+			submissionWindow.add(Collections.singletonList(jobId));
+			monitor.addJob(jobId);
+		}
+	}
+	
+	/**
+	 * Orders the cases to submit so that those predicted to take longest,
+	 * according to the runtime history, come first. Each case gets a single
+	 * {@code long} sort key: its prediction, as a {@code float} and reversed
+	 * so that longer times sort first, in the high 32 bits, and its position
+	 * in the low 32 bits, so that cases with the same prediction stay in
+	 * sweep order. The keys are then replaced by the case indexes in place.
+	 * Cases are generated one at a time and only the keys are held.
+	 * @see RuntimeHistory#getLongestFirstKey
+	 * @return The case indexes in the order to submit them, or {@code null}
+	 * if there is no history for the model yet.
+	 * @throws GridSweeperException If the cases cannot be generated.
+	 * @throws IOException If the history cannot be read.
+	 */
+	private long[] getLongestFirstOrder() throws GridSweeperException, IOException
+	{
+		RuntimeHistory.Predictor predictor = runtimeHistory.loadPredictor();
+		if(predictor == null)
+		{
+			msgOut.println("No runtime history for this model yet; "
+				+ "submitting cases in sweep order.");
+			return null;
+		}
+		
+		long first = (caseIterator == null) ? firstCase : 0;
+		long count = (caseIterator == null) ? lastCase - firstCase + 1 : experiment.getCaseCount();
+		if(count > Integer.MAX_VALUE)
+			throw new GridSweeperException("Too many cases to order by predicted run time.");
+		if(count > LONGEST_FIRST_WARNING_CASES)
+		{
+			msgOut.println("Warning: ordering " + count + " cases longest first needs "
+				+ (count * 8 >> 20) + " MB of memory; set SubmitOrder to sweep to avoid this.");
+		}
+		
+		long[] order = new long[(int)count];
+		for(int i = 0; i < count; i++)
+		{
+			ExperimentCase expCase = (caseIterator == null) ?
+				experiment.getCase(first + i) : caseIterator.next();
+			double prediction = predictor.predict(expCase.getParameterMap());
+			order[i] = RuntimeHistory.getLongestFirstKey(prediction, i);
+		}
+		Arrays.sort(order);
+		
+		if(count > 0)
+		{
+			fine(String.format("Predicted run times from %.1f s to %.1f s",
+				RuntimeHistory.getLongestFirstPrediction(order[(int)count - 1]) / 1000,
+				RuntimeHistory.getLongestFirstPrediction(order[0]) / 1000));
+		}
+		for(int i = 0; i < count; i++)
+		{
+			order[i] = first + (order[i] & 0xFFFFFFFFL);
+		}
+		return order;
+	}
+	
 	/**
 	 * Submits a single experiment case. This means running one job for each
-	 * run of the case (one for each random seed).
+	 * batch of {@code RunsPerJob} runs of the case (one run for each random seed).
+	 * With a case manifest, the case is added to the manifest rather than
+	 * given a directory and XML file, and job files are kept together in the
+	 * manifest's jobs directory.
+	 * @param caseIndex The position of the case in the experiment.
 	 * @param expCase The experiment case to run.
 	 * @throws FileNotFoundException If the case directory cannot be found/created.
-	 * @throws DrmaaException If a DRMAA error occurs (in {@link #runCaseRun}).
-	 * @throws IOException If the case XML cannot be written out (in {@link #runCaseRun}).
+	 * @throws GridSweeperException If a job cannot be submitted (in {@link #runCaseRuns}).
+	 * @throws IOException If the case XML cannot be written out (in {@link #runCaseRuns}).
 	 */
-	public void runCase(ExperimentCase expCase) throws FileNotFoundException, DrmaaException, IOException
+	public void runCase(long caseIndex, ExperimentCase expCase) throws FileNotFoundException, GridSweeperException, IOException
 	{
+		// Expand a compact case once, rather than on every use below
+		expCase = expCase.expand();
+		
 		String caseSubDir = experiment.getDirectoryNameForCase(expCase);
-		String caseDir = appendPathComponent(expDir, caseSubDir);
+		String caseDir = getCaseDirectory(caseSubDir);
 		finer("Case subdirectory: " + caseDir);
 		
-		File caseDirFile = new File(caseDir);
-		caseDirFile.mkdirs();
-		
 		String caseName;
 		if(caseSubDir.equals(""))
 		{
@@ -379,119 +753,305 @@ class GridSweeper
 			+ caseSubDir + " (" + dateStr + ", " + timeStr + ")";
 		}
 
-		// Write XML
-		String xmlPath = appendPathComponent(caseDir, "case.gscase");
-		ExperimentCaseXMLWriter xmlWriter = new ExperimentCaseXMLWriter(
-				xmlPath, expCase, caseName);
-		xmlWriter.writeXML();
+		String jobDir;
+		String jobFilePrefix;
+		if(caseManifest == null)
+		{
+			File caseDirFile = new File(caseDir);
+			caseDirFile.mkdirs();
+			
+			// Write XML
+			String xmlPath = appendPathComponent(caseDir, "case.gscase");
+			ExperimentCaseXMLWriter xmlWriter = new ExperimentCaseXMLWriter(
+					xmlPath, expCase, caseName);
+			xmlWriter.writeXML();
+			
+			jobDir = caseDir;
+			jobFilePrefix = ".gsweep_";
+		}
+		else
+		{
+			caseManifest.append(caseIndex, caseSubDir, expCase);
+			
+			jobDir = expDir;
+			jobFilePrefix = appendPathComponent(CaseManifest.JOBS_DIRNAME, caseIndex + ".");
+		}
 		
 		if(!caseSubDir.equals(""))
 		{
 			msgOut.println(caseSubDir);
 		}
+		String historyFields = null;
+		if(runtimeHistory != null && runType == RunType.RUN)
+		{
+			historyFields = RuntimeHistory.encodeParameters(expCase.getParameterMap());
+		}
 		
-		// Run each individual run on the grid
+		// Take runs from the result cache where possible
 		List<Integer> rngSeeds = expCase.getRngSeeds();
-		for(int i = 0; i < rngSeeds.size(); i++)
+		List<CaseRun> pendingRuns = new ArrayList<CaseRun>(rngSeeds.size());
+		List<CaseRun> cachedRuns = new ArrayList<CaseRun>();
+		for(int j = 0; j < rngSeeds.size(); j++)
+		{
+			CaseRun run = new CaseRun(caseSubDir, j, rngSeeds.get(j));
+			run.caseDir = caseDir;
+			run.historyFields = historyFields;
+			if(resultCache != null)
+			{
+				run.cacheKey = resultCache.getKey(expCase.getParameterMap(), j, run.rngSeed);
+				if(resultCache.restore(run.cacheKey, caseDir, j))
+				{
+					cachedRuns.add(run);
+					continue;
+				}
+			}
+			pendingRuns.add(run);
+		}
+		if(cachedRuns.size() > 0)
+		{
+			msgOut.println("  Using cached results for "
+				+ getRunNumbersString(cachedRuns));
+			cachedRunCount += cachedRuns.size();
+		}
+		
+		// Run each remaining run on the grid, either as a single array job
+		// or as one job per batch of runs
+		if(runType == RunType.RUN && pendingRuns.size() > 1
+			&& pendingRuns.size() == rngSeeds.size()
+			&& experiment.getSettings().getBooleanProperty("BulkSubmit", false))
 		{
-			CaseRun run = new CaseRun(expCase, caseSubDir, i, rngSeeds.get(i));
-			runCaseRun(run);
+			runCaseBulk(expCase, pendingRuns, caseName, jobDir, jobFilePrefix);
+		}
+		else for(int i = 0; i < pendingRuns.size(); i += runsPerJob)
+		{
+			int end = Math.min(i + runsPerJob, pendingRuns.size());
+			runCaseRuns(expCase, new ArrayList<CaseRun>(pendingRuns.subList(i, end)),
+				jobDir, jobFilePrefix);
 		}
 	}
 	
 	/**
-	 * Submits a single run of an experiment case.
+	 * Submits all runs of an experiment case as a single bulk (array) job.
+	 * Runs are divided into batches of {@code RunsPerJob} runs, with one task
+	 * per batch; task <em>n</em> performs batch <em>n</em> - 1, since DRMAA
+	 * task indexes start at 1. A single setup file containing a list of setups
+	 * for each task is written to the job directory, and the runner
+	 * picks out its own batch using the task index.
 	 * @param expCase The case to run.
-	 * @param caseDir The full path to where files are stored for this case.
-	 * @param caseSubDir The case directory relative to the experiment results directory.
-	 * @param i The run number for this run.
-	 * @param rngSeed The random seed for this run.
-	 * @throws DrmaaException If a DRMAA error occurs during job submission.
-	 * @throws IOException If the case XML cannot be written out.
+	 * @param caseRuns All the runs of the case, in order.
+	 * @param caseName The job name to use.
+	 * @param jobDir The directory the job runs in and writes its files to.
+	 * @param jobFilePrefix The prefix for the names of job files in {@code jobDir}.
+	 * @throws GridSweeperException If the job cannot be submitted.
+	 * @throws IOException If the setup file cannot be written out.
 	 */
-	public void runCaseRun(CaseRun run) throws DrmaaException, IOException
+	public void runCaseBulk(ExperimentCase expCase, List<CaseRun> caseRuns, String caseName,
+		String jobDir, String jobFilePrefix) throws GridSweeperException, IOException
 	{
-		ExperimentCase expCase = run.expCase;
-		String caseId = run.caseId;
-		int runNum = run.runNum;
-		int rngSeed = run.rngSeed;
+		String caseId = caseRuns.get(0).caseId;
+		int numRuns = caseRuns.size();
+		int numTasks = (numRuns + runsPerJob - 1) / runsPerJob;
 		
-		String caseDir;
-		if(caseId.equals(""))
-			caseDir = expDir;
-		else
-			caseDir = appendPathComponent(expDir, caseId);
+		// Write setup file. The settings and parameters are shared by all
+		// the setups, so they are only serialized once.
+		List<List<RunSetup>> taskSetups = new ArrayList<List<RunSetup>>(numTasks);
+		for(int i = 0; i < numRuns; i += runsPerJob)
+		{
+			int end = Math.min(i + runsPerJob, numRuns);
+			List<RunSetup> setups = new ArrayList<RunSetup>(end - i);
+			for(int j = i; j < end; j++)
+			{
+				setups.add(createRunSetup(expCase, caseId, j, caseRuns.get(j).rngSeed));
+			}
+			taskSetups.add(setups);
+		}
+		String stdinPath = appendPathComponent(jobDir, jobFilePrefix + "in");
+		OutputStream stdinStream = new FileOutputStream(stdinPath);
+		RunCodec.writeSetups(stdinStream, taskSetups);
+		stdinStream.close();
 		
-		Settings settings = experiment.getSettings();
+		// Output files are tagged by task index
+		waitForRoom(numTasks);
+		List<String> jobIds;
+		synchronized(jobIdToRunsMap)
+		{
+			jobIds = backend.submitBulkJob(caseName, jobDir, stdinPath,
+				jobFilePrefix + "out", jobFilePrefix + "err", numTasks);
+			
+			for(int i = 0; i < numTasks; i++)
+			{
+				String jobId = jobIds.get(i);
+				String resultsPath = appendPathComponent(jobDir, jobFilePrefix + "out." + (i + 1));
+				
+				// The setup file is shared by all tasks, so it is kept
+				String[] jobFiles = {appendPathComponent(jobDir, jobFilePrefix + "err." + (i + 1))};
+				
+				List<CaseRun> runs = new ArrayList<CaseRun>(runsPerJob);
+				int end = Math.min((i + 1) * runsPerJob, numRuns);
+				for(int j = i * runsPerJob; j < end; j++)
+				{
+					CaseRun run = caseRuns.get(j);
+					run.resultsPath = resultsPath;
+					run.jobFiles = jobFiles;
+					run.jobId = jobId;
+					run.jobDir = jobDir;
+					run.jobName = caseName;
+					run.setupPath = stdinPath;
+					run.taskNum = i + 1;
+					runs.add(run);
+					
+					caseIdToJobIdMap.put(caseId + "." + j, jobId);
+				}
+				registerJob(jobId, runs);
+			}
+		}
+		
+		msgOut.println("  Submitted runs 0 through " + (numRuns - 1)
+			+ " (" + backend.getName() + " job IDs " + jobIds.get(0) + " through "
+			+ jobIds.get(numTasks - 1) + ")");
+	}
+	
+	/**
+	 * Submits a batch of runs of an experiment case as a single job.
+	 * A batch containing a single run is submitted exactly as before batching
+	 * was introduced; larger batches are written out as a list of setups,
+	 * which the runner performs one after another.
+	 * @param expCase The case to run.
+	 * @param runs The runs of the case to submit, in order of run number.
+	 * Only these objects, and not the case itself, are kept around for monitoring.
+	 * @param jobDir The directory the job runs in and writes its files to.
+	 * @param jobFilePrefix The prefix for the names of job files in {@code jobDir}.
+	 * @throws GridSweeperException If the job cannot be submitted.
+	 * @throws IOException If the case XML cannot be written out.
+	 */
+	public void runCaseRuns(ExperimentCase expCase, List<CaseRun> runs,
+		String jobDir, String jobFilePrefix) throws GridSweeperException, IOException
+	{
+		CaseRun firstRun = runs.get(0);
+		String caseId = firstRun.caseId;
+		int runNum = firstRun.runNum;
+		String runsStr = getRunNumbersString(runs);
 		
 		String caseRunName;
 		if(caseId.equals(""))
 		{
-			caseRunName = experiment.getName() + " - run " + runNum
+			caseRunName = experiment.getName() + " - " + runsStr
 			+ " (" + dateStr + ", " + timeStr + ")";
 		}
 		else
 		{
 			caseRunName = experiment.getName() + " - "
-			+ caseId + " - run " + runNum
+			+ caseId + " - " + runsStr
 			+ " (" + dateStr + ", " + timeStr + ")";
 		}
 		
 		if(runType == RunType.RUN)
 		{
-			// Write setup file
-			String stdinPath = appendPathComponent(caseDir, ".gsweep_in." + runNum);
-			RunSetup setup = new RunSetup(settings,
-					experiment.getInputFiles(), caseId, expCase.getParameterMap(),
-					experiment.getNumRuns(), runNum, rngSeed, experiment.getOutputFiles());
-			ObjectOutputStream stdinStream = new ObjectOutputStream(new FileOutputStream(stdinPath));
-			stdinStream.writeObject(setup);
-			stdinStream.close();
-			
-			// Generate job template
-			JobTemplate jt = drmaaSession.createJobTemplate();
-			jt.setJobName(caseRunName);
-			jt.setRemoteCommand(appendPathComponent(root, "bin/gsrunner"));
-			/*if(!useFileTransfer)*/ jt.setWorkingDirectory(caseDir);
-			jt.setInputPath(":" + stdinPath);
-			jt.setOutputPath(":" + appendPathComponent(caseDir, ".gsweep_out." + runNum));
-			jt.setErrorPath(":" + appendPathComponent(caseDir, ".gsweep_err." + runNum));
-			jt.setBlockEmail(true);
-			
-			try
+			// Write setup file, named after the first run in the batch
+			String stdinPath = appendPathComponent(jobDir, jobFilePrefix + "in." + runNum);
+			Object setupObj;
+			if(runs.size() == 1)
 			{
-				jt.setTransferFiles(new FileTransferMode(true, true, true));
+				setupObj = createRunSetup(expCase, caseId, runNum, firstRun.rngSeed);
 			}
-			catch(DrmaaException e)
+			else
 			{
-				// If setTransferFiles isn't supported, we'll hope that the system defaults to
-				// transfering them. This works for SGE.
+				ArrayList<RunSetup> setups = new ArrayList<RunSetup>(runs.size());
+				for(CaseRun run : runs)
+				{
+					setups.add(createRunSetup(expCase, caseId, run.runNum, run.rngSeed));
+				}
+				setupObj = setups;
 			}
+			OutputStream stdinStream = new FileOutputStream(stdinPath);
+			RunCodec.writeSetups(stdinStream, setupObj);
+			stdinStream.close();
 			
-			Properties environment = new Properties();
-			environment.setProperty("GRIDSWEEPER_ROOT", root);
-			
-			String classpath = System.getProperty("java.class.path");
-			if(classpath != null) environment.setProperty("CLASSPATH", classpath);
-			jt.setJobEnvironment(environment);
-			
-			String jobId = drmaaSession.runJob(jt);
-			
-			caseIdToJobIdMap.put(caseId + "." + runNum, jobId);
-			jobIdToRunMap.put(jobId, run);
-			fine("run in runmap: " + jobIdToRunMap.get(jobId));
+			String resultsPath = appendPathComponent(jobDir, jobFilePrefix + "out." + runNum);
+			String[] jobFiles = {stdinPath,
+				appendPathComponent(jobDir, jobFilePrefix + "err." + runNum)};
 			
-			drmaaSession.deleteJobTemplate(jt);
+			waitForRoom(1);
+			String jobId;
+			synchronized(jobIdToRunsMap)
+			{
+				jobId = backend.submitJob(caseRunName, jobDir, stdinPath,
+					jobFilePrefix + "out." + runNum, jobFilePrefix + "err." + runNum);
+				for(CaseRun run : runs)
+				{
+					run.jobId = jobId;
+					run.jobDir = jobDir;
+					run.resultsPath = resultsPath;
+					run.jobFiles = jobFiles;
+					run.jobName = caseRunName;
+					run.setupPath = stdinPath;
+					caseIdToJobIdMap.put(caseId + "." + run.runNum, jobId);
+				}
+				registerJob(jobId, runs);
+			}
+			fine("runs in runmap: " + jobIdToRunsMap.get(jobId));
 			
-			msgOut.println("  Submitted run " + runNum
-				+ " (DRMAA job ID " + jobId + ")");
+			msgOut.println("  Submitted " + runsStr
+				+ " (" + backend.getName() + " job ID " + jobId + ")");
 		}
 		else
 		{
-			msgOut.println("  Not submitting run " + runNum
+			msgOut.println("  Not submitting " + runsStr
 				+ " (dry run)");
 		}
-		fine("run: " + run);
+		fine("runs: " + runs);
+	}
+	
+	/**
+	 * Describes the run numbers in a batch of runs, e.g., "run 3" or
+	 * "runs 3 through 7".
+	 * @param runs The runs in the batch, in order of run number.
+	 * @return The description.
+	 */
+	private static String getRunNumbersString(List<CaseRun> runs)
+	{
+		int first = runs.get(0).runNum;
+		if(runs.size() == 1) return "run " + first;
+		
+		int last = runs.get(runs.size() - 1).runNum;
+		if(last - first == runs.size() - 1)
+			return "runs " + first + " through " + last;
+		
+		// Runs taken from the result cache leave gaps
+		StringBuffer runsStr = new StringBuffer("runs " + first);
+		for(int i = 1; i < runs.size(); i++)
+		{
+			runsStr.append(", " + runs.get(i).runNum);
+		}
+		return runsStr.toString();
+	}
+	
+	/**
+	 * Returns the full path to a case directory.
+	 * @param caseId The case directory relative to the experiment results directory.
+	 * @return The case directory.
+	 */
+	private String getCaseDirectory(String caseId)
+	{
+		if(caseId.equals(""))
+			return expDir;
+		else
+			return appendPathComponent(expDir, caseId);
+	}
+	
+	/**
+	 * Creates the setup object passed to the runner for a single run.
+	 * @param expCase The case being run.
+	 * @param caseId The case directory relative to the experiment results directory.
+	 * @param runNum The run number.
+	 * @param rngSeed The random seed for the run.
+	 * @return The run setup.
+	 */
+	private RunSetup createRunSetup(ExperimentCase expCase, String caseId, int runNum, int rngSeed)
+	{
+		return new RunSetup(experiment.getSettings(),
+				experiment.getInputFiles(), caseId, expCase.getParameterMap(),
+				experiment.getNumRuns(), runNum, rngSeed, experiment.getOutputFiles());
 	}
 	
 	public void daemonize() throws GridSweeperException
@@ -502,7 +1062,8 @@ class GridSweeper
 		{
 			// Open PrintStream to status.log in experiment directory
 			String logPath = appendPathComponent(expDir, "status.log"); 
-			PrintStream logOut = new PrintStream(new FileOutputStream(logPath));
+			PrintStream logOut = new PrintStream(new FileOutputStream(logPath,
+				resumedDoneJobs != null));
 			
 			msgOut.println("Detaching from console " +
 				"(monitoring process id: " + pid + ")...");
@@ -527,8 +1088,9 @@ class GridSweeper
 	}
 	
 	/**
-	 * Cleans up: for now, just closes the DRMAA session.
-	 * @throws GridSweeperException If the DRMAA {@code exit()} call fails.
+	 * Waits for all jobs to complete, sends the notification email,
+	 * and closes the execution backend.
+	 * @throws GridSweeperException If monitoring jobs or closing the backend fails.
 	 */
 	public void finish() throws GridSweeperException
 	{
@@ -536,103 +1098,53 @@ class GridSweeper
 		
 		if(runType == RunType.RUN)
 		{
-			msgOut.println("Waiting for jobs to complete...");
-			
-			StringList drmaaErrorList = new StringList();
-			StringList gsErrorList = new StringList();
-			StringList execErrorList = new StringList();
-			
-			int runCount = jobIdToRunMap.size();
-			for(int i = 0; i < runCount; i++)
+			if(monitor == null) startMonitor();
+			if(submissionWindow != null)
 			{
-				JobInfo info;
-				try
-				{
-					info = drmaaSession.wait(
-						Session.JOB_IDS_SESSION_ANY, Session.TIMEOUT_WAIT_FOREVER);
-				}
-				catch(DrmaaException e)
-				{
-					throw new GridSweeperException("Waiting for job completion failed.", e);
-				}
-				
-				String jobId = info.getJobId();
-				fine("got wait for job ID " + jobId);
-				fine("jobIdToRunMap: " + jobIdToRunMap.toString());
-				CaseRun run = jobIdToRunMap.get(jobId);
-				fine("run: " + run);
-				run.jobInfo = info;
-				
-				String caseId = run.caseId;
-				int runNum = run.runNum;
-				
-				String runStr = run.getRunString();
-				
-				msgOut.println("Completed run " + runStr
-					+ " (DRMAA job ID " + jobId + ")");
-				
-				// Check for DRMAA errors
-				if(info.hasCoreDump() || info.hasSignaled() || info.wasAborted()
-					|| info.getExitStatus() != 0)
-				{
-					drmaaErrorList.add(jobId);
-					msgOut.println("  (Warning: DRMAA reports that the run did not " +
-							"complete normally.)");
-				}
-				// Load RunResults from disk
-				else try
+				if(!submittedAll)
 				{
-					String caseDir = appendPathComponent(expDir, caseId);
-					String stdoutPath =
-						appendPathComponent(caseDir, ".gsweep_out." + runNum);
-					
-					fine("Loading RunResults from " + stdoutPath);
-					
-					FileInputStream fileStream = new FileInputStream(stdoutPath);
-					ObjectInputStream objStream = new ObjectInputStream(fileStream);
-					
-					RunResults runResults = (RunResults)objStream.readObject();
-					run.runResults = runResults;
-					
-					if(runResults == null || runResults.getException() != null)
+					msgOut.println("Submitting remaining cases as jobs end...");
+					try
 					{
-						gsErrorList.add(jobId);
-						msgOut.println("  (Warning: a GridSweeper exception occurred" +
-								" while performing this run.)"); 
+						submitNextCases(true);
 					}
-					else if(runResults.getStatus() != 0)
+					catch(Exception e)
 					{
-						execErrorList.add(jobId);
-						msgOut.println("  (Warning: this run exited with an" +
-								"error code.)");
+						// Jobs already submitted are still waited for
+						msgOut.println("Could not submit all cases: " + e.getMessage());
+						fine("submission failed: " + e);
 					}
 				}
-				catch(Exception e)
-				{
-					msgOut.print("  (Warning: an exception occurred loading the" +
-						" run results for this run: ");
-					e.printStackTrace(msgOut);
-					msgOut.println("  .)");
-					gsErrorList.add(jobId);
-				}
-				
-				msgOut.format("%d of %d complete (%.1f%%).\n",
-						i + 1, runCount, (double)(i + 1)/runCount * 100);
+				monitor.submissionComplete();
+			}
+			
+			msgOut.println("Waiting for jobs to complete...");
+			try
+			{
+				monitor.waitForCompletion();
+			}
+			catch(InterruptedException e)
+			{
+				throw new GridSweeperException("Interrupted while waiting for jobs to complete.", e);
 			}
 			
 			msgOut.println("All jobs completed.");
+			if(journal != null) journal.close();
+			resourceSummary.close();
+			if(runtimeHistory != null) runtimeHistory.close();
 			
-			sendEmail(drmaaErrorList, gsErrorList, execErrorList);
+			sendEmail(reporter.drmaaErrorList, reporter.gsErrorList, reporter.execErrorList);
 			
-			try
+			// Finish it up
+			if(resultStore != null) try
 			{
-				// Finish it up
-				drmaaSession.exit();
+				resultStore.close();
 			}
-			catch(DrmaaException e)
+			catch(IOException e)
 			{
-				throw new GridSweeperException("Received exception ending DRMAA session", e);
+				throw new GridSweeperException("Could not close result store.", e);
 			}
+			backend.close();
 		}
 		else
 		{
@@ -640,8 +1152,48 @@ class GridSweeper
 		}
 	}
 	
-	private void sendEmail(StringList drmaaErrorList, 
-		StringList gsErrorList, StringList execErrorList) 
+	/**
+	 * Starts monitoring submitted jobs. With a submission window, this
+	 * happens before any jobs are submitted, and jobs are added
+	 * to the monitor as they are submitted.
+	 * @throws GridSweeperException If the ResultThreads setting is invalid
+	 * or the resource summary cannot be opened.
+	 */
+	private void startMonitor() throws GridSweeperException
+	{
+		int threads = experiment.getSettings().getIntProperty("ResultThreads", 4, 1);
+		
+		try
+		{
+			resourceSummary = new ResourceSummary(expDir);
+		}
+		catch(IOException e)
+		{
+			throw new GridSweeperException("Could not open resource summary file.", e);
+		}
+		
+		reporter = new StatusReporter();
+		monitor = new JobMonitor(backend, jobIdToRunsMap, threads);
+		monitor.addListener(reporter);
+		monitor.addListener(resourceSummary);
+		for(RunListener listener : runListeners)
+		{
+			monitor.addListener(listener);
+		}
+		monitor.setJournal(journal);
+		monitor.setResultStore(resultStore);
+		if(resumedDoneJobs != null)
+			monitor.setResumed(resumedDoneJobs);
+		if(submissionWindow != null)
+			monitor.setOpen(submissionWindow);
+		if(resumedDoneJobs == null)
+			monitor.setRetryPolicy(retryPolicy);
+		
+		monitor.start();
+	}
+	
+	private void sendEmail(List<CaseRun> drmaaErrorList, 
+		List<CaseRun> gsErrorList, List<CaseRun> execErrorList) 
 		throws GridSweeperException
 	{
 		String expName = experiment.getName();
@@ -680,54 +1232,74 @@ class GridSweeper
 		{
 			// Print error messages, if present
 			int errorCount = drmaaErrorList.size() + gsErrorList.size() + execErrorList.size();
+			if(cachedRunCount > 0)
+			{
+				message.append(String.format("%d runs used cached results.\n",
+					cachedRunCount));
+			}
+			if(resourceSummary != null && resourceSummary.measuredRunCount > 0)
+			{
+				message.append(resourceSummary.getTotalsString() + "\n");
+			}
+			if(reporter.retriedRunCount > 0)
+			{
+				message.append(String.format("%d runs were retried after failures that "
+					+ "may not happen again; %d of them then completed.\n",
+					reporter.retriedRunCount, reporter.retriedCompletedCount));
+			}
 			if(errorCount == 0)
 			{
 				message.append("No errors occurred.\n");
 			}
 			else
 			{
-				int runCount = jobIdToRunMap.size();
+				int runCount = getRunCount();
 				message.append(String.format("%d of %d runs had errors (%.1f%%)...\n\n",
 					errorCount, runCount, (double)errorCount/runCount * 100)); 
 				
-				// Start with DRMAA-detected errors
-				for(String jobId : drmaaErrorList)
+				// Start with errors detected by the execution backend
+				for(CaseRun run : drmaaErrorList)
 				{
-					CaseRun run = jobIdToRunMap.get(jobId);
-					JobInfo info = run.jobInfo;
+					JobOutcome outcome = run.jobOutcome;
 					
 					String runStr = run.getRunString();
 					
-					message.append("DRMAA returned an error for " + runStr + ":\n");
-					if(info.hasCoreDump())
+					message.append(backend.getName() + " returned an error for " + runStr + ":\n");
+					if(!outcome.detailsKnown)
+					{
+						message.append("  No details are available, since the job " +
+							"completed before monitoring was resumed.\n\n");
+						continue;
+					}
+					if(outcome.coreDump)
 					{
 						message.append("  A core dump occurred.\n");
 					}
-					if(info.hasSignaled())
+					if(outcome.signaled)
 					{
 						message.append("  The job ended with signal "
-							+ info.getTerminatingSignal() + ".\n");
+							+ outcome.terminatingSignal + ".\n");
 					}
-					if(info.wasAborted())
+					if(outcome.aborted)
 					{
 						message.append("  The job was aborted.\n");
 					}
-					if(info.hasExited() && info.getExitStatus() != 0)
+					if(outcome.exited && outcome.exitStatus != 0)
 					{
 						message.append("  The job exited with status " 
-							+ info.getExitStatus() + ".\n");
+							+ outcome.exitStatus + ".\n");
 					}
+					appendFailedAttempts(message, run);
 					message.append("\n");
 				}
 				
 				// And then GridSweeper errors...
-				for(String jobId : gsErrorList)
+				for(CaseRun run : gsErrorList)
 				{
-					CaseRun run = jobIdToRunMap.get(jobId);
-					RunResults results = run.runResults;
+					RunResults results = getRunResults(run);
 					
 					String runStr = run.getRunString();
-	
+					
 					message.append("An internal error occurred in GridSweeper for "
 						+ runStr + ": \n");
 					if(results == null)
@@ -753,19 +1325,32 @@ class GridSweeper
 							message.append("  An unknown error occurred.\n");
 						}
 					}
+					appendFailedAttempts(message, run);
 					message.append("\n");
 				}
 				
 				// And finally nonzero status from the executable itself...
-				for(String jobId : execErrorList)
+				for(CaseRun run : execErrorList)
 				{
-					CaseRun run = jobIdToRunMap.get(jobId);
-					RunResults results = run.runResults;
+					RunResults results = getRunResults(run);
 					
 					String runStr = run.getRunString();
 					
+					if(results == null)
+					{
+						message.append("The " + runStr + " exited with an error status.\n\n");
+						continue;
+					}
 					message.append("The " + runStr + " exited with status " +
-						results.getStatus() + ".\n\n");
+						results.getStatus() + ".\n");
+					
+					// The adapter's message records the command and why it was killed, if it was
+					if(results.getMessage() != null)
+					{
+						message.append("  " + results.getMessage() + "\n");
+					}
+					appendFailedAttempts(message, run);
+					message.append("\n");
 				}
 			}
 		}
@@ -796,12 +1381,171 @@ class GridSweeper
 		
 		msgOut.println("Sent notification email to " + email + ".");
 	}
+	
+	/**
+	 * Lists the earlier attempts at a run that failed and were retried,
+	 * for the notification email.
+	 * @param message The message to append to.
+	 * @param run The run.
+	 */
+	private static void appendFailedAttempts(StringBuffer message, CaseRun run)
+	{
+		if(run.failedAttempts == null) return;
+		
+		message.append("  Earlier attempts:\n");
+		for(String attempt : run.failedAttempts)
+		{
+			message.append("    " + attempt + "\n");
+		}
+	}
+	
+	/**
+	 * Returns the results of a completed run, reading them from the result
+	 * store if they are only kept there.
+	 * @param run The run.
+	 * @return The results, or {@code null} if they could not be loaded.
+	 */
+	private RunResults getRunResults(CaseRun run)
+	{
+		if(run.runResults != null || resultStore == null) return run.runResults;
+		
+		try
+		{
+			return resultStore.read(run.caseId, run.runNum);
+		}
+		catch(IOException e)
+		{
+			fine("could not read results for " + run.getRunString() + " from result store: " + e);
+			return null;
+		}
+	}
 
+	/**
+	 * Counts the runs submitted in all jobs.
+	 * @return The number of runs.
+	 */
+	private int getRunCount()
+	{
+		int runCount = 0;
+		for(List<CaseRun> runs : jobIdToRunsMap.values())
+		{
+			runCount += runs.size();
+		}
+		return runCount;
+	}
+	
+	/**
+	 * Registers a listener to be told about runs as they complete.
+	 * @param listener The listener.
+	 */
+	public void addRunListener(RunListener listener)
+	{
+		runListeners.add(listener);
+	}
+	
+	/**
+	 * Writes run status messages and collects the failed runs
+	 * for the notification email.
+	 */
+	private class StatusReporter implements RunListener
+	{
+		List<CaseRun> drmaaErrorList = new ArrayList<CaseRun>();
+		List<CaseRun> gsErrorList = new ArrayList<CaseRun>();
+		List<CaseRun> execErrorList = new ArrayList<CaseRun>();
+		
+		// Runs retried at least once, counted when they are finally
+		// reported so that runs retried before a resume are included,
+		// and how many of them then completed
+		int retriedRunCount = 0;
+		int retriedCompletedCount = 0;
+		
+		public void runCompleted(CaseRun run)
+		{
+			msgOut.println("Completed " + run.getRunString()
+				+ " (" + backend.getName() + " job ID " + run.jobId + ")");
+			if(run.failedAttempts != null)
+			{
+				retriedRunCount++;
+				retriedCompletedCount++;
+			}
+		}
+		
+		public void runFailed(CaseRun run, Failure failure)
+		{
+			msgOut.println("Completed " + run.getRunString()
+				+ " (" + backend.getName() + " job ID " + run.jobId + ")");
+			if(run.failedAttempts != null) retriedRunCount++;
+			
+			switch(failure)
+			{
+				case DRMAA:
+					drmaaErrorList.add(run);
+					msgOut.println("  (Warning: " + backend.getName() + " reports that the job did not " +
+							"complete normally.)");
+					break;
+				case GRIDSWEEPER:
+					gsErrorList.add(run);
+					if(run.resultsException != null)
+					{
+						msgOut.print("  (Warning: an exception occurred loading the" +
+							" run results for this run: ");
+						run.resultsException.printStackTrace(msgOut);
+						msgOut.println("  .)");
+					}
+					else
+					{
+						msgOut.println("  (Warning: a GridSweeper exception occurred" +
+							" while performing this run.)"); 
+					}
+					break;
+				case EXECUTION:
+					execErrorList.add(run);
+					msgOut.println("  (Warning: this run exited with an" +
+							" error code.)");
+					break;
+			}
+		}
+		
+		public void runRetried(CaseRun run, String failure, long delay)
+		{
+			msgOut.println("Retrying " + run.getRunString() + " in " + (delay / 1000)
+				+ " seconds (" + backend.getName() + " job ID " + run.jobId + "): " + failure);
+		}
+		
+		public void progress(int runsComplete, int runCount)
+		{
+			msgOut.format("%d of %d complete (%.1f%%).\n",
+					runsComplete, runCount, (double)runsComplete/runCount * 100);
+		}
+	}
+	
 	public void setRunType(RunType runType)
 	{
 		this.runType = runType;
 	}
 	
+	/**
+	 * Restricts submission to a range of cases, identified by their
+	 * positions in the experiment's sequence of cases.
+	 * @param firstCase The index of the first case to submit.
+	 * @param lastCase The index of the last case to submit, or -1 for
+	 * all cases from {@code firstCase} onward.
+	 */
+	public void setCaseRange(long firstCase, long lastCase)
+	{
+		this.firstCase = firstCase;
+		this.lastCase = lastCase;
+	}
+	
+	/**
+	 * Runs jobs on the local machine instead of submitting them to the grid.
+	 * @param localParallelism The number of jobs to run at a time.
+	 */
+	public void setLocalParallelism(int localParallelism)
+	{
+		this.localParallelism = localParallelism;
+	}
+	
 	public void setExperiment(Experiment experiment)
 	{
 		this.experiment = experiment;
@@ -24,6 +24,8 @@ package edu.umich.lsa.cscs.gridsweeper;
 import static edu.umich.lsa.cscs.gridsweeper.StringUtils.*;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * The GridSweeperRunner command-line tool to actually run the model
@@ -33,133 +35,542 @@ import java.io.*;
  */
 public class GridSweeperRunner
 {
+	/**
+	 * Environment variables used by common resource managers to identify
+	 * the task index of a bulk (array) job, in the order they are checked.
+	 */
+	private static final String[] taskIdVariables = {
+		LocalBackend.TASK_ID_VARIABLE, // GridSweeper, running locally
+		"SGE_TASK_ID",         // Sun Grid Engine
+		"PBS_ARRAYID",         // Torque
+		"PBS_ARRAY_INDEX",     // PBS Pro
+		"LSB_JOBINDEX",        // LSF
+		"SLURM_ARRAY_TASK_ID"  // SLURM
+	};
+	
+	/**
+	 * Environment variables used by common resource managers to report
+	 * the number of slots (processors) allocated to a job, in the order
+	 * they are checked.
+	 */
+	private static final String[] slotCountVariables = {
+		"NSLOTS",              // Sun Grid Engine
+		"PBS_NUM_PPN",         // Torque
+		"LSB_DJOB_NUMPROC",    // LSF
+		"SLURM_CPUS_PER_TASK"  // SLURM
+	};
+	
+	/**
+	 * The maximum number of reusable adapters a worker keeps ready for use,
+	 * one for each distinct set of settings it has seen recently.
+	 */
+	private static final int WORKER_ADAPTER_COUNT = 16;
+	
 	/**
 	 * Runs the model. First, reads the {@link RunSetup} object from standard input,
-	 * and extracts settings for the run. If file transfer is on, input files
-	 * are then downloaded from the file transfer system. Then an adapter object
-	 * is created as specified in the run setup and used to actually run the model.
-	 * Finally, if necessary, files are staged back to the file transfer system
-	 * to be retrieved at the submission host. 
+	 * in the format described in {@link RunCodec}.
+	 * Standard input may instead contain a list of setups, for a batch of runs
+	 * performed one after another, or a list of such batches, for a bulk job;
+	 * in the latter case the batch is chosen using the task index provided by the
+	 * resource manager. The runs are then performed on a pool of threads, sized
+	 * as described in {@link #getThreadCount}, and one {@link RunResults} object
+	 * per run is written to standard output as each run completes.
+	 * 
+	 * <p>With the argument {@code --worker}, the runner instead becomes a
+	 * persistent worker that performs one job after another, as described in
+	 * {@link #runWorker}.</p>
+	 * @see #performRun
 	 */
 	public static void main(String[] args)
 	{
 		System.err.println("GridSweeperRunner main() starting...");
 		
-		RunResults results;
+		if(args.length > 0 && args[0].equals("--worker"))
+		{
+			// Standard output carries job status; anything else printed
+			// there would corrupt it, so send it to standard error instead
+			PrintStream statusOut = System.out;
+			System.setOut(System.err);
+			try
+			{
+				runWorker(System.in, statusOut, createClassLoader());
+			}
+			catch(Exception e)
+			{
+				e.printStackTrace();
+			}
+			return;
+		}
+		
+		// Set up stream to write RunResults objects
+		RunResultsWriter stdoutStream;
 		try
 		{
-			// Load RunSetup object
-			ObjectInputStream stdinStream = new ObjectInputStream(System.in);
-			RunSetup setup = (RunSetup)stdinStream.readObject();
-			
-			System.err.println("RunSetup object:");
-			System.err.println(setup.toString());
+			stdoutStream = new RunResultsWriter(System.out);
+		}
+		catch(Exception e)
+		{
+			e.printStackTrace();
+			return;
+		}
+		
+		try
+		{
+			List<?> setups;
+			ClassLoader classLoader;
+			try
+			{
+				// Load RunSetup object(s)
+				setups = getSetups(RunCodec.readSetups(System.in));
+				classLoader = createClassLoader();
+			}
+			catch(Exception e)
+			{
+				e.printStackTrace();
+				stdoutStream.writeResults(new RunResults(e));
+				return;
+			}
 			
-			// Get GridSweeper settings
-			Settings settings = setup.getSettings();
+			// Runs in a job share settings, so one reusable adapter serves them all
+			AdapterPool adapterPool = new AdapterPool(classLoader, 1);
+			try
+			{
+				performRuns(setups, adapterPool, null, stdoutStream);
+			}
+			finally
+			{
+				adapterPool.close();
+			}
+		}
+		catch(Exception e)
+		{
+			e.printStackTrace();
+		}
+		finally
+		{
+			try
+			{
+				stdoutStream.close();
+			}
+			catch(Exception e) {}
+		}
+	}
+	
+	/**
+	 * Creates the class loader used to load adapter classes, which
+	 * searches the plugins directory.
+	 * @return The class loader.
+	 */
+	private static ClassLoader createClassLoader()
+	{
+		StringList dirs = new StringList();
+		String root = System.getenv("GRIDSWEEPER_ROOT");
+		if(root != null) dirs.add(appendPathComponent(root, "plugins"));
+		return LoaderFactory.create(dirs);
+	}
+	
+	/**
+	 * Performs a list of runs on a pool of threads, writing the results
+	 * of each run as soon as it finishes.
+	 * @param setups The setups for the runs.
+	 * @param adapterPool The pool to get adapters from.
+	 * @param directory The directory the job runs in, or {@code null} for the
+	 * current directory.
+	 * @param resultsStream The stream to write results to.
+	 * @throws Exception If the results cannot be written, or if interrupted.
+	 */
+	static void performRuns(List<?> setups, final AdapterPool adapterPool, final File directory,
+		RunResultsWriter resultsStream) throws Exception
+	{
+		int threadCount;
+		try
+		{
+			threadCount = Math.min(setups.size(),
+				getThreadCount(((RunSetup)setups.get(0)).getSettings()));
+		}
+		catch(GridSweeperException e)
+		{
+			e.printStackTrace();
+			resultsStream.writeResults(new RunResults(e));
+			return;
+		}
+		
+		System.err.println("Performing " + setups.size() + " runs using "
+			+ threadCount + " threads.");
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		CompletionService<RunResults> completionService =
+			new ExecutorCompletionService<RunResults>(executor);
+		try
+		{
+			for(Object setupObj : setups)
+			{
+				final RunSetup setup = (RunSetup)setupObj;
+				completionService.submit(new Callable<RunResults>()
+				{
+					public RunResults call()
+					{
+						RunResults results;
+						try
+						{
+							results = performRun(setup, adapterPool, directory);
+						}
+						catch(Exception e)
+						{
+							e.printStackTrace();
+							results = new RunResults(e); 
+						}
+						results.setRunNumber(setup.getRunNumber());
+						return results;
+					}
+				});
+			}
 			
-			/*
-			// Download input files
-			boolean useFileTransfer = settings.getBooleanProperty("UseFileTransfer", false);
-			FileTransferSystem fts = null;
-			if(useFileTransfer)
-			{
-				String className = settings.getProperty("FileTransferSystemClassName", "edu.umich.lsa.cscs.gridsweeper.FTPFileTransferSystem");
-				fts = FileTransferSystemFactory.getFactory().getFileTransferSystem(className, settings);
-				fts.connect();
-				
-				StringMap inputFiles = setup.getInputFiles();
-				
-				for(String key : inputFiles.keySet())
+			// Write results as soon as each run finishes
+			for(int i = 0; i < setups.size(); i++)
+			{
+				RunResults results = completionService.take().get();
+				resultsStream.writeResults(results);
+				resultsStream.flush();
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Runs as a persistent worker, performing one job after another without
+	 * starting a new JVM for each. Each job is a {@link WorkerRequest}; the
+	 * worker performs the runs in the job's setup file exactly as
+	 * {@link #main} would for a single job, writing the results and error output
+	 * to the files named in the request, and then reports completion by writing
+	 * the job's status as an {@code int}: 0 normally, as for a runner that exits
+	 * normally, even if the setup file could not be read; and 1 if the results
+	 * or error output could not be written.
+	 * The class loader, and reusable adapters (see {@link ReusableAdapter})
+	 * for each distinct set of settings, are kept from job to job. The worker exits at the end of its input.
+	 * @param in The stream to read requests from.
+	 * @param out The stream to report completion on.
+	 * @param classLoader The class loader used to load adapter classes.
+	 * @throws IOException If reading requests or reporting completion fails.
+	 */
+	static void runWorker(InputStream in, OutputStream out, ClassLoader classLoader)
+		throws IOException
+	{
+		DataInputStream requestStream = new DataInputStream(new BufferedInputStream(in));
+		DataOutputStream statusStream = new DataOutputStream(new BufferedOutputStream(out));
+		
+		// Jobs are performed one at a time, so an adapter is never evicted
+		// from the pool while in use
+		AdapterPool adapterPool = new AdapterPool(classLoader, WORKER_ADAPTER_COUNT);
+		
+		PrintStream workerErr = System.err;
+		WorkerRequest request;
+		while((request = WorkerRequest.read(requestStream)) != null)
+		{
+			int status = 0;
+			PrintStream jobErr = new PrintStream(new FileOutputStream(request.stderrPath), true);
+			System.setErr(jobErr);
+			try
+			{
+				RunResultsWriter resultsStream =
+					new RunResultsWriter(new FileOutputStream(request.stdoutPath));
+				try
 				{
-					String path = inputFiles.get(key);
-					String fileTransferSubpath = appendPathComponent(setup.getFileTransferSubpath(), "input");
+					List<?> setups;
+					try
+					{
+						InputStream setupStream = new FileInputStream(request.stdinPath);
+						try
+						{
+							Object setupObj = RunCodec.readSetups(setupStream);
+							setups = (request.taskId > 0) ?
+								getSetupsForTask((List<?>)setupObj, request.taskId)
+								: getSetups(setupObj);
+						}
+						finally
+						{
+							setupStream.close();
+						}
+					}
+					catch(Exception e)
+					{
+						e.printStackTrace();
+						resultsStream.writeResults(new RunResults(e));
+						setups = null;
+					}
 					
-					String remotePath = appendPathComponent(fileTransferSubpath, path);
-					String localPath = path;
-					
-					fts.downloadFile(remotePath, localPath);
+					if(setups != null)
+					{
+						performRuns(setups, adapterPool, new File(request.caseDir),
+							resultsStream);
+					}
+				}
+				finally
+				{
+					resultsStream.close();
 				}
-				
-				fts.disconnect();
 			}
-			*/
-
-			
-			String adapterClassName = settings.getProperty("Adapter", "edu.umich.lsa.cscs.gridsweeper.DroneAdapter");
-			
-			StringList dirs = new StringList();
-			dirs.add(appendPathComponent(System.getenv("GRIDSWEEPER_ROOT"), "plugins"));
-			ClassLoader classLoader = LoaderFactory.create(dirs);
+			catch(Exception e)
+			{
+				e.printStackTrace();
+				status = 1;
+			}
+			finally
+			{
+				System.setErr(workerErr);
+				jobErr.close();
+			}
 			
-			Adapter adapter = AdapterFactory.createAdapter(adapterClassName, classLoader, settings);
-			System.err.println("Adapter loaded.");
+			statusStream.writeInt(status);
+			statusStream.flush();
+		}
+		
+		adapterPool.close();
+	}
+	
+	/**
+	 * Performs a single run. First, extracts settings for the run.
+	 * If file transfer is on, input files
+	 * are then downloaded from the file transfer system. Then an adapter object
+	 * is obtained as specified in the run setup and used to actually run the model.
+	 * Finally, if necessary, files are staged back to the file transfer system
+	 * to be retrieved at the submission host. 
+	 * @param setup The setup for the run.
+	 * @param adapterPool The pool to get the adapter from.
+	 * @param directory The directory the job runs in, or {@code null} for the
+	 * current directory. This is the case directory, unless a case manifest is
+	 * used, in which case it is the experiment directory.
+	 * @return The results of the run.
+	 * @throws Exception If the adapter cannot be created, or the run fails.
+	 */
+	private static RunResults performRun(RunSetup setup, AdapterPool adapterPool,
+		File directory) throws Exception
+	{
+		System.err.println("RunSetup object:");
+		System.err.println(setup.toString());
+		
+		// Get GridSweeper settings
+		Settings settings = setup.getSettings();
+		
+		/*
+		// Download input files
+		boolean useFileTransfer = settings.getBooleanProperty("UseFileTransfer", false);
+		FileTransferSystem fts = null;
+		if(useFileTransfer)
+		{
+			String className = settings.getProperty("FileTransferSystemClassName", "edu.umich.lsa.cscs.gridsweeper.FTPFileTransferSystem");
+			fts = FileTransferSystemFactory.getFactory().getFileTransferSystem(className, settings);
+			fts.connect();
 			
-			// Run!
-			ParameterMap parameters = setup.getParameters();
-			int runNumber = setup.getRunNumber();
-			int numRuns = setup.getNumRuns();
-			int rngSeed = setup.getRngSeed();
-			results = adapter.run(parameters, runNumber, numRuns, rngSeed);
+			StringMap inputFiles = setup.getInputFiles();
 			
-			/*
-			// Stage files listed in run properties back to server (if asked for)
-			if(useFileTransfer)
+			for(String key : inputFiles.keySet())
 			{
-				fts.connect();
+				String path = inputFiles.get(key);
+				String fileTransferSubpath = appendPathComponent(setup.getFileTransferSubpath(), "input");
 				
-				StringList outputFiles = setup.getOutputFiles();
+				String remotePath = appendPathComponent(fileTransferSubpath, path);
+				String localPath = path;
 				
-				for(String outputFile : outputFiles)
-				{
-					String fileTransferSubpath = setup.getFileTransferSubpath();
-					String remotePath = appendPathComponent(fileTransferSubpath, outputFile);
-					
-					fts.uploadFile(outputFile, remotePath);
-				}
-				
-				fts.disconnect();
+				fts.downloadFile(remotePath, localPath);
 			}
-			*/
 			
-			// If file transfer is off, write standard output and standard error
-			// to local files.
-			// If file transfer is on, this will happen at the client end of things
-			/*if(!useFileTransfer)
-			{*/
-				String rnStr = formatPaddedInt(runNumber, numRuns - 1);
-				
-				String stdoutFilename = "stdout." + rnStr;
-				byte[] stdoutData = results.getStdoutData();
-				if(stdoutData != null && stdoutData.length > 0)
-					writeData(stdoutFilename, stdoutData);
-				
-				String stderrFilename = "stderr." + rnStr;
-				byte[] stderrData = results.getStderrData();
-				if(stderrData != null && stderrData.length > 0)
-					writeData(stderrFilename, stderrData);
-			//}
+			fts.disconnect();
 		}
-		catch(Exception e)
+		*/
+		
+		
+		// With a case manifest, case directories are only created here, on
+		// the execution host, relative to the experiment directory
+		if(CaseManifest.isUsed(settings) && !setup.getFileTransferSubpath().equals(""))
 		{
-			e.printStackTrace();
-			results = new RunResults(e); 
+			directory = new File(directory, setup.getFileTransferSubpath());
+			directory.mkdirs();
 		}
 		
-		// Write results to stdout
-		// Set up ObjectOutputStream to write RunResults object
+		Adapter adapter = adapterPool.get(settings);
+		System.err.println("Adapter loaded.");
+		
+		// Run!
+		ParameterMap parameters = setup.getParameters();
+		int runNumber = setup.getRunNumber();
+		int numRuns = setup.getNumRuns();
+		int rngSeed = setup.getRngSeed();
+		RunResults results;
 		try
 		{
-			ObjectOutputStream stdoutStream = new ObjectOutputStream(System.out);
-			stdoutStream.writeObject(results);
-			stdoutStream.close();
+			if(directory != null && adapter instanceof DirectoryAdapter)
+			{
+				results = ((DirectoryAdapter)adapter).run(parameters, runNumber,
+					numRuns, rngSeed, directory);
+			}
+			else
+			{
+				results = adapter.run(parameters, runNumber, numRuns, rngSeed);
+			}
+		}
+		finally
+		{
+			adapterPool.release(adapter);
+		}
+		
+		/*
+		// Stage files listed in run properties back to server (if asked for)
+		if(useFileTransfer)
+		{
+			fts.connect();
+			
+			StringList outputFiles = setup.getOutputFiles();
+			
+			for(String outputFile : outputFiles)
+			{
+				String fileTransferSubpath = setup.getFileTransferSubpath();
+				String remotePath = appendPathComponent(fileTransferSubpath, outputFile);
+				
+				fts.uploadFile(outputFile, remotePath);
+			}
+			
+			fts.disconnect();
+		}
+		*/
+		
+		// If file transfer is off, write standard output and standard error
+		// to local files, unless the adapter has already written them
+		// or they are to be packed into a result store along with the results.
+		// If file transfer is on, this will happen at the client end of things
+		/*if(!useFileTransfer)
+		{*/
+		if(!ResultStore.isUsed(settings))
+		{
+			String rnStr = formatPaddedInt(runNumber, numRuns - 1);
+			
+			String stdoutFilename = "stdout." + rnStr;
+			byte[] stdoutData = results.getStdoutData();
+			if(stdoutData != null && stdoutData.length > 0)
+				writeData(new File(directory, stdoutFilename), stdoutData);
+			
+			String stderrFilename = "stderr." + rnStr;
+			byte[] stderrData = results.getStderrData();
+			if(stderrData != null && stderrData.length > 0)
+				writeData(new File(directory, stderrFilename), stderrData);
 		}
-		catch(Exception e) {}
+		//}
+		
+		return results;
 	}
 
-	private static void writeData(String filename, byte[] data) throws IOException
+	/**
+	 * Determines how many runs to perform concurrently. This is given by the
+	 * {@code RunnerThreads} setting if present; otherwise, by the number of
+	 * slots the resource manager reports having allocated to the job;
+	 * and otherwise it is 1.
+	 * @param settings The settings for the runs.
+	 * @return The number of threads to use.
+	 * @throws GridSweeperException If the {@code RunnerThreads} setting is invalid.
+	 */
+	static int getThreadCount(Settings settings) throws GridSweeperException
+	{
+		if(settings.getProperty("RunnerThreads") != null)
+			return settings.getIntProperty("RunnerThreads", 1, 1);
+		
+		for(String variable : slotCountVariables)
+		{
+			String value = System.getenv(variable);
+			if(value == null) continue;
+			
+			try
+			{
+				int slots = Integer.parseInt(value.trim());
+				if(slots > 0) return slots;
+			}
+			catch(NumberFormatException e) {}
+		}
+		
+		return 1;
+	}
+	
+	/**
+	 * Extracts the setups for the runs to perform from the object read from
+	 * standard input. This is either a single {@link RunSetup}, a list of setups
+	 * for a batch of runs, or, for a bulk job, a list containing one
+	 * such batch per task.
+	 * @param setupObj The object read from standard input.
+	 * @return The setups for the runs to perform, in order.
+	 * @throws GridSweeperException If this is a bulk job and the task index
+	 * cannot be determined or is out of range.
+	 */
+	static List<?> getSetups(Object setupObj) throws GridSweeperException
+	{
+		if(setupObj instanceof RunSetup)
+			return Collections.singletonList(setupObj);
+		
+		List<?> list = (List<?>)setupObj;
+		if(list.size() > 0 && list.get(0) instanceof List)
+			return getSetupsForTask(list);
+		return list;
+	}
+	
+	/**
+	 * Picks the batch of setups for this task out of the setups for a bulk job.
+	 * Task indexes start at 1, so task <em>n</em> uses batch <em>n</em> - 1.
+	 * @param setups The batches of setups for all tasks in the bulk job.
+	 * @return The setups for this task.
+	 * @throws GridSweeperException If the task index cannot be determined or
+	 * is out of range.
+	 */
+	static List<?> getSetupsForTask(List<?> setups) throws GridSweeperException
+	{
+		return getSetupsForTask(setups, getTaskId());
+	}
+	
+	/**
+	 * Picks the batch of setups for a given task out of the setups for a bulk job.
+	 * @param setups The batches of setups for all tasks in the bulk job.
+	 * @param taskId The task index, starting at 1.
+	 * @return The setups for the task.
+	 * @throws GridSweeperException If the task index is out of range.
+	 */
+	static List<?> getSetupsForTask(List<?> setups, int taskId) throws GridSweeperException
+	{
+		if(taskId < 1 || taskId > setups.size())
+		{
+			throw new GridSweeperException("Task index " + taskId
+				+ " is out of range for a bulk job with " + setups.size() + " tasks.");
+		}
+		return (List<?>)setups.get(taskId - 1);
+	}
+	
+	/**
+	 * Determines the task index of this bulk job task from the environment.
+	 * @return The task index.
+	 * @throws GridSweeperException If no task index is available.
+	 */
+	static int getTaskId() throws GridSweeperException
+	{
+		for(String variable : taskIdVariables)
+		{
+			String value = System.getenv(variable);
+			if(value == null) continue;
+			
+			try
+			{
+				return Integer.parseInt(value.trim());
+			}
+			catch(NumberFormatException e)
+			{
+				// SGE sets SGE_TASK_ID to "undefined" for non-array jobs
+			}
+		}
+		
+		throw new GridSweeperException("Could not determine the task index "
+			+ "for this bulk job from the environment.");
+	}
+	
+	private static void writeData(File file, byte[] data) throws IOException
 	{
-		OutputStream os = new BufferedOutputStream(new FileOutputStream(filename));
+		OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
 		os.write(data);
 		os.close();
 	}
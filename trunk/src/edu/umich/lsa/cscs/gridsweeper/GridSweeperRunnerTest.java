@@ -0,0 +1,157 @@
+/*
+	GridSweeperRunnerTest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class GridSweeperRunnerTest
+{
+	private RunSetup createSetup(int runNumber)
+	{
+		return new RunSetup(new Settings(), new StringMap(), "", new ParameterMap(),
+			4, runNumber, runNumber + 100, new StringList());
+	}
+	
+	@Test
+	public void singleSetup() throws Exception
+	{
+		RunSetup setup = createSetup(0);
+		List<?> setups = GridSweeperRunner.getSetups(setup);
+		
+		assertEquals(1, setups.size());
+		assertSame(setup, setups.get(0));
+	}
+	
+	@Test
+	public void batchSetups() throws Exception
+	{
+		List<RunSetup> batch = new ArrayList<RunSetup>();
+		for(int i = 0; i < 3; i++)
+		{
+			batch.add(createSetup(i));
+		}
+		List<?> setups = GridSweeperRunner.getSetups(batch);
+		
+		assertEquals(3, setups.size());
+		for(int i = 0; i < 3; i++)
+		{
+			assertEquals(i, ((RunSetup)setups.get(i)).getRunNumber());
+		}
+	}
+	
+	@Test
+	public void threadCountSetting() throws Exception
+	{
+		Settings settings = new Settings();
+		settings.setProperty("RunnerThreads", "8");
+		assertEquals(8, GridSweeperRunner.getThreadCount(settings));
+	}
+	
+	@Test
+	public void invalidThreadCountSetting()
+	{
+		Settings settings = new Settings();
+		settings.setProperty("RunnerThreads", "0");
+		
+		try
+		{
+			GridSweeperRunner.getThreadCount(settings);
+			fail();
+		}
+		catch(GridSweeperException e) {}
+	}
+	
+	@Test
+	public void worker() throws Exception
+	{
+		File dir = TestFiles.createTempDir("GridSweeperRunnerTest");
+		
+		Settings settings = new Settings();
+		settings.setProperty("model", "/bin/echo");
+		settings.setProperty("miscOptions", "-n");
+		settings.setProperty("useInputFile", "false");
+		List<RunSetup> batch = new ArrayList<RunSetup>();
+		for(int i = 0; i < 2; i++)
+		{
+			batch.add(new RunSetup(settings, new StringMap(), "", new ParameterMap(),
+				2, i, i + 100, new StringList()));
+		}
+		File setupFile = new File(dir, ".gsweep_in.0");
+		OutputStream setupStream = new FileOutputStream(setupFile);
+		RunCodec.writeSetups(setupStream, batch);
+		setupStream.close();
+		
+		// Two jobs, the second with a missing setup file
+		ByteArrayOutputStream requests = new ByteArrayOutputStream();
+		DataOutputStream requestStream = new DataOutputStream(requests);
+		new WorkerRequest(dir.getPath(), setupFile.getPath(),
+			new File(dir, "out.0").getPath(), new File(dir, "err.0").getPath(), 0)
+			.write(requestStream);
+		new WorkerRequest(dir.getPath(), new File(dir, "missing").getPath(),
+			new File(dir, "out.1").getPath(), new File(dir, "err.1").getPath(), 0)
+			.write(requestStream);
+		requestStream.close();
+		
+		PrintStream err = System.err;
+		ByteArrayOutputStream status = new ByteArrayOutputStream();
+		GridSweeperRunner.runWorker(new ByteArrayInputStream(requests.toByteArray()),
+			status, getClass().getClassLoader());
+		assertSame(err, System.err);
+		
+		DataInputStream statusStream = new DataInputStream(
+			new ByteArrayInputStream(status.toByteArray()));
+		assertEquals(0, statusStream.readInt());
+		assertEquals(0, statusStream.readInt());
+		assertEquals(-1, statusStream.read());
+		
+		RunResultsReader reader = new RunResultsReader(
+			new FileInputStream(new File(dir, "out.0")));
+		Set<Integer> runNumbers = new HashSet<Integer>();
+		for(int i = 0; i < 2; i++)
+		{
+			RunResults results = reader.readResults();
+			assertNull(results.getException());
+			runNumbers.add(results.getRunNumber());
+		}
+		reader.close();
+		assertEquals(2, runNumbers.size());
+		assertEquals("-N1 -S101", readLine(new File(dir, "stdout.1")));
+		
+		reader = new RunResultsReader(new FileInputStream(new File(dir, "out.1")));
+		assertNotNull(reader.readResults().getException());
+		reader.close();
+		
+		TestFiles.delete(dir);
+	}
+	
+	private String readLine(File file) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		String line = reader.readLine();
+		reader.close();
+		return line;
+	}
+}
@@ -58,7 +58,9 @@ public class GridSweeperTool
 		EMAIL,
 		ABBREV,
 		SETTING,
-		RESULTS
+		RESULTS,
+		CASES,
+		RESUME
 	}
 	
 	static String className;
@@ -76,18 +78,35 @@ public class GridSweeperTool
 		
 		// Matches signed decimal number
 		numMatcher = Pattern.compile("\\A(-?\\d*\\.?\\d*)\\z").matcher("");
-		
+	
 	}
 	
 	GridSweeper gs;
 	
 	String experimentPath;
 	String outputPath;
+	String resumeDir;
 	Experiment experiment;
 
 
 	public static void main(String[] args)
 	{
+		if(args.length > 0 && args[0].equals("aggregate"))
+		{
+			StringList aggregateArgs = preParseArgs(args);
+			aggregateArgs.remove(0);
+			try
+			{
+				new GridSweeperTool().aggregate(aggregateArgs);
+			}
+			catch(GridSweeperException e)
+			{
+				System.err.println(e.getMessage());
+				System.exit(1);
+			}
+			return;
+		}
+		
 		try
 		{
 			GridSweeperTool tool = new GridSweeperTool();
@@ -150,12 +169,20 @@ public class GridSweeperTool
 			
 			loadExperiment(args);
 			
-			validateAdapter();
-			
-			gs.setExperiment(experiment);
-			
-			// Set up and submit experiment
-			gs.submitExperiment();
+			if(resumeDir == null)
+			{
+				validateAdapter();
+				
+				gs.setExperiment(experiment);
+				
+				// Set up and submit experiment
+				gs.submitExperiment();
+			}
+			else
+			{
+				// Pick up monitoring where a dead process left off
+				gs.resumeExperiment(resumeDir);
+			}
 			
 			// Detach stdout and stderr so logout is possible
 			if(debug)
@@ -190,12 +217,120 @@ public class GridSweeperTool
 		}
 	}
 
+	/**
+	 * Runs {@code gsweep aggregate}, which writes a table summarizing the
+	 * results of an experiment, as described in {@link ResultAggregator}.
+	 * The arguments are options followed by the experiment directory:
+	 * {@code -o}/{@code --output} <em>file</em> writes the table to a file
+	 * instead of standard output; {@code -t}/{@code --threads} <em>N</em> sets
+	 * the number of threads, by default the number of processors;
+	 * {@code -x}/{@code --extractor} <em>class</em> sets the output extractor
+	 * class, by default {@link KeyValueExtractor}; {@code -c}/{@code --columns}
+	 * <em>name</em>,<em>name</em>... sets the extracted columns; and
+	 * {@code -s}/{@code --setting} <em>key</em>=<em>value</em> passes a
+	 * setting to the extractor.
+	 * @param args Command-line arguments, after {@code aggregate}.
+	 * @throws GridSweeperException If the arguments are invalid, the extractor
+	 * cannot be created, or aggregation fails.
+	 */
+	void aggregate(StringList args) throws GridSweeperException
+	{
+		String expDir = null;
+		String outputPath = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String extractorClassName = KeyValueExtractor.class.getName();
+		StringList columns = null;
+		Settings extractorSettings = new Settings();
+		
+		for(int i = 0; i < args.size(); i++)
+		{
+			String arg = args.get(i);
+			boolean hasValue = (i + 1 < args.size());
+			if(arg.startsWith("-") && !hasValue)
+				throw new GridSweeperException("Missing value for option \"" + arg + "\"");
+			
+			if(arg.equals("-o") || arg.equals("--output"))
+				outputPath = args.get(++i);
+			else if(arg.equals("-t") || arg.equals("--threads"))
+			{
+				String threadsStr = args.get(++i);
+				try
+				{
+					threads = parseInt(threadsStr, 1);
+				}
+				catch(NumberFormatException e)
+				{
+					throw new GridSweeperException("Invalid number of threads: " + threadsStr);
+				}
+			}
+			else if(arg.equals("-x") || arg.equals("--extractor"))
+				extractorClassName = args.get(++i);
+			else if(arg.equals("-c") || arg.equals("--columns"))
+				columns = new StringList(args.get(++i).trim().split("\\s*,\\s*"));
+			else if(arg.equals("-s") || arg.equals("--setting"))
+				parseSetting(extractorSettings, args.get(++i));
+			else if(arg.startsWith("-"))
+				throw new GridSweeperException("Unexpected option: \"" + arg + "\"");
+			else if(expDir == null)
+				expDir = arg;
+			else
+				throw new GridSweeperException("Unexpected argument: \"" + arg + "\"");
+		}
+		if(expDir == null)
+			throw new GridSweeperException("Usage: gsweep aggregate [options] experiment-directory");
+		if(!new File(expDir).isDirectory())
+			throw new GridSweeperException("Experiment directory " + expDir + " does not exist.");
+		
+		// Extractors are loaded like adapters, so they may live in the plugins directory
+		OutputExtractor extractor;
+		try
+		{
+			StringList dirs = new StringList();
+			String root = System.getenv("GRIDSWEEPER_ROOT");
+			if(root != null) dirs.add(appendPathComponent(root, "plugins"));
+			Class<?> extractorClass = Class.forName(extractorClassName, true,
+				LoaderFactory.create(dirs));
+			extractor = (OutputExtractor)extractorClass.getConstructor(Settings.class)
+				.newInstance(extractorSettings);
+		}
+		catch(Exception e)
+		{
+			throw new GridSweeperException("Could not create output extractor "
+				+ extractorClassName + ".", e);
+		}
+		
+		ResultAggregator aggregator = new ResultAggregator(expDir, extractor, threads);
+		if(columns != null) aggregator.setValueColumns(columns);
+		
+		try
+		{
+			Writer out;
+			if(outputPath == null)
+				out = new OutputStreamWriter(System.out, "UTF-8");
+			else
+				out = new OutputStreamWriter(new FileOutputStream(outputPath), "UTF-8");
+			try
+			{
+				aggregator.aggregate(out);
+			}
+			finally
+			{
+				out.close();
+			}
+		}
+		catch(IOException e)
+		{
+			throw new GridSweeperException("Could not write results table.", e);
+		}
+	}
+	
 	private void loadExperiment(StringList args) throws GridSweeperException
 	{
 		Settings cliSettings = new Settings();
 		List<Sweep> cliSweeps = new ArrayList<Sweep>();
 		StringMap cliAbbrevs = new StringMap();
 		parseArgs(args, cliSettings, cliSweeps, cliAbbrevs);
+		if(resumeDir != null) return;
 		
 		// Load experiment file
 		loadExperimentFile();
@@ -372,6 +507,18 @@ public class GridSweeperTool
 					{
 						state = ArgState.ABBREV;
 					}
+					else if(arg.equals("-c") || arg.equals("--cases"))
+					{
+						state = ArgState.CASES;
+					}
+					else if(arg.equals("-R") || arg.equals("--resume"))
+					{
+						state = ArgState.RESUME;
+					}
+					else if(arg.equals("--local") || arg.startsWith("--local="))
+					{
+						parseLocal(arg);
+					}
 					else if(arg.equals("-d") || arg.equals("--dry"))
 					{
 						gs.setRunType(RunType.DRY);
@@ -439,10 +586,47 @@ public class GridSweeperTool
 					parseAbbrev(cliAbbrevs, arg);
 					state = ArgState.START;
 					break;
+				case CASES:
+					parseCaseRange(arg);
+					state = ArgState.START;
+					break;
+				case RESUME:
+					resumeDir = arg;
+					state = ArgState.START;
+					break;
 			}
 		}
 	}
 	
+	/**
+	 * Parses the {@code --local} option, which runs jobs on the local machine
+	 * instead of the grid. By default, as many jobs are run at a time as
+	 * there are processors; {@code --local=}<em>N</em> runs <em>N</em> at a time.
+	 * @param arg The argument.
+	 * @throws GridSweeperException If the number of jobs is invalid.
+	 */
+	void parseLocal(String arg) throws GridSweeperException
+	{
+		int parallelism;
+		if(arg.equals("--local"))
+		{
+			parallelism = Runtime.getRuntime().availableProcessors();
+		}
+		else
+		{
+			String countStr = arg.substring("--local=".length());
+			try
+			{
+				parallelism = parseInt(countStr, 1);
+			}
+			catch(NumberFormatException e)
+			{
+				throw new GridSweeperException("Invalid number of local jobs: " + countStr);
+			}
+		}
+		gs.setLocalParallelism(parallelism);
+	}
+	
 	/**
 	 * <p>Attempts to parse a non-switch command line argument
 	 * as a parameter sweep specification. See the manpage for supported
@@ -837,6 +1021,35 @@ public class GridSweeperTool
 		cliSettings.setProperty(lhs, rhs);
 	}
 	
+	/**
+	 * Parses a case range of the form <em>first</em>:<em>last</em>,
+	 * <em>first</em>: (all cases from <em>first</em> on), or a single case index.
+	 * @param arg The range argument.
+	 * @throws GridSweeperException If the range cannot be parsed.
+	 */
+	void parseCaseRange(String arg) throws GridSweeperException
+	{
+		String[] pieces = arg.trim().split("\\s*:\\s*", -1);
+		try
+		{
+			long first = Long.parseLong(pieces[0]);
+			long last;
+			if(pieces.length == 1) last = first;
+			else if(pieces.length == 2 && pieces[1].equals("")) last = -1;
+			else if(pieces.length == 2) last = Long.parseLong(pieces[1]);
+			else throw new NumberFormatException();
+			
+			if(first < 0 || (last != -1 && last < first))
+				throw new NumberFormatException();
+			
+			gs.setCaseRange(first, last);
+		}
+		catch(NumberFormatException e)
+		{
+			throw new GridSweeperException("Invalid case range " + arg + ".");
+		}
+	}
+	
 	private void parseAbbrev(StringMap cliAbbrevs, String arg) throws GridSweeperException
 	{
 		equalMatcher.reset(arg);
@@ -185,4 +185,49 @@ public class GridSweeperToolTest
 		assertEquals("0.5", values1.get(2));
 		assertEquals("0.6", values1.get(3));
 	}
+	
+	@Test
+	public void parseCaseRange() throws GridSweeperException
+	{
+		GridSweeperTool tool = new GridSweeperTool();
+		
+		tool.parseCaseRange("3:7");
+		assertEquals(3, tool.gs.firstCase);
+		assertEquals(7, tool.gs.lastCase);
+		
+		tool.parseCaseRange("5");
+		assertEquals(5, tool.gs.firstCase);
+		assertEquals(5, tool.gs.lastCase);
+		
+		tool.parseCaseRange("2:");
+		assertEquals(2, tool.gs.firstCase);
+		assertEquals(-1, tool.gs.lastCase);
+		
+		try
+		{
+			tool.parseCaseRange("7:3");
+			fail();
+		}
+		catch(GridSweeperException e) {}
+	}
+	
+	@Test
+	public void parseLocal() throws GridSweeperException
+	{
+		GridSweeperTool tool = new GridSweeperTool();
+		assertEquals(0, tool.gs.localParallelism);
+		
+		tool.parseLocal("--local=6");
+		assertEquals(6, tool.gs.localParallelism);
+		
+		tool.parseLocal("--local");
+		assertEquals(Runtime.getRuntime().availableProcessors(), tool.gs.localParallelism);
+		
+		try
+		{
+			tool.parseLocal("--local=0");
+			fail();
+		}
+		catch(GridSweeperException e) {}
+	}
 }
@@ -0,0 +1,813 @@
+/*
+	JobMonitor.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static edu.umich.lsa.cscs.gridsweeper.DLogger.*;
+import static edu.umich.lsa.cscs.gridsweeper.StringUtils.*;
+
+/**
+ * Waits for submitted jobs to complete and handles their results. A monitor
+ * thread does nothing but wait on the execution backend for completed jobs,
+ * handing each one to a pool of worker threads through a bounded queue.
+ * The workers load and check the results of each run in the job and
+ * report them to the registered {@link RunListener}s.
+ * 
+ * <p>When monitoring is resumed by a new process, jobs may already have
+ * been reaped by the previous one, so instead of waiting on the session
+ * the monitor thread polls the status of each outstanding job.</p>
+ * 
+ * <p>Jobs can also be added while the monitor runs, when submission
+ * continues alongside monitoring (see {@link #setOpen}).</p>
+ * 
+ * <p>With a {@link RetryPolicy}, jobs that fail in a way that may not happen
+ * again are submitted again after a delay, on a timer thread, instead of
+ * their runs being reported as failed. The monitor keeps going until every
+ * job has either been reported or been replaced by its retry.</p>
+ * @author Ed Baskerville
+ *
+ */
+class JobMonitor
+{
+	/**
+	 * The number of completed jobs that may wait for a worker before
+	 * the monitor thread stops collecting more.
+	 */
+	private static final int QUEUE_CAPACITY = 1024;
+	
+	/**
+	 * Milliseconds between sweeps over the outstanding jobs when resumed.
+	 */
+	private static final long POLL_INTERVAL = 10000;
+	
+	private ExecutionBackend backend;
+	private Map<String, List<CaseRun>> jobIdToRunsMap;
+	private int workerCount;
+	
+	private List<RunListener> listeners = new ArrayList<RunListener>();
+	
+	// Held while calling the listeners, so that they are called one at a
+	// time without blocking the job bookkeeping guarded by the monitor itself
+	private Object listenerLock = new Object();
+	private Journal journal = null;
+	private ResultStore resultStore = null;
+	private Map<String, Boolean> handledJobs = null;
+	
+	private Thread monitorThread;
+	private ThreadPoolExecutor workers;
+	private Exception waitException = null;
+	
+	private SubmissionWindow window = null;
+	private boolean submitting = false;
+	private int jobCount;
+	
+	private RetryPolicy retryPolicy = null;
+	private ScheduledExecutorService retryTimer = null;
+	
+	// Jobs handed to the workers whose runs have been neither reported nor
+	// submitted again
+	private int activeJobCount = 0;
+	
+	private int runCount;
+	
+	// Guarded by listenerLock
+	private int runsComplete = 0;
+	
+	/**
+	 * Constructor.
+	 * @param backend The execution backend the jobs were submitted to.
+	 * @param jobIdToRunsMap The runs performed by each job, by job ID.
+	 * @param workerCount The number of worker threads to handle results with.
+	 */
+	public JobMonitor(ExecutionBackend backend, Map<String, List<CaseRun>> jobIdToRunsMap, int workerCount)
+	{
+		this.backend = backend;
+		this.jobIdToRunsMap = jobIdToRunsMap;
+		this.workerCount = workerCount;
+		
+		jobCount = jobIdToRunsMap.size();
+		runCount = 0;
+		for(List<CaseRun> runs : jobIdToRunsMap.values())
+		{
+			runCount += runs.size();
+		}
+	}
+	
+	/**
+	 * Registers a listener. Must be called before {@link #start}.
+	 * @param listener The listener.
+	 */
+	public void addListener(RunListener listener)
+	{
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Sets a journal in which to record each job as it is handled.
+	 * Must be called before {@link #start}.
+	 * @param journal The journal, or {@code null} for none.
+	 */
+	public void setJournal(Journal journal)
+	{
+		this.journal = journal;
+	}
+	
+	/**
+	 * Sets a store to pack the results of each run into. Once a job's results
+	 * are in the store, its results file is removed, as are its setup and
+	 * error files if all of its runs completed without errors; and after the
+	 * listeners have been told about each run, its results are only kept in
+	 * the store. Must be called before {@link #start}.
+	 * @param resultStore The store, or {@code null} for none.
+	 */
+	public void setResultStore(ResultStore resultStore)
+	{
+		this.resultStore = resultStore;
+	}
+	
+	/**
+	 * Resumes monitoring started by another process. Jobs that process
+	 * already handled are handled again from their results files, without
+	 * consulting the backend; the remaining jobs are polled for completion.
+	 * Must be called before {@link #start}.
+	 * @param handledJobs The jobs already handled, mapped to whether the backend
+	 * reported that they completed normally.
+	 */
+	public void setResumed(Map<String, Boolean> handledJobs)
+	{
+		this.handledJobs = handledJobs;
+	}
+	
+	/**
+	 * Keeps the monitor open for jobs added with {@link #addJob} until
+	 * {@link #submissionComplete} is called. Jobs are added by another thread,
+	 * which must register each job's runs in the map and add the job
+	 * while holding the map's lock, starting before the job is submitted:
+	 * otherwise the job could end before its runs are known.
+	 * Must be called before {@link #start}, and cannot be combined with
+	 * {@link #setResumed}.
+	 * @param window A submission window to remove each job from as it ends,
+	 * or {@code null} for none.
+	 */
+	public void setOpen(SubmissionWindow window)
+	{
+		this.window = window;
+		submitting = true;
+	}
+	
+	/**
+	 * Sets a policy for retrying failed jobs. Must be called before
+	 * {@link #start}, and cannot be combined with {@link #setResumed}.
+	 * @param retryPolicy The policy, or {@code null} to report all failures.
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy)
+	{
+		this.retryPolicy = retryPolicy;
+	}
+	
+	/**
+	 * Adds a job submitted while the monitor runs.
+	 * @param jobId The job ID, whose runs must already be in the map.
+	 */
+	public synchronized void addJob(String jobId)
+	{
+		jobCount++;
+		runCount += jobIdToRunsMap.get(jobId).size();
+		notifyAll();
+	}
+	
+	/**
+	 * Signals that no more jobs will be added, so that the monitor finishes
+	 * once the jobs already added have been handled.
+	 */
+	public synchronized void submissionComplete()
+	{
+		submitting = false;
+		notifyAll();
+	}
+	
+	/**
+	 * Waits until there is a job to wait for, and counts it off.
+	 * Called on the monitor thread.
+	 * @return {@code false} if every job has been waited for and no more will
+	 * be added, either by submission or by retries of jobs still being handled.
+	 */
+	private synchronized boolean takeJob() throws InterruptedException
+	{
+		while(jobCount == 0 && (submitting || (retryPolicy != null && activeJobCount > 0)))
+		{
+			wait();
+		}
+		if(jobCount == 0) return false;
+		jobCount--;
+		return true;
+	}
+	
+	/**
+	 * Starts the monitor and worker threads.
+	 */
+	public void start()
+	{
+		// When the queue is full, the monitor thread waits for space
+		workers = new ThreadPoolExecutor(workerCount, workerCount,
+			0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY),
+			new RejectedExecutionHandler()
+			{
+				public void rejectedExecution(Runnable task, ThreadPoolExecutor executor)
+				{
+					try
+					{
+						executor.getQueue().put(task);
+					}
+					catch(InterruptedException e)
+					{
+						throw new RejectedExecutionException(e);
+					}
+				}
+			});
+		if(retryPolicy != null)
+			retryTimer = Executors.newSingleThreadScheduledExecutor();
+		
+		monitorThread = new Thread("GridSweeper job monitor")
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					if(handledJobs == null)
+					{
+						while(takeJob())
+						{
+							JobOutcome outcome = backend.waitForJob();
+							fine("got wait for job ID " + outcome.jobId);
+							
+							// Wait for the job's runs to be registered
+							synchronized(jobIdToRunsMap) {}
+							if(window != null) window.remove(outcome.jobId);
+							
+							submitJob(outcome, true);
+						}
+					}
+					else
+					{
+						pollJobs();
+					}
+				}
+				catch(Exception e)
+				{
+					waitException = e;
+					if(window != null) window.close();
+				}
+				finally
+				{
+					workers.shutdown();
+					if(retryTimer != null) retryTimer.shutdownNow();
+				}
+			}
+		};
+		monitorThread.start();
+	}
+	
+	/**
+	 * Hands a completed job to the worker threads.
+	 */
+	private void submitJob(final JobOutcome outcome, final boolean record)
+	{
+		synchronized(this)
+		{
+			activeJobCount++;
+		}
+		workers.execute(new Runnable()
+		{
+			public void run()
+			{
+				boolean retrying = false;
+				try
+				{
+					retrying = handleJob(outcome, record);
+				}
+				finally
+				{
+					if(!retrying) jobSettled(false);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Counts off a job handed to the workers, once its runs have been
+	 * reported or it has been replaced by its retry.
+	 * @param replaced Whether the job has been replaced by its retry,
+	 * which is now waited for instead.
+	 */
+	private synchronized void jobSettled(boolean replaced)
+	{
+		activeJobCount--;
+		if(replaced) jobCount++;
+		notifyAll();
+	}
+	
+	/**
+	 * Polls outstanding jobs for completion, after first handing over the
+	 * jobs that were already handled before monitoring was resumed.
+	 * Called on the monitor thread.
+	 */
+	private void pollJobs() throws GridSweeperException, InterruptedException
+	{
+		Set<String> pendingJobIds = new LinkedHashSet<String>(jobIdToRunsMap.keySet());
+		for(Map.Entry<String, Boolean> entry : handledJobs.entrySet())
+		{
+			if(pendingJobIds.remove(entry.getKey()))
+				submitJob(new JobOutcome(entry.getKey(), entry.getValue()), false);
+		}
+		
+		while(true)
+		{
+			for(Iterator<String> iter = pendingJobIds.iterator(); iter.hasNext();)
+			{
+				JobOutcome outcome = backend.getJobOutcome(iter.next());
+				if(outcome == null) continue;
+				fine("polled completion of job ID " + outcome.jobId);
+				
+				iter.remove();
+				submitJob(outcome, true);
+			}
+			
+			if(pendingJobIds.isEmpty()) break;
+			Thread.sleep(POLL_INTERVAL);
+		}
+	}
+	
+	/**
+	 * Waits until every job has completed and been handled.
+	 * @throws GridSweeperException If waiting for a job failed.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public void waitForCompletion() throws GridSweeperException, InterruptedException
+	{
+		monitorThread.join();
+		workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		
+		if(waitException != null)
+			throw new GridSweeperException("Waiting for job completion failed.", waitException);
+	}
+	
+	/**
+	 * Handles a completed job: checks for errors reported by the backend,
+	 * loads the results for each run, and reports them, unless the job
+	 * is to be retried. Called on a worker thread.
+	 * @param outcome How the job ended, according to the backend.
+	 * @param record Whether to record the job as handled in the journal.
+	 * @return {@code true} if the job will be submitted again.
+	 */
+	private boolean handleJob(JobOutcome outcome, boolean record)
+	{
+		String jobId = outcome.jobId;
+		List<CaseRun> runs = jobIdToRunsMap.get(jobId);
+		if(runs == null)
+		{
+			fine("ignoring unknown job ID " + jobId);
+			return false;
+		}
+		
+		for(CaseRun run : runs)
+		{
+			run.jobOutcome = outcome;
+		}
+		
+		// Load RunResults from disk: the runner writes one
+		// for each run in the job, in order of completion. If the job was
+		// handled before monitoring was resumed, they may be in the result store.
+		if(outcome.isOk())
+		{
+			List<CaseRun> pendingRuns = new LinkedList<CaseRun>(runs);
+			try
+			{
+				if(resultStore != null && isStored(runs))
+					readStoredResults(pendingRuns);
+				else
+					readResults(pendingRuns);
+			}
+			catch(Exception e)
+			{
+				for(CaseRun run : pendingRuns)
+				{
+					run.resultsException = e;
+				}
+			}
+		}
+		
+		if(record && retryPolicy != null && scheduleRetry(outcome, runs))
+			return true;
+		
+		reportJob(outcome, runs, record);
+		return false;
+	}
+	
+	/**
+	 * Reports the runs of a completed job to the listeners, after packing
+	 * their results into the result store if all of them were loaded.
+	 * @param outcome How the job ended, according to the backend.
+	 * @param runs The job's runs, with their results loaded if the job ended normally.
+	 * @param record Whether to record the job as handled in the journal.
+	 */
+	private void reportJob(JobOutcome outcome, List<CaseRun> runs, boolean record)
+	{
+		// Check for errors reported by the backend
+		if(!outcome.isOk())
+		{
+			for(CaseRun run : runs)
+			{
+				fireRunFailed(run, RunListener.Failure.DRMAA);
+			}
+		}
+		else
+		{
+			boolean loaded = true;
+			for(CaseRun run : runs)
+			{
+				if(run.resultsException != null) loaded = false;
+			}
+			
+			boolean stored = false;
+			if(resultStore != null && loaded)
+				stored = storeResults(runs);
+			
+			for(CaseRun run : runs)
+			{
+				RunResults runResults = run.runResults;
+				if(run.resultsException != null || runResults == null
+					|| runResults.getException() != null)
+					fireRunFailed(run, RunListener.Failure.GRIDSWEEPER);
+				else if(runResults.getStatus() != 0)
+					fireRunFailed(run, RunListener.Failure.EXECUTION);
+				else
+					fireRunCompleted(run);
+				
+				if(stored) run.runResults = null;
+			}
+		}
+		
+		if(record && journal != null)
+			journal.recordDone(outcome.jobId, outcome.isOk());
+		
+		fireProgress(runs.size());
+	}
+	
+	/**
+	 * Schedules a failed job to be submitted again, if it failed in a way
+	 * that may not happen again and the retry policy allows another attempt.
+	 * The failure is added to each run's failed attempts and reported
+	 * to the listeners.
+	 * @param outcome How the job ended, according to the backend.
+	 * @param runs The job's runs, with their results loaded if the job ended normally.
+	 * @return {@code true} if the job will be submitted again.
+	 */
+	private boolean scheduleRetry(final JobOutcome outcome, final List<CaseRun> runs)
+	{
+		String failure = RetryPolicy.getTransientFailure(outcome, runs);
+		if(failure == null) return false;
+		
+		int attempt = runs.get(0).getAttempt();
+		if(!retryPolicy.allowsRetry(attempt)) return false;
+		
+		long delay = retryPolicy.getDelay(attempt);
+		String attemptStr = "attempt " + attempt + " (" + backend.getName()
+			+ " job ID " + outcome.jobId + "): " + failure;
+		for(CaseRun run : runs)
+		{
+			if(run.failedAttempts == null) run.failedAttempts = new ArrayList<String>(1);
+			run.failedAttempts.add(attemptStr);
+			fireRunRetried(run, failure, delay);
+		}
+		
+		retryTimer.schedule(new Runnable()
+		{
+			public void run()
+			{
+				boolean replaced = false;
+				try
+				{
+					replaced = resubmitJob(outcome, runs);
+				}
+				finally
+				{
+					jobSettled(replaced);
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+		return true;
+	}
+	
+	/**
+	 * Submits a failed job's runs again, in the same directory, reusing its
+	 * setup file and writing the same output files. The failed attempt's results file is removed,
+	 * since the runs' results are read from the next attempt's, and its error
+	 * output file is kept, with the attempt number appended to its name.
+	 * The job counts against the submission window like any other, waiting
+	 * for room if necessary. If the job cannot be submitted, its runs are
+	 * reported as they stand. Called on the retry timer thread.
+	 * @param outcome How the failed job ended.
+	 * @param runs The job's runs.
+	 * @return {@code true} if the job was submitted again.
+	 */
+	private boolean resubmitJob(JobOutcome outcome, List<CaseRun> runs)
+	{
+		CaseRun firstRun = runs.get(0);
+		File resultsFile = new File(firstRun.resultsPath);
+		File stderrFile = new File(firstRun.jobFiles[firstRun.jobFiles.length - 1]);
+		try
+		{
+			// A task of a bulk job is submitted again on its own
+			if(firstRun.taskNum > 0) extractTaskSetups(runs);
+			
+			resultsFile.delete();
+			stderrFile.renameTo(new File(stderrFile.getPath() + ".attempt" + (firstRun.getAttempt() - 1)));
+			
+			if(window != null) window.waitForRoom(1);
+			synchronized(jobIdToRunsMap)
+			{
+				String jobId = backend.submitJob(firstRun.jobName, firstRun.jobDir, firstRun.setupPath,
+					getJobFileName(firstRun.jobDir, resultsFile.getPath()),
+					getJobFileName(firstRun.jobDir, stderrFile.getPath()));
+				fine("resubmitted job ID " + outcome.jobId + " as job ID " + jobId);
+				
+				for(CaseRun run : runs)
+				{
+					run.jobId = jobId;
+					run.jobOutcome = null;
+					run.runResults = null;
+					run.resultsException = null;
+				}
+				jobIdToRunsMap.remove(outcome.jobId);
+				jobIdToRunsMap.put(jobId, runs);
+				if(window != null) window.add(Collections.singletonList(jobId));
+				if(journal != null)
+				{
+					journal.recordJob(jobId, runs);
+					journal.recordRetried(outcome.jobId,
+						firstRun.failedAttempts.get(firstRun.failedAttempts.size() - 1));
+				}
+			}
+			return true;
+		}
+		catch(Exception e)
+		{
+			fine("could not resubmit job ID " + outcome.jobId + ": " + e);
+			reportJob(outcome, runs, true);
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns the name of one of a job's output files as it was given when
+	 * the job was submitted, relative to the job's directory. With a case
+	 * manifest, this includes the jobs directory.
+	 * @param jobDir The directory the job runs in.
+	 * @param path The path to the file.
+	 * @return The file name.
+	 */
+	private static String getJobFileName(String jobDir, String path)
+	{
+		String prefix = appendPathComponent(jobDir, "");
+		if(path.startsWith(prefix)) return path.substring(prefix.length());
+		return new File(path).getName();
+	}
+	
+	/**
+	 * Writes the setups of a bulk job task's runs to a setup file of their
+	 * own, so that the task can be submitted as an ordinary job.
+	 * @param runs The task's runs, which are updated to use the new setup file.
+	 * @throws Exception If the setups cannot be read or written.
+	 */
+	private static void extractTaskSetups(List<CaseRun> runs) throws Exception
+	{
+		CaseRun firstRun = runs.get(0);
+		InputStream in = new FileInputStream(firstRun.setupPath);
+		List<?> taskSetups;
+		try
+		{
+			taskSetups = (List<?>)RunCodec.readSetups(in);
+		}
+		finally
+		{
+			in.close();
+		}
+		
+		String setupPath = firstRun.setupPath + "." + firstRun.taskNum;
+		OutputStream out = new FileOutputStream(setupPath);
+		try
+		{
+			RunCodec.writeSetups(out, GridSweeperRunner.getSetupsForTask(taskSetups, firstRun.taskNum));
+		}
+		finally
+		{
+			out.close();
+		}
+		
+		String[] jobFiles = {setupPath, firstRun.jobFiles[firstRun.jobFiles.length - 1]};
+		for(CaseRun run : runs)
+		{
+			run.setupPath = setupPath;
+			run.taskNum = 0;
+			run.jobFiles = jobFiles;
+		}
+	}
+	
+	/**
+	 * Reads the results of a job's runs from its results file.
+	 * @param pendingRuns The runs awaiting results. Each run is removed
+	 * once its results have been read.
+	 * @throws Exception If the results cannot be read.
+	 */
+	private void readResults(List<CaseRun> pendingRuns) throws Exception
+	{
+		String stdoutPath = pendingRuns.get(0).resultsPath;
+		fine("Loading RunResults from " + stdoutPath);
+		RunResultsReader resultsReader = new RunResultsReader(new FileInputStream(stdoutPath));
+		try
+		{
+			while(!pendingRuns.isEmpty())
+			{
+				RunResults runResults = resultsReader.readResults();
+				CaseRun run = removeRunForResults(pendingRuns, runResults);
+				run.runResults = runResults;
+			}
+		}
+		finally
+		{
+			try
+			{
+				resultsReader.close();
+			}
+			catch(IOException e) {}
+		}
+	}
+	
+	/**
+	 * Checks whether the results of all of a job's runs are in the result
+	 * store, as they are if the job was handled before monitoring was resumed.
+	 */
+	private boolean isStored(List<CaseRun> runs)
+	{
+		for(CaseRun run : runs)
+		{
+			if(!resultStore.contains(run.caseId, run.runNum)) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Reads the results of a job's runs from the result store.
+	 * @param pendingRuns The runs awaiting results. Each run is removed
+	 * once its results have been read.
+	 * @throws IOException If the results cannot be read.
+	 */
+	private void readStoredResults(List<CaseRun> pendingRuns) throws IOException
+	{
+		fine("Loading RunResults from result store for " + pendingRuns.get(0).getRunString());
+		while(!pendingRuns.isEmpty())
+		{
+			CaseRun run = pendingRuns.get(0);
+			run.runResults = resultStore.read(run.caseId, run.runNum);
+			pendingRuns.remove(0);
+		}
+	}
+	
+	/**
+	 * Packs the results of a job's runs into the result store, and then
+	 * removes the job's files that are no longer needed.
+	 * @param runs The runs, all of which have results.
+	 * @return {@code true} if the results were stored.
+	 */
+	private boolean storeResults(List<CaseRun> runs)
+	{
+		try
+		{
+			resultStore.store(runs);
+		}
+		catch(IOException e)
+		{
+			fine("could not store results for " + runs.get(0).getRunString() + ": " + e);
+			return false;
+		}
+		
+		CaseRun firstRun = runs.get(0);
+		new File(firstRun.resultsPath).delete();
+		
+		// Keep the runner's error output if anything went wrong
+		for(CaseRun run : runs)
+		{
+			RunResults runResults = run.runResults;
+			if(runResults == null || runResults.getException() != null
+				|| runResults.getStatus() != 0)
+				return true;
+		}
+		if(firstRun.jobFiles != null) for(String path : firstRun.jobFiles)
+		{
+			new File(path).delete();
+		}
+		return true;
+	}
+	
+	/**
+	 * Finds and removes the run that a results object belongs to from a
+	 * list of runs still awaiting results. Results that do not identify their
+	 * run, such as those reporting that the runner could not start at all,
+	 * are assigned to the first run in the list.
+	 * @param pendingRuns The runs awaiting results.
+	 * @param runResults The results object.
+	 * @return The run.
+	 */
+	private static CaseRun removeRunForResults(List<CaseRun> pendingRuns, RunResults runResults)
+	{
+		if(runResults != null)
+		{
+			for(Iterator<CaseRun> iter = pendingRuns.iterator(); iter.hasNext();)
+			{
+				CaseRun run = iter.next();
+				if(run.runNum == runResults.getRunNumber())
+				{
+					iter.remove();
+					return run;
+				}
+			}
+		}
+		return pendingRuns.remove(0);
+	}
+	
+	private void fireRunCompleted(CaseRun run)
+	{
+		synchronized(listenerLock)
+		{
+			for(RunListener listener : listeners)
+			{
+				listener.runCompleted(run);
+			}
+		}
+	}
+	
+	private void fireRunFailed(CaseRun run, RunListener.Failure failure)
+	{
+		synchronized(listenerLock)
+		{
+			for(RunListener listener : listeners)
+			{
+				listener.runFailed(run, failure);
+			}
+		}
+	}
+	
+	private void fireRunRetried(CaseRun run, String failure, long delay)
+	{
+		synchronized(listenerLock)
+		{
+			for(RunListener listener : listeners)
+			{
+				listener.runRetried(run, failure, delay);
+			}
+		}
+	}
+	
+	private void fireProgress(int newRunsComplete)
+	{
+		synchronized(listenerLock)
+		{
+			// The monitor is never held while taking the listener lock
+			int currentRunCount;
+			synchronized(this)
+			{
+				currentRunCount = runCount;
+			}
+			
+			runsComplete += newRunsComplete;
+			for(RunListener listener : listeners)
+			{
+				listener.progress(runsComplete, currentRunCount);
+			}
+		}
+	}
+}
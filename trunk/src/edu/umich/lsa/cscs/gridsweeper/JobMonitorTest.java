@@ -0,0 +1,476 @@
+/*
+	JobMonitorTest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class JobMonitorTest
+{
+	/**
+	 * A backend that performs each job on another thread, by writing
+	 * successful results for the runs in its setup file, within a few
+	 * milliseconds of its submission. Jobs do not end in the order they were
+	 * submitted, and may end before their runs are registered.
+	 */
+	static class FakeBackend implements ExecutionBackend
+	{
+		// Names of results files whose next job is aborted,
+		// once for each time they are listed
+		List<String> failingOutputs = new ArrayList<String>();
+		
+		// The directory each job was submitted to run in
+		List<String> jobDirs = new ArrayList<String>();
+		
+		private int jobCount = 0;
+		private Random random = new Random();
+		private ScheduledExecutorService jobThread = Executors.newSingleThreadScheduledExecutor();
+		private BlockingQueue<JobOutcome> endedJobs = new LinkedBlockingQueue<JobOutcome>();
+		
+		public String getName() { return "test"; }
+		public String getContact() { return null; }
+		
+		public synchronized String submitJob(String jobName, String caseDir, String stdinPath,
+			String stdoutName, String stderrName) throws GridSweeperException
+		{
+			jobDirs.add(caseDir);
+			String jobId = "" + ++jobCount;
+			startJob(jobId, GridSweeperRunner.getSetups(readSetups(stdinPath)),
+				new File(caseDir, stdoutName), new File(caseDir, stderrName));
+			return jobId;
+		}
+		
+		public synchronized List<String> submitBulkJob(String jobName, String caseDir, String stdinPath,
+			String stdoutPrefix, String stderrPrefix, int taskCount) throws GridSweeperException
+		{
+			jobDirs.add(caseDir);
+			List<?> taskSetups = (List<?>)readSetups(stdinPath);
+			List<String> jobIds = new ArrayList<String>(taskCount);
+			for(int i = 1; i <= taskCount; i++)
+			{
+				String jobId = "" + ++jobCount;
+				startJob(jobId, GridSweeperRunner.getSetupsForTask(taskSetups, i),
+					new File(caseDir, stdoutPrefix + "." + i), new File(caseDir, stderrPrefix + "." + i));
+				jobIds.add(jobId);
+			}
+			return jobIds;
+		}
+		
+		private static Object readSetups(String path) throws GridSweeperException
+		{
+			try
+			{
+				InputStream in = new FileInputStream(path);
+				try
+				{
+					return RunCodec.readSetups(in);
+				}
+				finally
+				{
+					in.close();
+				}
+			}
+			catch(Exception e)
+			{
+				throw new GridSweeperException("Could not read " + path, e);
+			}
+		}
+		
+		private void startJob(final String jobId, final List<?> setups,
+			final File resultsFile, final File stderrFile)
+		{
+			final boolean aborted = failingOutputs.remove(resultsFile.getName());
+			jobThread.schedule(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						new FileOutputStream(stderrFile).close();
+						if(aborted)
+						{
+							endedJobs.add(new JobOutcome(jobId, false, 0, false, null, false, true));
+							return;
+						}
+						
+						RunResultsWriter writer = new RunResultsWriter(new FileOutputStream(resultsFile));
+						for(Object setup : setups)
+						{
+							RunResults results = new RunResults(0, "", new byte[0], null);
+							results.setRunNumber(((RunSetup)setup).getRunNumber());
+							writer.writeResults(results);
+						}
+						writer.close();
+					}
+					catch(IOException e)
+					{
+						// The monitor reports the results as missing
+					}
+					endedJobs.add(new JobOutcome(jobId, true));
+				}
+			}, random.nextInt(20), TimeUnit.MILLISECONDS);
+		}
+		
+		public JobOutcome waitForJob() throws InterruptedException
+		{
+			return endedJobs.take();
+		}
+		
+		public JobOutcome getJobOutcome(String jobId) { return null; }
+		public boolean isJobPending(String jobId) { return false; }
+		
+		public void close()
+		{
+			jobThread.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Counts the runs reported by the monitor.
+	 */
+	static class RunCounter implements RunListener
+	{
+		int completedCount = 0;
+		int failedCount = 0;
+		int retriedCount = 0;
+		int runsComplete = 0;
+		int runCount = 0;
+		
+		public synchronized void runCompleted(CaseRun run)
+		{
+			completedCount++;
+		}
+		
+		public synchronized void runFailed(CaseRun run, Failure failure)
+		{
+			failedCount++;
+		}
+		
+		public synchronized void runRetried(CaseRun run, String failure, long delay)
+		{
+			retriedCount++;
+		}
+		
+		public synchronized void progress(int runsComplete, int runCount)
+		{
+			this.runsComplete = runsComplete;
+			this.runCount = runCount;
+		}
+	}
+	
+	File dir;
+	FakeBackend backend;
+	Map<String, List<CaseRun>> jobIdToRunsMap;
+	RunCounter counter;
+	JobMonitor monitor;
+	SubmissionWindow window;
+	
+	@Before
+	public void setUp() throws IOException
+	{
+		dir = TestFiles.createTempDir("JobMonitorTest");
+		
+		backend = new FakeBackend();
+		jobIdToRunsMap = new ConcurrentHashMap<String, List<CaseRun>>();
+		counter = new RunCounter();
+		monitor = new JobMonitor(backend, jobIdToRunsMap, 2);
+		monitor.addListener(counter);
+	}
+	
+	@After
+	public void tearDown()
+	{
+		backend.close();
+		TestFiles.delete(dir);
+	}
+	
+	private List<CaseRun> submitJob(String caseId, int numRuns) throws Exception
+	{
+		return submitJob(caseId, caseId + ".", numRuns);
+	}
+	
+	/**
+	 * Writes the setups for a job's runs and submits it while the monitor
+	 * runs, registering its runs as {@link GridSweeper} does.
+	 * @param jobFilePrefix The prefix for the names of the job's files,
+	 * relative to the test directory, which the job runs in.
+	 * @return The job's runs.
+	 */
+	private List<CaseRun> submitJob(String caseId, String jobFilePrefix, int numRuns) throws Exception
+	{
+		List<CaseRun> runs = TestFiles.createRuns(caseId, 0, numRuns);
+		List<RunSetup> setups = new ArrayList<RunSetup>(numRuns);
+		for(CaseRun run : runs)
+		{
+			setups.add(new RunSetup(new Settings(), new StringMap(), "", new ParameterMap(),
+				numRuns, run.runNum, run.rngSeed, new StringList()));
+		}
+		File setupFile = new File(dir, jobFilePrefix + "in");
+		OutputStream out = new FileOutputStream(setupFile);
+		RunCodec.writeSetups(out, setups);
+		out.close();
+		
+		String[] jobFiles = {setupFile.getPath(), new File(dir, jobFilePrefix + "err").getPath()};
+		
+		if(window != null) window.waitForRoom(1);
+		synchronized(jobIdToRunsMap)
+		{
+			String jobId = backend.submitJob(caseId, dir.getPath(), setupFile.getPath(),
+				jobFilePrefix + "out", jobFilePrefix + "err");
+			
+			// Give the job a chance to end before its runs are registered
+			Thread.sleep(1);
+			
+			for(CaseRun run : runs)
+			{
+				run.jobId = jobId;
+				run.jobDir = dir.getPath();
+				run.resultsPath = new File(dir, jobFilePrefix + "out").getPath();
+				run.jobFiles = jobFiles;
+				run.jobName = caseId;
+				run.setupPath = setupFile.getPath();
+			}
+			jobIdToRunsMap.put(jobId, runs);
+			if(window != null) window.add(Collections.singletonList(jobId));
+			monitor.addJob(jobId);
+		}
+		return runs;
+	}
+	
+	@Test
+	public void submitWhileMonitoring() throws Exception
+	{
+		window = new SubmissionWindow(backend, 4, 0);
+		monitor.setOpen(window);
+		monitor.start();
+		
+		// Jobs end while later ones are still being submitted
+		int runCount = 0;
+		for(int i = 0; i < 100; i++)
+		{
+			submitJob("case" + i, 1 + i % 3);
+			runCount += 1 + i % 3;
+		}
+		monitor.submissionComplete();
+		monitor.waitForCompletion();
+		
+		assertEquals(runCount, counter.completedCount);
+		assertEquals(0, counter.failedCount);
+		assertEquals(runCount, counter.runsComplete);
+		assertEquals(runCount, counter.runCount);
+		assertTrue(window.hasRoom());
+	}
+	
+	/**
+	 * Writes the setups for a bulk job with one run per task and submits it
+	 * while the monitor runs, registering its runs as {@link GridSweeper} does.
+	 * @return The job's runs.
+	 */
+	private List<CaseRun> submitBulkJob(String caseId, int numTasks) throws Exception
+	{
+		List<List<RunSetup>> taskSetups = new ArrayList<List<RunSetup>>(numTasks);
+		for(int i = 0; i < numTasks; i++)
+		{
+			taskSetups.add(Collections.singletonList(new RunSetup(new Settings(),
+				new StringMap(), "", new ParameterMap(), numTasks, i, 100 + i, new StringList())));
+		}
+		File setupFile = new File(dir, caseId + ".in");
+		OutputStream out = new FileOutputStream(setupFile);
+		RunCodec.writeSetups(out, taskSetups);
+		out.close();
+		
+		List<CaseRun> runs = new ArrayList<CaseRun>(numTasks);
+		if(window != null) window.waitForRoom(numTasks);
+		synchronized(jobIdToRunsMap)
+		{
+			List<String> jobIds = backend.submitBulkJob(caseId, dir.getPath(),
+				setupFile.getPath(), caseId + ".out", caseId + ".err", numTasks);
+			for(int i = 0; i < numTasks; i++)
+			{
+				CaseRun run = new CaseRun(caseId, i, 100 + i);
+				run.jobId = jobIds.get(i);
+				run.jobDir = dir.getPath();
+				run.resultsPath = new File(dir, caseId + ".out." + (i + 1)).getPath();
+				run.jobFiles = new String[] {new File(dir, caseId + ".err." + (i + 1)).getPath()};
+				run.jobName = caseId;
+				run.setupPath = setupFile.getPath();
+				run.taskNum = i + 1;
+				runs.add(run);
+				
+				jobIdToRunsMap.put(run.jobId, Collections.singletonList(run));
+				if(window != null) window.add(Collections.singletonList(run.jobId));
+				monitor.addJob(run.jobId);
+			}
+		}
+		return runs;
+	}
+	
+	@Test
+	public void slowListener() throws Exception
+	{
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final boolean[] timedOut = {false};
+		monitor.addListener(new RunCounter()
+		{
+			@Override
+			public void runCompleted(CaseRun run)
+			{
+				entered.countDown();
+				try
+				{
+					if(!release.await(5, TimeUnit.SECONDS)) timedOut[0] = true;
+				}
+				catch(InterruptedException e) {}
+			}
+		});
+		monitor.setOpen(null);
+		monitor.start();
+		
+		// Jobs are still added while a listener is handling a run
+		submitJob("a", 1);
+		entered.await();
+		submitJob("b", 1);
+		release.countDown();
+		monitor.submissionComplete();
+		monitor.waitForCompletion();
+		
+		assertFalse(timedOut[0]);
+		assertEquals(2, counter.completedCount);
+		assertEquals(2, counter.runCount);
+	}
+	
+	@Test
+	public void retryFailedJobs() throws Exception
+	{
+		window = new SubmissionWindow(backend, 2, 0);
+		monitor.setOpen(window);
+		monitor.setRetryPolicy(new RetryPolicy(1, 0));
+		monitor.start();
+		
+		// The first attempts at a job and at a bulk job task are aborted
+		backend.failingOutputs.add("b.out");
+		backend.failingOutputs.add("c.out.2");
+		List<CaseRun> runsA = submitJob("a", 2);
+		List<CaseRun> runsB = submitJob("b", 2);
+		List<CaseRun> runsC = submitBulkJob("c", 2);
+		monitor.submissionComplete();
+		monitor.waitForCompletion();
+		
+		assertEquals(6, counter.completedCount);
+		assertEquals(0, counter.failedCount);
+		assertEquals(3, counter.retriedCount);
+		assertEquals(6, counter.runsComplete);
+		assertTrue(window.hasRoom());
+		
+		assertEquals(1, runsA.get(0).getAttempt());
+		for(CaseRun run : runsB)
+		{
+			assertEquals(2, run.getAttempt());
+			assertEquals(run.jobId, runsB.get(0).jobId);
+		}
+		assertTrue(new File(dir, "b.err.attempt1").exists());
+		
+		// A failed bulk job task is submitted again as an ordinary job
+		assertEquals(1, runsC.get(0).getAttempt());
+		CaseRun retriedTask = runsC.get(1);
+		assertEquals(2, retriedTask.getAttempt());
+		assertEquals(0, retriedTask.taskNum);
+		assertEquals(new File(dir, "c.in.2").getPath(), retriedTask.setupPath);
+		assertTrue(new File(dir, "c.err.2.attempt1").exists());
+	}
+	
+	@Test
+	public void retryInJobsDirectory() throws Exception
+	{
+		monitor.setOpen(null);
+		monitor.setRetryPolicy(new RetryPolicy(1, 0));
+		monitor.start();
+		
+		// With a case manifest, job files are kept in the jobs directory,
+		// but jobs still run in the experiment directory
+		new File(dir, CaseManifest.JOBS_DIRNAME).mkdir();
+		String jobFilePrefix = CaseManifest.JOBS_DIRNAME + File.separator + "0.";
+		backend.failingOutputs.add("0.out");
+		List<CaseRun> runs = submitJob("a", jobFilePrefix, 1);
+		monitor.submissionComplete();
+		monitor.waitForCompletion();
+		
+		assertEquals(1, counter.completedCount);
+		assertEquals(2, runs.get(0).getAttempt());
+		assertEquals(Arrays.asList(dir.getPath(), dir.getPath()), backend.jobDirs);
+		assertTrue(new File(dir, jobFilePrefix + "err.attempt1").exists());
+		assertTrue(new File(dir, jobFilePrefix + "err").exists());
+	}
+	
+	@Test
+	public void retriesExhausted() throws Exception
+	{
+		monitor.setOpen(null);
+		monitor.setRetryPolicy(new RetryPolicy(1, 0));
+		monitor.start();
+		
+		// Every attempt is aborted, so the run is reported as failed
+		backend.failingOutputs.add("a.out");
+		backend.failingOutputs.add("a.out");
+		submitJob("a", 1);
+		monitor.submissionComplete();
+		monitor.waitForCompletion();
+		
+		assertEquals(1, counter.failedCount);
+		assertEquals(1, counter.retriedCount);
+	}
+	
+	@Test
+	public void retryUsesWindow() throws Exception
+	{
+		window = new SubmissionWindow(backend, 1, 0);
+		monitor.setOpen(window);
+		monitor.setRetryPolicy(new RetryPolicy(1, 500));
+		monitor.start();
+		
+		// The retry asks the window for room, which it can no longer get
+		backend.failingOutputs.add("a.out");
+		submitJob("a", 1);
+		window.close();
+		monitor.submissionComplete();
+		monitor.waitForCompletion();
+		
+		assertEquals(0, counter.completedCount);
+		assertEquals(1, counter.failedCount);
+		assertEquals(1, counter.retriedCount);
+	}
+	
+	@Test
+	public void noJobs() throws Exception
+	{
+		monitor.setOpen(null);
+		monitor.start();
+		monitor.submissionComplete();
+		monitor.waitForCompletion();
+		assertEquals(0, counter.runsComplete);
+	}
+}
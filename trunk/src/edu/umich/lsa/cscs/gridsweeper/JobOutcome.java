@@ -0,0 +1,95 @@
+/*
+	JobOutcome.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.util.Map;
+
+/**
+ * How a job ended, as reported by the {@link ExecutionBackend} that ran it.
+ * This says nothing about the runs in the job, whose results are loaded
+ * separately; it only records whether the job itself ended normally.
+ * @author Ed Baskerville
+ *
+ */
+class JobOutcome
+{
+	String jobId;
+	
+	// False if the backend could only say whether the job ended normally,
+	// e.g., because it had already forgotten the details
+	boolean detailsKnown;
+	
+	boolean exited = false;
+	int exitStatus = 0;
+	boolean signaled = false;
+	String terminatingSignal = null;
+	boolean coreDump = false;
+	boolean aborted = false;
+	
+	// Resources used by the job, in the execution system's own terms
+	// (e.g., "cpu" and "maxvmem" for Grid Engine); null if unknown
+	Map<String, String> resourceUsage = null;
+	
+	private boolean ok;
+	
+	/**
+	 * Constructor for a job whose details are not available.
+	 * @param jobId The job ID.
+	 * @param ok Whether the job is known to have ended normally.
+	 */
+	public JobOutcome(String jobId, boolean ok)
+	{
+		this.jobId = jobId;
+		this.ok = ok;
+		detailsKnown = false;
+	}
+	
+	/**
+	 * Constructor for a job whose details are known. The job ended normally
+	 * unless it dumped core, was killed by a signal, was aborted,
+	 * or exited with a nonzero status.
+	 */
+	public JobOutcome(String jobId, boolean exited, int exitStatus, boolean signaled,
+		String terminatingSignal, boolean coreDump, boolean aborted)
+	{
+		this.jobId = jobId;
+		this.exited = exited;
+		this.exitStatus = exitStatus;
+		this.signaled = signaled;
+		this.terminatingSignal = terminatingSignal;
+		this.coreDump = coreDump;
+		this.aborted = aborted;
+		detailsKnown = true;
+		
+		ok = !(coreDump || signaled || aborted || exitStatus != 0);
+	}
+	
+	/**
+	 * Determines whether the job ended normally, in which case its runs' results
+	 * should be available.
+	 * @return {@code true} if the job ended normally.
+	 */
+	public boolean isOk()
+	{
+		return ok;
+	}
+}
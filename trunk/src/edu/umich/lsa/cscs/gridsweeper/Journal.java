@@ -0,0 +1,292 @@
+/*
+	Journal.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+
+import static edu.umich.lsa.cscs.gridsweeper.StringUtils.*;
+
+/**
+ * <p>An append-only record of an experiment's submission and monitoring,
+ * kept in the experiment directory so that monitoring can be resumed
+ * if the monitoring process dies. Each line is a record: a record type
+ * followed by tab-separated, URL-encoded fields.</p>
+ * 
+ * <ul>
+ * <li>{@code session} <em>contact</em>: the DRMAA session contact string.</li>
+ * <li>{@code email} <em>address</em>: the notification email address.</li>
+ * <li>{@code submitted} <em>time</em>: the submission time, in milliseconds.</li>
+ * <li>{@code job} <em>jobId</em> <em>jobDir</em> <em>resultsPath</em>
+ * <em>caseId</em> <em>runNum</em> <em>rngSeed</em> [<em>runNum</em>
+ * <em>rngSeed</em> ...]: a submitted job, the directory it runs in,
+ * and the runs it performs.</li>
+ * <li>{@code submitted-all}: all cases were submitted.</li>
+ * <li>{@code done} <em>jobId</em> <em>drmaaOk</em>: a job completed and its results
+ * were handled; <em>drmaaOk</em> is {@code false} if DRMAA reported that the job
+ * did not complete normally.</li>
+ * <li>{@code retried} <em>jobId</em> <em>failure</em>: a job failed and its
+ * runs were submitted again, in the job recorded just before;
+ * <em>failure</em> describes the failed attempt.</li>
+ * </ul>
+ * 
+ * <p>A line cut short by the death of the process that wrote it is ignored.</p>
+ * @author Ed Baskerville
+ *
+ */
+class Journal
+{
+	static final String FILENAME = ".gsweep_journal";
+	
+	private PrintWriter writer;
+	
+	/**
+	 * The contents of a journal, as read back by {@link Journal#read}.
+	 */
+	static class Contents
+	{
+		String contact = null;
+		String email = null;
+		long submittedTime = -1;
+		boolean submittedAll = false;
+		
+		Map<String, List<CaseRun>> jobIdToRunsMap = new LinkedHashMap<String, List<CaseRun>>();
+		
+		// Jobs already handled, mapped to whether DRMAA reported normal completion
+		Map<String, Boolean> doneJobs = new HashMap<String, Boolean>();
+		
+		// The job read last, which a retried record refers back to
+		private String lastJobId = null;
+	}
+	
+	/**
+	 * Opens the journal in an experiment directory for appending,
+	 * creating it if necessary.
+	 * @param expDir The experiment directory.
+	 * @throws IOException If the journal cannot be opened.
+	 */
+	public Journal(String expDir) throws IOException
+	{
+		String path = appendPathComponent(expDir, FILENAME);
+		boolean cutShort = endsCutShort(new File(path));
+		writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+			new FileOutputStream(path, true), "UTF-8")));
+		
+		// End a line cut short by the death of the last process to write,
+		// so that the next record is not lost with it
+		if(cutShort)
+		{
+			writer.print('\n');
+			writer.flush();
+		}
+	}
+	
+	/**
+	 * Checks whether a file's last line is missing its newline.
+	 * @param file The file.
+	 * @return {@code true} if the file is not empty and does not end in a newline.
+	 * @throws IOException If the file cannot be read.
+	 */
+	private static boolean endsCutShort(File file) throws IOException
+	{
+		if(file.length() == 0) return false;
+		
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			raf.seek(raf.length() - 1);
+			return raf.read() != '\n';
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+	
+	public void recordSession(String contact, String email, long submittedTime)
+	{
+		if(contact != null) writeRecord("session", contact);
+		writeRecord("email", email);
+		writeRecord("submitted", "" + submittedTime);
+	}
+	
+	public void recordJob(String jobId, List<CaseRun> runs)
+	{
+		CaseRun firstRun = runs.get(0);
+		
+		String[] fields = new String[5 + 2 * runs.size()];
+		fields[0] = "job";
+		fields[1] = jobId;
+		fields[2] = firstRun.jobDir;
+		fields[3] = firstRun.resultsPath;
+		fields[4] = firstRun.caseId;
+		for(int i = 0; i < runs.size(); i++)
+		{
+			fields[5 + 2 * i] = "" + runs.get(i).runNum;
+			fields[6 + 2 * i] = "" + runs.get(i).rngSeed;
+		}
+		writeRecord(fields);
+	}
+	
+	public void recordSubmittedAll()
+	{
+		writeRecord("submitted-all");
+	}
+	
+	public void recordDone(String jobId, boolean drmaaOk)
+	{
+		writeRecord("done", jobId, "" + drmaaOk);
+	}
+	
+	public void recordRetried(String jobId, String failure)
+	{
+		writeRecord("retried", jobId, failure);
+	}
+	
+	public synchronized void close()
+	{
+		writer.close();
+	}
+	
+	/**
+	 * Writes a record, flushing it immediately so that it survives
+	 * the death of this process.
+	 * @param fields The record type followed by the record's fields.
+	 */
+	private synchronized void writeRecord(String... fields)
+	{
+		for(int i = 0; i < fields.length; i++)
+		{
+			if(i > 0) writer.print('\t');
+			writer.print(escape(fields[i]));
+		}
+		writer.print('\n');
+		writer.flush();
+	}
+	
+	/**
+	 * Reads the journal in an experiment directory.
+	 * @param expDir The experiment directory.
+	 * @return The contents of the journal.
+	 * @throws IOException If the journal does not exist or cannot be read.
+	 */
+	public static Contents read(String expDir) throws IOException
+	{
+		String path = appendPathComponent(expDir, FILENAME);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+			new FileInputStream(path), "UTF-8"));
+		
+		Contents contents = new Contents();
+		try
+		{
+			String line;
+			while((line = reader.readLine()) != null)
+			{
+				try
+				{
+					readRecord(contents, tokenize(line, "\t", true));
+				}
+				catch(RuntimeException e)
+				{
+					// Ignore truncated or malformed records
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		
+		return contents;
+	}
+	
+	private static void readRecord(Contents contents, StringList fields)
+	{
+		String type = fields.get(0);
+		if(type.equals("session"))
+		{
+			contents.contact = fields.get(1);
+		}
+		else if(type.equals("email"))
+		{
+			contents.email = fields.get(1);
+		}
+		else if(type.equals("submitted"))
+		{
+			contents.submittedTime = Long.parseLong(fields.get(1));
+		}
+		else if(type.equals("job"))
+		{
+			String jobId = fields.get(1);
+			String jobDir = fields.get(2);
+			String resultsPath = fields.get(3);
+			String caseId = fields.get(4);
+			
+			int runCount = (fields.size() - 5) / 2;
+			if(runCount == 0 || fields.size() != 5 + 2 * runCount)
+				throw new IllegalArgumentException();
+			
+			List<CaseRun> runs = new ArrayList<CaseRun>(runCount);
+			for(int i = 0; i < runCount; i++)
+			{
+				int runNum = Integer.parseInt(fields.get(5 + 2 * i));
+				int rngSeed = Integer.parseInt(fields.get(6 + 2 * i));
+				CaseRun run = new CaseRun(caseId, runNum, rngSeed);
+				run.jobId = jobId;
+				run.jobDir = jobDir;
+				run.resultsPath = resultsPath;
+				runs.add(run);
+			}
+			contents.jobIdToRunsMap.put(jobId, runs);
+			contents.lastJobId = jobId;
+		}
+		else if(type.equals("submitted-all"))
+		{
+			contents.submittedAll = true;
+		}
+		else if(type.equals("done"))
+		{
+			contents.doneJobs.put(fields.get(1), Boolean.valueOf(fields.get(2)));
+		}
+		else if(type.equals("retried"))
+		{
+			String failure = fields.get(2);
+			List<CaseRun> oldRuns = contents.jobIdToRunsMap.remove(fields.get(1));
+			List<CaseRun> newRuns = contents.jobIdToRunsMap.get(contents.lastJobId);
+			if(oldRuns == null || newRuns == null) return;
+			
+			// Carry the earlier attempts over to the runs of the new job
+			for(CaseRun newRun : newRuns)
+			{
+				for(CaseRun oldRun : oldRuns)
+				{
+					if(oldRun.runNum != newRun.runNum) continue;
+					
+					newRun.failedAttempts = new ArrayList<String>();
+					if(oldRun.failedAttempts != null)
+						newRun.failedAttempts.addAll(oldRun.failedAttempts);
+					newRun.failedAttempts.add(failure);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/*
+	JournalTest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class JournalTest
+{
+	File dir;
+	
+	@Before
+	public void setUp() throws IOException
+	{
+		dir = TestFiles.createTempDir("JournalTest");
+	}
+	
+	@After
+	public void tearDown()
+	{
+		TestFiles.delete(dir);
+	}
+	
+	private List<CaseRun> createRuns(String jobId, String caseId, int firstRun, int count)
+	{
+		List<CaseRun> runs = TestFiles.createRuns(caseId, firstRun, count);
+		for(CaseRun run : runs)
+		{
+			run.jobId = jobId;
+			run.jobDir = "/results/a b";
+			run.resultsPath = "/results/a b/.gsweep_out." + firstRun;
+		}
+		return runs;
+	}
+	
+	@Test
+	public void roundTrip() throws IOException
+	{
+		Journal journal = new Journal(dir.getPath());
+		journal.recordSession("contact\tstring", "someone@example.com", 12345);
+		journal.recordJob("1001", createRuns("1001", "a=1", 0, 2));
+		journal.recordJob("1002", createRuns("1002", "a=2", 2, 1));
+		journal.recordSubmittedAll();
+		journal.recordDone("1002", false);
+		journal.close();
+		
+		Journal.Contents contents = Journal.read(dir.getPath());
+		assertEquals("contact\tstring", contents.contact);
+		assertEquals("someone@example.com", contents.email);
+		assertEquals(12345, contents.submittedTime);
+		assertTrue(contents.submittedAll);
+		
+		assertEquals(2, contents.jobIdToRunsMap.size());
+		List<CaseRun> runs = contents.jobIdToRunsMap.get("1001");
+		assertEquals(2, runs.size());
+		assertEquals("a=1", runs.get(1).caseId);
+		assertEquals(1, runs.get(1).runNum);
+		assertEquals(101, runs.get(1).rngSeed);
+		assertEquals("1001", runs.get(1).jobId);
+		assertEquals("/results/a b", runs.get(1).jobDir);
+		assertEquals("/results/a b/.gsweep_out.0", runs.get(1).resultsPath);
+		
+		assertEquals(1, contents.doneJobs.size());
+		assertEquals(Boolean.FALSE, contents.doneJobs.get("1002"));
+	}
+	
+	@Test
+	public void retriedJob() throws IOException
+	{
+		Journal journal = new Journal(dir.getPath());
+		List<CaseRun> runs = createRuns("1001", "a=1", 0, 2);
+		journal.recordJob("1001", runs);
+		journal.recordJob("1002", runs);
+		journal.recordRetried("1001", "attempt 1: killed\tby signal");
+		journal.recordJob("1003", createRuns("1003", "a=2", 2, 1));
+		journal.recordJob("1004", runs);
+		journal.recordRetried("1002", "attempt 2: killed");
+		journal.close();
+		
+		// The runs are only monitored in the job that retried them,
+		// and keep the failures of the earlier attempts
+		Journal.Contents contents = Journal.read(dir.getPath());
+		assertEquals(2, contents.jobIdToRunsMap.size());
+		List<CaseRun> retriedRuns = contents.jobIdToRunsMap.get("1004");
+		assertEquals(2, retriedRuns.size());
+		for(CaseRun run : retriedRuns)
+		{
+			assertEquals(Arrays.asList("attempt 1: killed\tby signal", "attempt 2: killed"),
+				run.failedAttempts);
+			assertEquals(3, run.getAttempt());
+		}
+		assertNull(contents.jobIdToRunsMap.get("1003").get(0).failedAttempts);
+		assertTrue(contents.doneJobs.isEmpty());
+	}
+	
+	@Test
+	public void truncatedRecord() throws IOException
+	{
+		Journal journal = new Journal(dir.getPath());
+		journal.recordJob("1001", createRuns("1001", "a=1", 0, 1));
+		journal.close();
+		
+		// Simulate a process dying partway through a line
+		Writer writer = new FileWriter(new File(dir, Journal.FILENAME), true);
+		writer.write("job\t1002\t/results");
+		writer.close();
+		
+		Journal.Contents contents = Journal.read(dir.getPath());
+		assertEquals(1, contents.jobIdToRunsMap.size());
+		assertFalse(contents.submittedAll);
+		assertNull(contents.contact);
+	}
+	
+	@Test
+	public void appendAfterTruncatedRecord() throws IOException
+	{
+		Journal journal = new Journal(dir.getPath());
+		journal.recordJob("1001", createRuns("1001", "a=1", 0, 1));
+		journal.close();
+		
+		Writer writer = new FileWriter(new File(dir, Journal.FILENAME), true);
+		writer.write("job\t1002\t/results");
+		writer.close();
+		
+		// A resumed process appends after the cut-short line
+		journal = new Journal(dir.getPath());
+		journal.recordDone("1001", true);
+		journal.close();
+		
+		Journal.Contents contents = Journal.read(dir.getPath());
+		assertEquals(1, contents.jobIdToRunsMap.size());
+		assertEquals(Boolean.TRUE, contents.doneJobs.get("1001"));
+	}
+}
@@ -0,0 +1,66 @@
+/*
+	KeyValueExtractor.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The default {@link OutputExtractor}, which reads lines of the form
+ * <em>name</em>{@code =}<em>value</em> from a model's standard output.
+ * Whitespace around names and values is ignored, as are lines without an
+ * equals sign. If a name appears more than once, the last value is used,
+ * so a model that reports a value as it goes ends up with its final value.
+ * Columns are listed in the order names first appear.
+ * @author Ed Baskerville
+ *
+ */
+public class KeyValueExtractor implements OutputExtractor
+{
+	/**
+	 * Standard {@link OutputExtractor} constructor. No settings are used.
+	 * @param settings Settings for the extractor.
+	 */
+	public KeyValueExtractor(Settings settings)
+	{
+	}
+	
+	public Map<String, String> extract(InputStream output, StringMap parameters,
+		int runNumber) throws IOException
+	{
+		Map<String, String> values = new LinkedHashMap<String, String>();
+		if(output == null) return values;
+		
+		BufferedReader reader = new BufferedReader(new InputStreamReader(output, "UTF-8"));
+		String line;
+		while((line = reader.readLine()) != null)
+		{
+			int equalsIndex = line.indexOf('=');
+			if(equalsIndex < 0) continue;
+			
+			String name = line.substring(0, equalsIndex).trim();
+			if(name.length() == 0) continue;
+			values.put(name, line.substring(equalsIndex + 1).trim());
+		}
+		return values;
+	}
+}
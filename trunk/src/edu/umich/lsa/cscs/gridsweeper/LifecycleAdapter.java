@@ -0,0 +1,50 @@
+/*
+	LifecycleAdapter.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+/**
+ * An adapter with work to do before its first run and after its last,
+ * such as loading large input tables or starting a model server. Constructors
+ * should do as little as possible; expensive setup belongs in {@link #init},
+ * which is called once, before any run, on the thread that will first use
+ * the adapter. Combined with {@link ReusableAdapter}, the cost of
+ * {@code init} is paid once for all the runs the adapter performs.
+ * @author Ed Baskerville
+ *
+ */
+public interface LifecycleAdapter extends Adapter
+{
+	/**
+	 * Prepares the adapter for runs. Called once, after construction.
+	 * @throws AdapterException If the adapter cannot be prepared; it is
+	 * then discarded without being closed, and the runs that needed it fail.
+	 */
+	public void init() throws AdapterException;
+	
+	/**
+	 * Releases any resources held by the adapter. Called once, after its last
+	 * run, if {@link #init} succeeded. Exceptions are reported but otherwise
+	 * ignored.
+	 * @throws AdapterException If resources could not be released cleanly.
+	 */
+	public void close() throws AdapterException;
+}
@@ -65,6 +65,49 @@ class ListSweep extends SingleSweep
 		
 		return maps;
 	}
+	
+	@Override
+	public Iterator<ParameterMap> mapIterator()
+	{
+		final Iterator<String> valueIterator = values.iterator();
+		
+		return new Iterator<ParameterMap>()
+		{
+			public boolean hasNext()
+			{
+				return valueIterator.hasNext();
+			}
+			
+			public ParameterMap next()
+			{
+				return new ParameterMap(name, valueIterator.next());
+			}
+			
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public long getMapCount()
+	{
+		return values.size();
+	}
+	
+	@Override
+	public ParameterMap getMap(long index)
+	{
+		checkIndex(index);
+		return new ParameterMap(name, getValue(index));
+	}
+	
+	@Override
+	public Object getValue(long index)
+	{
+		return values.get((int)index);
+	}
 
 	public boolean add(String o)
 	{
@@ -0,0 +1,420 @@
+/*
+	LocalBackend.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static edu.umich.lsa.cscs.gridsweeper.DLogger.*;
+
+/**
+ * Runs jobs on the local machine, with no grid. Jobs are queued to a fixed
+ * pool of threads, one per job allowed to run at a time, and each thread
+ * runs the runner as a child process in the job's case directory, exactly
+ * as an execution host would. Running the runner in its own process, rather
+ * than calling adapters directly, keeps runs from interfering with each other
+ * or with the monitoring process: adapters write output relative to the
+ * working directory, which cannot differ between threads of one process.
+ * 
+ * <p>Optionally, each thread instead keeps a persistent worker: a runner
+ * started once with {@code --worker}, which performs one job after another
+ * (see {@link GridSweeperRunner#runWorker}). This avoids starting a JVM and
+ * loading the adapter for every job, which dominates when runs are short.
+ * A worker that dies is discarded, failing the job it was running, and
+ * replaced for the next job.</p>
+ * @author Ed Baskerville
+ *
+ */
+class LocalBackend implements ExecutionBackend
+{
+	/**
+	 * The environment variable used to pass the task number of a bulk job.
+	 */
+	static final String TASK_ID_VARIABLE = "GRIDSWEEPER_TASK_ID";
+	
+	private String runnerPath;
+	private boolean useWorkers;
+	private ExecutorService executor;
+	private BlockingQueue<JobOutcome> outcomes = new LinkedBlockingQueue<JobOutcome>();
+	private int nextJobId = 1;
+	private Set<String> pendingJobIds = Collections.synchronizedSet(new HashSet<String>());
+	
+	private ThreadLocal<Worker> threadWorker = new ThreadLocal<Worker>();
+	private List<Worker> workers = new ArrayList<Worker>();
+	
+	/**
+	 * Constructor.
+	 * @param runnerPath The full path to the runner command, normally
+	 * {@code $GRIDSWEEPER_ROOT/bin/gsrunner}.
+	 * @param parallelism The number of jobs to run at a time.
+	 * @param useWorkers Whether to run jobs on persistent workers rather
+	 * than starting the runner for each job.
+	 */
+	public LocalBackend(String runnerPath, int parallelism, boolean useWorkers)
+	{
+		this.runnerPath = runnerPath;
+		this.useWorkers = useWorkers;
+		executor = Executors.newFixedThreadPool(parallelism);
+	}
+	
+	public String getName()
+	{
+		return "local";
+	}
+	
+	/**
+	 * Returns {@code null}: jobs are child processes of this one,
+	 * and cannot be monitored by another process.
+	 */
+	public String getContact()
+	{
+		return null;
+	}
+	
+	public synchronized String submitJob(String jobName, String caseDir, String stdinPath,
+		String stdoutName, String stderrName)
+	{
+		String jobId = "" + nextJobId++;
+		queueJob(jobId, caseDir, stdinPath, stdoutName, stderrName, null);
+		return jobId;
+	}
+	
+	/**
+	 * Submits a bulk job. Tasks are queued separately, and are identified
+	 * by job IDs of the form <em>job</em>.<em>task</em>.
+	 */
+	public synchronized List<String> submitBulkJob(String jobName, String caseDir, String stdinPath,
+		String stdoutPrefix, String stderrPrefix, int taskCount)
+	{
+		String bulkJobId = "" + nextJobId++;
+		List<String> jobIds = new ArrayList<String>(taskCount);
+		for(int task = 1; task <= taskCount; task++)
+		{
+			String jobId = bulkJobId + "." + task;
+			queueJob(jobId, caseDir, stdinPath, stdoutPrefix + "." + task,
+				stderrPrefix + "." + task, "" + task);
+			jobIds.add(jobId);
+		}
+		return jobIds;
+	}
+	
+	private void queueJob(final String jobId, final String caseDir, final String stdinPath,
+		final String stdoutName, final String stderrName, final String taskId)
+	{
+		pendingJobIds.add(jobId);
+		executor.execute(new Runnable()
+		{
+			public void run()
+			{
+				pendingJobIds.remove(jobId);
+				if(useWorkers)
+					outcomes.add(runWorkerJob(jobId, caseDir, stdinPath, stdoutName, stderrName, taskId));
+				else
+					outcomes.add(runJob(jobId, caseDir, stdinPath, stdoutName, stderrName, taskId));
+			}
+		});
+	}
+	
+	/**
+	 * Runs a job and waits for it to end. Called on a pool thread.
+	 * If the runner cannot be started, the reason is written to the
+	 * job's error output file.
+	 */
+	private JobOutcome runJob(String jobId, String caseDir, String stdinPath,
+		String stdoutName, String stderrName, String taskId)
+	{
+		fine("starting local job " + jobId);
+		
+		File stderrFile = new File(caseDir, stderrName);
+		try
+		{
+			ProcessBuilder builder = new ProcessBuilder(runnerPath);
+			builder.directory(new File(caseDir));
+			if(taskId != null) builder.environment().put(TASK_ID_VARIABLE, taskId);
+			Process process = builder.start();
+			
+			// Copy output on separate threads so that the runner never blocks
+			// on a full pipe while its input is being written
+			Pump stdoutPump = new Pump(process.getInputStream(),
+				new FileOutputStream(new File(caseDir, stdoutName)));
+			Pump stderrPump = new Pump(process.getErrorStream(),
+				new FileOutputStream(stderrFile));
+			stdoutPump.start();
+			stderrPump.start();
+			
+			InputStream stdin = new FileInputStream(stdinPath);
+			try
+			{
+				Pump.copy(stdin, process.getOutputStream());
+			}
+			catch(IOException e)
+			{
+				// The runner stopped reading; its output will say why
+			}
+			finally
+			{
+				stdin.close();
+				process.getOutputStream().close();
+			}
+			
+			int exitStatus = process.waitFor();
+			stdoutPump.join();
+			stderrPump.join();
+			
+			fine("local job " + jobId + " exited with status " + exitStatus);
+			return new JobOutcome(jobId, true, exitStatus, false, null, false, false);
+		}
+		catch(Exception e)
+		{
+			return abortJob(jobId, stderrFile, e);
+		}
+	}
+	
+	/**
+	 * Runs a job on this thread's worker, starting one if necessary, and
+	 * waits for it to end. Called on a pool thread. If the worker cannot be
+	 * started or dies during the job, it is discarded and the reason is
+	 * written to the job's error output file.
+	 */
+	private JobOutcome runWorkerJob(String jobId, String caseDir, String stdinPath,
+		String stdoutName, String stderrName, String taskId)
+	{
+		fine("starting local job " + jobId + " on a worker");
+		
+		File stderrFile = new File(caseDir, stderrName);
+		Worker worker = threadWorker.get();
+		try
+		{
+			if(worker == null)
+			{
+				worker = new Worker();
+				threadWorker.set(worker);
+			}
+			
+			WorkerRequest request = new WorkerRequest(caseDir,
+				new File(stdinPath).getAbsolutePath(),
+				new File(caseDir, stdoutName).getAbsolutePath(),
+				stderrFile.getAbsolutePath(),
+				taskId == null ? 0 : Integer.parseInt(taskId));
+			int exitStatus = worker.perform(request);
+			
+			fine("local job " + jobId + " finished with status " + exitStatus);
+			return new JobOutcome(jobId, true, exitStatus, false, null, false, false);
+		}
+		catch(Exception e)
+		{
+			if(worker != null)
+			{
+				worker.destroy();
+				threadWorker.remove();
+			}
+			return abortJob(jobId, stderrFile, e);
+		}
+	}
+	
+	/**
+	 * Records why a job could not be run in its error output file.
+	 * @return An outcome for the job, marked aborted.
+	 */
+	private JobOutcome abortJob(String jobId, File stderrFile, Exception e)
+	{
+		try
+		{
+			PrintStream stderr = new PrintStream(new FileOutputStream(stderrFile, true));
+			e.printStackTrace(stderr);
+			stderr.close();
+		}
+		catch(IOException printE) {}
+		
+		return new JobOutcome(jobId, false, 0, false, null, false, true);
+	}
+	
+	public JobOutcome waitForJob() throws InterruptedException
+	{
+		return outcomes.take();
+	}
+	
+	/**
+	 * Checks whether a job is still queued, waiting for a pool thread.
+	 */
+	public boolean isJobPending(String jobId)
+	{
+		return pendingJobIds.contains(jobId);
+	}
+	
+	public JobOutcome getJobOutcome(String jobId) throws GridSweeperException
+	{
+		throw new GridSweeperException("Local jobs cannot be monitored from another process.");
+	}
+	
+	/**
+	 * Stops accepting jobs and, once queued jobs have run, stops the workers.
+	 */
+	public void close()
+	{
+		executor.shutdown();
+		if(useWorkers)
+		{
+			try
+			{
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			}
+			catch(InterruptedException e) {}
+			
+			synchronized(workers)
+			{
+				for(Worker worker : workers)
+				{
+					worker.close();
+				}
+				workers.clear();
+			}
+		}
+	}
+	
+	/**
+	 * A runner process started in worker mode, used by one pool thread.
+	 */
+	private class Worker
+	{
+		private Process process;
+		private DataOutputStream requestStream;
+		private DataInputStream statusStream;
+		
+		/**
+		 * Starts the worker. Its own error output, as opposed to that of
+		 * the jobs it runs, is discarded.
+		 * @throws IOException If the runner cannot be started.
+		 */
+		public Worker() throws IOException
+		{
+			process = new ProcessBuilder(runnerPath, "--worker").start();
+			requestStream = new DataOutputStream(
+				new BufferedOutputStream(process.getOutputStream()));
+			statusStream = new DataInputStream(
+				new BufferedInputStream(process.getInputStream()));
+			new Pump(process.getErrorStream(), new OutputStream()
+			{
+				@Override
+				public void write(int b) {}
+				
+				@Override
+				public void write(byte[] b, int off, int len) {}
+			}).start();
+			
+			synchronized(workers)
+			{
+				workers.add(this);
+			}
+		}
+		
+		/**
+		 * Sends a job to the worker and waits for it to finish.
+		 * @param request The job.
+		 * @return The job's status.
+		 * @throws IOException If the worker has died.
+		 */
+		public int perform(WorkerRequest request) throws IOException
+		{
+			request.write(requestStream);
+			requestStream.flush();
+			return statusStream.readInt();
+		}
+		
+		/**
+		 * Closes the worker's input, so that it exits once idle.
+		 */
+		public void close()
+		{
+			try
+			{
+				requestStream.close();
+			}
+			catch(IOException e) {}
+		}
+		
+		/**
+		 * Kills the worker and forgets it.
+		 */
+		public void destroy()
+		{
+			process.destroy();
+			synchronized(workers)
+			{
+				workers.remove(this);
+			}
+		}
+	}
+	
+	/**
+	 * Copies a stream to another on its own thread, closing both at the end.
+	 */
+	private static class Pump extends Thread
+	{
+		private InputStream in;
+		private OutputStream out;
+		
+		public Pump(InputStream in, OutputStream out)
+		{
+			this.in = in;
+			this.out = out;
+		}
+		
+		@Override
+		public void run()
+		{
+			try
+			{
+				copy(in, out);
+			}
+			catch(IOException e)
+			{
+				fine("error copying job output: " + e);
+			}
+			finally
+			{
+				try
+				{
+					in.close();
+				}
+				catch(IOException e) {}
+				try
+				{
+					out.close();
+				}
+				catch(IOException e) {}
+			}
+		}
+		
+		static void copy(InputStream in, OutputStream out) throws IOException
+		{
+			byte[] buffer = new byte[8192];
+			int count;
+			while((count = in.read(buffer)) != -1)
+			{
+				out.write(buffer, 0, count);
+			}
+			out.flush();
+		}
+	}
+}
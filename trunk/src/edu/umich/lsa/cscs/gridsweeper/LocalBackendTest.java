@@ -0,0 +1,143 @@
+/*
+	LocalBackendTest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class LocalBackendTest
+{
+	File dir;
+	
+	@Before
+	public void setUp() throws IOException
+	{
+		dir = TestFiles.createTempDir("LocalBackendTest");
+	}
+	
+	@After
+	public void tearDown()
+	{
+		TestFiles.delete(dir);
+	}
+	
+	private File createScript(String script) throws Exception
+	{
+		File file = new File(dir, "runner.sh");
+		Writer writer = new FileWriter(file);
+		writer.write("#!/bin/sh\n" + script);
+		writer.close();
+		Runtime.getRuntime().exec(new String[] {"chmod", "+x", file.getPath()}).waitFor();
+		return file;
+	}
+	
+	private String readFile(String name) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new FileReader(new File(dir, name)));
+		String line = reader.readLine();
+		reader.close();
+		return line;
+	}
+	
+	@Test
+	public void jobs() throws Exception
+	{
+		// Copies input to output, and exits with the status given in the input
+		File runner = createScript("read status\necho \"$status\"\necho err 1>&2\nexit $status\n");
+		
+		Writer writer = new FileWriter(new File(dir, "in.0"));
+		writer.write("0\n");
+		writer.close();
+		writer = new FileWriter(new File(dir, "in.1"));
+		writer.write("3\n");
+		writer.close();
+		
+		LocalBackend backend = new LocalBackend(runner.getPath(), 2, false);
+		assertNull(backend.getContact());
+		
+		String jobId0 = backend.submitJob("job 0", dir.getPath(),
+			new File(dir, "in.0").getPath(), "out.0", "err.0");
+		String jobId1 = backend.submitJob("job 1", dir.getPath(),
+			new File(dir, "in.1").getPath(), "out.1", "err.1");
+		
+		Map<String, JobOutcome> outcomes = new HashMap<String, JobOutcome>();
+		for(int i = 0; i < 2; i++)
+		{
+			JobOutcome outcome = backend.waitForJob();
+			outcomes.put(outcome.jobId, outcome);
+		}
+		backend.close();
+		
+		assertTrue(outcomes.get(jobId0).isOk());
+		assertFalse(outcomes.get(jobId1).isOk());
+		assertEquals(3, outcomes.get(jobId1).exitStatus);
+		
+		assertEquals("0", readFile("out.0"));
+		assertEquals("3", readFile("out.1"));
+		assertEquals("err", readFile("err.1"));
+	}
+	
+	@Test
+	public void bulkJob() throws Exception
+	{
+		File runner = createScript("echo \"$" + LocalBackend.TASK_ID_VARIABLE + "\"\n");
+		File input = new File(dir, "in");
+		input.createNewFile();
+		
+		LocalBackend backend = new LocalBackend(runner.getPath(), 3, false);
+		List<String> jobIds = backend.submitBulkJob("bulk", dir.getPath(),
+			input.getPath(), "out", "err", 3);
+		assertEquals(3, jobIds.size());
+		
+		for(int i = 0; i < 3; i++)
+		{
+			assertTrue(backend.waitForJob().isOk());
+		}
+		backend.close();
+		
+		for(int task = 1; task <= 3; task++)
+		{
+			assertEquals("" + task, readFile("out." + task));
+		}
+	}
+	
+	@Test
+	public void deadWorker() throws Exception
+	{
+		// Exits without reading any requests
+		File runner = createScript("exit 0\n");
+		File input = new File(dir, "in");
+		input.createNewFile();
+		
+		LocalBackend backend = new LocalBackend(runner.getPath(), 1, true);
+		backend.submitJob("job", dir.getPath(), input.getPath(), "out", "err");
+		JobOutcome outcome = backend.waitForJob();
+		backend.close();
+		
+		assertFalse(outcome.isOk());
+		assertTrue(outcome.aborted);
+		assertNotNull(readFile("err"));
+	}
+}
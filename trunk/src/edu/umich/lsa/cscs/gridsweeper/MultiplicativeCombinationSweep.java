@@ -71,113 +71,368 @@ class MultiplicativeCombinationSweep extends CombinationSweep
 	
 	public List<ParameterMap> generateMaps(boolean allowOverrides) throws SweepLengthException, DuplicateParameterException
 	{
-		if(children.size() == 0) return new ArrayList<ParameterMap>(0);
+		List<ParameterMap> maps = new ArrayList<ParameterMap>();
+		
+		Iterator<ParameterMap> iterator = mapIterator(allowOverrides);
+		while(iterator.hasNext())
+		{
+			maps.add(iterator.next());
+		}
+		
+		return maps;
+	}
+	
+	/**
+	 * Returns an iterator over all combinations of child parameter maps,
+	 * in the same order as {@link #generateMaps()}.
+	 * @return An iterator over combined parameter maps.
+	 */
+	@Override
+	public Iterator<ParameterMap> mapIterator() throws SweepLengthException, DuplicateParameterException
+	{
+		return mapIterator(false);
+	}
+	
+	/**
+	 * Returns an iterator over all combinations of child parameter maps.
+	 * Only one map per child is held at a time, so memory use depends on
+	 * the depth of the sweep rather than on the number of combinations.
+	 * @param allowOverrides Whether {@link SingleValueSweep} children should
+	 * only supply values for parameters not set by other children, as is
+	 * done for the root sweep of an experiment.
+	 * @return An iterator over combined parameter maps.
+	 * @throws SweepLengthException If a child parallel sweep has mismatched lengths.
+	 * @throws DuplicateParameterException If children set the same parameter.
+	 */
+	public Iterator<ParameterMap> mapIterator(boolean allowOverrides) throws SweepLengthException, DuplicateParameterException
+	{
+		return mapIterator(allowOverrides, 0);
+	}
+	
+	/**
+	 * Returns an iterator over combinations of child parameter maps, starting
+	 * at a particular position in the order generated by
+	 * {@link #generateMaps(boolean)}. Because the first child varies slowest,
+	 * iterators over consecutive ranges of positions divide the sweep along
+	 * its outermost dimension, and can be used to generate it in parallel.
+	 * @param allowOverrides Whether this is the root sweep of an experiment.
+	 * @param start The position of the first map to generate.
+	 * @return An iterator over combined parameter maps.
+	 * @throws SweepLengthException If a child parallel sweep has mismatched lengths.
+	 * @throws DuplicateParameterException If children set the same parameter.
+	 */
+	public Iterator<ParameterMap> mapIterator(boolean allowOverrides, long start) throws SweepLengthException, DuplicateParameterException
+	{
+		if(children.size() == 0)
+			return Collections.<ParameterMap>emptyList().iterator();
+		
+		if(!allowOverrides)
+			return new CombinationIterator(children, start);
 		
 		// If overrides are allowed (i.e., this is the root sweep of an experiment),
 		// the parameter maps are generated from all values except the
 		// SingleValueSweep children. Then, values for any parameters not already
 		// used are loaded from the SingleValueSweeps.
-		if(allowOverrides)
+		final List<SingleValueSweep> baseChildren = getBaseChildren();
+		List<Sweep> otherChildren = getOtherChildren();
+		
+		if(otherChildren.size() == 0)
 		{
-			List<SingleValueSweep> baseChildren = new ArrayList<SingleValueSweep>();
-			List<Sweep> otherChildren = new ArrayList<Sweep>();
+			if(start > 0)
+				return Collections.<ParameterMap>emptyList().iterator();
 			
-			for(Sweep child : children)
+			ParameterMap map = new ParameterMap();
+			addBaseValues(map, baseChildren);
+			return Collections.singletonList(map).iterator();
+		}
+		
+		final Iterator<ParameterMap> otherIterator = new CombinationIterator(otherChildren, start);
+		
+		return new Iterator<ParameterMap>()
+		{
+			public boolean hasNext()
 			{
-				if(child instanceof SingleValueSweep)
-					baseChildren.add((SingleValueSweep)child);
-				else
-					otherChildren.add(child);
+				return otherIterator.hasNext();
 			}
 			
-			if(otherChildren.size() > 0)
+			public ParameterMap next()
 			{
-				List<ParameterMap> maps = generateMaps(otherChildren);
-				assert(maps.size() > 0);
-				ParameterMap firstMap = maps.get(0);
-				
-				for(SingleValueSweep baseValue : baseChildren)
-				{
-					String name = baseValue.getName();
-					if(!firstMap.containsKey(name))
-					{
-						for(ParameterMap map : maps)
-						{
-							map.put(name, baseValue.getValue());
-						}
-					}
-				}
-				
-				return maps;
+				ParameterMap map = otherIterator.next();
+				addBaseValues(map, baseChildren);
+				return map;
 			}
-			else
+			
+			public void remove()
 			{
-				ParameterMap map = new ParameterMap();
-				
-				for(SingleValueSweep baseValue : baseChildren)
-				{
-					map.put(baseValue.getName(), baseValue.getValue());
-				}
-				
-				List<ParameterMap> maps = new ArrayList<ParameterMap>();
-				maps.add(map);
-				return maps;
+				throw new UnsupportedOperationException();
 			}
+		};
+	}
+	
+	/**
+	 * Returns the number of combinations of child parameter maps: the product
+	 * of the children's map counts.
+	 * @return The number of maps generated by this sweep.
+	 */
+	@Override
+	public long getMapCount() throws SweepLengthException
+	{
+		return getMapCount(false);
+	}
+	
+	/**
+	 * Returns the number of maps generated by {@link #generateMaps(boolean)}.
+	 * @param allowOverrides Whether this is the root sweep of an experiment.
+	 * @return The number of maps.
+	 * @throws SweepLengthException If a child parallel sweep has mismatched lengths.
+	 */
+	public long getMapCount(boolean allowOverrides) throws SweepLengthException
+	{
+		if(children.size() == 0) return 0;
+		
+		if(allowOverrides)
+		{
+			List<Sweep> otherChildren = getOtherChildren();
+			if(otherChildren.size() == 0) return 1;
+			return getMapCount(otherChildren);
 		}
-		else return generateMaps(children);
+		else return getMapCount(children);
 	}
-
+	
+	private static long getMapCount(List<Sweep> sweeps) throws SweepLengthException
+	{
+		long count = 1;
+		for(Sweep sweep : sweeps)
+		{
+			long childCount = sweep.getMapCount();
+			if(childCount != 0 && count > Long.MAX_VALUE / childCount)
+			{
+				throw new ArithmeticException("Too many combinations in sweep.");
+			}
+			count *= childCount;
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the combination at a particular position, in the order
+	 * generated by {@link #generateMaps()}.
+	 * @param index The position of the combination.
+	 * @return The combined parameter map.
+	 */
+	@Override
+	public ParameterMap getMap(long index) throws SweepLengthException, DuplicateParameterException
+	{
+		return getMap(index, false);
+	}
+	
 	/**
-	 * Recursively generates maps from the children that have not yet been combined.
-	 * It should be possible (?) to implement this method without recursion as an optimization.
-	 * @param children The children left to combine
-	 * @return A list of {@code ParameterMap} objects with the partial combinations.
-	 * @throws SweepLengthException
-	 * @throws DuplicateParameterException
+	 * Returns the map at a particular position in the list generated by
+	 * {@link #generateMaps(boolean)}. The index is treated as a mixed-radix
+	 * number whose digits are indexes into each child, with the last child
+	 * as the least-significant digit.
+	 * @param index The position of the map.
+	 * @param allowOverrides Whether this is the root sweep of an experiment.
+	 * @return The combined parameter map.
+	 * @throws SweepLengthException If a child parallel sweep has mismatched lengths.
+	 * @throws DuplicateParameterException If children set the same parameter.
 	 */
-	private List<ParameterMap> generateMaps(List<Sweep> children) throws SweepLengthException, DuplicateParameterException
+	public ParameterMap getMap(long index, boolean allowOverrides) throws SweepLengthException, DuplicateParameterException
 	{
-		assert children.size() > 0;
+		if(index < 0 || index >= getMapCount(allowOverrides))
+		{
+			throw new IndexOutOfBoundsException("Index " + index + " out of range for sweep.");
+		}
 		
-		List<ParameterMap> firstChildMaps = children.get(0).generateMaps();
+		if(!allowOverrides) return getMap(index, children);
 		
-		// Termination condition: for a single sweep, just return its generated maps
-		if(children.size() == 1) return firstChildMaps;
+		List<Sweep> otherChildren = getOtherChildren();
+		ParameterMap map;
+		if(otherChildren.size() == 0) map = new ParameterMap();
+		else map = getMap(index, otherChildren);
 		
-		// Recursion: combine the first element of the list with this function
-		// called on the remaining elements
-		return combineMaps(firstChildMaps, generateMaps(children.subList(1, children.size())));
+		addBaseValues(map, getBaseChildren());
+		return map;
+	}
+	
+	private static ParameterMap getMap(long index, List<Sweep> sweeps) throws SweepLengthException, DuplicateParameterException
+	{
+		int count = sweeps.size();
+		ParameterMap[] childMaps = new ParameterMap[count];
+		
+		for(int i = count - 1; i >= 0; i--)
+		{
+			Sweep sweep = sweeps.get(i);
+			long childCount = sweep.getMapCount();
+			childMaps[i] = sweep.getMap(index % childCount);
+			index /= childCount;
+		}
+		
+		return mergeMaps(childMaps);
 	}
 	
 	/**
-	 * Combines two lists of parameter maps to create a new list consisting of all
-	 * the possible combinations of maps. 
-	 * @param firstMaps One list of maps.
-	 * @param secondMaps The other list of maps.
-	 * @return A list of combined maps.
-	 * @throws DuplicateParameterException
+	 * Returns the {@link SingleValueSweep} children, which provide default
+	 * values when this is the root sweep of an experiment.
+	 * @return The single-value children.
 	 */
-	private List<ParameterMap> combineMaps(List<ParameterMap> firstMaps, List<ParameterMap> secondMaps) throws DuplicateParameterException
+	private List<SingleValueSweep> getBaseChildren()
 	{
-		List<ParameterMap> combinedMaps = new ArrayList<ParameterMap>(firstMaps.size() * secondMaps.size());
+		List<SingleValueSweep> baseChildren = new ArrayList<SingleValueSweep>();
+		for(Sweep child : children)
+		{
+			if(child instanceof SingleValueSweep)
+				baseChildren.add((SingleValueSweep)child);
+		}
+		return baseChildren;
+	}
+	
+	/**
+	 * Returns all children other than {@link SingleValueSweep} children.
+	 * @return The non-single-value children.
+	 */
+	private List<Sweep> getOtherChildren()
+	{
+		List<Sweep> otherChildren = new ArrayList<Sweep>();
+		for(Sweep child : children)
+		{
+			if(!(child instanceof SingleValueSweep))
+				otherChildren.add(child);
+		}
+		return otherChildren;
+	}
+	
+	/**
+	 * Loads values from single-value children for any parameters not already
+	 * set in a map.
+	 * @param map The map to fill in.
+	 * @param baseChildren The single-value children.
+	 */
+	private static void addBaseValues(ParameterMap map, List<SingleValueSweep> baseChildren)
+	{
+		for(SingleValueSweep baseValue : baseChildren)
+		{
+			String name = baseValue.getName();
+			if(!map.containsKey(name))
+			{
+				map.put(name, baseValue.getValue());
+			}
+		}
+	}
+	
+	/**
+	 * Iterates through combinations of child maps like an odometer: the last
+	 * child advances fastest, and when a child runs out of maps it is restarted
+	 * and the child before it advances.
+	 * @author Ed Baskerville
+	 *
+	 */
+	private static class CombinationIterator implements Iterator<ParameterMap>
+	{
+		private List<Sweep> sweeps;
+		private List<Iterator<ParameterMap>> iterators;
+		private ParameterMap[] current;
+		private boolean hasNext;
 		
-		// Put each combination of parameters into the combined maps
-		for(ParameterMap firstMap : firstMaps)
-		for(ParameterMap secondMap : secondMaps)
+		/**
+		 * Starts the iteration. Every child generates maps with the same
+		 * parameter names each time, so conflicting children are detected
+		 * here by merging the first combination.
+		 * @param sweeps The sweeps to combine.
+		 * @param start The position of the first combination, treated as a
+		 * mixed-radix number as in {@link MultiplicativeCombinationSweep#getMap(long, boolean)}.
+		 * @throws SweepLengthException
+		 * @throws DuplicateParameterException
+		 */
+		public CombinationIterator(List<Sweep> sweeps, long start) throws SweepLengthException, DuplicateParameterException
 		{
-			ParameterMap combinedMap = new ParameterMap(firstMap);
-			for(String name : secondMap.keySet())
+			int count = sweeps.size();
+			
+			this.sweeps = sweeps;
+			iterators = new ArrayList<Iterator<ParameterMap>>(count);
+			current = new ParameterMap[count];
+			hasNext = (start == 0 || start < getMapCount(sweeps));
+			
+			// Digits of the starting position, least significant last
+			long[] digits = new long[count];
+			for(int i = count - 1; i >= 0; i--)
 			{
-				if(combinedMap.containsKey(name))
+				long childCount = sweeps.get(i).getMapCount();
+				if(childCount == 0) break;
+				digits[i] = start % childCount;
+				start /= childCount;
+			}
+			
+			for(int i = 0; i < count; i++)
+			{
+				Iterator<ParameterMap> iterator = sweeps.get(i).mapIterator();
+				for(long j = 0; j < digits[i] && iterator.hasNext(); j++)
 				{
-					throw new DuplicateParameterException(name);
+					iterator.next();
 				}
-				combinedMap.put(name, secondMap.get(name));
+				if(iterator.hasNext()) current[i] = iterator.next();
+				else hasNext = false;
+				
+				iterators.add(iterator);
+			}
+			
+			if(hasNext) mergeMaps(current);
+		}
+		
+		public boolean hasNext()
+		{
+			return hasNext;
+		}
+		
+		public ParameterMap next()
+		{
+			if(!hasNext) throw new NoSuchElementException();
+			
+			ParameterMap map;
+			try
+			{
+				map = mergeMaps(current);
+			}
+			catch(DuplicateParameterException e)
+			{
+				throw new IllegalStateException("Sweep generated inconsistent parameter names.", e);
 			}
-			combinedMaps.add(combinedMap);
+			
+			advance();
+			return map;
+		}
+		
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
 		}
 		
-		return combinedMaps;
+		private void advance()
+		{
+			for(int i = current.length - 1; i >= 0; i--)
+			{
+				Iterator<ParameterMap> iterator = iterators.get(i);
+				if(iterator.hasNext())
+				{
+					current[i] = iterator.next();
+					return;
+				}
+				
+				// Restart this child and carry over to the previous one
+				try
+				{
+					iterator = sweeps.get(i).mapIterator();
+				}
+				catch(Exception e)
+				{
+					throw new IllegalStateException("Sweep could not be restarted.", e);
+				}
+				iterators.set(i, iterator);
+				current[i] = iterator.next();
+			}
+			
+			hasNext = false;
+		}
 	}
 
 	public void writeXML(XMLWriter xmlWriter)
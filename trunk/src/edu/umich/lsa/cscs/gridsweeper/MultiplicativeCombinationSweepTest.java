@@ -158,4 +158,154 @@ public class MultiplicativeCombinationSweepTest
 		}
 		catch(DuplicateParameterException e) {}
 	}
+	
+	@Test
+	public void iteratorMatchesList() throws SweepLengthException, DuplicateParameterException
+	{
+		ListSweep listSweep1 = new ListSweep("param1");
+		listSweep1.add("A");
+		listSweep1.add("B");
+		sweep.add(listSweep1);
+		
+		ParallelCombinationSweep parallelSweep = new ParallelCombinationSweep();
+		ListSweep listSweep2 = new ListSweep("param2");
+		listSweep2.add("1");
+		listSweep2.add("2");
+		listSweep2.add("3");
+		parallelSweep.add(listSweep2);
+		parallelSweep.add(new RangeListSweep("param3", new java.math.BigDecimal("0.1"),
+				new java.math.BigDecimal("0.3"), new java.math.BigDecimal("0.1")));
+		sweep.add(parallelSweep);
+		
+		sweep.add(new SingleValueSweep("param4", "x"));
+		
+		maps = sweep.generateMaps();
+		assertEquals(6, maps.size());
+		
+		Iterator<ParameterMap> iterator = sweep.mapIterator();
+		for(ParameterMap map : maps)
+		{
+			assertTrue(iterator.hasNext());
+			assertEquals(map, iterator.next());
+		}
+		assertTrue(!iterator.hasNext());
+	}
+	
+	@Test
+	public void iteratorWithOverrides() throws SweepLengthException, DuplicateParameterException
+	{
+		sweep.add(new SingleValueSweep("param1", "default"));
+		sweep.add(new SingleValueSweep("param2", "2"));
+		
+		ListSweep listSweep = new ListSweep("param1");
+		listSweep.add("A");
+		listSweep.add("B");
+		sweep.add(listSweep);
+		
+		Iterator<ParameterMap> iterator = sweep.mapIterator(true);
+		
+		ParameterMap map = iterator.next();
+		assertEquals("A", map.get("param1"));
+		assertEquals("2", map.get("param2"));
+		
+		map = iterator.next();
+		assertEquals("B", map.get("param1"));
+		assertEquals("2", map.get("param2"));
+		
+		assertTrue(!iterator.hasNext());
+	}
+	
+	@Test
+	public void duplicateParameterIterator() throws SweepLengthException
+	{
+		ListSweep listSweep = new ListSweep("beta");
+		listSweep.add("0.1");
+		listSweep.add("0.2");
+		sweep.add(listSweep);
+		sweep.add(listSweep);
+		
+		try
+		{
+			sweep.mapIterator();
+			fail();
+		}
+		catch(DuplicateParameterException e) {}
+	}
+	
+	@Test
+	public void randomAccess() throws SweepLengthException, DuplicateParameterException
+	{
+		ListSweep listSweep1 = new ListSweep("param1");
+		listSweep1.add("A");
+		listSweep1.add("B");
+		listSweep1.add("C");
+		sweep.add(listSweep1);
+		
+		sweep.add(new RangeListSweep("param2", new java.math.BigDecimal("1"),
+				new java.math.BigDecimal("5"), new java.math.BigDecimal("2")));
+		
+		ListSweep listSweep3 = new ListSweep("param3");
+		listSweep3.add("a");
+		listSweep3.add("b");
+		sweep.add(listSweep3);
+		
+		maps = sweep.generateMaps();
+		assertEquals(18, maps.size());
+		assertEquals(18, sweep.getMapCount());
+		
+		for(int i = 0; i < maps.size(); i++)
+		{
+			assertEquals(maps.get(i), sweep.getMap(i));
+		}
+		
+		try
+		{
+			sweep.getMap(18);
+			fail();
+		}
+		catch(IndexOutOfBoundsException e) {}
+	}
+	
+	@Test
+	public void randomAccessWithOverrides() throws SweepLengthException, DuplicateParameterException
+	{
+		sweep.add(new SingleValueSweep("param1", "default"));
+		sweep.add(new SingleValueSweep("param2", "2"));
+		
+		ListSweep listSweep = new ListSweep("param1");
+		listSweep.add("A");
+		listSweep.add("B");
+		sweep.add(listSweep);
+		
+		maps = sweep.generateMaps(true);
+		assertEquals(2, sweep.getMapCount(true));
+		assertEquals(maps.get(0), sweep.getMap(0, true));
+		assertEquals(maps.get(1), sweep.getMap(1, true));
+	}
+	
+	@Test
+	public void iteratorFromPosition() throws SweepLengthException, DuplicateParameterException
+	{
+		ListSweep listSweep1 = new ListSweep("param1");
+		listSweep1.add("A");
+		listSweep1.add("B");
+		listSweep1.add("C");
+		sweep.add(listSweep1);
+		
+		ListSweep listSweep2 = new ListSweep("param2");
+		listSweep2.add("1");
+		listSweep2.add("2");
+		sweep.add(listSweep2);
+		
+		maps = sweep.generateMaps();
+		for(int start = 0; start <= maps.size(); start++)
+		{
+			Iterator<ParameterMap> iterator = sweep.mapIterator(false, start);
+			for(ParameterMap map : maps.subList(start, maps.size()))
+			{
+				assertEquals(map, iterator.next());
+			}
+			assertTrue(!iterator.hasNext());
+		}
+	}
 }
@@ -0,0 +1,52 @@
+/*
+	OutputExtractor.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * The interface for output extractors, which pull summary values out of the
+ * standard output of a run for {@code gsweep aggregate}. As with adapters,
+ * {@code OutputExtractor} objects are assumed to support a single-argument
+ * constructor with signature {@code OutputExtractor(Settings settings)}.
+ * A single extractor is used for all runs, from several threads at once,
+ * so implementations must be thread-safe.
+ * @see KeyValueExtractor
+ * @author Ed Baskerville
+ *
+ */
+public interface OutputExtractor
+{
+	/**
+	 * Extracts values from the standard output of a run.
+	 * @param output The run's standard output, or {@code null} if
+	 * there was none. It is closed by the caller.
+	 * @param parameters The parameter values for the run's case.
+	 * @param runNumber The run number.
+	 * @return The values, by column name. Columns are listed in the order
+	 * the map iterates over them.
+	 * @throws Exception If the output cannot be read or parsed.
+	 */
+	public Map<String, String> extract(InputStream output, StringMap parameters,
+		int runNumber) throws Exception;
+}
@@ -0,0 +1,72 @@
+/*
+	OutputFile.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+
+/**
+ * Describes a file of model output that an adapter has written directly
+ * to disk, rather than returning its contents in a {@link RunResults} object.
+ * @author Ed Baskerville
+ *
+ */
+public class OutputFile implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+	
+	private String path;
+	private long size;
+	private long checksum;
+	
+	/**
+	 * Constructor.
+	 * @param path The path to the file, relative to the case directory.
+	 * @param size The size of the file in bytes.
+	 * @param checksum The CRC-32 checksum of the file's contents.
+	 */
+	public OutputFile(String path, long size, long checksum)
+	{
+		this.path = path;
+		this.size = size;
+		this.checksum = checksum;
+	}
+	
+	public String getPath()
+	{
+		return path;
+	}
+	
+	public long getSize()
+	{
+		return size;
+	}
+	
+	public long getChecksum()
+	{
+		return checksum;
+	}
+	
+	public String toString()
+	{
+		return path + " (" + size + " bytes, CRC-32 " + Long.toHexString(checksum) + ")";
+	}
+}
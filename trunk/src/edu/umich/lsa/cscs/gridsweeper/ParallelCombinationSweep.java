@@ -68,49 +68,124 @@ class ParallelCombinationSweep extends CombinationSweep
 	@Override
 	public List<ParameterMap> generateMaps() throws SweepLengthException, DuplicateParameterException
 	{
-		int numChildren = children.size();
+		List<ParameterMap> maps = new ArrayList<ParameterMap>();
+		
+		Iterator<ParameterMap> iterator = mapIterator();
+		while(iterator.hasNext())
+		{
+			maps.add(iterator.next());
+		}
+		
+		return maps;
+	}
+	
+	/**
+	 * Returns an iterator that combines the maps of each child at each index,
+	 * in the same order as {@link #generateMaps()}. Child lengths are verified
+	 * before the iterator is returned.
+	 * @return An iterator over combined parameter maps.
+	 */
+	@Override
+	public Iterator<ParameterMap> mapIterator() throws SweepLengthException, DuplicateParameterException
+	{
+		final int numChildren = children.size();
+		
+		if(numChildren == 0) return Collections.<ParameterMap>emptyList().iterator();
 		
-		if(numChildren == 0) return new ArrayList<ParameterMap>(0);
+		// Verify that all children have the same length
+		long length = getMapCount();
 		
-		// Assemble childrens' maps
-		int length = -1;
-		List<List<ParameterMap>> childMapses = new ArrayList<List<ParameterMap>>();
+		final List<Iterator<ParameterMap>> iterators = new ArrayList<Iterator<ParameterMap>>(numChildren);
 		for(Sweep child : children)
 		{
-			List<ParameterMap> childMaps = child.generateMaps();
-			
-			// Verify length
-			if(length == -1) length = childMaps.size();
-			else if(childMaps.size() != length) throw new SweepLengthException();
-			
-			childMapses.add(childMaps);
+			iterators.add(child.mapIterator());
 		}
 		
-		List<ParameterMap> maps = new ArrayList<ParameterMap>();
+		final ParameterMap[] childMaps = new ParameterMap[numChildren];
+		
+		// If there's ever a duplicate value for a parameter, it will show up
+		// in the first combination, since every child uses the same names each time
+		if(length > 0)
+		{
+			for(int i = 0; i < numChildren; i++)
+			{
+				childMaps[i] = children.get(i).mapIterator().next();
+			}
+			mergeMaps(childMaps);
+		}
 		
-		// Iterate from beginning to end. Combine the maps from each child
-		// at each index into one map for that index.
-		// If there's ever a duplicate value for a parameter, throw an exception
-		for(int i = 0; i < length; i++)
+		return new Iterator<ParameterMap>()
 		{
-			ParameterMap map = new ParameterMap();
-			for(List<ParameterMap> childMaps : childMapses)
+			public boolean hasNext()
 			{
-				ParameterMap childMap = childMaps.get(i);
-				for(String name : childMap.keySet())
+				return iterators.get(0).hasNext();
+			}
+			
+			public ParameterMap next()
+			{
+				// Combine the maps from each child at this index into one map
+				for(int i = 0; i < numChildren; i++)
 				{
-					if(map.containsKey(name))
-					{
-						throw new DuplicateParameterException(name);
-					}
-					
-					map.put(name, childMap.get(name));
+					childMaps[i] = iterators.get(i).next();
 				}
+				
+				try
+				{
+					return mergeMaps(childMaps);
+				}
+				catch(DuplicateParameterException e)
+				{
+					throw new IllegalStateException("Sweep generated inconsistent parameter names.", e);
+				}
+			}
+			
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
 			}
-			maps.add(map);
+		};
+	}
+
+	/**
+	 * Returns the number of maps generated, which is the common length of the children.
+	 * @return The number of maps generated by this sweep.
+	 * @throws SweepLengthException If the children do not all have the same length.
+	 */
+	@Override
+	public long getMapCount() throws SweepLengthException
+	{
+		long length = -1;
+		for(Sweep child : children)
+		{
+			long childLength = child.getMapCount();
+			
+			if(length == -1) length = childLength;
+			else if(childLength != length) throw new SweepLengthException();
 		}
 		
-		return maps;
+		return length == -1 ? 0 : length;
+	}
+	
+	/**
+	 * Returns the combination of the children's maps at a particular index.
+	 * @param index The position of the map.
+	 * @return The combined parameter map.
+	 */
+	@Override
+	public ParameterMap getMap(long index) throws SweepLengthException, DuplicateParameterException
+	{
+		if(index < 0 || index >= getMapCount())
+		{
+			throw new IndexOutOfBoundsException("Index " + index + " out of range for sweep.");
+		}
+		
+		ParameterMap[] childMaps = new ParameterMap[children.size()];
+		for(int i = 0; i < childMaps.length; i++)
+		{
+			childMaps[i] = children.get(i).getMap(index);
+		}
+		
+		return mergeMaps(childMaps);
 	}
 
 	public void writeXML(XMLWriter xmlWriter)
@@ -124,4 +124,44 @@ public class ParallelCombinationSweepTest
 		}
 		catch(SweepLengthException e) {}
 	}
+	
+	@Test
+	public void randomAccess() throws SweepLengthException, DuplicateParameterException
+	{
+		ListSweep listSweep1 = new ListSweep("beta");
+		listSweep1.add("0.1");
+		listSweep1.add("0.2");
+		listSweep1.add("0.3");
+		sweep.add(listSweep1);
+		
+		sweep.add(new RangeListSweep("gamma", new java.math.BigDecimal("1"),
+				new java.math.BigDecimal("3"), new java.math.BigDecimal("1")));
+		
+		List<ParameterMap> maps = sweep.generateMaps();
+		assertEquals(3, sweep.getMapCount());
+		for(int i = 0; i < maps.size(); i++)
+		{
+			assertEquals(maps.get(i), sweep.getMap(i));
+		}
+	}
+	
+	@Test
+	public void mismatchedLengthCount()
+	{
+		ListSweep listSweep1 = new ListSweep("beta");
+		listSweep1.add("0.1");
+		sweep.add(listSweep1);
+		
+		ListSweep listSweep2 = new ListSweep("gamma");
+		listSweep2.add("0.1");
+		listSweep2.add("0.2");
+		sweep.add(listSweep2);
+		
+		try
+		{
+			sweep.getMapCount();
+			fail();
+		}
+		catch(SweepLengthException e) {}
+	}
 }
@@ -0,0 +1,213 @@
+/*
+	ParameterSchema.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.util.*;
+
+/**
+ * The parameters set by the cases of an experiment, shared by all of them.
+ * Every case sets the same parameters, each to a value taken from the single
+ * sweep that sets it, so a case can be stored as one {@code int} per
+ * parameter: the position of its value in that sweep. For a range sweep, the
+ * {@code BigDecimal} value is only computed when the case's parameter map is
+ * requested. The schema also decodes a case's position in the experiment
+ * into these indexes directly, as {@link MultiplicativeCombinationSweep#getMap(long, boolean)}
+ * does, so no parameter maps are created while cases are generated.
+ * 
+ * <p>A schema is built from the root sweep and does not change afterwards,
+ * so it can be used from several threads at once.</p>
+ * @author Ed Baskerville
+ *
+ */
+class ParameterSchema
+{
+	/**
+	 * A sweep in the tree of sweeps, and how its position is divided among
+	 * its children.
+	 */
+	private static class Node
+	{
+		long count;
+		
+		// For a single sweep, the position of its parameter in the schema
+		int slot = -1;
+		
+		// For a combination sweep, its children
+		Node[] children;
+		boolean parallel;
+	}
+	
+	private String[] names;
+	private SingleSweep[] sweeps;
+	private Node root;
+	
+	/**
+	 * Builds the schema for an experiment's root sweep. As when generating
+	 * the maps of the root sweep, {@link SingleValueSweep} children of the
+	 * root only set parameters not set by other children.
+	 * @param rootSweep The root sweep.
+	 * @throws SweepLengthException If a child parallel sweep has mismatched lengths.
+	 * @throws DuplicateParameterException If children set the same parameter.
+	 */
+	public ParameterSchema(MultiplicativeCombinationSweep rootSweep) throws SweepLengthException, DuplicateParameterException
+	{
+		List<SingleSweep> sweepList = new ArrayList<SingleSweep>();
+		Map<String, Integer> slots = new HashMap<String, Integer>();
+		
+		List<Node> otherNodes = new ArrayList<Node>();
+		for(Sweep child : rootSweep.getChildren())
+		{
+			if(!(child instanceof SingleValueSweep))
+				otherNodes.add(createNode(child, sweepList, slots));
+		}
+		root = new Node();
+		root.count = rootSweep.getMapCount(true);
+		root.children = otherNodes.toArray(new Node[otherNodes.size()]);
+		
+		// Base values always have index zero, as in a new index array
+		for(Sweep child : rootSweep.getChildren())
+		{
+			if(child instanceof SingleValueSweep)
+			{
+				String name = ((SingleValueSweep)child).getName();
+				if(!slots.containsKey(name))
+				{
+					slots.put(name, sweepList.size());
+					sweepList.add((SingleValueSweep)child);
+				}
+			}
+		}
+		
+		sweeps = sweepList.toArray(new SingleSweep[sweepList.size()]);
+		names = new String[sweeps.length];
+		for(int i = 0; i < sweeps.length; i++)
+		{
+			names[i] = sweeps[i].getName();
+		}
+	}
+	
+	private static Node createNode(Sweep sweep, List<SingleSweep> sweepList,
+		Map<String, Integer> slots) throws SweepLengthException, DuplicateParameterException
+	{
+		Node node = new Node();
+		node.count = sweep.getMapCount();
+		if(sweep instanceof SingleSweep)
+		{
+			String name = ((SingleSweep)sweep).getName();
+			if(slots.containsKey(name))
+				throw new DuplicateParameterException(name);
+			if(node.count > Integer.MAX_VALUE)
+				throw new ArithmeticException("Too many values for parameter " + name + ".");
+			
+			node.slot = sweepList.size();
+			slots.put(name, node.slot);
+			sweepList.add((SingleSweep)sweep);
+		}
+		else
+		{
+			List<Sweep> children = ((CombinationSweep)sweep).getChildren();
+			node.parallel = (sweep instanceof ParallelCombinationSweep);
+			node.children = new Node[children.size()];
+			for(int i = 0; i < node.children.length; i++)
+			{
+				node.children[i] = createNode(children.get(i), sweepList, slots);
+			}
+		}
+		return node;
+	}
+	
+	/**
+	 * Returns the number of parameters.
+	 * @return The number of parameters.
+	 */
+	public int getParameterCount()
+	{
+		return names.length;
+	}
+	
+	/**
+	 * Returns the number of cases: the number of maps generated by the root sweep.
+	 * @return The number of cases.
+	 */
+	public long getCaseCount()
+	{
+		return root.count;
+	}
+	
+	/**
+	 * Computes the value indexes of a case from its position.
+	 * @param index The position of the case.
+	 * @return The position of each parameter's value in the sweep that sets it.
+	 * @throws IndexOutOfBoundsException If there is no case at that position.
+	 */
+	public int[] getValueIndexes(long index)
+	{
+		if(index < 0 || index >= root.count)
+		{
+			throw new IndexOutOfBoundsException("Index " + index + " out of range for sweep.");
+		}
+		
+		int[] indexes = new int[names.length];
+		setValueIndexes(root, index, indexes);
+		return indexes;
+	}
+	
+	private static void setValueIndexes(Node node, long index, int[] indexes)
+	{
+		if(node.children == null)
+		{
+			indexes[node.slot] = (int)index;
+		}
+		else if(node.parallel)
+		{
+			for(Node child : node.children)
+			{
+				setValueIndexes(child, index, indexes);
+			}
+		}
+		else
+		{
+			// The last child is the least-significant digit
+			for(int i = node.children.length - 1; i >= 0; i--)
+			{
+				Node child = node.children[i];
+				setValueIndexes(child, index % child.count, indexes);
+				index /= child.count;
+			}
+		}
+	}
+	
+	/**
+	 * Creates the parameter map for a case.
+	 * @param indexes The case's value indexes, from {@link #getValueIndexes}.
+	 * @return A new parameter map.
+	 */
+	public ParameterMap getParameterMap(int[] indexes)
+	{
+		ParameterMap map = new ParameterMap(names.length * 4 / 3 + 1);
+		for(int i = 0; i < names.length; i++)
+		{
+			map.put(names[i], sweeps[i].getValue(indexes[i]));
+		}
+		return map;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+	ParameterSchemaTest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ParameterSchemaTest
+{
+	MultiplicativeCombinationSweep sweep;
+	
+	@Before
+	public void setUp()
+	{
+		sweep = new MultiplicativeCombinationSweep();
+	}
+	
+	private static ListSweep createListSweep(String name, String... values)
+	{
+		ListSweep listSweep = new ListSweep(name);
+		for(String value : values)
+		{
+			listSweep.add(value);
+		}
+		return listSweep;
+	}
+	
+	@Test
+	public void matchesRootSweep() throws SweepLengthException, DuplicateParameterException
+	{
+		// A default that is overridden, and one that is not
+		sweep.add(new SingleValueSweep("alpha", "default"));
+		sweep.add(new SingleValueSweep("beta", "2"));
+		sweep.add(createListSweep("alpha", "A", "B"));
+		
+		ParallelCombinationSweep parallelSweep = new ParallelCombinationSweep();
+		parallelSweep.add(new RangeListSweep("gamma",
+			new BigDecimal("0.10"), new BigDecimal("0.30"), new BigDecimal("0.10")));
+		parallelSweep.add(createListSweep("delta", "x", "y", "z"));
+		sweep.add(parallelSweep);
+		
+		MultiplicativeCombinationSweep nestedSweep = new MultiplicativeCombinationSweep();
+		nestedSweep.add(new RangeListSweep("epsilon",
+			new BigDecimal("1"), new BigDecimal("0"), new BigDecimal("0.5")));
+		nestedSweep.add(new SingleValueSweep("zeta", "z"));
+		sweep.add(nestedSweep);
+		
+		ParameterSchema schema = new ParameterSchema(sweep);
+		List<ParameterMap> maps = sweep.generateMaps(true);
+		assertEquals(6, schema.getParameterCount());
+		assertEquals(maps.size(), schema.getCaseCount());
+		for(int i = 0; i < maps.size(); i++)
+		{
+			ParameterMap map = schema.getParameterMap(schema.getValueIndexes(i));
+			assertEquals(maps.get(i), map);
+		}
+		
+		// Range values keep their scale
+		assertEquals("0.20", schema.getParameterMap(schema.getValueIndexes(3)).get("gamma").toString());
+		
+		try
+		{
+			schema.getValueIndexes(maps.size());
+			fail();
+		}
+		catch(IndexOutOfBoundsException e) {}
+	}
+	
+	@Test
+	public void onlyDefaults() throws SweepLengthException, DuplicateParameterException
+	{
+		ParameterSchema schema = new ParameterSchema(sweep);
+		assertEquals(0, schema.getCaseCount());
+		
+		sweep.add(new SingleValueSweep("alpha", "1"));
+		schema = new ParameterSchema(sweep);
+		assertEquals(1, schema.getCaseCount());
+		assertEquals(new ParameterMap("alpha", "1"),
+			schema.getParameterMap(schema.getValueIndexes(0)));
+	}
+	
+	@Test
+	public void duplicateParameter() throws SweepLengthException
+	{
+		sweep.add(createListSweep("alpha", "A", "B"));
+		MultiplicativeCombinationSweep nestedSweep = new MultiplicativeCombinationSweep();
+		nestedSweep.add(createListSweep("alpha", "C"));
+		sweep.add(nestedSweep);
+		
+		try
+		{
+			new ParameterSchema(sweep);
+			fail();
+		}
+		catch(DuplicateParameterException e)
+		{
+			assertEquals("alpha", e.getName());
+		}
+	}
+}
@@ -108,6 +108,103 @@ class RangeListSweep extends SingleSweep
 		
 		return maps;
 	}
+	
+	/**
+	 * Returns an iterator over the same parameter maps as {@link #generateMaps()},
+	 * computing each value from the previous one as it is requested.
+	 * @return An iterator over parameter maps for this range.
+	 */
+	@Override
+	public Iterator<ParameterMap> mapIterator()
+	{
+		// The zero-increment case never has more than two values
+		if(increment.compareTo(BigDecimal.ZERO) == 0)
+		{
+			return generateMaps().iterator();
+		}
+		
+		final boolean ascending = start.compareTo(end) <= 0;
+		
+		return new Iterator<ParameterMap>()
+		{
+			private BigDecimal value = start;
+			
+			public boolean hasNext()
+			{
+				if(ascending) return value.compareTo(end) <= 0;
+				else return value.compareTo(end) >= 0;
+			}
+			
+			public ParameterMap next()
+			{
+				if(!hasNext()) throw new NoSuchElementException();
+				
+				ParameterMap map = new ParameterMap(name, value);
+				if(ascending) value = value.add(increment);
+				else value = value.subtract(increment);
+				return map;
+			}
+			
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of values in the range, computed directly from
+	 * the start, end, and increment.
+	 * @return The number of parameter maps generated by this sweep.
+	 */
+	@Override
+	public long getMapCount()
+	{
+		if(increment.compareTo(BigDecimal.ZERO) == 0)
+		{
+			return start.compareTo(end) == 0 ? 1 : 2;
+		}
+		
+		BigDecimal span = end.subtract(start).abs();
+		return span.divideToIntegralValue(increment).longValue() + 1;
+	}
+	
+	/**
+	 * Returns the map for a single value in the range: the start value
+	 * plus (or minus) {@code index} times the increment.
+	 * @param index The position of the value in the range.
+	 * @return The parameter map for that value.
+	 */
+	@Override
+	public ParameterMap getMap(long index)
+	{
+		checkIndex(index);
+		return new ParameterMap(name, getValue(index));
+	}
+	
+	/**
+	 * Returns a single value in the range: the start value plus (or minus)
+	 * {@code index} times the increment.
+	 * @param index The position of the value in the range.
+	 * @return The value.
+	 */
+	@Override
+	public Object getValue(long index)
+	{
+		if(increment.compareTo(BigDecimal.ZERO) == 0)
+		{
+			return index == 0 ? start : end;
+		}
+		
+		// The start value as given, with its own scale, as from mapIterator()
+		if(index == 0) return start;
+		
+		BigDecimal offset = increment.multiply(BigDecimal.valueOf(index));
+		if(start.compareTo(end) <= 0)
+			return start.add(offset);
+		else
+			return start.subtract(offset);
+	}
 
 	public BigDecimal getStart() {
 		return start;
@@ -136,5 +136,35 @@ public class RangeListSweepTest
 		assertEquals(maps.get(1).get("param"), new BigDecimal("0.25"));
 		assertEquals(maps.get(2).get("param"), new BigDecimal("0.15"));
 	}
+	
+	@Test
+	public void randomAccess()
+	{
+		BigDecimal start = new BigDecimal("0.35");
+		BigDecimal end = new BigDecimal("0.1");
+		BigDecimal increment = new BigDecimal("0.05");
+		
+		RangeListSweep sweep = new RangeListSweep("param", start, end, increment);
+		
+		List<ParameterMap> maps = sweep.generateMaps();
+		assertEquals(maps.size(), sweep.getMapCount());
+		for(int i = 0; i < maps.size(); i++)
+		{
+			assertEquals(maps.get(i), sweep.getMap(i));
+		}
+	}
+	
+	@Test
+	public void randomAccessZeroIncrement()
+	{
+		BigDecimal start = new BigDecimal("0.1");
+		BigDecimal end = new BigDecimal("0.2");
+		BigDecimal increment = new BigDecimal("0");
+		
+		RangeListSweep sweep = new RangeListSweep("param", start, end, increment);
+		
+		assertEquals(2, sweep.getMapCount());
+		assertEquals(start, sweep.getMap(0).get("param"));
+		assertEquals(end, sweep.getMap(1).get("param"));
+	}
 }
-
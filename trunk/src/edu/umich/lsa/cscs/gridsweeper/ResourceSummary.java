@@ -0,0 +1,225 @@
+/*
+	ResourceSummary.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+
+import static edu.umich.lsa.cscs.gridsweeper.StringUtils.*;
+
+/**
+ * <p>Records the resources used by each run of an experiment as it completes,
+ * in a tab-separated file in the experiment directory, and keeps totals
+ * for the notification email. The columns are:</p>
+ * 
+ * <ul>
+ * <li>{@code case}, {@code run}, {@code job}: the case ID, run number and job ID;</li>
+ * <li>{@code status}: the model's exit status, {@code error} if GridSweeper
+ * failed to perform the run, {@code retried} if the attempt failed and the run
+ * was run again, or empty if its results could not be loaded;</li>
+ * <li>{@code wall_time}, {@code user_time}, {@code system_time}: the wall-clock
+ * and CPU times of the model, in seconds;</li>
+ * <li>{@code peak_rss}: the model's peak resident set size, in bytes;</li>
+ * <li>{@code job_usage}: the resources used by the whole job, as reported
+ * by the execution system, as comma-separated <em>name</em>=<em>value</em> pairs.</li>
+ * </ul>
+ * 
+ * <p>Each attempt at a retried run has its own line.
+ * Values that were not measured are left empty. Fields are URL-encoded
+ * as in the output of {@code gsweep aggregate}. A resumed experiment
+ * appends to the file.</p>
+ * @author Ed Baskerville
+ *
+ */
+class ResourceSummary implements RunListener
+{
+	static final String FILENAME = "resources.tsv";
+	
+	private static final String[] COLUMNS = {"case", "run", "job", "status",
+		"wall_time", "user_time", "system_time", "peak_rss", "job_usage"};
+	
+	private PrintWriter writer;
+	
+	int measuredRunCount = 0;
+	long totalWallTime = 0;
+	long totalCPUTime = 0;
+	long maxPeakResidentSize = -1;
+	CaseRun maxPeakRun = null;
+	
+	/**
+	 * Opens the summary file in an experiment directory for appending,
+	 * writing the header line if the file is new.
+	 * @param expDir The experiment directory.
+	 * @throws IOException If the file cannot be opened.
+	 */
+	public ResourceSummary(String expDir) throws IOException
+	{
+		File file = new File(appendPathComponent(expDir, FILENAME));
+		boolean isNew = file.length() == 0;
+		writer = new PrintWriter(new BufferedWriter(new FileWriter(file, true)));
+		if(isNew)
+		{
+			writeLine(new StringList(COLUMNS));
+		}
+	}
+	
+	public void runCompleted(CaseRun run)
+	{
+		record(run);
+	}
+	
+	public void runFailed(CaseRun run, Failure failure)
+	{
+		record(run);
+	}
+	
+	public void runRetried(CaseRun run, String failure, long delay)
+	{
+		record(run, "retried");
+	}
+	
+	public void progress(int runsComplete, int runCount)
+	{
+		writer.flush();
+	}
+	
+	private void record(CaseRun run)
+	{
+		record(run, null);
+	}
+	
+	/**
+	 * Writes a line for a run.
+	 * @param run The run.
+	 * @param status The status to record, or {@code null} to use the
+	 * status given by the run's results.
+	 */
+	private void record(CaseRun run, String status)
+	{
+		RunResults results = run.runResults;
+		
+		StringList fields = new StringList();
+		fields.add(run.caseId);
+		fields.add("" + run.runNum);
+		fields.add(run.jobId == null ? "" : run.jobId);
+		
+		if(status != null) fields.add(status);
+		else if(results == null) fields.add("");
+		else if(results.getException() != null) fields.add("error");
+		else fields.add("" + results.getStatus());
+		
+		if(results == null)
+		{
+			for(int i = 0; i < 4; i++) fields.add("");
+		}
+		else
+		{
+			fields.add(formatMillis(results.getWallTime()));
+			fields.add(formatMillis(results.getUserTime()));
+			fields.add(formatMillis(results.getSystemTime()));
+			long peak = results.getPeakResidentSize();
+			fields.add(peak < 0 ? "" : "" + peak);
+			
+			if(results.getWallTime() >= 0)
+			{
+				measuredRunCount++;
+				totalWallTime += results.getWallTime();
+			}
+			if(results.getUserTime() >= 0 && results.getSystemTime() >= 0)
+			{
+				totalCPUTime += results.getUserTime() + results.getSystemTime();
+			}
+			if(peak > maxPeakResidentSize)
+			{
+				maxPeakResidentSize = peak;
+				maxPeakRun = run;
+			}
+		}
+		
+		StringBuffer usage = new StringBuffer();
+		if(run.jobOutcome != null && run.jobOutcome.resourceUsage != null)
+		{
+			for(Map.Entry<String, String> entry : run.jobOutcome.resourceUsage.entrySet())
+			{
+				if(usage.length() > 0) usage.append(",");
+				usage.append(entry.getKey() + "=" + entry.getValue());
+			}
+		}
+		fields.add(usage.toString());
+		
+		writeLine(fields);
+	}
+	
+	private void writeLine(StringList fields)
+	{
+		for(int i = 0; i < fields.size(); i++)
+		{
+			if(i > 0) writer.print('\t');
+			writer.print(escape(fields.get(i), "%\t\r\n"));
+		}
+		writer.print('\n');
+	}
+	
+	private static String formatMillis(long millis)
+	{
+		if(millis < 0) return "";
+		return String.format("%d.%03d", millis / 1000, millis % 1000);
+	}
+	
+	/**
+	 * Describes the totals for the notification email.
+	 * @return A few lines of text, or an empty string if no runs were measured.
+	 */
+	public String getTotalsString()
+	{
+		if(measuredRunCount == 0) return "";
+		
+		StringBuffer totals = new StringBuffer();
+		totals.append("Resources used by " + measuredRunCount + " measured runs:\n");
+		totals.append("   Total wall time: " + formatDuration(totalWallTime) + "\n");
+		if(totalCPUTime > 0)
+		{
+			totals.append("    Total CPU time: " + formatDuration(totalCPUTime) + "\n");
+		}
+		if(maxPeakRun != null)
+		{
+			totals.append(String.format("  Largest peak RSS: %.1f MB (%s)\n",
+				maxPeakResidentSize / 1048576.0, maxPeakRun.getRunString()));
+		}
+		totals.append("(Details for each run are in " + FILENAME + ".)\n");
+		return totals.toString();
+	}
+	
+	private static String formatDuration(long millis)
+	{
+		long seconds = millis / 1000;
+		return "" + (seconds / 3600) + "h" + (seconds / 60 % 60) + "m" + (seconds % 60) + "s";
+	}
+	
+	/**
+	 * Closes the file.
+	 */
+	public void close()
+	{
+		writer.close();
+	}
+}
@@ -0,0 +1,550 @@
+/*
+	ResultAggregator.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.xml.parsers.*;
+import org.xml.sax.*;
+import org.xml.sax.helpers.DefaultHandler;
+
+import static edu.umich.lsa.cscs.gridsweeper.StringUtils.*;
+
+/**
+ * <p>Summarizes the results of an experiment as a single table, for
+ * {@code gsweep aggregate}. The table has one row per run, and columns for the
+ * case ID, run number, random seed and exit status, followed by one column
+ * per parameter and one per value extracted from the run's standard output
+ * by an {@link OutputExtractor}. It is written as tab-separated text with a
+ * header line; tabs, line breaks and percent signs in values are
+ * URL-encoded. The status is empty if no results were found for the run,
+ * and {@code error} if GridSweeper itself failed to perform it.</p>
+ * 
+ * <p>Cases are read from the case manifest if the experiment has one, and
+ * otherwise from the {@code case.gscase} file in each case directory.
+ * Results are read from the result store if there is one, and otherwise from
+ * the results files left by the runner. Standard output is taken from the
+ * results, or from the {@code stdout.}<em>NN</em> file in the case
+ * directory if it was written to disk.</p>
+ * 
+ * <p>Cases are handled on a pool of threads, with at most two cases per
+ * thread in progress at once, and rows are written in case order as soon
+ * as each case is done, so memory use does not grow with the size of the
+ * experiment.</p>
+ * @author Ed Baskerville
+ *
+ */
+class ResultAggregator
+{
+	private static final String[] FIXED_COLUMNS = {"case", "run", "seed", "status"};
+	
+	/**
+	 * The number of rows without extracted values to hold back while waiting
+	 * for the value columns to be known, before giving up on them.
+	 */
+	static final int MAX_HELD_ROWS = 10000;
+	
+	private String expDir;
+	private OutputExtractor extractor;
+	private int threadCount;
+	private StringList valueColumns = null;
+	
+	private boolean useManifest;
+	private ResultStore resultStore = null;
+	
+	// Written once the columns are known, from the first case and run
+	private boolean headerWritten = false;
+	private StringList parameterColumns = null;
+	private List<Row> heldRows = new ArrayList<Row>();
+	int maxHeldRows = MAX_HELD_ROWS;
+	
+	PrintStream msgOut = System.err;
+	
+	/**
+	 * A single row of the table.
+	 */
+	private static class Row
+	{
+		CaseManifest.Entry caseEntry;
+		int runNum;
+		String status;
+		Map<String, String> values;
+	}
+	
+	/**
+	 * Constructor.
+	 * @param expDir The experiment directory.
+	 * @param extractor The extractor to get values from standard output with.
+	 * @param threadCount The number of threads to handle cases on.
+	 */
+	public ResultAggregator(String expDir, OutputExtractor extractor, int threadCount)
+	{
+		this.expDir = expDir;
+		this.extractor = extractor;
+		this.threadCount = threadCount;
+	}
+	
+	/**
+	 * Sets the columns of extracted values to include. By default, the columns
+	 * are those extracted from the first run that has any.
+	 * @param valueColumns The column names.
+	 */
+	public void setValueColumns(StringList valueColumns)
+	{
+		this.valueColumns = valueColumns;
+	}
+	
+	/**
+	 * Writes the table.
+	 * @param out The writer to write the table to. It is flushed but not closed.
+	 * @throws GridSweeperException If the experiment cannot be read or the
+	 * table cannot be written.
+	 */
+	public void aggregate(Writer out) throws GridSweeperException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "result aggregator");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		
+		CaseManifest.Reader manifestReader = null;
+		try
+		{
+			useManifest = new File(expDir, CaseManifest.FILENAME).exists();
+			if(new File(expDir, ResultStore.DIRNAME).isDirectory())
+				resultStore = new ResultStore(expDir, false);
+			
+			String[] caseDirNames = null;
+			if(useManifest)
+			{
+				manifestReader = new CaseManifest.Reader(expDir);
+			}
+			else
+			{
+				caseDirNames = new File(expDir).list();
+				if(caseDirNames == null)
+					throw new IOException("Could not list " + expDir);
+				Arrays.sort(caseDirNames);
+			}
+			
+			BufferedWriter writer = new BufferedWriter(out);
+			int maxPendingCases = threadCount * 2;
+			LinkedList<Future<List<Row>>> pendingCases = new LinkedList<Future<List<Row>>>();
+			
+			// The experiment directory itself is the case directory
+			// of an experiment without parameters
+			int position = -1;
+			while(true)
+			{
+				while(pendingCases.size() < maxPendingCases)
+				{
+					final CaseManifest.Entry caseEntry;
+					if(useManifest)
+					{
+						caseEntry = manifestReader.next();
+						if(caseEntry == null) break;
+					}
+					else
+					{
+						if(position == caseDirNames.length) break;
+						caseEntry = new CaseManifest.Entry();
+						caseEntry.caseIndex = position + 1;
+						caseEntry.caseId = (position < 0) ? "" : caseDirNames[position];
+						position++;
+						if(caseEntry.caseId.startsWith(".")) continue;
+					}
+					
+					pendingCases.add(executor.submit(new Callable<List<Row>>()
+					{
+						public List<Row> call() throws IOException
+						{
+							return aggregateCase(caseEntry);
+						}
+					}));
+				}
+				if(pendingCases.isEmpty()) break;
+				
+				for(Row row : pendingCases.removeFirst().get())
+				{
+					writeRow(writer, row);
+				}
+			}
+			
+			// No run had any values to extract
+			if(valueColumns == null) valueColumns = new StringList();
+			if(!headerWritten) writeHeader(writer, null);
+			for(Row row : heldRows)
+			{
+				writeRow(writer, row);
+			}
+			writer.flush();
+		}
+		catch(IOException e)
+		{
+			throw new GridSweeperException("Could not aggregate results in " + expDir, e);
+		}
+		catch(InterruptedException e)
+		{
+			throw new GridSweeperException("Interrupted while aggregating results.", e);
+		}
+		catch(ExecutionException e)
+		{
+			throw new GridSweeperException("Could not aggregate results in " + expDir, e.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+			if(manifestReader != null) try
+			{
+				manifestReader.close();
+			}
+			catch(IOException e) {}
+			if(resultStore != null) try
+			{
+				resultStore.close();
+			}
+			catch(IOException e) {}
+		}
+	}
+	
+	/**
+	 * Finds a case's results files in the jobs directory used with a case
+	 * manifest. They are named by the case index, followed by {@code .out.}
+	 * and either the first run number of a job or the task number of a bulk
+	 * job, so each possible name is checked rather than listing the whole
+	 * directory, which holds the files of every case.
+	 */
+	private List<File> listJobResultsFiles(CaseManifest.Entry caseEntry)
+	{
+		List<File> files = new ArrayList<File>(1);
+		File jobsDir = new File(expDir, CaseManifest.JOBS_DIRNAME);
+		String prefix = caseEntry.caseIndex + ".out.";
+		for(int n = 0; n <= caseEntry.rngSeeds.size(); n++)
+		{
+			File file = new File(jobsDir, prefix + n);
+			if(file.isFile()) files.add(file);
+		}
+		return files;
+	}
+	
+	/**
+	 * Builds the rows for all runs of a case. Called on a worker thread.
+	 * @param caseEntry The case. Without a case manifest, only its ID is
+	 * set, and the rest is read from its {@code case.gscase} file.
+	 * @return The rows, in order of run number; empty if the case ID does
+	 * not name a case directory.
+	 * @throws IOException If the case cannot be read.
+	 */
+	private List<Row> aggregateCase(CaseManifest.Entry caseEntry) throws IOException
+	{
+		String caseDir = caseEntry.caseId.equals("") ? expDir
+			: appendPathComponent(expDir, caseEntry.caseId);
+		
+		if(!useManifest)
+		{
+			File caseFile = new File(caseDir, "case.gscase");
+			if(!caseFile.isFile()) return Collections.emptyList();
+			readCaseFile(caseFile, caseEntry);
+		}
+		
+		int numRuns = caseEntry.rngSeeds.size();
+		Row[] rows = new Row[numRuns];
+		if(resultStore != null)
+		{
+			for(int runNum = 0; runNum < numRuns; runNum++)
+			{
+				rows[runNum] = createRow(caseEntry, runNum,
+					resultStore.read(caseEntry.caseId, runNum), caseDir);
+			}
+		}
+		else
+		{
+			List<File> resultsFiles;
+			if(useManifest)
+				resultsFiles = listJobResultsFiles(caseEntry);
+			else
+				resultsFiles = listCaseResultsFiles(caseDir);
+			
+			for(File resultsFile : resultsFiles)
+			{
+				readResultsFile(resultsFile, caseEntry, caseDir, rows);
+			}
+		}
+		
+		for(int runNum = 0; runNum < numRuns; runNum++)
+		{
+			if(rows[runNum] == null)
+				rows[runNum] = createRow(caseEntry, runNum, null, caseDir);
+		}
+		return Arrays.asList(rows);
+	}
+	
+	private static List<File> listCaseResultsFiles(String caseDir)
+	{
+		List<File> files = new ArrayList<File>();
+		String[] names = new File(caseDir).list();
+		if(names != null) for(String name : names)
+		{
+			if(name.startsWith(".gsweep_out")) files.add(new File(caseDir, name));
+		}
+		return files;
+	}
+	
+	/**
+	 * Builds rows for the runs whose results are in a results file.
+	 * Runs already seen are skipped, and a file that cannot be read is
+	 * reported and otherwise ignored, so that the runs it would have held
+	 * have no results.
+	 */
+	private void readResultsFile(File resultsFile, CaseManifest.Entry caseEntry,
+		String caseDir, Row[] rows) throws IOException
+	{
+		RunResultsReader reader;
+		try
+		{
+			reader = new RunResultsReader(new FileInputStream(resultsFile));
+		}
+		catch(IOException e)
+		{
+			msgOut.println("Could not read results file " + resultsFile + ": " + e.getMessage());
+			return;
+		}
+		
+		try
+		{
+			while(true)
+			{
+				RunResults results = reader.readResults();
+				int runNum = results.getRunNumber();
+				if(runNum >= 0 && runNum < rows.length && rows[runNum] == null)
+					rows[runNum] = createRow(caseEntry, runNum, results, caseDir);
+			}
+		}
+		catch(EOFException e)
+		{
+			// End of results
+		}
+		catch(Exception e)
+		{
+			msgOut.println("Could not read results file " + resultsFile + ": " + e.getMessage());
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Builds the row for a run, extracting values from its standard output.
+	 * @param caseEntry The run's case.
+	 * @param runNum The run number.
+	 * @param results The run's results, or {@code null} if none were found.
+	 * @param caseDir The case directory.
+	 * @return The row.
+	 * @throws IOException If the standard output file cannot be opened.
+	 */
+	private Row createRow(CaseManifest.Entry caseEntry, int runNum,
+		RunResults results, String caseDir) throws IOException
+	{
+		Row row = new Row();
+		row.caseEntry = caseEntry;
+		row.runNum = runNum;
+		if(results == null) row.status = "";
+		else if(results.getException() != null) row.status = "error";
+		else row.status = "" + results.getStatus();
+		
+		InputStream output = null;
+		byte[] stdoutData = (results == null) ? null : results.getStdoutData();
+		if(stdoutData != null && stdoutData.length > 0)
+		{
+			output = new ByteArrayInputStream(stdoutData);
+		}
+		else
+		{
+			String stdoutPath;
+			if(results != null && results.getStdoutFile() != null)
+				stdoutPath = results.getStdoutFile().getPath();
+			else
+				stdoutPath = "stdout." + formatPaddedInt(runNum, caseEntry.rngSeeds.size() - 1);
+			
+			File stdoutFile = new File(caseDir, stdoutPath);
+			if(stdoutFile.isFile())
+				output = new BufferedInputStream(new FileInputStream(stdoutFile));
+		}
+		
+		try
+		{
+			row.values = extractor.extract(output, caseEntry.parameters, runNum);
+		}
+		catch(Exception e)
+		{
+			msgOut.println("Could not extract values for case " + caseEntry.caseId
+				+ ", run " + runNum + ": " + e.getMessage());
+			row.values = Collections.emptyMap();
+		}
+		finally
+		{
+			if(output != null) output.close();
+		}
+		return row;
+	}
+	
+	/**
+	 * Reads the parameter values and random seeds of a case from its
+	 * {@code case.gscase} file, as written by {@link ExperimentCaseXMLWriter}.
+	 * @param caseFile The file.
+	 * @param caseEntry The case to fill in.
+	 * @throws IOException If the file cannot be read or parsed.
+	 */
+	static void readCaseFile(File caseFile, final CaseManifest.Entry caseEntry) throws IOException
+	{
+		final SortedMap<Integer, Integer> rngSeeds = new TreeMap<Integer, Integer>();
+		try
+		{
+			SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+			parser.parse(caseFile, new DefaultHandler()
+			{
+				@Override
+				public void startElement(String uri, String localName, String qName,
+					Attributes attributes)
+				{
+					if(qName.equals("value"))
+					{
+						caseEntry.parameters.put(attributes.getValue("param"),
+							attributes.getValue("value"));
+					}
+					else if(qName.equals("run"))
+					{
+						rngSeeds.put(Integer.valueOf(attributes.getValue("number")),
+							Integer.valueOf(attributes.getValue("rngSeed")));
+					}
+				}
+			});
+		}
+		catch(ParserConfigurationException e)
+		{
+			throw new IOException("Could not parse " + caseFile + ": " + e.getMessage());
+		}
+		catch(SAXException e)
+		{
+			throw new IOException("Could not parse " + caseFile + ": " + e.getMessage());
+		}
+		catch(NumberFormatException e)
+		{
+			throw new IOException("Invalid run in " + caseFile + ": " + e.getMessage());
+		}
+		caseEntry.rngSeeds.addAll(rngSeeds.values());
+	}
+	
+	/**
+	 * Writes a row, first writing the header if the columns are now known.
+	 * Rows are held back until a run with extracted values shows which
+	 * value columns there are, unless they were set explicitly. If
+	 * {@code maxHeldRows} rows go by without any, the table is written with
+	 * no value columns, so that memory use stays bounded.
+	 */
+	private void writeRow(Writer writer, Row row) throws IOException
+	{
+		if(valueColumns == null)
+		{
+			if(row.values.isEmpty() && heldRows.size() + 1 < maxHeldRows)
+			{
+				heldRows.add(row);
+				return;
+			}
+			
+			if(row.values.isEmpty())
+			{
+				msgOut.println("No values were extracted from the first "
+					+ maxHeldRows + " runs; writing the table without value columns.");
+				valueColumns = new StringList();
+			}
+			else valueColumns = new StringList(row.values.keySet());
+		}
+		if(!headerWritten)
+		{
+			writeHeader(writer, heldRows.isEmpty() ? row : heldRows.get(0));
+			for(Row heldRow : heldRows)
+			{
+				writeFields(writer, heldRow);
+			}
+			heldRows.clear();
+		}
+		writeFields(writer, row);
+	}
+	
+	/**
+	 * Writes the header line. Parameter columns are the parameters of the
+	 * first case, in alphabetical order.
+	 * @param firstRow The first row in the table, or {@code null} if there are none.
+	 */
+	private void writeHeader(Writer writer, Row firstRow) throws IOException
+	{
+		parameterColumns = new StringList();
+		if(firstRow != null)
+			parameterColumns.addAll(new TreeSet<String>(firstRow.caseEntry.parameters.keySet()));
+		
+		StringList columns = new StringList(Arrays.asList(FIXED_COLUMNS));
+		columns.addAll(parameterColumns);
+		columns.addAll(valueColumns);
+		writeLine(writer, columns);
+		headerWritten = true;
+	}
+	
+	private void writeFields(Writer writer, Row row) throws IOException
+	{
+		CaseManifest.Entry caseEntry = row.caseEntry;
+		StringList fields = new StringList();
+		fields.add(caseEntry.caseId);
+		fields.add("" + row.runNum);
+		fields.add("" + caseEntry.rngSeeds.get(row.runNum));
+		fields.add(row.status);
+		for(String name : parameterColumns)
+		{
+			String value = caseEntry.parameters.get(name);
+			fields.add(value == null ? "" : value);
+		}
+		for(String name : valueColumns)
+		{
+			String value = row.values.get(name);
+			fields.add(value == null ? "" : value);
+		}
+		writeLine(writer, fields);
+	}
+	
+	private static void writeLine(Writer writer, StringList fields) throws IOException
+	{
+		for(int i = 0; i < fields.size(); i++)
+		{
+			if(i > 0) writer.write('\t');
+			writer.write(escape(fields.get(i), "%\t\r\n"));
+		}
+		writer.write('\n');
+	}
+}
@@ -0,0 +1,182 @@
+/*
+	ResultAggregatorTest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ResultAggregatorTest
+{
+	File dir;
+	
+	@Before
+	public void setUp() throws IOException
+	{
+		dir = TestFiles.createTempDir("ResultAggregatorTest");
+	}
+	
+	@After
+	public void tearDown()
+	{
+		TestFiles.delete(dir);
+	}
+	
+	private static void writeFile(File file, String contents) throws IOException
+	{
+		OutputStream out = new FileOutputStream(file);
+		out.write(contents.getBytes("UTF-8"));
+		out.close();
+	}
+	
+	private static RunResults createResults(int runNum, int status, String stdout)
+	{
+		RunResults results = new RunResults(status, "", stdout.getBytes(), null);
+		results.setRunNumber(runNum);
+		return results;
+	}
+	
+	private String aggregate(ResultAggregator aggregator) throws GridSweeperException
+	{
+		StringWriter out = new StringWriter();
+		aggregator.aggregate(out);
+		return out.toString();
+	}
+	
+	@Test
+	public void caseDirectories() throws Exception
+	{
+		File caseDir = new File(dir, "a=1");
+		caseDir.mkdir();
+		new ExperimentCaseXMLWriter(new File(caseDir, "case.gscase").getPath(),
+			new ExperimentCase(new ParameterMap("a", "1"), Arrays.asList(11, 12)),
+			"a=1").writeXML();
+		RunResultsWriter resultsWriter = new RunResultsWriter(
+			new FileOutputStream(new File(caseDir, ".gsweep_out.0")));
+		resultsWriter.writeResults(createResults(1, 3, "x=5\n"));
+		resultsWriter.writeResults(createResults(0, 0, "x = 1\ny=2\nx=4\n"));
+		resultsWriter.close();
+		
+		// Results missing, but standard output written to disk
+		caseDir = new File(dir, "a=2");
+		caseDir.mkdir();
+		new ExperimentCaseXMLWriter(new File(caseDir, "case.gscase").getPath(),
+			new ExperimentCase(new ParameterMap("a", "2"), Arrays.asList(21, 22)),
+			"a=2").writeXML();
+		writeFile(new File(caseDir, "stdout.1"), "y=7\n");
+		
+		new File(dir, ".gsweep_other").mkdir();
+		writeFile(new File(dir, "status.log"), "");
+		
+		ResultAggregator aggregator = new ResultAggregator(dir.getPath(),
+			new KeyValueExtractor(new Settings()), 2);
+		assertEquals("case\trun\tseed\tstatus\ta\tx\ty\n"
+			+ "a=1\t0\t11\t0\t1\t4\t2\n"
+			+ "a=1\t1\t12\t3\t1\t5\t\n"
+			+ "a=2\t0\t21\t\t2\t\t\n"
+			+ "a=2\t1\t22\t\t2\t\t7\n", aggregate(aggregator));
+	}
+	
+	@Test
+	public void manifestAndStore() throws Exception
+	{
+		CaseManifest manifest = new CaseManifest(dir.getPath());
+		for(int i = 0; i < 3; i++)
+		{
+			manifest.append(i, "a=" + i, new ExperimentCase(
+				new ParameterMap("a", "" + i), Arrays.asList(10 + i)));
+		}
+		manifest.close();
+		
+		// The first case failed, so its row waits for the columns to be known
+		List<CaseRun> runs = new ArrayList<CaseRun>();
+		for(int i = 0; i < 3; i++)
+		{
+			CaseRun run = new CaseRun("a=" + i, 0, 10 + i);
+			run.runResults = createResults(0, 0, "y=" + i + "\tz\n");
+			runs.add(run);
+		}
+		runs.get(0).runResults = new RunResults(new Exception());
+		ResultStore store = new ResultStore(dir.getPath(), true);
+		store.store(runs);
+		store.close();
+		
+		ResultAggregator aggregator = new ResultAggregator(dir.getPath(),
+			new KeyValueExtractor(new Settings()), 1);
+		assertEquals("case\trun\tseed\tstatus\ta\ty\n"
+			+ "a=0\t0\t10\terror\t0\t\n"
+			+ "a=1\t0\t11\t0\t1\t1%09z\n"
+			+ "a=2\t0\t12\t0\t2\t2%09z\n", aggregate(aggregator));
+		
+		aggregator = new ResultAggregator(dir.getPath(),
+			new KeyValueExtractor(new Settings()), 3);
+		aggregator.setValueColumns(new StringList(new String[] {"w"}));
+		assertTrue(aggregate(aggregator).startsWith("case\trun\tseed\tstatus\ta\tw\n"
+			+ "a=0\t0\t10\terror\t0\t\n"));
+		
+		// Too many rows without values: the columns are given up on
+		aggregator = new ResultAggregator(dir.getPath(),
+			new KeyValueExtractor(new Settings()), 1);
+		aggregator.maxHeldRows = 1;
+		aggregator.msgOut = new PrintStream(new ByteArrayOutputStream());
+		assertEquals("case\trun\tseed\tstatus\ta\n"
+			+ "a=0\t0\t10\terror\t0\n"
+			+ "a=1\t0\t11\t0\t1\n"
+			+ "a=2\t0\t12\t0\t2\n", aggregate(aggregator));
+	}
+	
+	@Test
+	public void manifestJobFiles() throws Exception
+	{
+		CaseManifest manifest = new CaseManifest(dir.getPath());
+		for(int i = 0; i < 2; i++)
+		{
+			manifest.append(i, "a=" + i, new ExperimentCase(
+				new ParameterMap("a", "" + i), Arrays.asList(10 + i, 20 + i)));
+		}
+		manifest.close();
+		
+		// One job per run for the first case, one bulk task for the second,
+		// and a file for a case not in the manifest
+		File jobsDir = new File(dir, CaseManifest.JOBS_DIRNAME);
+		jobsDir.mkdir();
+		String[] names = {"0.out.0", "0.out.1", "1.out.1", "11.out.0"};
+		int[] runNums = {0, 1, 1, 0};
+		for(int i = 0; i < names.length; i++)
+		{
+			RunResultsWriter resultsWriter = new RunResultsWriter(
+				new FileOutputStream(new File(jobsDir, names[i])));
+			resultsWriter.writeResults(createResults(runNums[i], 0, "x=" + i + "\n"));
+			resultsWriter.close();
+		}
+		
+		ResultAggregator aggregator = new ResultAggregator(dir.getPath(),
+			new KeyValueExtractor(new Settings()), 1);
+		assertEquals("case\trun\tseed\tstatus\ta\tx\n"
+			+ "a=0\t0\t10\t0\t0\t0\n"
+			+ "a=0\t1\t20\t0\t0\t1\n"
+			+ "a=1\t0\t11\t\t1\t\n"
+			+ "a=1\t1\t21\t0\t1\t2\n", aggregate(aggregator));
+	}
+}
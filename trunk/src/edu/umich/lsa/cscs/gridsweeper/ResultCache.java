@@ -0,0 +1,345 @@
+/*
+	ResultCache.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.security.*;
+import java.util.*;
+
+import static edu.umich.lsa.cscs.gridsweeper.StringUtils.*;
+import static edu.umich.lsa.cscs.gridsweeper.DLogger.*;
+
+/**
+ * <p>A cache of run results shared between experiments, so that extending a
+ * sweep only runs the cases that are new. Each run is identified by a key
+ * computed from everything that determines its results: the adapter and
+ * model, the settings, the parameter values, the run number and the random
+ * seed. Settings that only affect scheduling and reporting, such as
+ * {@code RunsPerJob} or {@code EmailAddress}, are left out of the key.
+ * If the model setting names a file, its size and modification time are
+ * included, so rebuilding the model invalidates the cache.</p>
+ * 
+ * <p>An entry is a directory named by the key, holding the run's standard
+ * output and standard error. Entries are added as runs complete without
+ * errors. Files are copied into and out of the cache rather than linked,
+ * so that the runner rewriting a case directory's files cannot change an
+ * entry, and vice versa. Files a model writes itself are not cached, since they cannot be told apart from those of other runs
+ * of the same case.</p>
+ * @author Ed Baskerville
+ *
+ */
+class ResultCache implements RunListener
+{
+	/**
+	 * Settings that do not affect the results of a run.
+	 */
+	private static final String[] ignoredSettings = {
+		"EmailAddress",
+		"ResultsDirectory",
+		"ResultCache",
+		"RunsPerJob",
+		"RunnerThreads",
+		"ResultThreads",
+		"PersistentWorkers",
+		"CaseThreads",
+		"CaseLayout",
+		"BulkSubmit",
+		"NativeSpecification",
+		"RuntimeHistory",
+		"SubmitOrder",
+		"MaxRunningJobs",
+		"MaxPendingJobs",
+		"MaxRetries",
+		"RetryDelay"
+	};
+	
+	private String cacheDir;
+	private int numRuns;
+	
+	// Key material common to all runs of the experiment
+	private String experimentKey;
+	
+	/**
+	 * Constructor.
+	 * @param cacheDir The cache directory, which is created if necessary.
+	 * @param experiment The experiment whose runs are looked up and stored.
+	 * @throws GridSweeperException If the cache directory cannot be created.
+	 */
+	public ResultCache(String cacheDir, Experiment experiment) throws GridSweeperException
+	{
+		this.cacheDir = cacheDir;
+		this.numRuns = experiment.getNumRuns();
+		
+		File cacheDirFile = new File(cacheDir);
+		cacheDirFile.mkdirs();
+		if(!cacheDirFile.isDirectory())
+			throw new GridSweeperException("Could not create result cache directory " + cacheDir);
+		
+		experimentKey = getExperimentKey(experiment);
+	}
+	
+	/**
+	 * Builds the part of the key shared by all runs of an experiment.
+	 * Settings are sorted so that the key does not depend on their order.
+	 */
+	private static String getExperimentKey(Experiment experiment)
+	{
+		Settings settings = experiment.getSettings();
+		StringBuffer key = new StringBuffer();
+		
+		key.append("adapter\t" + settings.getProperty("Adapter",
+			"edu.umich.lsa.cscs.gridsweeper.DroneAdapter") + "\n");
+		
+		String model = settings.getProperty("Model");
+		if(model != null)
+		{
+			File modelFile = new File(model);
+			if(modelFile.isFile())
+			{
+				key.append("modelfile\t" + modelFile.length()
+					+ "\t" + modelFile.lastModified() + "\n");
+			}
+		}
+		
+		Set<String> ignored = new HashSet<String>();
+		for(String setting : ignoredSettings)
+		{
+			ignored.add(setting.toLowerCase());
+		}
+		SortedMap<String, String> sortedSettings = new TreeMap<String, String>();
+		for(String setting : settings.keySet())
+		{
+			if(!ignored.contains(setting.toLowerCase()))
+				sortedSettings.put(setting.toLowerCase(), settings.get(setting));
+		}
+		for(Map.Entry<String, String> entry : sortedSettings.entrySet())
+		{
+			key.append("setting\t" + escape(entry.getKey())
+				+ "\t" + escape(entry.getValue()) + "\n");
+		}
+		
+		SortedMap<String, String> inputFiles =
+			new TreeMap<String, String>(experiment.getInputFiles());
+		for(Map.Entry<String, String> entry : inputFiles.entrySet())
+		{
+			key.append("input\t" + escape(entry.getKey())
+				+ "\t" + escape(entry.getValue()) + "\n");
+		}
+		
+		return key.toString();
+	}
+	
+	/**
+	 * Computes the cache key for a run.
+	 * @param parameters The parameter values for the run's case.
+	 * @param runNum The run number.
+	 * @param rngSeed The random seed.
+	 * @return The key, as a hexadecimal SHA-1 digest.
+	 */
+	public String getKey(ParameterMap parameters, int runNum, int rngSeed)
+	{
+		StringBuffer key = new StringBuffer(experimentKey);
+		
+		// Value types are included so that, e.g., 1 and "1" differ
+		SortedMap<String, Object> sortedParams = new TreeMap<String, Object>(parameters);
+		for(Map.Entry<String, Object> entry : sortedParams.entrySet())
+		{
+			Object value = entry.getValue();
+			key.append("param\t" + escape(entry.getKey()) + "\t"
+				+ (value == null ? "null" : value.getClass().getName()
+					+ "\t" + escape(value.toString())) + "\n");
+		}
+		key.append("run\t" + runNum + "\n");
+		key.append("seed\t" + rngSeed + "\n");
+		
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] hash = digest.digest(key.toString().getBytes("UTF-8"));
+			
+			StringBuffer hex = new StringBuffer(2 * hash.length);
+			for(byte b : hash)
+			{
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+				hex.append(Character.forDigit(b & 0xF, 16));
+			}
+			return hex.toString();
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch(UnsupportedEncodingException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private File getEntryDir(String key)
+	{
+		return new File(appendPathComponent(cacheDir, key.substring(0, 2)), key);
+	}
+	
+	/**
+	 * Copies the cached results of a run, if present, into a case directory,
+	 * under the names the runner would have given them.
+	 * @param key The run's cache key.
+	 * @param caseDir The case directory, which is created if necessary,
+	 * as it may not exist yet when using a case manifest.
+	 * @param runNum The run number.
+	 * @return {@code true} if the results were cached and have been copied;
+	 * {@code false} if the run must be performed.
+	 */
+	public boolean restore(String key, String caseDir, int runNum)
+	{
+		File entryDir = getEntryDir(key);
+		if(!entryDir.isDirectory()) return false;
+		
+		String rnStr = formatPaddedInt(runNum, numRuns - 1);
+		List<File> restored = new ArrayList<File>();
+		try
+		{
+			new File(caseDir).mkdirs();
+			for(String stream : new String[] {"stdout", "stderr"})
+			{
+				File cached = new File(entryDir, stream);
+				if(cached.exists())
+				{
+					File dest = new File(caseDir, stream + "." + rnStr);
+					restored.add(dest);
+					copyFile(cached, dest);
+				}
+			}
+		}
+		catch(IOException e)
+		{
+			fine("could not restore cache entry " + key + ": " + e);
+			
+			// The run will be submitted, so leave nothing behind for it
+			for(File file : restored)
+			{
+				file.delete();
+			}
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Adds the results of a completed run to the cache. The entry is
+	 * assembled under a temporary name and then renamed into place, so that
+	 * a partially written entry is never used.
+	 * @param run The run, whose {@code cacheKey} and {@code caseDir}
+	 * must be set.
+	 */
+	public void store(CaseRun run)
+	{
+		File entryDir = getEntryDir(run.cacheKey);
+		if(entryDir.exists()) return;
+		
+		File caseDir = new File(run.caseDir);
+		String rnStr = formatPaddedInt(run.runNum, numRuns - 1);
+		
+		File tempDir = new File(entryDir.getParentFile(),
+			run.cacheKey + ".tmp" + new Random().nextInt(Integer.MAX_VALUE));
+		try
+		{
+			if(!tempDir.mkdirs())
+				throw new IOException("Could not create " + tempDir);
+			for(String stream : new String[] {"stdout", "stderr"})
+			{
+				File output = new File(caseDir, stream + "." + rnStr);
+				if(output.exists())
+					copyFile(output, new File(tempDir, stream));
+			}
+			
+			// Someone else may have stored the same run in the meantime
+			if(!tempDir.renameTo(entryDir))
+				deleteEntry(tempDir);
+		}
+		catch(IOException e)
+		{
+			fine("could not store cache entry for " + run.getRunString() + ": " + e);
+			deleteEntry(tempDir);
+		}
+	}
+	
+	private static void deleteEntry(File dir)
+	{
+		File[] files = dir.listFiles();
+		if(files != null) for(File file : files)
+		{
+			file.delete();
+		}
+		dir.delete();
+	}
+	
+	/**
+	 * Copies a file.
+	 * @param source The existing file.
+	 * @param dest The new file, which is replaced if it exists.
+	 * @throws IOException If the file could not be copied.
+	 */
+	static void copyFile(File source, File dest) throws IOException
+	{
+		InputStream in = new FileInputStream(source);
+		try
+		{
+			OutputStream out = new FileOutputStream(dest);
+			try
+			{
+				byte[] buffer = new byte[8192];
+				int count;
+				while((count = in.read(buffer)) != -1)
+				{
+					out.write(buffer, 0, count);
+				}
+			}
+			finally
+			{
+				out.close();
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+	public void runCompleted(CaseRun run)
+	{
+		// Runs monitored after a resume have no key
+		if(run.cacheKey != null) store(run);
+	}
+	
+	public void runFailed(CaseRun run, RunListener.Failure failure)
+	{
+	}
+	
+	public void runRetried(CaseRun run, String failure, long delay)
+	{
+	}
+	
+	public void progress(int runsComplete, int runCount)
+	{
+	}
+}
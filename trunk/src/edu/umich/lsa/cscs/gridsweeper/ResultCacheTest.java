@@ -0,0 +1,117 @@
+/*
+	ResultCacheTest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ResultCacheTest
+{
+	File dir;
+	Experiment experiment;
+	ParameterMap parameters;
+	
+	@Before
+	public void setUp() throws IOException
+	{
+		dir = TestFiles.createTempDir("ResultCacheTest");
+		
+		experiment = new Experiment();
+		experiment.setNumRuns(10);
+		experiment.getSettings().setProperty("Model", "/bin/echo");
+		
+		parameters = new ParameterMap();
+		parameters.put("alpha", "0.5");
+		parameters.put("beta", 3);
+	}
+	
+	@After
+	public void tearDown()
+	{
+		TestFiles.delete(dir);
+	}
+	
+	private ResultCache createCache() throws GridSweeperException
+	{
+		return new ResultCache(new File(dir, "cache").getPath(), experiment);
+	}
+	
+	@Test
+	public void keys() throws GridSweeperException
+	{
+		String key = createCache().getKey(parameters, 1, 100);
+		assertEquals(40, key.length());
+		assertEquals(key, createCache().getKey(new ParameterMap(parameters), 1, 100));
+		
+		assertFalse(key.equals(createCache().getKey(parameters, 2, 100)));
+		assertFalse(key.equals(createCache().getKey(parameters, 1, 101)));
+		
+		ParameterMap otherParameters = new ParameterMap(parameters);
+		otherParameters.put("beta", "3");
+		assertFalse(key.equals(createCache().getKey(otherParameters, 1, 100)));
+		
+		// Scheduling settings do not matter, but others do
+		experiment.getSettings().setProperty("RunsPerJob", "8");
+		assertEquals(key, createCache().getKey(parameters, 1, 100));
+		experiment.getSettings().setProperty("miscOptions", "-n");
+		assertFalse(key.equals(createCache().getKey(parameters, 1, 100)));
+	}
+	
+	@Test
+	public void storeAndRestore() throws Exception
+	{
+		ResultCache cache = createCache();
+		
+		File caseDir = new File(dir, "case1");
+		caseDir.mkdir();
+		Writer writer = new FileWriter(new File(caseDir, "stdout.3"));
+		writer.write("output\n");
+		writer.close();
+		
+		CaseRun run = new CaseRun("case1", 3, 100);
+		run.cacheKey = cache.getKey(parameters, 3, 100);
+		run.caseDir = caseDir.getPath();
+		
+		File newCaseDir = new File(dir, "case2");
+		assertFalse(cache.restore(run.cacheKey, newCaseDir.getPath(), 3));
+		
+		cache.runCompleted(run);
+		assertTrue(cache.restore(run.cacheKey, newCaseDir.getPath(), 3));
+		
+		BufferedReader reader = new BufferedReader(new FileReader(new File(newCaseDir, "stdout.3")));
+		assertEquals("output", reader.readLine());
+		reader.close();
+		assertFalse(new File(newCaseDir, "stderr.3").exists());
+		
+		// Rewriting a restored file must not change the entry
+		writer = new FileWriter(new File(newCaseDir, "stdout.3"));
+		writer.write("rerun\n");
+		writer.close();
+		File otherCaseDir = new File(dir, "case3");
+		assertTrue(cache.restore(run.cacheKey, otherCaseDir.getPath(), 3));
+		reader = new BufferedReader(new FileReader(new File(otherCaseDir, "stdout.3")));
+		assertEquals("output", reader.readLine());
+		reader.close();
+	}
+}
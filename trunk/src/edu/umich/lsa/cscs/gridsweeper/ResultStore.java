@@ -0,0 +1,429 @@
+/*
+	ResultStore.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * <p>A store that packs the results of all the runs of an experiment into a
+ * few large files, used instead of leaving standard output and error files
+ * in each case directory when the {@code ResultStore} setting is on.
+ * The store is a directory, {@code results.gsstore}, in the experiment
+ * directory, holding segment files and an index.</p>
+ * 
+ * <p>Each segment, {@code segment.}<em>N</em>, is a stream of
+ * {@link RunResults} objects in the format described in {@link RunCodec},
+ * so it can also be read from start to finish with a {@link RunResultsReader}.
+ * Results are appended to the newest segment until it reaches
+ * {@link #SEGMENT_SIZE} bytes, and then a new one is started.
+ * The index holds a header followed by one record per run:
+ * <em>caseId</em> <em>runNum</em> <em>segment</em> <em>offset</em>
+ * <em>length</em>, written as a {@code DataOutputStream} UTF string,
+ * int, int, long and int. A run's results are written to its segment before its
+ * index record, so the index only ever refers to complete results, and a
+ * record cut short by the death of the process writing it is discarded when
+ * the store is next opened.</p>
+ * 
+ * <p>Results are read back using memory-mapped I/O, so reading them does not
+ * copy whole segments into memory.
+ * Only the monitoring process writes to the store; runners return their
+ * results to it as usual.</p>
+ * @author Ed Baskerville
+ *
+ */
+class ResultStore
+{
+	static final String DIRNAME = "results.gsstore";
+	static final String INDEX_FILENAME = "index";
+	static final String SEGMENT_PREFIX = "segment.";
+	
+	/**
+	 * The size at which a segment is considered full. Segments are mapped
+	 * into memory whole, so this must stay well below 2 GB.
+	 */
+	static final long SEGMENT_SIZE = 1L << 30;
+	
+	private static final int INDEX_MAGIC = 0x47534958; // "GSIX"
+	private static final int INDEX_VERSION = 1;
+	
+	private File storeDir;
+	private boolean writable;
+	
+	// Index records by caseId + "." + runNum, in the order they were written
+	private Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+	
+	// The newest segment, and where the next results go in it
+	private int segment = 0;
+	private long segmentLength = 0;
+	
+	private DataOutputStream indexOut = null;
+	
+	// Mapped segments, remapped when they have grown
+	private List<MappedByteBuffer> segmentMaps = new ArrayList<MappedByteBuffer>();
+	private List<RunCodec> segmentCodecs = new ArrayList<RunCodec>();
+	
+	/**
+	 * Locates the stored results of a single run.
+	 */
+	static class Entry
+	{
+		String caseId;
+		int runNum;
+		int segment;
+		long offset;
+		int length;
+	}
+	
+	/**
+	 * Determines whether an experiment packs its results into a store,
+	 * from its {@code ResultStore} setting.
+	 * @param settings The experiment settings.
+	 * @return Whether a result store is used.
+	 */
+	static boolean isUsed(Settings settings)
+	{
+		return settings.getBooleanProperty("ResultStore", false);
+	}
+	
+	/**
+	 * Opens the result store in an experiment directory.
+	 * @param expDir The experiment directory.
+	 * @param writable Whether results will be added to the store. If so, the
+	 * store is created if necessary; otherwise it must already exist.
+	 * @throws IOException If the store cannot be opened, or its index is invalid.
+	 */
+	public ResultStore(String expDir, boolean writable) throws IOException
+	{
+		this.writable = writable;
+		storeDir = new File(expDir, DIRNAME);
+		if(writable) storeDir.mkdir();
+		if(!storeDir.isDirectory())
+			throw new IOException("Could not open result store " + storeDir);
+		
+		File indexFile = new File(storeDir, INDEX_FILENAME);
+		long indexLength = 0;
+		if(indexFile.exists()) indexLength = readIndex(indexFile);
+		else if(!writable)
+			throw new IOException("Result store " + storeDir + " has no index.");
+		
+		if(writable)
+		{
+			// Drop any record cut short, so new records follow on from the last complete one
+			RandomAccessFile indexRaf = new RandomAccessFile(indexFile, "rw");
+			try
+			{
+				indexRaf.setLength(indexLength);
+			}
+			finally
+			{
+				indexRaf.close();
+			}
+			
+			indexOut = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(indexFile, true)));
+			if(indexLength == 0)
+			{
+				indexOut.writeInt(INDEX_MAGIC);
+				indexOut.writeInt(INDEX_VERSION);
+				indexOut.flush();
+			}
+			
+			// Results are appended after anything already in the newest segment
+			while(getSegmentFile(segment + 1).exists())
+			{
+				segment++;
+			}
+			segmentLength = getSegmentFile(segment).length();
+		}
+	}
+	
+	/**
+	 * Reads the index into memory.
+	 * @return The length of the index up to the end of the last complete record.
+	 */
+	private long readIndex(File indexFile) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+			new FileInputStream(indexFile)));
+		long length = 0;
+		try
+		{
+			if(indexFile.length() < 8) return 0;
+			if(in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION)
+				throw new IOException("Invalid result store index " + indexFile);
+			length = 8;
+			
+			while(true)
+			{
+				Entry entry = new Entry();
+				String caseId;
+				try
+				{
+					caseId = in.readUTF();
+					entry.caseId = caseId;
+					entry.runNum = in.readInt();
+					entry.segment = in.readInt();
+					entry.offset = in.readLong();
+					entry.length = in.readInt();
+				}
+				catch(EOFException e)
+				{
+					break;
+				}
+				entries.put(caseId + "." + entry.runNum, entry);
+				
+				// Two bytes of UTF length, then the string, then the fixed-size fields
+				length += 2 + getUTFLength(caseId) + 20;
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+		return length;
+	}
+	
+	/**
+	 * Computes the number of bytes {@code DataOutputStream.writeUTF}
+	 * uses for a string, not counting the length itself.
+	 */
+	private static int getUTFLength(String str)
+	{
+		int length = 0;
+		for(int i = 0; i < str.length(); i++)
+		{
+			char c = str.charAt(i);
+			if(c >= 0x0001 && c <= 0x007F) length += 1;
+			else if(c <= 0x07FF) length += 2;
+			else length += 3;
+		}
+		return length;
+	}
+	
+	private File getSegmentFile(int segment)
+	{
+		return new File(storeDir, SEGMENT_PREFIX + segment);
+	}
+	
+	/**
+	 * Adds the results of some runs to the store. Runs without results, and
+	 * runs already in the store, are skipped. The results are written out,
+	 * followed by their index records, before this method returns.
+	 * @param runs The runs.
+	 * @throws IOException If writing fails.
+	 */
+	public synchronized void store(List<CaseRun> runs) throws IOException
+	{
+		if(!writable)
+			throw new IOException("Result store " + storeDir + " is read-only.");
+		
+		// Encode first, to know where each run's results will end up
+		List<Entry> newEntries = new ArrayList<Entry>(runs.size());
+		ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+		DataOutputStream dataOut = new DataOutputStream(bytesOut);
+		RunCodec codec = new RunCodec();
+		for(CaseRun run : runs)
+		{
+			if(run.runResults == null || contains(run.caseId, run.runNum)) continue;
+			
+			int start = bytesOut.size();
+			codec.writeResults(dataOut, run.runResults);
+			dataOut.flush();
+			
+			Entry entry = new Entry();
+			entry.caseId = run.caseId;
+			entry.runNum = run.runNum;
+			entry.offset = start;
+			entry.length = bytesOut.size() - start;
+			newEntries.add(entry);
+		}
+		if(newEntries.isEmpty()) return;
+		byte[] data = bytesOut.toByteArray();
+		
+		// Start a new segment if this one is full, unless it is still empty
+		if(segmentLength > 0 && segmentLength + data.length > SEGMENT_SIZE)
+		{
+			segment++;
+			segmentLength = 0;
+		}
+		
+		DataOutputStream segmentOut = new DataOutputStream(new BufferedOutputStream(
+			new FileOutputStream(getSegmentFile(segment), true)));
+		try
+		{
+			if(segmentLength == 0)
+			{
+				RunCodec.writeHeader(segmentOut, RunCodec.RESULTS);
+				segmentLength = segmentOut.size();
+			}
+			segmentOut.write(data);
+		}
+		finally
+		{
+			segmentOut.close();
+		}
+		
+		for(Entry entry : newEntries)
+		{
+			entry.segment = segment;
+			entry.offset += segmentLength;
+			
+			indexOut.writeUTF(entry.caseId);
+			indexOut.writeInt(entry.runNum);
+			indexOut.writeInt(entry.segment);
+			indexOut.writeLong(entry.offset);
+			indexOut.writeInt(entry.length);
+			
+			entries.put(entry.caseId + "." + entry.runNum, entry);
+		}
+		indexOut.flush();
+		segmentLength += data.length;
+	}
+	
+	/**
+	 * Checks whether the store holds the results of a run.
+	 * @param caseId The run's case ID.
+	 * @param runNum The run number.
+	 * @return {@code true} if the results are in the store.
+	 */
+	public synchronized boolean contains(String caseId, int runNum)
+	{
+		return entries.containsKey(caseId + "." + runNum);
+	}
+	
+	/**
+	 * Reads the results of a run from the store.
+	 * @param caseId The run's case ID.
+	 * @param runNum The run number.
+	 * @return The results, or {@code null} if they are not in the store.
+	 * @throws IOException If the results cannot be read.
+	 */
+	public RunResults read(String caseId, int runNum) throws IOException
+	{
+		Entry entry;
+		synchronized(this)
+		{
+			entry = entries.get(caseId + "." + runNum);
+		}
+		if(entry == null) return null;
+		return read(entry);
+	}
+	
+	/**
+	 * Reads the results of a run from the store.
+	 * @param entry The run's entry, as returned by {@link #getEntries}.
+	 * @return The results.
+	 * @throws IOException If the results cannot be read.
+	 */
+	public RunResults read(Entry entry) throws IOException
+	{
+		ByteBuffer buffer;
+		RunCodec codec;
+		synchronized(this)
+		{
+			buffer = getSegmentMap(entry.segment, entry.offset + entry.length).duplicate();
+			codec = segmentCodecs.get(entry.segment);
+		}
+		
+		byte[] data = new byte[entry.length];
+		buffer.position((int)entry.offset);
+		buffer.get(data);
+		return codec.readResults(new DataInputStream(new ByteArrayInputStream(data)));
+	}
+	
+	/**
+	 * Returns a segment mapped into memory, mapping it again if it has
+	 * grown since it was last mapped.
+	 * @param segment The segment number.
+	 * @param minLength The number of bytes that must be mapped.
+	 * @return The mapped segment.
+	 * @throws IOException If the segment cannot be mapped, or is shorter
+	 * than {@code minLength}.
+	 */
+	private MappedByteBuffer getSegmentMap(int segment, long minLength) throws IOException
+	{
+		while(segmentMaps.size() <= segment)
+		{
+			segmentMaps.add(null);
+			segmentCodecs.add(null);
+		}
+		
+		MappedByteBuffer map = segmentMaps.get(segment);
+		if(map == null || map.capacity() < minLength)
+		{
+			RandomAccessFile segmentRaf = new RandomAccessFile(getSegmentFile(segment), "r");
+			try
+			{
+				FileChannel channel = segmentRaf.getChannel();
+				if(channel.size() < minLength)
+					throw new IOException("Result store segment " + segment + " is truncated.");
+				map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			finally
+			{
+				// The mapping remains valid after the file is closed
+				segmentRaf.close();
+			}
+			segmentMaps.set(segment, map);
+			
+			if(segmentCodecs.get(segment) == null)
+			{
+				byte[] header = new byte[9];
+				map.duplicate().get(header);
+				RunCodec codec = new RunCodec();
+				if(codec.readHeader(new DataInputStream(
+					new ByteArrayInputStream(header))) != RunCodec.RESULTS)
+				{
+					throw new IOException("Result store segment " + segment
+						+ " does not contain run results.");
+				}
+				segmentCodecs.set(segment, codec);
+			}
+		}
+		return map;
+	}
+	
+	/**
+	 * Returns the entries for all runs in the store, in the order
+	 * they were added.
+	 * @return The entries.
+	 */
+	public synchronized List<Entry> getEntries()
+	{
+		return new ArrayList<Entry>(entries.values());
+	}
+	
+	/**
+	 * Closes the store. Results already read remain valid.
+	 * @throws IOException If the index cannot be closed.
+	 */
+	public synchronized void close() throws IOException
+	{
+		if(indexOut != null) indexOut.close();
+		indexOut = null;
+		segmentMaps.clear();
+		segmentCodecs.clear();
+	}
+}
@@ -0,0 +1,147 @@
+/*
+	ResultStoreTest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ResultStoreTest
+{
+	File dir;
+	
+	@Before
+	public void setUp() throws IOException
+	{
+		dir = TestFiles.createTempDir("ResultStoreTest");
+	}
+	
+	@After
+	public void tearDown()
+	{
+		TestFiles.delete(dir);
+	}
+	
+	private List<CaseRun> createRuns(String caseId, int firstRun, int count)
+	{
+		List<CaseRun> runs = TestFiles.createRuns(caseId, firstRun, count);
+		for(CaseRun run : runs)
+		{
+			int i = run.runNum;
+			run.runResults = new RunResults(i % 2, "run " + i,
+				("out " + caseId + " " + i).getBytes(), null);
+			run.runResults.setRunNumber(i);
+		}
+		return runs;
+	}
+	
+	private void checkResults(ResultStore store, String caseId, int runNum) throws IOException
+	{
+		RunResults results = store.read(caseId, runNum);
+		assertEquals(runNum, results.getRunNumber());
+		assertEquals(runNum % 2, results.getStatus());
+		assertEquals("run " + runNum, results.getMessage());
+		assertEquals("out " + caseId + " " + runNum, new String(results.getStdoutData()));
+		assertNull(results.getStderrData());
+	}
+	
+	@Test
+	public void storeAndRead() throws Exception
+	{
+		ResultStore store = new ResultStore(dir.getPath(), true);
+		store.store(createRuns("a=1", 0, 3));
+		checkResults(store, "a=1", 1);
+		
+		// Reading remaps the segment after it grows
+		store.store(createRuns("a=2", 0, 2));
+		checkResults(store, "a=2", 1);
+		store.close();
+		
+		// Runs already stored are skipped
+		store = new ResultStore(dir.getPath(), true);
+		List<CaseRun> runs = createRuns("a=2", 1, 2);
+		runs.get(0).runResults = null;
+		store.store(runs);
+		store.close();
+		
+		store = new ResultStore(dir.getPath(), false);
+		assertEquals(6, store.getEntries().size());
+		for(int i = 0; i < 3; i++)
+		{
+			checkResults(store, "a=1", i);
+			checkResults(store, "a=2", i);
+		}
+		assertFalse(store.contains("a=3", 0));
+		assertNull(store.read("a=3", 0));
+		store.close();
+		
+		// A segment can be read as an ordinary results stream
+		RunResultsReader reader = new RunResultsReader(new FileInputStream(
+			new File(new File(dir, ResultStore.DIRNAME), ResultStore.SEGMENT_PREFIX + 0)));
+		try
+		{
+			assertEquals("run 0", reader.readResults().getMessage());
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+	
+	@Test
+	public void truncatedIndex() throws IOException
+	{
+		ResultStore store = new ResultStore(dir.getPath(), true);
+		store.store(createRuns("a=1", 0, 2));
+		store.close();
+		
+		// A record cut short is dropped when the store is reopened
+		OutputStream indexOut = new FileOutputStream(new File(
+			new File(dir, ResultStore.DIRNAME), ResultStore.INDEX_FILENAME), true);
+		indexOut.write(new byte[] {0, 3, 'a', '='});
+		indexOut.close();
+		
+		store = new ResultStore(dir.getPath(), true);
+		assertEquals(2, store.getEntries().size());
+		store.store(createRuns("a=2", 0, 1));
+		store.close();
+		
+		store = new ResultStore(dir.getPath(), false);
+		assertEquals(3, store.getEntries().size());
+		checkResults(store, "a=1", 1);
+		checkResults(store, "a=2", 0);
+		store.close();
+	}
+	
+	@Test
+	public void missingStore()
+	{
+		try
+		{
+			new ResultStore(dir.getPath(), false);
+			fail();
+		}
+		catch(IOException e) {}
+	}
+}
@@ -0,0 +1,137 @@
+/*
+	RetryPolicy.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.util.List;
+
+/**
+ * <p>Decides which failed jobs to run again, and when. Only failures that
+ * may not happen again are retried:</p>
+ * 
+ * <ul>
+ * <li>the job was aborted, e.g., because it could not be started on its host;</li>
+ * <li>the job was killed by a signal without dumping core, e.g., because its
+ * host went down or it was preempted;</li>
+ * <li>the job exited with a nonzero status, meaning that the runner itself,
+ * rather than the model, failed, e.g., because Java could not be started;</li>
+ * <li>the results of a run were missing or unreadable, e.g., because the
+ * host died while writing them.</li>
+ * </ul>
+ * 
+ * <p>A core dump, an exception reported by the adapter, or a nonzero status
+ * from the model is taken to be a property of the run, and is reported
+ * without retrying. The whole job is retried, even if some of its runs
+ * completed. Each retry of a job waits twice as long as the one before,
+ * up to an hour.</p>
+ * @author Ed Baskerville
+ *
+ */
+class RetryPolicy
+{
+	/**
+	 * The longest wait before a retry, in milliseconds.
+	 */
+	static final long MAX_DELAY = 3600000;
+	
+	private int maxRetries;
+	private long delay;
+	
+	/**
+	 * Constructor.
+	 * @param maxRetries The number of times a job's runs may be retried.
+	 * @param delay The wait before the first retry, in milliseconds.
+	 */
+	public RetryPolicy(int maxRetries, long delay)
+	{
+		this.maxRetries = maxRetries;
+		this.delay = delay;
+	}
+	
+	/**
+	 * Creates the policy given by the {@code MaxRetries} and
+	 * {@code RetryDelay} settings.
+	 * @param settings The experiment settings.
+	 * @return The policy, or {@code null} if failed jobs are not retried.
+	 * @throws GridSweeperException If a setting is invalid.
+	 */
+	static RetryPolicy fromSettings(Settings settings) throws GridSweeperException
+	{
+		int maxRetries = settings.getIntProperty("MaxRetries", 0, 0);
+		if(maxRetries == 0) return null;
+		return new RetryPolicy(maxRetries, 1000L * settings.getIntProperty("RetryDelay", 60, 0));
+	}
+	
+	/**
+	 * Determines whether a job that has just failed can be retried.
+	 * @param attempt The number of the attempt that failed, starting at 1.
+	 * @return {@code true} if another attempt is allowed.
+	 */
+	public boolean allowsRetry(int attempt)
+	{
+		return attempt <= maxRetries;
+	}
+	
+	/**
+	 * Returns how long to wait before running a job again.
+	 * @param attempt The number of the attempt that failed, starting at 1.
+	 * @return The wait, in milliseconds.
+	 */
+	public long getDelay(int attempt)
+	{
+		long attemptDelay = delay;
+		for(int i = 1; i < attempt && attemptDelay < MAX_DELAY; i++)
+		{
+			attemptDelay *= 2;
+		}
+		return Math.min(attemptDelay, MAX_DELAY);
+	}
+	
+	/**
+	 * Classifies how a job failed.
+	 * @param outcome How the job ended, according to the backend.
+	 * @param runs The job's runs, with their results loaded if the job
+	 * ended normally.
+	 * @return A description of the failure if it may not happen again,
+	 * or {@code null} if the job did not fail or failed in a way that
+	 * should not be retried.
+	 */
+	static String getTransientFailure(JobOutcome outcome, List<CaseRun> runs)
+	{
+		if(!outcome.isOk())
+		{
+			if(!outcome.detailsKnown || outcome.coreDump) return null;
+			if(outcome.aborted) return "the job was aborted";
+			if(outcome.signaled) return "the job ended with signal " + outcome.terminatingSignal;
+			return "the job exited with status " + outcome.exitStatus;
+		}
+		
+		for(CaseRun run : runs)
+		{
+			if(run.resultsException != null)
+				return "the results of run " + run.runNum + " could not be loaded ("
+					+ run.resultsException + ")";
+			if(run.runResults == null)
+				return "the results of run " + run.runNum + " could not be loaded";
+		}
+		return null;
+	}
+}
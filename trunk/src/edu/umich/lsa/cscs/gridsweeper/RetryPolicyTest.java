@@ -0,0 +1,117 @@
+/*
+	RetryPolicyTest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class RetryPolicyTest
+{
+	private List<CaseRun> createRuns(int count)
+	{
+		List<CaseRun> runs = TestFiles.createRuns("a=1", 0, count);
+		for(CaseRun run : runs)
+		{
+			run.runResults = new RunResults(0, "", null, null);
+		}
+		return runs;
+	}
+	
+	@Test
+	public void jobFailures()
+	{
+		List<CaseRun> runs = createRuns(1);
+		
+		assertNull(RetryPolicy.getTransientFailure(
+			new JobOutcome("1", true, 0, false, null, false, false), runs));
+		assertNotNull(RetryPolicy.getTransientFailure(
+			new JobOutcome("1", false, 0, false, null, false, true), runs));
+		assertNotNull(RetryPolicy.getTransientFailure(
+			new JobOutcome("1", false, 0, true, "SIGKILL", false, false), runs));
+		assertNotNull(RetryPolicy.getTransientFailure(
+			new JobOutcome("1", true, 1, false, null, false, false), runs));
+		
+		// A core dump is taken to be a property of the run
+		assertNull(RetryPolicy.getTransientFailure(
+			new JobOutcome("1", false, 0, true, "SIGSEGV", true, false), runs));
+		
+		// Nothing is known about jobs that ended before monitoring was resumed
+		assertNull(RetryPolicy.getTransientFailure(new JobOutcome("1", false), runs));
+	}
+	
+	@Test
+	public void runFailures()
+	{
+		JobOutcome outcome = new JobOutcome("1", true, 0, false, null, false, false);
+		List<CaseRun> runs = createRuns(2);
+		
+		// Missing results are retried...
+		runs.get(1).runResults = null;
+		runs.get(1).resultsException = new EOFException();
+		assertNotNull(RetryPolicy.getTransientFailure(outcome, runs));
+		
+		// ...but the model's own failures are not
+		runs.get(1).resultsException = null;
+		runs.get(1).runResults = new RunResults(1, "", null, null);
+		assertNull(RetryPolicy.getTransientFailure(outcome, runs));
+		runs.get(1).runResults = new RunResults(new AdapterException("Model not found."));
+		assertNull(RetryPolicy.getTransientFailure(outcome, runs));
+	}
+	
+	@Test
+	public void backoff()
+	{
+		RetryPolicy policy = new RetryPolicy(2, 60000);
+		assertTrue(policy.allowsRetry(1));
+		assertTrue(policy.allowsRetry(2));
+		assertFalse(policy.allowsRetry(3));
+		
+		assertEquals(60000, policy.getDelay(1));
+		assertEquals(120000, policy.getDelay(2));
+		assertEquals(240000, policy.getDelay(3));
+		assertEquals(RetryPolicy.MAX_DELAY, policy.getDelay(100));
+	}
+	
+	@Test
+	public void settings() throws GridSweeperException
+	{
+		Settings settings = new Settings();
+		assertNull(RetryPolicy.fromSettings(settings));
+		
+		settings.setProperty("MaxRetries", "3");
+		settings.setProperty("RetryDelay", "5");
+		RetryPolicy policy = RetryPolicy.fromSettings(settings);
+		assertTrue(policy.allowsRetry(3));
+		assertEquals(10000, policy.getDelay(2));
+		
+		settings.setProperty("RetryDelay", "soon");
+		try
+		{
+			RetryPolicy.fromSettings(settings);
+			fail("Invalid RetryDelay should be rejected.");
+		}
+		catch(GridSweeperException e) {}
+	}
+}
@@ -0,0 +1,636 @@
+/*
+	RunCodec.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * <p>Encodes and decodes {@link RunSetup} and {@link RunResults} objects
+ * in the binary format used to pass them between GridSweeper and
+ * GridSweeperRunner, in place of Java serialization.</p>
+ *
+ * <p>Every file starts with a header: the magic number {@code GSWP}, a
+ * format version, and a byte identifying the contents, which are
+ * one of:</p>
+ * <ul>
+ * <li>{@link #SETUP}: a single setup;</li>
+ * <li>{@link #SETUP_LIST}: a count followed by that many setups, for a batch
+ * of runs;</li>
+ * <li>{@link #TASK_LIST}: a count followed by that many batches, for a bulk job;</li>
+ * <li>{@link #RESULTS}: results objects, one after another until the end of the file.</li>
+ * </ul>
+ *
+ * <p>Strings and byte arrays are written as a length (-1 for {@code null})
+ * followed by the UTF-8 bytes or the data. Each setup starts with a byte of flags
+ * marking which of its settings, input files, case ID, parameters and output files
+ * are the same objects as in the previous setup in the file; these are
+ * not written again, so the settings for a batch of runs are only stored once.
+ * Parameter values are tagged with their type. Exceptions in results objects,
+ * which are rare and need their full stack traces, are still stored
+ * using Java serialization.</p>
+ *
+ * <p>Files that do not start with the magic number are read using
+ * Java serialization, so results directories written by older versions
+ * of GridSweeper can still be read.</p>
+ *
+ * <p>Version 2 added descriptions of output files written directly
+ * to disk to results objects, and version 3 the resources used by the
+ * model; older streams can still be read.</p>
+ *
+ * <p>A codec object remembers the format version and the previous setup
+ * read or written, and so should be used for a single stream only.</p>
+ * @author Ed Baskerville
+ *
+ */
+class RunCodec
+{
+	static final int MAGIC = 0x47535750; // "GSWP"
+	static final int VERSION = 3;
+	
+	static final byte SETUP = 1;
+	static final byte SETUP_LIST = 2;
+	static final byte TASK_LIST = 3;
+	static final byte RESULTS = 4;
+	
+	private static final int SAME_SETTINGS = 0x01;
+	private static final int SAME_INPUT_FILES = 0x02;
+	private static final int SAME_SUBPATH = 0x04;
+	private static final int SAME_PARAMETERS = 0x08;
+	private static final int SAME_OUTPUT_FILES = 0x10;
+	
+	private static final byte VALUE_NULL = 0;
+	private static final byte VALUE_STRING = 1;
+	private static final byte VALUE_BIG_DECIMAL = 2;
+	private static final byte VALUE_INTEGER = 3;
+	private static final byte VALUE_LONG = 4;
+	private static final byte VALUE_DOUBLE = 5;
+	private static final byte VALUE_BOOLEAN = 6;
+	private static final byte VALUE_SERIALIZED = 7;
+	
+	private int version = VERSION;
+	private RunSetup previousSetup = null;
+	
+	/**
+	 * Writes the setup object passed to the runner: a single {@link RunSetup},
+	 * a list of setups for a batch of runs, or a list of such batches for a bulk job.
+	 * @param out The stream to write to. It is not closed.
+	 * @param setupObj The setup object.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	@SuppressWarnings("unchecked")
+	static void writeSetups(OutputStream out, Object setupObj) throws IOException
+	{
+		DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));
+		RunCodec codec = new RunCodec();
+		
+		if(setupObj instanceof RunSetup)
+		{
+			writeHeader(dataOut, SETUP);
+			codec.writeSetup(dataOut, (RunSetup)setupObj);
+		}
+		else
+		{
+			List<?> list = (List<?>)setupObj;
+			if(list.size() > 0 && list.get(0) instanceof List)
+			{
+				writeHeader(dataOut, TASK_LIST);
+				dataOut.writeInt(list.size());
+				for(Object batch : list)
+				{
+					codec.writeSetupList(dataOut, (List<RunSetup>)batch);
+				}
+			}
+			else
+			{
+				writeHeader(dataOut, SETUP_LIST);
+				codec.writeSetupList(dataOut, (List<RunSetup>)list);
+			}
+		}
+		
+		dataOut.flush();
+	}
+	
+	/**
+	 * Reads the setup object passed to the runner, as written by
+	 * {@link #writeSetups}, or using Java serialization if the stream
+	 * is not in this format.
+	 * @param in The stream to read from.
+	 * @return The setup object.
+	 * @throws IOException If an I/O error occurs or the stream is invalid.
+	 * @throws ClassNotFoundException If a serialized object's class cannot be found.
+	 */
+	static Object readSetups(InputStream in) throws IOException, ClassNotFoundException
+	{
+		BufferedInputStream bufIn = new BufferedInputStream(in);
+		if(!isEncoded(bufIn))
+		{
+			return new ObjectInputStream(bufIn).readObject();
+		}
+		
+		DataInputStream dataIn = new DataInputStream(bufIn);
+		RunCodec codec = new RunCodec();
+		byte kind = codec.readHeader(dataIn);
+		switch(kind)
+		{
+			case SETUP:
+				return codec.readSetup(dataIn);
+			case SETUP_LIST:
+				return codec.readSetupList(dataIn);
+			case TASK_LIST:
+				int count = readCount(dataIn);
+				List<List<RunSetup>> taskSetups = new ArrayList<List<RunSetup>>(count);
+				for(int i = 0; i < count; i++)
+				{
+					taskSetups.add(codec.readSetupList(dataIn));
+				}
+				return taskSetups;
+			default:
+				throw new IOException("Stream does not contain run setups.");
+		}
+	}
+	
+	/**
+	 * Checks whether a stream starts with the magic number for this format,
+	 * without consuming any of it.
+	 * @param in The stream, which must support {@code mark}.
+	 * @return {@code true} if the stream is in this format.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	static boolean isEncoded(InputStream in) throws IOException
+	{
+		in.mark(4);
+		int magic = 0;
+		for(int i = 0; i < 4; i++)
+		{
+			int b = in.read();
+			if(b == -1)
+			{
+				in.reset();
+				return false;
+			}
+			magic = (magic << 8) | b;
+		}
+		in.reset();
+		return magic == MAGIC;
+	}
+	
+	static void writeHeader(DataOutputStream out, byte kind) throws IOException
+	{
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeByte(kind);
+	}
+	
+	/**
+	 * Reads a stream header, and uses the format version it specifies
+	 * for the rest of the stream.
+	 * @param in The stream.
+	 * @return The kind of contents of the stream.
+	 * @throws IOException If the header is invalid or the version is unsupported.
+	 */
+	byte readHeader(DataInputStream in) throws IOException
+	{
+		if(in.readInt() != MAGIC)
+			throw new IOException("Stream is not in GridSweeper run format.");
+		
+		version = in.readInt();
+		if(version < 1 || version > VERSION)
+			throw new IOException("Unsupported GridSweeper run format version " + version + ".");
+		
+		return in.readByte();
+	}
+	
+	void writeSetupList(DataOutputStream out, List<RunSetup> setups) throws IOException
+	{
+		out.writeInt(setups.size());
+		for(RunSetup setup : setups)
+		{
+			writeSetup(out, setup);
+		}
+	}
+	
+	List<RunSetup> readSetupList(DataInputStream in) throws IOException
+	{
+		int count = readCount(in);
+		List<RunSetup> setups = new ArrayList<RunSetup>(count);
+		for(int i = 0; i < count; i++)
+		{
+			setups.add(readSetup(in));
+		}
+		return setups;
+	}
+	
+	void writeSetup(DataOutputStream out, RunSetup setup) throws IOException
+	{
+		RunSetup prev = previousSetup;
+		int flags = 0;
+		if(prev != null)
+		{
+			if(setup.getSettings() == prev.getSettings()) flags |= SAME_SETTINGS;
+			if(setup.getInputFiles() == prev.getInputFiles()) flags |= SAME_INPUT_FILES;
+			if(setup.getFileTransferSubpath() == prev.getFileTransferSubpath()) flags |= SAME_SUBPATH;
+			if(setup.getParameters() == prev.getParameters()) flags |= SAME_PARAMETERS;
+			if(setup.getOutputFiles() == prev.getOutputFiles()) flags |= SAME_OUTPUT_FILES;
+		}
+		out.writeByte(flags);
+		
+		if((flags & SAME_SETTINGS) == 0) writeSettings(out, setup.getSettings());
+		if((flags & SAME_INPUT_FILES) == 0) writeStringMap(out, setup.getInputFiles());
+		if((flags & SAME_SUBPATH) == 0) writeString(out, setup.getFileTransferSubpath());
+		if((flags & SAME_PARAMETERS) == 0) writeParameters(out, setup.getParameters());
+		if((flags & SAME_OUTPUT_FILES) == 0) writeStringList(out, setup.getOutputFiles());
+		
+		out.writeInt(setup.getNumRuns());
+		out.writeInt(setup.getRunNumber());
+		out.writeInt(setup.getRngSeed());
+		
+		previousSetup = setup;
+	}
+	
+	RunSetup readSetup(DataInputStream in) throws IOException
+	{
+		RunSetup prev = previousSetup;
+		int flags = in.readUnsignedByte();
+		if(prev == null && flags != 0)
+			throw new IOException("Run setup refers to a nonexistent previous setup.");
+		
+		Settings settings = (flags & SAME_SETTINGS) == 0 ?
+			readSettings(in) : prev.getSettings();
+		StringMap inputFiles = (flags & SAME_INPUT_FILES) == 0 ?
+			readStringMap(in) : prev.getInputFiles();
+		String subpath = (flags & SAME_SUBPATH) == 0 ?
+			readString(in) : prev.getFileTransferSubpath();
+		ParameterMap parameters = (flags & SAME_PARAMETERS) == 0 ?
+			readParameters(in) : prev.getParameters();
+		StringList outputFiles = (flags & SAME_OUTPUT_FILES) == 0 ?
+			readStringList(in) : prev.getOutputFiles();
+		
+		int numRuns = in.readInt();
+		int runNumber = in.readInt();
+		int rngSeed = in.readInt();
+		
+		RunSetup setup = new RunSetup(settings, inputFiles, subpath, parameters,
+			numRuns, runNumber, rngSeed, outputFiles);
+		previousSetup = setup;
+		return setup;
+	}
+	
+	void writeResults(DataOutputStream out, RunResults results) throws IOException
+	{
+		out.writeInt(results.getRunNumber());
+		out.writeInt(results.getStatus());
+		writeString(out, results.getMessage());
+		writeBytes(out, results.getStdoutData());
+		writeBytes(out, results.getStderrData());
+		writeOutputFile(out, results.getStdoutFile());
+		writeOutputFile(out, results.getStderrFile());
+		out.writeLong(results.getWallTime());
+		out.writeLong(results.getUserTime());
+		out.writeLong(results.getSystemTime());
+		out.writeLong(results.getPeakResidentSize());
+		
+		Exception exception = results.getException();
+		writeBytes(out, exception == null ? null : serialize(exception));
+	}
+	
+	RunResults readResults(DataInputStream in) throws IOException
+	{
+		int runNumber = in.readInt();
+		int status = in.readInt();
+		String message = readString(in);
+		byte[] stdoutData = readBytes(in);
+		byte[] stderrData = readBytes(in);
+		
+		OutputFile stdoutFile = null;
+		OutputFile stderrFile = null;
+		if(version >= 2)
+		{
+			stdoutFile = readOutputFile(in);
+			stderrFile = readOutputFile(in);
+		}
+		long[] usage = {-1, -1, -1, -1};
+		if(version >= 3)
+		{
+			for(int i = 0; i < usage.length; i++)
+			{
+				usage[i] = in.readLong();
+			}
+		}
+		
+		byte[] exceptionData = readBytes(in);
+		Exception exception = exceptionData == null ? null : (Exception)deserialize(exceptionData);
+		
+		RunResults results = new RunResults(status, message, stdoutData, stderrData,
+			stdoutFile, stderrFile, exception);
+		results.setRunNumber(runNumber);
+		results.setResourceUsage(usage[0], usage[1], usage[2], usage[3]);
+		return results;
+	}
+	
+	private static void writeOutputFile(DataOutputStream out, OutputFile file) throws IOException
+	{
+		out.writeBoolean(file != null);
+		if(file != null)
+		{
+			writeString(out, file.getPath());
+			out.writeLong(file.getSize());
+			out.writeLong(file.getChecksum());
+		}
+	}
+	
+	private static OutputFile readOutputFile(DataInputStream in) throws IOException
+	{
+		if(!in.readBoolean()) return null;
+		
+		String path = readString(in);
+		long size = in.readLong();
+		long checksum = in.readLong();
+		return new OutputFile(path, size, checksum);
+	}
+	
+	private static void writeSettings(DataOutputStream out, Settings settings) throws IOException
+	{
+		if(settings == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+		
+		// Keys are stored in lowercase; write the originals to preserve case
+		out.writeInt(settings.size());
+		for(Map.Entry<String, String> entry : settings.entrySet())
+		{
+			String casedKey = settings.getCasedKey(entry.getKey());
+			writeString(out, casedKey == null ? entry.getKey() : casedKey);
+			writeString(out, entry.getValue());
+		}
+	}
+	
+	private static Settings readSettings(DataInputStream in) throws IOException
+	{
+		int count = in.readInt();
+		if(count == -1) return null;
+		checkCount(count);
+		
+		Settings settings = new Settings();
+		for(int i = 0; i < count; i++)
+		{
+			String key = readString(in);
+			settings.setProperty(key, readString(in));
+		}
+		return settings;
+	}
+	
+	private static void writeStringMap(DataOutputStream out, StringMap map) throws IOException
+	{
+		if(map == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+		
+		out.writeInt(map.size());
+		for(Map.Entry<String, String> entry : map.entrySet())
+		{
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue());
+		}
+	}
+	
+	private static StringMap readStringMap(DataInputStream in) throws IOException
+	{
+		int count = in.readInt();
+		if(count == -1) return null;
+		checkCount(count);
+		
+		StringMap map = new StringMap(count * 4 / 3 + 1);
+		for(int i = 0; i < count; i++)
+		{
+			String key = readString(in);
+			map.put(key, readString(in));
+		}
+		return map;
+	}
+	
+	private static void writeStringList(DataOutputStream out, StringList list) throws IOException
+	{
+		if(list == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+		
+		out.writeInt(list.size());
+		for(String string : list)
+		{
+			writeString(out, string);
+		}
+	}
+	
+	private static StringList readStringList(DataInputStream in) throws IOException
+	{
+		int count = in.readInt();
+		if(count == -1) return null;
+		checkCount(count);
+		
+		StringList list = new StringList(count);
+		for(int i = 0; i < count; i++)
+		{
+			list.add(readString(in));
+		}
+		return list;
+	}
+	
+	private static void writeParameters(DataOutputStream out, ParameterMap parameters) throws IOException
+	{
+		if(parameters == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+		
+		out.writeInt(parameters.size());
+		for(Map.Entry<String, Object> entry : parameters.entrySet())
+		{
+			writeString(out, entry.getKey());
+			writeValue(out, entry.getValue());
+		}
+	}
+	
+	private static ParameterMap readParameters(DataInputStream in) throws IOException
+	{
+		int count = in.readInt();
+		if(count == -1) return null;
+		checkCount(count);
+		
+		ParameterMap parameters = new ParameterMap(count * 4 / 3 + 1);
+		for(int i = 0; i < count; i++)
+		{
+			String name = readString(in);
+			parameters.put(name, readValue(in));
+		}
+		return parameters;
+	}
+	
+	private static void writeValue(DataOutputStream out, Object value) throws IOException
+	{
+		if(value == null)
+		{
+			out.writeByte(VALUE_NULL);
+		}
+		else if(value instanceof String)
+		{
+			out.writeByte(VALUE_STRING);
+			writeString(out, (String)value);
+		}
+		else if(value instanceof BigDecimal)
+		{
+			out.writeByte(VALUE_BIG_DECIMAL);
+			writeString(out, value.toString());
+		}
+		else if(value instanceof Integer)
+		{
+			out.writeByte(VALUE_INTEGER);
+			out.writeInt((Integer)value);
+		}
+		else if(value instanceof Long)
+		{
+			out.writeByte(VALUE_LONG);
+			out.writeLong((Long)value);
+		}
+		else if(value instanceof Double)
+		{
+			out.writeByte(VALUE_DOUBLE);
+			out.writeDouble((Double)value);
+		}
+		else if(value instanceof Boolean)
+		{
+			out.writeByte(VALUE_BOOLEAN);
+			out.writeBoolean((Boolean)value);
+		}
+		else
+		{
+			out.writeByte(VALUE_SERIALIZED);
+			writeBytes(out, serialize(value));
+		}
+	}
+	
+	private static Object readValue(DataInputStream in) throws IOException
+	{
+		byte tag = in.readByte();
+		switch(tag)
+		{
+			case VALUE_NULL:
+				return null;
+			case VALUE_STRING:
+				return readString(in);
+			case VALUE_BIG_DECIMAL:
+				return new BigDecimal(readString(in));
+			case VALUE_INTEGER:
+				return in.readInt();
+			case VALUE_LONG:
+				return in.readLong();
+			case VALUE_DOUBLE:
+				return in.readDouble();
+			case VALUE_BOOLEAN:
+				return in.readBoolean();
+			case VALUE_SERIALIZED:
+				return deserialize(readBytes(in));
+			default:
+				throw new IOException("Unknown parameter value type " + tag + ".");
+		}
+	}
+	
+	private static void writeString(DataOutputStream out, String string) throws IOException
+	{
+		writeBytes(out, string == null ? null : string.getBytes("UTF-8"));
+	}
+	
+	private static String readString(DataInputStream in) throws IOException
+	{
+		byte[] bytes = readBytes(in);
+		return bytes == null ? null : new String(bytes, "UTF-8");
+	}
+	
+	private static void writeBytes(DataOutputStream out, byte[] data) throws IOException
+	{
+		if(data == null)
+		{
+			out.writeInt(-1);
+		}
+		else
+		{
+			out.writeInt(data.length);
+			out.write(data);
+		}
+	}
+	
+	private static byte[] readBytes(DataInputStream in) throws IOException
+	{
+		int length = in.readInt();
+		if(length == -1) return null;
+		checkCount(length);
+		
+		byte[] data = new byte[length];
+		in.readFully(data);
+		return data;
+	}
+	
+	private static int readCount(DataInputStream in) throws IOException
+	{
+		int count = in.readInt();
+		checkCount(count);
+		return count;
+	}
+	
+	private static void checkCount(int count) throws IOException
+	{
+		if(count < 0)
+			throw new IOException("Invalid length " + count + " in run data.");
+	}
+	
+	private static byte[] serialize(Object obj) throws IOException
+	{
+		ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+		ObjectOutputStream objStream = new ObjectOutputStream(byteStream);
+		objStream.writeObject(obj);
+		objStream.close();
+		return byteStream.toByteArray();
+	}
+	
+	private static Object deserialize(byte[] data) throws IOException
+	{
+		ObjectInputStream objStream = new ObjectInputStream(new ByteArrayInputStream(data));
+		try
+		{
+			return objStream.readObject();
+		}
+		catch(ClassNotFoundException e)
+		{
+			IOException ioe = new IOException("Could not deserialize object in run data.");
+			ioe.initCause(e);
+			throw ioe;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/*
+	RunCodecTest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.util.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class RunCodecTest
+{
+	Settings settings;
+	ParameterMap parameters;
+	
+	@Before
+	public void setUp()
+	{
+		settings = new Settings();
+		settings.setProperty("Model", "/bin/echo");
+		settings.setProperty("RunsPerJob", "4");
+		
+		parameters = new ParameterMap();
+		parameters.put("alpha", "a string");
+		parameters.put("beta", new BigDecimal("0.125"));
+		parameters.put("gamma", 3);
+	}
+	
+	private RunSetup createSetup(int runNumber)
+	{
+		StringList outputFiles = new StringList();
+		outputFiles.add("output.txt");
+		return new RunSetup(settings, new StringMap(), "case", parameters,
+			4, runNumber, runNumber + 100, outputFiles);
+	}
+	
+	private void assertSetupsEqual(RunSetup expected, RunSetup actual)
+	{
+		assertEquals(expected.getSettings(), actual.getSettings());
+		assertEquals(expected.getInputFiles(), actual.getInputFiles());
+		assertEquals(expected.getFileTransferSubpath(), actual.getFileTransferSubpath());
+		assertEquals(expected.getParameters(), actual.getParameters());
+		assertEquals(expected.getNumRuns(), actual.getNumRuns());
+		assertEquals(expected.getRunNumber(), actual.getRunNumber());
+		assertEquals(expected.getRngSeed(), actual.getRngSeed());
+		assertEquals(expected.getOutputFiles(), actual.getOutputFiles());
+	}
+	
+	private Object roundTrip(Object setupObj) throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RunCodec.writeSetups(out, setupObj);
+		return RunCodec.readSetups(new ByteArrayInputStream(out.toByteArray()));
+	}
+	
+	@Test
+	public void singleSetup() throws Exception
+	{
+		RunSetup setup = createSetup(2);
+		RunSetup decoded = (RunSetup)roundTrip(setup);
+		
+		assertSetupsEqual(setup, decoded);
+		assertEquals("Model", decoded.getSettings().getCasedKey("model"));
+	}
+	
+	@Test
+	public void setupList() throws Exception
+	{
+		List<RunSetup> setups = new ArrayList<RunSetup>();
+		for(int i = 0; i < 4; i++)
+		{
+			setups.add(createSetup(i));
+		}
+		
+		List<?> decoded = (List<?>)roundTrip(setups);
+		assertEquals(setups.size(), decoded.size());
+		for(int i = 0; i < setups.size(); i++)
+		{
+			assertSetupsEqual(setups.get(i), (RunSetup)decoded.get(i));
+		}
+		
+		// Shared settings are only stored, and decoded, once
+		assertSame(((RunSetup)decoded.get(0)).getSettings(),
+			((RunSetup)decoded.get(3)).getSettings());
+	}
+	
+	@Test
+	public void taskList() throws Exception
+	{
+		List<List<RunSetup>> taskSetups = new ArrayList<List<RunSetup>>();
+		for(int i = 0; i < 3; i++)
+		{
+			List<RunSetup> setups = new ArrayList<RunSetup>();
+			setups.add(createSetup(2 * i));
+			setups.add(createSetup(2 * i + 1));
+			taskSetups.add(setups);
+		}
+		
+		List<?> decoded = (List<?>)roundTrip(taskSetups);
+		assertEquals(3, decoded.size());
+		for(int i = 0; i < 3; i++)
+		{
+			List<?> batch = (List<?>)decoded.get(i);
+			assertEquals(2, batch.size());
+			assertSetupsEqual(taskSetups.get(i).get(1), (RunSetup)batch.get(1));
+		}
+	}
+	
+	@Test
+	public void serializedSetupFallback() throws Exception
+	{
+		RunSetup setup = createSetup(1);
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ObjectOutputStream objOut = new ObjectOutputStream(out);
+		objOut.writeObject(setup);
+		objOut.close();
+		
+		RunSetup decoded = (RunSetup)RunCodec.readSetups(new ByteArrayInputStream(out.toByteArray()));
+		assertSetupsEqual(setup, decoded);
+	}
+	
+	@Test
+	public void results() throws Exception
+	{
+		RunResults results = new RunResults(3, "message", "out".getBytes(), null);
+		results.setRunNumber(7);
+		RunResults errorResults = new RunResults(new GridSweeperException("failed"));
+		RunResults fileResults = new RunResults(0, "streamed", null, null);
+		fileResults.setOutputFiles(new OutputFile("stdout.1", 12, 34), null);
+		fileResults.setResourceUsage(1500, 1200, 100, 4096);
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RunResultsWriter writer = new RunResultsWriter(out);
+		writer.writeResults(results);
+		writer.writeResults(errorResults);
+		writer.writeResults(fileResults);
+		writer.close();
+		
+		RunResultsReader reader = new RunResultsReader(new ByteArrayInputStream(out.toByteArray()));
+		RunResults decoded = reader.readResults();
+		assertEquals(7, decoded.getRunNumber());
+		assertEquals(3, decoded.getStatus());
+		assertEquals("message", decoded.getMessage());
+		assertTrue(Arrays.equals("out".getBytes(), decoded.getStdoutData()));
+		assertNull(decoded.getStderrData());
+		assertNull(decoded.getException());
+		assertEquals(-1, decoded.getWallTime());
+		
+		RunResults decodedError = reader.readResults();
+		assertEquals(-1, decodedError.getRunNumber());
+		assertEquals("failed", decodedError.getException().getMessage());
+		
+		RunResults decodedFile = reader.readResults();
+		assertEquals("stdout.1", decodedFile.getStdoutFile().getPath());
+		assertEquals(12, decodedFile.getStdoutFile().getSize());
+		assertEquals(34, decodedFile.getStdoutFile().getChecksum());
+		assertNull(decodedFile.getStderrFile());
+		assertEquals(1500, decodedFile.getWallTime());
+		assertEquals(1200, decodedFile.getUserTime());
+		assertEquals(100, decodedFile.getSystemTime());
+		assertEquals(4096, decodedFile.getPeakResidentSize());
+		
+		try
+		{
+			reader.readResults();
+			fail();
+		}
+		catch(EOFException e) {}
+	}
+	
+	@Test
+	public void serializedResultsFallback() throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ObjectOutputStream objOut = new ObjectOutputStream(out);
+		objOut.writeObject(new RunResults(0, "done", null, null));
+		objOut.close();
+		
+		RunResultsReader reader = new RunResultsReader(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals("done", reader.readResults().getMessage());
+	}
+}
@@ -0,0 +1,76 @@
+/*
+	RunListener.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+/**
+ * Receives events as the runs of an experiment complete. Events are
+ * delivered one at a time, from whichever thread finished handling the run,
+ * so implementations need not be thread-safe but should return quickly.
+ * @see JobMonitor
+ * @author Ed Baskerville
+ *
+ */
+interface RunListener
+{
+	/**
+	 * The ways a run can fail.
+	 */
+	enum Failure
+	{
+		/** The execution backend (usually DRMAA) reports that the job did not complete normally. */
+		DRMAA,
+		/** GridSweeper itself failed to perform the run, or its results could not be loaded. */
+		GRIDSWEEPER,
+		/** The model exited with a nonzero status. */
+		EXECUTION
+	}
+	
+	/**
+	 * Called when a run completes successfully.
+	 * @param run The run, with its job information and results filled in.
+	 */
+	void runCompleted(CaseRun run);
+	
+	/**
+	 * Called when a run fails.
+	 * @param run The run, with its job information, and results if available, filled in.
+	 * @param failure How the run failed.
+	 */
+	void runFailed(CaseRun run, Failure failure);
+	
+	/**
+	 * Called when a run fails in a way that may not happen again, and will be
+	 * run again; it will be reported again once it has completed or failed.
+	 * @param run The run, with its job information, and results if available,
+	 * filled in, and the failure added to its failed attempts.
+	 * @param failure A description of the failure.
+	 * @param delay How long until the run is submitted again, in milliseconds.
+	 */
+	void runRetried(CaseRun run, String failure, long delay);
+	
+	/**
+	 * Called after all the runs in a job have been reported.
+	 * @param runsComplete The number of runs complete so far.
+	 * @param runCount The total number of runs.
+	 */
+	void progress(int runsComplete, int runCount);
+}
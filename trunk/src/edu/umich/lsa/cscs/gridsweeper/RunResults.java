@@ -27,6 +27,10 @@ import java.io.*;
  * Represents the results from a model run. This class is just a wrapper around
  * exit status, a user-readable message, data from standard output and error,
  * and, if something went wrong in GridSweeperRunner itself, an exception. 
+ * Adapters that write standard output and error directly to disk instead
+ * describe the files they have written, and leave the data empty.
+ * Adapters that can measure the model process also record the resources
+ * it used.
  * @author Ed Baskerville
  *
  */
@@ -38,7 +42,16 @@ public class RunResults implements Serializable
 	private String message;
 	private byte[] stdoutData;
 	private byte[] stderrData;
+	private OutputFile stdoutFile;
+	private OutputFile stderrFile;
 	private Exception exception;
+	private int runNumber = -1;
+	
+	// Resource usage of the model process; -1 if not measured
+	private long wallTime = -1;
+	private long userTime = -1;
+	private long systemTime = -1;
+	private long peakResidentSize = -1;
 	
 	public RunResults(Exception exception)
 	{
@@ -52,6 +65,15 @@ public class RunResults implements Serializable
 		this.stdoutData = stdoutData;
 		this.stderrData = stderrData;
 	}
+	
+	RunResults(int status, String message, byte[] stdoutData, byte[] stderrData,
+		OutputFile stdoutFile, OutputFile stderrFile, Exception exception)
+	{
+		this(status, message, stdoutData, stderrData);
+		this.stdoutFile = stdoutFile;
+		this.stderrFile = stderrFile;
+		this.exception = exception;
+	}
 
 	public String getMessage()
 	{
@@ -73,8 +95,119 @@ public class RunResults implements Serializable
 		return stdoutData;
 	}
 	
+	/**
+	 * Returns the file standard output was written to, if the adapter
+	 * wrote it directly to disk.
+	 * @return The file, or {@code null} if standard output was returned
+	 * as data or was empty.
+	 */
+	public OutputFile getStdoutFile()
+	{
+		return stdoutFile;
+	}
+	
+	/**
+	 * Returns the file standard error was written to, if the adapter
+	 * wrote it directly to disk.
+	 * @return The file, or {@code null} if standard error was returned
+	 * as data or was empty.
+	 */
+	public OutputFile getStderrFile()
+	{
+		return stderrFile;
+	}
+	
+	/**
+	 * Sets the files standard output and error were written to, for
+	 * adapters that write them directly to disk.
+	 * @param stdoutFile The standard output file, or {@code null} if none.
+	 * @param stderrFile The standard error file, or {@code null} if none.
+	 */
+	public void setOutputFiles(OutputFile stdoutFile, OutputFile stderrFile)
+	{
+		this.stdoutFile = stdoutFile;
+		this.stderrFile = stderrFile;
+	}
+	
 	public Exception getException()
 	{
 		return exception;
 	}
+	
+	/**
+	 * Returns the number of the run these results belong to. Since a runner
+	 * may perform several runs concurrently, results are not necessarily
+	 * written out in order of run number.
+	 * @return The run number, or -1 if it has not been set.
+	 */
+	public int getRunNumber()
+	{
+		return runNumber;
+	}
+	
+	/**
+	 * Sets the number of the run these results belong to. This is done by
+	 * the runner, so adapters need not set it themselves.
+	 * @param runNumber The run number.
+	 */
+	public void setRunNumber(int runNumber)
+	{
+		this.runNumber = runNumber;
+	}
+	
+	/**
+	 * Returns the wall-clock time the model ran for.
+	 * @return The time in milliseconds, or -1 if not measured.
+	 */
+	public long getWallTime()
+	{
+		return wallTime;
+	}
+	
+	/**
+	 * Returns the CPU time the model spent in user mode, including
+	 * any child processes it waited for.
+	 * @return The time in milliseconds, or -1 if not measured.
+	 */
+	public long getUserTime()
+	{
+		return userTime;
+	}
+	
+	/**
+	 * Returns the CPU time the model spent in the kernel, including
+	 * any child processes it waited for.
+	 * @return The time in milliseconds, or -1 if not measured.
+	 */
+	public long getSystemTime()
+	{
+		return systemTime;
+	}
+	
+	/**
+	 * Returns the largest amount of physical memory the model used
+	 * at one time (its peak resident set size).
+	 * @return The size in bytes, or -1 if not measured.
+	 */
+	public long getPeakResidentSize()
+	{
+		return peakResidentSize;
+	}
+	
+	/**
+	 * Records the resources used by the model. Each value may be -1
+	 * if the adapter could not measure it.
+	 * @param wallTime The wall-clock time, in milliseconds.
+	 * @param userTime The user CPU time, in milliseconds.
+	 * @param systemTime The system CPU time, in milliseconds.
+	 * @param peakResidentSize The peak resident set size, in bytes.
+	 */
+	public void setResourceUsage(long wallTime, long userTime, long systemTime,
+		long peakResidentSize)
+	{
+		this.wallTime = wallTime;
+		this.userTime = userTime;
+		this.systemTime = systemTime;
+		this.peakResidentSize = peakResidentSize;
+	}
 }
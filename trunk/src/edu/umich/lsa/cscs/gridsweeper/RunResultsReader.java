@@ -0,0 +1,78 @@
+/*
+	RunResultsReader.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+
+/**
+ * Reads a sequence of {@link RunResults} objects written by
+ * {@link RunResultsWriter}. Streams written using Java serialization
+ * by older versions of GridSweeper are also supported.
+ * @author Ed Baskerville
+ *
+ */
+class RunResultsReader
+{
+	private DataInputStream dataIn = null;
+	private ObjectInputStream objIn = null;
+	private RunCodec codec;
+	
+	/**
+	 * Constructor. Reads the stream header immediately.
+	 * @param in The underlying stream.
+	 * @throws IOException If the header cannot be read.
+	 */
+	public RunResultsReader(InputStream in) throws IOException
+	{
+		BufferedInputStream bufIn = new BufferedInputStream(in);
+		if(RunCodec.isEncoded(bufIn))
+		{
+			dataIn = new DataInputStream(bufIn);
+			codec = new RunCodec();
+			if(codec.readHeader(dataIn) != RunCodec.RESULTS)
+				throw new IOException("Stream does not contain run results.");
+		}
+		else
+		{
+			objIn = new ObjectInputStream(bufIn);
+		}
+	}
+	
+	/**
+	 * Reads the next results object.
+	 * @return The results object.
+	 * @throws EOFException If there are no more results in the stream.
+	 * @throws IOException If an I/O error occurs or the stream is invalid.
+	 * @throws ClassNotFoundException If a serialized object's class cannot be found.
+	 */
+	public RunResults readResults() throws IOException, ClassNotFoundException
+	{
+		if(objIn != null) return (RunResults)objIn.readObject();
+		return codec.readResults(dataIn);
+	}
+	
+	public void close() throws IOException
+	{
+		if(objIn != null) objIn.close();
+		else dataIn.close();
+	}
+}
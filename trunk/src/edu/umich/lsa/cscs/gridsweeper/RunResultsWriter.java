@@ -0,0 +1,64 @@
+/*
+	RunResultsWriter.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+
+/**
+ * Writes a sequence of {@link RunResults} objects to a stream in the format
+ * described in {@link RunCodec}. Used by the runner to write results to
+ * standard output.
+ * @author Ed Baskerville
+ *
+ */
+class RunResultsWriter
+{
+	private DataOutputStream out;
+	private RunCodec codec;
+	
+	/**
+	 * Constructor. Writes the stream header immediately.
+	 * @param out The underlying stream.
+	 * @throws IOException If the header cannot be written.
+	 */
+	public RunResultsWriter(OutputStream out) throws IOException
+	{
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		codec = new RunCodec();
+		RunCodec.writeHeader(this.out, RunCodec.RESULTS);
+	}
+	
+	public void writeResults(RunResults results) throws IOException
+	{
+		codec.writeResults(out, results);
+	}
+	
+	public void flush() throws IOException
+	{
+		out.flush();
+	}
+	
+	public void close() throws IOException
+	{
+		out.close();
+	}
+}
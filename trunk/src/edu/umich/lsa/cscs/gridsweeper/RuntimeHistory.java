@@ -0,0 +1,451 @@
+/*
+	RuntimeHistory.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.security.*;
+import java.util.*;
+
+import static edu.umich.lsa.cscs.gridsweeper.StringUtils.*;
+import static edu.umich.lsa.cscs.gridsweeper.DLogger.*;
+
+/**
+ * <p>A record of how long the runs of each model have taken, shared between
+ * experiments, used to predict how long the cases of a new experiment will
+ * take so that the longest can be submitted first. The history for a model
+ * is a file in the history directory, named by a digest of the adapter
+ * and model settings. Each line records one completed run as tab-separated,
+ * URL-encoded fields: its wall-clock time in milliseconds, followed by the
+ * names and values of its case's parameters. Lines are only ever appended,
+ * so several experiments can record to the same history.</p>
+ * 
+ * <p>Predictions come from a model of the logarithm of the run time as
+ * a sum of one effect for each parameter value, fitted by backfitting
+ * to the mean time of each case in the history. This captures parameters
+ * that each multiply the run time, which is the usual shape of the slow
+ * corner of a sweep. Numeric values not in the history get an effect
+ * interpolated between the nearest values that are; other unknown values,
+ * and parameters not in the history, are ignored.</p>
+ * @author Ed Baskerville
+ *
+ */
+class RuntimeHistory implements RunListener
+{
+	static final String SUFFIX = ".gshist";
+	
+	private static final int BACKFIT_ITERATIONS = 10;
+	
+	private File historyDir;
+	private File historyFile;
+	private OutputStream out = null;
+	
+	/**
+	 * Constructor. Nothing is read or created until needed.
+	 * @param historyDir The history directory.
+	 * @param settings The experiment settings, which identify the model.
+	 */
+	public RuntimeHistory(String historyDir, Settings settings)
+	{
+		this.historyDir = new File(historyDir);
+		historyFile = new File(this.historyDir, getModelKey(settings) + SUFFIX);
+	}
+	
+	/**
+	 * Determines whether cases should be submitted longest first,
+	 * according to the {@code SubmitOrder} setting.
+	 * @param settings The experiment settings.
+	 * @return {@code true} for longest first, {@code false} for sweep order.
+	 * @throws GridSweeperException If the setting is invalid.
+	 */
+	static boolean isLongestFirst(Settings settings) throws GridSweeperException
+	{
+		String order = settings.getProperty("SubmitOrder", "sweep");
+		if(order.equalsIgnoreCase("longest-first")) return true;
+		if(order.equalsIgnoreCase("sweep")) return false;
+		throw new GridSweeperException("Invalid SubmitOrder setting: " + order);
+	}
+	
+	/**
+	 * Packs a predicted run time and a case position into a key for ordering
+	 * cases longest first, such that sorting the keys in increasing order puts
+	 * the longest predictions first and keeps cases with the same prediction
+	 * in order of position. The bits of a non-negative {@code float} increase
+	 * with its value, so subtracting them from the largest {@code int} gives
+	 * a non-negative number that decreases as the prediction increases.
+	 * @param prediction The predicted run time, in milliseconds.
+	 * @param position The case's position among those being ordered.
+	 * @return The sort key.
+	 */
+	static long getLongestFirstKey(double prediction, int position)
+	{
+		float time = (prediction > 0) ? (float)prediction : 0;
+		long high = Integer.MAX_VALUE - Float.floatToIntBits(time);
+		return (high << 32) | position;
+	}
+	
+	/**
+	 * Recovers the prediction from a key made by {@link #getLongestFirstKey}.
+	 * @param key The sort key.
+	 * @return The predicted run time, in milliseconds.
+	 */
+	static float getLongestFirstPrediction(long key)
+	{
+		return Float.intBitsToFloat(Integer.MAX_VALUE - (int)(key >>> 32));
+	}
+	
+	/**
+	 * Computes the name of the history file for a model, as a hexadecimal
+	 * SHA-1 digest of the adapter and model settings.
+	 */
+	private static String getModelKey(Settings settings)
+	{
+		String key = "adapter\t" + settings.getProperty("Adapter",
+			"edu.umich.lsa.cscs.gridsweeper.DroneAdapter") + "\n"
+			+ "model\t" + escape(settings.getProperty("Model", "")) + "\n";
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] hash = digest.digest(key.getBytes("UTF-8"));
+			
+			StringBuffer hex = new StringBuffer(2 * hash.length);
+			for(byte b : hash)
+			{
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+				hex.append(Character.forDigit(b & 0xF, 16));
+			}
+			return hex.toString();
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch(UnsupportedEncodingException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Encodes the parameters of a case as they appear in a history line,
+	 * sorted by name, for the {@code historyFields} of the case's runs.
+	 * @param parameters The case's parameters.
+	 * @return The encoded parameters.
+	 */
+	static String encodeParameters(ParameterMap parameters)
+	{
+		StringBuffer fields = new StringBuffer();
+		SortedMap<String, Object> sortedParams = new TreeMap<String, Object>(parameters);
+		for(Map.Entry<String, Object> entry : sortedParams.entrySet())
+		{
+			fields.append("\t" + escape(entry.getKey(), "%\t\r\n"));
+			fields.append("\t" + escape("" + entry.getValue(), "%\t\r\n"));
+		}
+		return fields.toString();
+	}
+	
+	/**
+	 * Records a run that completed without errors, if it was timed.
+	 * Runs without {@code historyFields}, as after resuming monitoring,
+	 * are not recorded.
+	 */
+	public void runCompleted(CaseRun run)
+	{
+		RunResults results = run.runResults;
+		String parameters = run.historyFields;
+		if(results == null || results.getWallTime() < 0 || parameters == null) return;
+		
+		try
+		{
+			if(out == null)
+			{
+				historyDir.mkdirs();
+				out = new FileOutputStream(historyFile, true);
+			}
+			
+			// Written in one piece, so lines from concurrent experiments do not interleave
+			String line = results.getWallTime() + parameters + "\n";
+			out.write(line.getBytes("UTF-8"));
+		}
+		catch(IOException e)
+		{
+			fine("Could not record run time in " + historyFile + ": " + e);
+		}
+	}
+	
+	public void runFailed(CaseRun run, Failure failure)
+	{
+	}
+	
+	public void runRetried(CaseRun run, String failure, long delay)
+	{
+	}
+	
+	public void progress(int runsComplete, int runCount)
+	{
+	}
+	
+	/**
+	 * Closes the history file, if runs were recorded.
+	 */
+	public void close()
+	{
+		if(out == null) return;
+		try
+		{
+			out.close();
+		}
+		catch(IOException e) {}
+		out = null;
+	}
+	
+	/**
+	 * Reads the history for the model and fits a predictor to it.
+	 * Lines that cannot be parsed, such as one cut short by a crash,
+	 * are skipped.
+	 * @return The predictor, or {@code null} if there is no history for the model.
+	 * @throws IOException If the history file cannot be read.
+	 */
+	public Predictor loadPredictor() throws IOException
+	{
+		if(!historyFile.exists()) return null;
+		
+		// Average the log run times of each distinct case
+		Map<String, Observation> observations = new LinkedHashMap<String, Observation>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+			new FileInputStream(historyFile), "UTF-8"));
+		try
+		{
+			String line;
+			while((line = reader.readLine()) != null)
+			{
+				int tab = line.indexOf('\t');
+				String parameters = (tab == -1) ? "" : line.substring(tab);
+				long wallTime;
+				try
+				{
+					wallTime = Long.parseLong(tab == -1 ? line : line.substring(0, tab));
+				}
+				catch(NumberFormatException e)
+				{
+					continue;
+				}
+				
+				Observation observation = observations.get(parameters);
+				if(observation == null)
+				{
+					StringList fields = new StringList(parameters.substring(Math.min(1,
+						parameters.length())).split("\t", -1));
+					if(fields.size() % 2 != 0) continue;
+					
+					observation = new Observation();
+					for(int i = 0; i < fields.size(); i += 2)
+					{
+						observation.values.put(unescape(fields.get(i)), unescape(fields.get(i + 1)));
+					}
+					observations.put(parameters, observation);
+				}
+				observation.logTimeSum += Math.log(Math.max(wallTime, 1));
+				observation.count++;
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		
+		if(observations.isEmpty()) return null;
+		return new Predictor(new ArrayList<Observation>(observations.values()));
+	}
+	
+	/**
+	 * The runs of one case in the history.
+	 */
+	static class Observation
+	{
+		Map<String, String> values = new HashMap<String, String>();
+		double logTimeSum = 0;
+		int count = 0;
+		
+		double getMeanLogTime()
+		{
+			return logTimeSum / count;
+		}
+	}
+	
+	/**
+	 * Predicts run times from the effects of parameter values fitted to the history.
+	 */
+	static class Predictor
+	{
+		private double mean;
+		private Map<String, Effects> effectsMap = new HashMap<String, Effects>();
+		
+		/**
+		 * Fits the predictor. Each case is weighted by its number of runs.
+		 * @param observations The cases in the history.
+		 */
+		Predictor(List<Observation> observations)
+		{
+			double logTimeSum = 0;
+			int count = 0;
+			for(Observation observation : observations)
+			{
+				logTimeSum += observation.logTimeSum;
+				count += observation.count;
+				for(String name : observation.values.keySet())
+				{
+					if(!effectsMap.containsKey(name)) effectsMap.put(name, new Effects());
+				}
+			}
+			mean = logTimeSum / count;
+			
+			// Fit each parameter's effects to what the others leave unexplained
+			for(int iter = 0; iter < BACKFIT_ITERATIONS; iter++)
+			{
+				for(Map.Entry<String, Effects> entry : effectsMap.entrySet())
+				{
+					String name = entry.getKey();
+					Map<String, double[]> sums = new HashMap<String, double[]>();
+					for(Observation observation : observations)
+					{
+						String value = observation.values.get(name);
+						if(value == null) continue;
+						
+						double residual = observation.getMeanLogTime() - mean;
+						for(Map.Entry<String, String> other : observation.values.entrySet())
+						{
+							if(!other.getKey().equals(name))
+								residual -= effectsMap.get(other.getKey()).get(other.getValue());
+						}
+						
+						double[] sum = sums.get(value);
+						if(sum == null)
+						{
+							sum = new double[2];
+							sums.put(value, sum);
+						}
+						sum[0] += residual * observation.count;
+						sum[1] += observation.count;
+					}
+					
+					Effects effects = entry.getValue();
+					for(Map.Entry<String, double[]> sum : sums.entrySet())
+					{
+						effects.byValue.put(sum.getKey(), sum.getValue()[0] / sum.getValue()[1]);
+					}
+				}
+			}
+			
+			for(Effects effects : effectsMap.values())
+			{
+				effects.prepareInterpolation();
+			}
+		}
+		
+		/**
+		 * Predicts how long a run of a case will take.
+		 * @param parameters The case's parameters.
+		 * @return The predicted wall-clock time, in milliseconds.
+		 */
+		public double predict(ParameterMap parameters)
+		{
+			double logTime = mean;
+			for(Map.Entry<String, Object> entry : parameters.entrySet())
+			{
+				Effects effects = effectsMap.get(entry.getKey());
+				if(effects != null) logTime += effects.estimate("" + entry.getValue());
+			}
+			return Math.exp(logTime);
+		}
+	}
+	
+	/**
+	 * The fitted effects of the values of one parameter.
+	 */
+	private static class Effects
+	{
+		Map<String, Double> byValue = new HashMap<String, Double>();
+		
+		// Numeric values in increasing order, and their effects
+		private double[] numbers;
+		private double[] numberEffects;
+		
+		double get(String value)
+		{
+			Double effect = byValue.get(value);
+			return effect == null ? 0 : effect;
+		}
+		
+		void prepareInterpolation()
+		{
+			SortedMap<Double, Double> numeric = new TreeMap<Double, Double>();
+			for(Map.Entry<String, Double> entry : byValue.entrySet())
+			{
+				try
+				{
+					numeric.put(Double.parseDouble(entry.getKey()), entry.getValue());
+				}
+				catch(NumberFormatException e) {}
+			}
+			numbers = new double[numeric.size()];
+			numberEffects = new double[numeric.size()];
+			int i = 0;
+			for(Map.Entry<Double, Double> entry : numeric.entrySet())
+			{
+				numbers[i] = entry.getKey();
+				numberEffects[i] = entry.getValue();
+				i++;
+			}
+		}
+		
+		/**
+		 * Estimates the effect of a value: the fitted effect if the value is
+		 * in the history, or for a number, the effect interpolated linearly
+		 * between the nearest numbers in the history, or that of the nearest
+		 * number if it is outside their range.
+		 */
+		double estimate(String value)
+		{
+			Double effect = byValue.get(value);
+			if(effect != null) return effect;
+			
+			if(numbers.length == 0) return 0;
+			double number;
+			try
+			{
+				number = Double.parseDouble(value);
+			}
+			catch(NumberFormatException e)
+			{
+				return 0;
+			}
+			
+			int i = Arrays.binarySearch(numbers, number);
+			if(i >= 0) return numberEffects[i];
+			i = -i - 1;
+			if(i == 0) return numberEffects[0];
+			if(i == numbers.length) return numberEffects[numbers.length - 1];
+			double fraction = (number - numbers[i - 1]) / (numbers[i] - numbers[i - 1]);
+			return numberEffects[i - 1] + fraction * (numberEffects[i] - numberEffects[i - 1]);
+		}
+	}
+}
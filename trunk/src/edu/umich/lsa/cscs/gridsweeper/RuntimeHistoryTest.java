@@ -0,0 +1,142 @@
+/*
+	RuntimeHistoryTest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class RuntimeHistoryTest
+{
+	File dir;
+	Settings settings;
+	
+	@Before
+	public void setUp() throws IOException
+	{
+		dir = TestFiles.createTempDir("RuntimeHistoryTest");
+		
+		settings = new Settings();
+		settings.setProperty("Model", "/path/to/model");
+	}
+	
+	@After
+	public void tearDown()
+	{
+		TestFiles.delete(dir);
+	}
+	
+	private ParameterMap createParameters(String alpha, String beta)
+	{
+		ParameterMap parameters = new ParameterMap();
+		parameters.put("alpha", new BigDecimal(alpha));
+		parameters.put("beta", beta);
+		return parameters;
+	}
+	
+	private void record(RuntimeHistory history, ParameterMap parameters, long wallTime)
+	{
+		CaseRun run = new CaseRun("", 0, 100);
+		if(parameters != null)
+			run.historyFields = RuntimeHistory.encodeParameters(parameters);
+		run.runResults = new RunResults(0, "", null, null);
+		run.runResults.setResourceUsage(wallTime, -1, -1, -1);
+		history.runCompleted(run);
+	}
+	
+	@Test
+	public void recordAndPredict() throws IOException
+	{
+		RuntimeHistory history = new RuntimeHistory(dir.getPath(), settings);
+		assertNull(history.loadPredictor());
+		
+		// Run time is 1000 * alpha, doubled when beta is "slow"
+		record(history, createParameters("1", "fast"), 1000);
+		record(history, createParameters("1", "fast"), 1000);
+		record(history, createParameters("4", "fast"), 4000);
+		record(history, createParameters("1", "slow"), 2000);
+		record(history, null, 99999);
+		history.close();
+		
+		RuntimeHistory.Predictor predictor =
+			new RuntimeHistory(dir.getPath(), settings).loadPredictor();
+		assertEquals(4000, predictor.predict(createParameters("4", "fast")), 1);
+		
+		// A combination not in the history
+		assertEquals(8000, predictor.predict(createParameters("4", "slow")), 1);
+		
+		// Interpolated between alpha = 1 and 4
+		double predicted = predictor.predict(createParameters("2", "fast"));
+		assertTrue(predicted > 1000 && predicted < 4000);
+		
+		// Beyond the range, as for the nearest value
+		assertEquals(4000, predictor.predict(createParameters("10", "fast")), 1);
+	}
+	
+	@Test
+	public void separateModels() throws IOException
+	{
+		RuntimeHistory history = new RuntimeHistory(dir.getPath(), settings);
+		record(history, createParameters("1", "fast"), 1000);
+		history.close();
+		
+		Settings otherSettings = new Settings();
+		otherSettings.setProperty("Model", "/path/to/other");
+		assertNull(new RuntimeHistory(dir.getPath(), otherSettings).loadPredictor());
+	}
+	
+	@Test
+	public void invalidSubmitOrder()
+	{
+		settings.setProperty("SubmitOrder", "shortest-first");
+		try
+		{
+			RuntimeHistory.isLongestFirst(settings);
+			fail();
+		}
+		catch(GridSweeperException e) {}
+	}
+	
+	@Test
+	public void longestFirstKeys()
+	{
+		double[] predictions = {1500, 0, 250000, 1500, Double.NaN};
+		long[] keys = new long[predictions.length];
+		for(int i = 0; i < keys.length; i++)
+		{
+			keys[i] = RuntimeHistory.getLongestFirstKey(predictions[i], i);
+		}
+		Arrays.sort(keys);
+		
+		// Longest first, ties in order of position
+		int[] positions = {2, 0, 3, 1, 4};
+		for(int i = 0; i < keys.length; i++)
+		{
+			assertEquals(positions[i], (int)(keys[i] & 0xFFFFFFFFL));
+		}
+		assertEquals(250000, RuntimeHistory.getLongestFirstPrediction(keys[0]), 0);
+		assertEquals(0, RuntimeHistory.getLongestFirstPrediction(keys[4]), 0);
+	}
+}
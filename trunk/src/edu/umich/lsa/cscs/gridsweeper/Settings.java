@@ -151,6 +151,30 @@ public class Settings extends StringMap
 		if(value == null) return defaultValue;
 		return Boolean.parseBoolean(value);
 	}
+	
+	/**
+	 * Gets a property, parsing the string value as an integer that must
+	 * be at least a given minimum, such as a count.
+	 * @param key The key of the property to parse.
+	 * @param defaultValue The value to use if the property is not set.
+	 * @param min The smallest value allowed.
+	 * @return The integer value of the property.
+	 * @throws GridSweeperException If the value is not an integer,
+	 * or is smaller than {@code min}.
+	 */
+	int getIntProperty(String key, int defaultValue, int min) throws GridSweeperException
+	{
+		String value = getProperty(key);
+		if(value == null) return defaultValue;
+		try
+		{
+			return StringUtils.parseInt(value, min);
+		}
+		catch(NumberFormatException e)
+		{
+			throw new GridSweeperException("Invalid " + key + " setting: " + value);
+		}
+	}
 
 	public String getCasedKey(String key)
 	{
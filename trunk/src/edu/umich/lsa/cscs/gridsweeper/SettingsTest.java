@@ -40,4 +40,26 @@ public class SettingsTest
 		settings.setProperty("key", "value");
 		assertEquals("value", settings.getProperty("key"));
 	}
+	
+	@Test
+	public void intProperty() throws GridSweeperException
+	{
+		assertEquals(4, settings.getIntProperty("Count", 4, 1));
+		settings.setProperty("Count", " 12 ");
+		assertEquals(12, settings.getIntProperty("Count", 4, 1));
+		
+		for(String value : new String[] {"0", "-3", "many", ""})
+		{
+			settings.setProperty("Count", value);
+			try
+			{
+				settings.getIntProperty("Count", 4, 1);
+				fail("\"" + value + "\" should be rejected.");
+			}
+			catch(GridSweeperException e)
+			{
+				assertEquals("Invalid Count setting: " + value, e.getMessage());
+			}
+		}
+	}
 }
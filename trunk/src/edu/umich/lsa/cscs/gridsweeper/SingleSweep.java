@@ -21,6 +21,7 @@
 
 package edu.umich.lsa.cscs.gridsweeper;
 
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -45,6 +46,33 @@ abstract class SingleSweep implements Sweep
 	}
 
 	public abstract List<ParameterMap> generateMaps();
+	
+	public abstract Iterator<ParameterMap> mapIterator();
+	
+	public abstract long getMapCount();
+	
+	public abstract ParameterMap getMap(long index);
+	
+	/**
+	 * Returns the value assigned in the map at a particular position, without
+	 * creating the map.
+	 * @param index The position of the map, which must be in range.
+	 * @return The value assigned to the parameter.
+	 */
+	public abstract Object getValue(long index);
+	
+	/**
+	 * Throws an exception if an index is out of range for this sweep.
+	 * @param index The index to check.
+	 */
+	protected void checkIndex(long index)
+	{
+		if(index < 0 || index >= getMapCount())
+		{
+			throw new IndexOutOfBoundsException("Index " + index
+				+ " out of range for sweep of parameter " + name + ".");
+		}
+	}
 
 	/**
 	 * Returns the parameter name used by this sweep.
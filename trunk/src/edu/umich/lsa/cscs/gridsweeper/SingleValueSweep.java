@@ -61,6 +61,49 @@ class SingleValueSweep extends SingleSweep
 		
 		return maps;
 	}
+	
+	/**
+	 * Returns an iterator over the one-entry map.
+	 * @return An iterator over a single map.
+	 */
+	@Override
+	public Iterator<ParameterMap> mapIterator()
+	{
+		return Collections.singletonList(new ParameterMap(name, value)).iterator();
+	}
+
+	/**
+	 * Returns the number of maps generated, which is always one.
+	 * @return One.
+	 */
+	@Override
+	public long getMapCount()
+	{
+		return 1;
+	}
+	
+	/**
+	 * Returns the one-entry map.
+	 * @param index The index of the map, which must be zero.
+	 * @return The one-entry map.
+	 */
+	@Override
+	public ParameterMap getMap(long index)
+	{
+		checkIndex(index);
+		return new ParameterMap(name, value);
+	}
+	
+	/**
+	 * Returns the value assigned to the parameter.
+	 * @param index The index of the map, which must be zero.
+	 * @return The value assigned.
+	 */
+	@Override
+	public Object getValue(long index)
+	{
+		return value;
+	}
 
 	/**
 	 * Returns the value assigned to the parameter.
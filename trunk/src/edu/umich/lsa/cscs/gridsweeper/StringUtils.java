@@ -38,6 +38,23 @@ public class StringUtils
 		fileSep = System.getProperty("file.separator");
 	}
 	
+	/**
+	 * Parses an integer that must be at least a given minimum, such as a
+	 * count. Whitespace around the integer is ignored.
+	 * @param string The string to parse.
+	 * @param min The smallest value allowed.
+	 * @return The integer.
+	 * @throws NumberFormatException If the string is not an integer,
+	 * or the integer is smaller than {@code min}.
+	 */
+	static int parseInt(String string, int min)
+	{
+		int value = Integer.parseInt(string.trim());
+		if(value < min)
+			throw new NumberFormatException("Value is less than " + min + ": " + string);
+		return value;
+	}
+	
 	static StringList tokenize(String string)
 	{
 		return tokenize(string, " ", true);
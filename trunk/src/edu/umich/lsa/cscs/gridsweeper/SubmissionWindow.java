@@ -0,0 +1,184 @@
+/*
+	SubmissionWindow.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.util.*;
+
+import static edu.umich.lsa.cscs.gridsweeper.DLogger.*;
+
+/**
+ * <p>Limits the number of jobs an experiment has in the execution system
+ * at once, so that submission can continue alongside monitoring without
+ * flooding the scheduler. Two limits can be set, each 0 for no limit:</p>
+ * 
+ * <ul>
+ * <li>the number of jobs submitted and not yet ended, which also bounds
+ * the number running, since any waiting job may start;</li>
+ * <li>the number of jobs submitted and not yet started.</li>
+ * </ul>
+ * 
+ * <p>The submitter asks for room before submitting each job, and adds the
+ * job afterward; the monitor removes each job as it ends. Whether jobs have
+ * started is only checked when the second limit has been reached. Jobs
+ * usually start in the order they were submitted, so the oldest are checked
+ * first, stopping at the first that is still waiting.</p>
+ * @author Ed Baskerville
+ *
+ */
+class SubmissionWindow
+{
+	/**
+	 * Milliseconds between checks for started jobs while waiting for room.
+	 */
+	private static final long POLL_INTERVAL = 10000;
+	
+	private ExecutionBackend backend;
+	private int maxJobs;
+	private int maxPendingJobs;
+	
+	private boolean closed = false;
+	private Set<String> jobIds = new HashSet<String>();
+	
+	// Jobs not yet seen to have started, in order of submission
+	private Set<String> pendingJobIds = new LinkedHashSet<String>();
+	
+	/**
+	 * Constructor.
+	 * @param backend The execution backend, used to check whether jobs have started.
+	 * @param maxJobs The maximum number of jobs submitted and not yet ended,
+	 * or 0 for no limit.
+	 * @param maxPendingJobs The maximum number of jobs submitted and not yet started,
+	 * or 0 for no limit.
+	 */
+	public SubmissionWindow(ExecutionBackend backend, int maxJobs, int maxPendingJobs)
+	{
+		this.backend = backend;
+		this.maxJobs = maxJobs;
+		this.maxPendingJobs = maxPendingJobs;
+	}
+	
+	/**
+	 * Determines whether the limits are set in the experiment settings,
+	 * through {@code MaxRunningJobs} and {@code MaxPendingJobs}.
+	 * @param settings The experiment settings.
+	 * @return The limits, {@code MaxRunningJobs} first, or {@code null}
+	 * if neither is set.
+	 * @throws GridSweeperException If a setting is invalid.
+	 */
+	static int[] getLimits(Settings settings) throws GridSweeperException
+	{
+		int maxJobs = settings.getIntProperty("MaxRunningJobs", 0, 0);
+		int maxPendingJobs = settings.getIntProperty("MaxPendingJobs", 0, 0);
+		if(maxJobs == 0 && maxPendingJobs == 0) return null;
+		return new int[] {maxJobs, maxPendingJobs};
+	}
+	
+	/**
+	 * Waits until there is room to submit some jobs. A request for more jobs
+	 * than a limit allows waits until there are no jobs at all under that limit.
+	 * @param count The number of jobs to be submitted.
+	 * @throws GridSweeperException If checking whether jobs have started fails,
+	 * or if the window has been closed.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public synchronized void waitForRoom(int count) throws GridSweeperException, InterruptedException
+	{
+		while(true)
+		{
+			if(closed)
+				throw new GridSweeperException("No more jobs can be submitted because job monitoring has stopped.");
+			if(!fits(jobIds, maxJobs, count))
+			{
+				wait();
+				continue;
+			}
+			if(fits(pendingJobIds, maxPendingJobs, count)) return;
+			
+			updatePendingJobs();
+			if(fits(pendingJobIds, maxPendingJobs, count)) return;
+			fine("waiting for some of " + pendingJobIds.size() + " pending jobs to start");
+			wait(POLL_INTERVAL);
+		}
+	}
+	
+	/**
+	 * Checks, without waiting, whether there is room to submit a job.
+	 * @return {@code true} if a job can be submitted now.
+	 * @throws GridSweeperException If checking whether jobs have started fails.
+	 */
+	public synchronized boolean hasRoom() throws GridSweeperException
+	{
+		if(!fits(jobIds, maxJobs, 1)) return false;
+		if(fits(pendingJobIds, maxPendingJobs, 1)) return true;
+		updatePendingJobs();
+		return fits(pendingJobIds, maxPendingJobs, 1);
+	}
+	
+	private static boolean fits(Set<String> ids, int limit, int count)
+	{
+		return limit == 0 || ids.isEmpty() || ids.size() + count <= limit;
+	}
+	
+	/**
+	 * Forgets jobs that have started, checking the oldest first and stopping
+	 * at the first job still waiting.
+	 */
+	private void updatePendingJobs() throws GridSweeperException
+	{
+		for(Iterator<String> iter = pendingJobIds.iterator(); iter.hasNext();)
+		{
+			if(backend.isJobPending(iter.next())) break;
+			iter.remove();
+		}
+	}
+	
+	/**
+	 * Adds submitted jobs.
+	 * @param newJobIds The job IDs.
+	 */
+	public synchronized void add(List<String> newJobIds)
+	{
+		jobIds.addAll(newJobIds);
+		if(maxPendingJobs > 0) pendingJobIds.addAll(newJobIds);
+	}
+	
+	/**
+	 * Removes a job that has ended, making room for another.
+	 * @param jobId The job ID.
+	 */
+	public synchronized void remove(String jobId)
+	{
+		jobIds.remove(jobId);
+		pendingJobIds.remove(jobId);
+		notifyAll();
+	}
+	
+	/**
+	 * Closes the window, because ended jobs will no longer be removed.
+	 * Threads waiting for room give up.
+	 */
+	public synchronized void close()
+	{
+		closed = true;
+		notifyAll();
+	}
+}
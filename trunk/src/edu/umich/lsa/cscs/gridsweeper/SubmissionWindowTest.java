@@ -0,0 +1,187 @@
+/*
+	SubmissionWindowTest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.util.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class SubmissionWindowTest
+{
+	/**
+	 * A backend that only reports which jobs are pending.
+	 */
+	static class PendingBackend implements ExecutionBackend
+	{
+		Set<String> pendingJobIds = Collections.synchronizedSet(new HashSet<String>());
+		
+		public String getName() { return "test"; }
+		public String getContact() { return null; }
+		public String submitJob(String jobName, String caseDir, String stdinPath,
+			String stdoutName, String stderrName) { return null; }
+		public List<String> submitBulkJob(String jobName, String caseDir, String stdinPath,
+			String stdoutPrefix, String stderrPrefix, int taskCount) { return null; }
+		public JobOutcome waitForJob() { return null; }
+		public JobOutcome getJobOutcome(String jobId) { return null; }
+		public boolean isJobPending(String jobId) { return pendingJobIds.contains(jobId); }
+		public void close() {}
+	}
+	
+	PendingBackend backend;
+	
+	@Before
+	public void setUp()
+	{
+		backend = new PendingBackend();
+	}
+	
+	/**
+	 * Waits for room on another thread.
+	 * @return The thread, which sets its exception if waiting fails.
+	 */
+	private Waiter startWaiter(SubmissionWindow window, int count)
+	{
+		Waiter waiter = new Waiter(window, count);
+		waiter.start();
+		return waiter;
+	}
+	
+	static class Waiter extends Thread
+	{
+		SubmissionWindow window;
+		int count;
+		Exception exception = null;
+		
+		Waiter(SubmissionWindow window, int count)
+		{
+			this.window = window;
+			this.count = count;
+		}
+		
+		@Override
+		public void run()
+		{
+			try
+			{
+				window.waitForRoom(count);
+			}
+			catch(Exception e)
+			{
+				exception = e;
+			}
+		}
+	}
+	
+	@Test
+	public void submittedLimit() throws Exception
+	{
+		SubmissionWindow window = new SubmissionWindow(backend, 2, 0);
+		assertTrue(window.hasRoom());
+		window.add(Arrays.asList("1", "2"));
+		assertFalse(window.hasRoom());
+		
+		Waiter waiter = startWaiter(window, 1);
+		waiter.join(200);
+		assertTrue(waiter.isAlive());
+		
+		window.remove("1");
+		waiter.join(5000);
+		assertFalse(waiter.isAlive());
+		assertNull(waiter.exception);
+		assertTrue(window.hasRoom());
+	}
+	
+	@Test
+	public void pendingLimit() throws Exception
+	{
+		SubmissionWindow window = new SubmissionWindow(backend, 0, 2);
+		backend.pendingJobIds.addAll(Arrays.asList("1", "2", "3"));
+		window.add(Arrays.asList("1", "2"));
+		assertFalse(window.hasRoom());
+		
+		// The oldest job is checked first
+		backend.pendingJobIds.remove("2");
+		assertFalse(window.hasRoom());
+		backend.pendingJobIds.remove("1");
+		assertTrue(window.hasRoom());
+		
+		// Started jobs are not checked again, and still count as submitted
+		window.add(Arrays.asList("3"));
+		assertTrue(window.hasRoom());
+		window.waitForRoom(1);
+	}
+	
+	@Test
+	public void oversizedRequest() throws Exception
+	{
+		SubmissionWindow window = new SubmissionWindow(backend, 2, 0);
+		
+		// More jobs than the limit can go in only when the window is empty
+		window.waitForRoom(3);
+		window.add(Arrays.asList("1", "2", "3"));
+		
+		Waiter waiter = startWaiter(window, 3);
+		window.remove("1");
+		window.remove("2");
+		waiter.join(200);
+		assertTrue(waiter.isAlive());
+		
+		window.remove("3");
+		waiter.join(5000);
+		assertFalse(waiter.isAlive());
+		assertNull(waiter.exception);
+	}
+	
+	@Test
+	public void close() throws Exception
+	{
+		SubmissionWindow window = new SubmissionWindow(backend, 1, 0);
+		window.add(Arrays.asList("1"));
+		
+		Waiter waiter = startWaiter(window, 1);
+		window.close();
+		waiter.join(5000);
+		assertFalse(waiter.isAlive());
+		assertTrue(waiter.exception instanceof GridSweeperException);
+	}
+	
+	@Test
+	public void limitSettings() throws GridSweeperException
+	{
+		Settings settings = new Settings();
+		assertNull(SubmissionWindow.getLimits(settings));
+		
+		settings.setProperty("MaxPendingJobs", "10");
+		int[] limits = SubmissionWindow.getLimits(settings);
+		assertEquals(0, limits[0]);
+		assertEquals(10, limits[1]);
+		
+		settings.setProperty("MaxRunningJobs", "-5");
+		try
+		{
+			SubmissionWindow.getLimits(settings);
+			fail("Negative MaxRunningJobs should be rejected.");
+		}
+		catch(GridSweeperException e) {}
+	}
+}
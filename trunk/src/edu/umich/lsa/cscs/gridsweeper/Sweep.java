@@ -24,8 +24,9 @@ package edu.umich.lsa.cscs.gridsweeper;
 import java.util.*;
 
 /**
- * The root interface for parameter sweeps. Defines one method, <code>generateMaps()</code>,
- * which generates parameter name/value maps from parameter sweep settings.
+ * The root interface for parameter sweeps. Defines <code>generateMaps()</code>,
+ * which generates parameter name/value maps from parameter sweep settings, and
+ * <code>mapIterator()</code>, which generates the same maps one at a time.
  * @author Ed Baskerville 
  */
 interface Sweep
@@ -43,5 +44,40 @@ interface Sweep
 	 */
 	public List<ParameterMap> generateMaps() throws SweepLengthException, DuplicateParameterException;
 	
+	/**
+	 * Returns an iterator over the same {@link ParameterMap} objects, in the same
+	 * order, as {@link #generateMaps()}. Maps are generated on demand, so
+	 * very large sweeps can be enumerated without holding every map in memory.
+	 * Length and duplicate-parameter requirements are checked when the
+	 * iterator is created.
+	 * @return An iterator over parameter maps.
+	 * @throws SweepLengthException If a length requirement is violated.
+	 * @throws DuplicateParameterException If child sweeps generate duplicate/conflicting
+	 * settings for a parameter.
+	 */
+	public Iterator<ParameterMap> mapIterator() throws SweepLengthException, DuplicateParameterException;
+	
+	/**
+	 * Returns the number of maps generated by this sweep, without generating them.
+	 * @return The number of parameter maps.
+	 * @throws SweepLengthException If a length requirement is violated.
+	 */
+	public long getMapCount() throws SweepLengthException;
+	
+	/**
+	 * Returns the map at a particular position in the sequence generated by
+	 * {@link #generateMaps()}, without generating the maps that precede it.
+	 * For combination sweeps, the index is decoded into one index per child
+	 * (as a mixed-radix number), so the cost depends only on the depth of the sweep.
+	 * @param index The position of the map, starting at zero.
+	 * @return The parameter map at that position.
+	 * @throws SweepLengthException If a length requirement is violated.
+	 * @throws DuplicateParameterException If child sweeps generate duplicate/conflicting
+	 * settings for a parameter.
+	 * @throws IndexOutOfBoundsException If the index is negative or not less than
+	 * {@link #getMapCount()}.
+	 */
+	public ParameterMap getMap(long index) throws SweepLengthException, DuplicateParameterException;
+	
 	public void writeXML(XMLWriter xmlWriter);
 }
@@ -0,0 +1,82 @@
+/*
+	TestFiles.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Helpers shared by the tests, for the temporary directories they work in
+ * and the runs they work with.
+ * @author Ed Baskerville
+ *
+ */
+class TestFiles
+{
+	/**
+	 * Creates an empty temporary directory.
+	 * @param prefix The start of the directory's name, usually the name
+	 * of the test class.
+	 * @return The directory.
+	 * @throws IOException If the directory cannot be created.
+	 */
+	static File createTempDir(String prefix) throws IOException
+	{
+		File dir = File.createTempFile(prefix, "");
+		dir.delete();
+		if(!dir.mkdir())
+			throw new IOException("Could not create " + dir);
+		return dir;
+	}
+	
+	/**
+	 * Deletes a file, or a directory and everything in it.
+	 * @param file The file or directory.
+	 */
+	static void delete(File file)
+	{
+		File[] files = file.listFiles();
+		if(files != null) for(File child : files)
+		{
+			delete(child);
+		}
+		file.delete();
+	}
+	
+	/**
+	 * Creates consecutive runs of a case. Each run's seed is its run
+	 * number plus 100.
+	 * @param caseId The case ID.
+	 * @param firstRun The run number of the first run.
+	 * @param count The number of runs.
+	 * @return The runs.
+	 */
+	static List<CaseRun> createRuns(String caseId, int firstRun, int count)
+	{
+		List<CaseRun> runs = new ArrayList<CaseRun>(count);
+		for(int i = firstRun; i < firstRun + count; i++)
+		{
+			runs.add(new CaseRun(caseId, i, 100 + i));
+		}
+		return runs;
+	}
+}
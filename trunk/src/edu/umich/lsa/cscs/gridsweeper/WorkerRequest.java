@@ -0,0 +1,96 @@
+/*
+	WorkerRequest.java
+	
+	Part of GridSweeper
+	Copyright (c) 2006 - 2007 Ed Baskerville <software@edbaskerville.com>
+	
+	This program is free software; you can redistribute it and/or
+	modify it under the terms of the GNU General Public License
+	as published by the Free Software Foundation; either version 2
+	of the License, or (at your option) any later version.
+	
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+	
+	You should have received a copy of the GNU General Public License
+	along with this program; if not, write to the Free Software
+	Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package edu.umich.lsa.cscs.gridsweeper;
+
+import java.io.*;
+
+/**
+ * A request to a persistent worker to perform a job: the runs in a setup
+ * file, performed in a case directory, with results and error output
+ * written to the given files. Requests are written to the worker's standard
+ * input one after another, each as five fields written with
+ * {@link DataOutputStream}: four paths, as UTF strings, and the task index
+ * for a bulk job, as an {@code int} that is 0 if the job is not part of one.
+ * @author Ed Baskerville
+ *
+ */
+class WorkerRequest
+{
+	String caseDir;
+	String stdinPath;
+	String stdoutPath;
+	String stderrPath;
+	int taskId;
+	
+	/**
+	 * Constructor.
+	 * @param caseDir The case directory to perform the runs in.
+	 * @param stdinPath The path to the setup file.
+	 * @param stdoutPath The path to write results to.
+	 * @param stderrPath The path to write error output to.
+	 * @param taskId The task index within a bulk job, or 0.
+	 */
+	public WorkerRequest(String caseDir, String stdinPath, String stdoutPath,
+		String stderrPath, int taskId)
+	{
+		this.caseDir = caseDir;
+		this.stdinPath = stdinPath;
+		this.stdoutPath = stdoutPath;
+		this.stderrPath = stderrPath;
+		this.taskId = taskId;
+	}
+	
+	/**
+	 * Writes this request to a stream, without flushing it.
+	 * @param out The stream.
+	 * @throws IOException If writing fails.
+	 */
+	public void write(DataOutputStream out) throws IOException
+	{
+		out.writeUTF(caseDir);
+		out.writeUTF(stdinPath);
+		out.writeUTF(stdoutPath);
+		out.writeUTF(stderrPath);
+		out.writeInt(taskId);
+	}
+	
+	/**
+	 * Reads a request from a stream.
+	 * @param in The stream.
+	 * @return The request, or {@code null} at the end of the stream.
+	 * @throws IOException If reading fails, or the stream ends partway
+	 * through a request.
+	 */
+	public static WorkerRequest read(DataInputStream in) throws IOException
+	{
+		String caseDir;
+		try
+		{
+			caseDir = in.readUTF();
+		}
+		catch(EOFException e)
+		{
+			return null;
+		}
+		return new WorkerRequest(caseDir, in.readUTF(), in.readUTF(), in.readUTF(), in.readInt());
+	}
+}